@@ -0,0 +1,49 @@
+#version 410
+
+out vec4 fragColor;
+
+// Maximum number of sources per pass, must match FusedBlendShader.MAX_SOURCES
+#define MAX_SOURCES 8
+
+// Blend modes, must match FusedBlendShader
+#define MODE_ADD 0
+#define MODE_MULTIPLY 1
+
+// Blend destination texture: the bus before any of these sources
+uniform sampler2D iDst;
+
+// Blend source textures: total output for each channel, in mixer order
+uniform sampler2D iSrc[MAX_SOURCES];
+
+// Amount of each source to be applied, e.g. channel fader
+uniform float level[MAX_SOURCES];
+
+// Blend mode of each source
+uniform int mode[MAX_SOURCES];
+
+// Number of sources in use
+uniform int count;
+
+void main() {
+    ivec2 coord = ivec2(gl_FragCoord.xy);
+    vec4 colorDst = texelFetch(iDst, coord, 0);
+
+    // Apply each source in order, exactly as the chain of single blends would
+    for (int i = 0; i < MAX_SOURCES; i++) {
+        if (i >= count) {
+            break;
+        }
+        vec4 colorSrc = texelFetch(iSrc[i], coord, 0);
+        if (mode[i] == MODE_MULTIPLY) {
+            // Same as blendMultiply.fs
+            colorDst = mix(colorDst, colorDst * colorSrc, level[i]);
+        } else {
+            // Same as blendAdd.fs
+            vec3 rgb = colorDst.rgb + (colorSrc.rgb * level[i] * colorSrc.a);
+            float a = max(colorDst.a, colorSrc.a);
+            colorDst = clamp(vec4(rgb, a), 0.0, 1.0);
+        }
+    }
+
+    fragColor = colorDst;
+}
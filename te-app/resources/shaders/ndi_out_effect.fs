@@ -8,8 +8,15 @@ uniform sampler2D iDst;
 // Normalized model coordinates
 uniform sampler2D lxModelCoords;
 
+// Canvas pixel index of the first pixel of the NDI frame
+uniform int ndiOffset;
+
 void main() {
-    vec4 color = texelFetch(iDst, ivec2(gl_FragCoord.xy), 0);
+    // Gather the NDI frame's pixels, in order, to the start of the framebuffer
+    int canvasWidth = textureSize(iDst, 0).x;
+    ivec2 dst = ivec2(gl_FragCoord.xy);
+    int index = ndiOffset + dst.y * canvasWidth + dst.x;
+    vec4 color = texelFetch(iDst, ivec2(index % canvasWidth, index / canvasWidth), 0);
 
     fragColor = color.bgra;
 }
@@ -0,0 +1,19 @@
+#version 410
+
+out vec4 fragColor;
+
+// Rendered frame, one canvas pixel per model point index
+uniform sampler2D iSrc;
+
+// Canvas pixel of each packed point, in view order. Negative or NaN for no point.
+uniform sampler2D iGather;
+
+void main() {
+    // Pack the view's points, in order, to the start of the framebuffer
+    vec2 src = texelFetch(iGather, ivec2(gl_FragCoord.xy), 0).xy;
+    if (!(src.x >= 0.0)) {
+        fragColor = vec4(0.0);
+        return;
+    }
+    fragColor = texelFetch(iSrc, ivec2(src), 0);
+}
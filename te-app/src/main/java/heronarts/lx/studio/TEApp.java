@@ -180,6 +180,7 @@ import titanicsend.pattern.pixelblaze.PBFireworkNova;
 import titanicsend.pattern.pixelblaze.PBXorcery;
 import titanicsend.pattern.pixelblaze.PixelblazeParallel;
 import titanicsend.pattern.pixelblaze.PixelblazeSandbox;
+import titanicsend.pattern.render.CPURenderPool;
 import titanicsend.pattern.selina.HappyChibi;
 import titanicsend.pattern.sinas.LightBeamsAudioReactivePattern;
 import titanicsend.pattern.sinas.TdNdiPattern;
@@ -197,6 +198,7 @@ import titanicsend.preset.PresetEngine;
 import titanicsend.preset.UIUserPresetManager;
 import titanicsend.preset.UIUserPresetSelector;
 import titanicsend.ui.UI3DManager;
+import titanicsend.ui.UIFrameProfiler;
 import titanicsend.ui.UITEColorControl;
 import titanicsend.ui.UITEPerformancePattern;
 import titanicsend.ui.color.UIColorPaletteManagerSection;
@@ -227,14 +229,32 @@ public class TEApp extends LXStudio {
   private static final String FLAG_DISABLE_ZEROCONF = "--disable-zeroconf";
   private static final String FLAG_FORCE_OUTPUT = "--force-output";
   private static final String FLAG_DISABLE_OUTPUT = "--disable-output";
-
-  // Default shader system rendering canvas
-  // resolution.  Determines the maximum number of
-  // model points allowed. May be changed via the startup
-  // command line argument --resolution=WIDTHxHEIGHT
-  // (Default allows roughly 102,000 points.)
+  private static final String FLAG_PRECOMPILE_SHADERS = "--precompile-shaders";
+  private static final String FLAG_JAVA_EFFECT_BRIDGE = "--java-effect-bridge";
+  private static final String FLAG_NDI_TEST_SOURCE = "--ndi-test-source";
+
+  // Default shader system resolution, the coordinate space that
+  // patterns are written for. The rendering canvas is resized to
+  // fit the model, unless it is fixed at this size via the startup
+  // command line argument --resolution=WIDTHxHEIGHT, which then
+  // determines the maximum number of model points allowed.
   public static int glRenderWidth = 480;
   public static int glRenderHeight = 480;
+  public static boolean glFixedResolution = false;
+
+  // Number of pixel buffers used for async GPU->CPU readback. More buffers
+  // means the engine is less likely to wait on the GPU, at the cost of
+  // output latency in frames. May be changed via the startup command
+  // line argument --readback-depth N
+  public static int glReadbackDepth = GLEngine.DEFAULT_READBACK_DEPTH;
+
+  // GPU render mode: run Java (CPU) effects on a copy of the bus read back from the GPU. Off by
+  // default as each batch of Java effects waits on the GPU. Enable via --java-effect-bridge
+  public static boolean glJavaEffectBridge = false;
+
+  // Development: list a synthetic "TE Test Source" among the NDI sources. Enable via
+  // --ndi-test-source
+  public static boolean ndiTestSource = false;
 
   public static GamepadEngine gamepadEngine;
 
@@ -286,8 +306,12 @@ public class TEApp extends LXStudio {
       lx.engine.registerComponent("globalPatternControls", new TEGlobalPatternControls(lx));
 
       this.dmxEngine = new DmxEngine(lx);
-      this.ndiEngine = new NDIEngine(lx);
-      this.glEngine = new GLEngine(lx, glRenderWidth, glRenderHeight);
+      this.ndiEngine = new NDIEngine(lx, ndiTestSource);
+      this.glEngine =
+          new GLEngine(lx, glRenderWidth, glRenderHeight, glReadbackDepth, glFixedResolution);
+      if (this.glEngine.getMixer() != null) {
+        this.glEngine.getMixer().setJavaEffectBridge(glJavaEffectBridge);
+      }
       gamepadEngine = new GamepadEngine(lx);
       this.presetEngine = new PresetEngine(lx);
       this.presetEngine.openFile(lx.getMediaFile("Presets/UserPresets/BM24.userPresets"));
@@ -880,6 +904,11 @@ public class TEApp extends LXStudio {
 
       new TEUIControls(ui, this.virtualOverlays, modelPaneWidth).addToContainer(modelPane, 1);
 
+      UIFrameProfiler uiFrameProfiler =
+          new UIFrameProfiler(ui, this.glEngine.profiler, modelPaneWidth);
+      uiFrameProfiler.addToContainer(modelPane, 2);
+      uiFrameProfiler.setExpanded(false);
+
       // ------------
       // Global pane
       // ------------
@@ -928,8 +957,9 @@ public class TEApp extends LXStudio {
       // Non-UI Initialization Hooks
       // =======================================================================================
 
-      // precompile binaries for any new or changed shaders
-      ShaderPrecompiler.rebuildCache();
+      // set up OpenGL for the shader compiler. Binaries are built when shaders are first used, or
+      // ahead of time with --precompile-shaders.
+      ShaderPrecompiler.initialize();
 
       // Import latest gamepad controllers db
       gamepadEngine.updateGamepadMappings();
@@ -977,6 +1007,7 @@ public class TEApp extends LXStudio {
       this.dmxEngine.dispose();
       this.crutchOSC.dispose();
       this.glEngine.dispose();
+      CPURenderPool.shutdown();
       this.effectManager.dispose();
       gamepadEngine.dispose();
 
@@ -1107,6 +1138,7 @@ public class TEApp extends LXStudio {
       }
 
       boolean headless = false;
+      boolean precompileShaders = false;
       File projectFile = null;
       for (int i = 0; i < args.length; ++i) {
         final String arg = args[i];
@@ -1124,6 +1156,12 @@ public class TEApp extends LXStudio {
           flags.outputMode = Flags.OutputMode.ACTIVE;
         } else if (FLAG_DISABLE_OUTPUT.equals(arg)) {
           flags.outputMode = Flags.OutputMode.INACTIVE;
+        } else if (FLAG_PRECOMPILE_SHADERS.equals(arg)) {
+          precompileShaders = true;
+        } else if (FLAG_JAVA_EFFECT_BRIDGE.equals(arg)) {
+          glJavaEffectBridge = true;
+        } else if (FLAG_NDI_TEST_SOURCE.equals(arg)) {
+          ndiTestSource = true;
         } else if (arg.endsWith(".lxp") || arg.endsWith(".lxs")) {
           try {
             projectFileName = arg;
@@ -1142,6 +1180,7 @@ public class TEApp extends LXStudio {
               try {
                 glRenderWidth = Integer.parseInt(resolution[0]);
                 glRenderHeight = Integer.parseInt(resolution[1]);
+                glFixedResolution = true;
                 i++; // let the rest of the parser skip the resolution argument
               } catch (NumberFormatException nfx) {
                 error("Invalid render resolution: " + args[i + 1]);
@@ -1159,11 +1198,52 @@ public class TEApp extends LXStudio {
           } else {
             error("Missing render resolution");
           }
+        } else if (arg.equals("--readback-depth")) {
+          // Number of PBOs in the GPU readback ring, 2 or more
+          if (i + 1 < args.length) {
+            try {
+              int depth = Integer.parseInt(args[i + 1]);
+              i++;
+              if (depth < 2 || depth > 8) {
+                error("Invalid readback depth: " + depth);
+              } else {
+                glReadbackDepth = depth;
+              }
+            } catch (NumberFormatException nfx) {
+              error("Invalid readback depth: " + args[i + 1]);
+            }
+          } else {
+            error("Missing readback depth");
+          }
+        } else if (arg.equals("--render-threads")) {
+          // Worker threads for patterns that render on the CPU, 0 or more
+          if (i + 1 < args.length) {
+            try {
+              int threads = Integer.parseInt(args[i + 1]);
+              i++;
+              if (threads < 0 || threads > 64) {
+                error("Invalid render thread count: " + threads);
+              } else {
+                CPURenderPool.threadCount = threads;
+              }
+            } catch (NumberFormatException nfx) {
+              error("Invalid render thread count: " + args[i + 1]);
+            }
+          } else {
+            error("Missing render thread count");
+          }
         } else {
           error("Unrecognized CLI argument, ignoring: " + arg);
         }
       }
 
+      if (precompileShaders) {
+        // Fill the shader binary cache ahead of a show, without starting LX
+        log("Precompiling shaders...");
+        ShaderPrecompiler.rebuildCache();
+        return;
+      }
+
       if (headless) {
         log("Headless CLI flag set, running without UI...");
         headless(flags, projectFile);
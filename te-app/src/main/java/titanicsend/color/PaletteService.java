@@ -0,0 +1,91 @@
+package titanicsend.color;
+
+import heronarts.lx.LX;
+import heronarts.lx.color.LXColor;
+import heronarts.lx.color.LXSwatch;
+
+/**
+ * Versioned, precomputed view of the active swatch, shared by shaders and Java patterns.
+ *
+ * <p>Once per frame {@link #update()} compares the active swatch's colors to the current snapshot.
+ * Only when one of them differs is a new immutable snapshot built, with float RGBA worked out once,
+ * and the version bumped. Readers can compare versions to skip work when nothing changed.
+ *
+ * <p>Polling the colors (rather than listening for parameter changes) also catches dynamic colors
+ * that cycle or oscillate without firing any events. It costs one color lookup per swatch entry per
+ * frame, for the whole engine.
+ */
+public class PaletteService {
+
+  public static final int MAX_COLORS = LXSwatch.MAX_COLORS;
+
+  /** Immutable palette colors at one version. Do not modify the arrays. */
+  public static class Snapshot {
+    public final long version;
+
+    /** Number of colors in the swatch, up to MAX_COLORS */
+    public final int size;
+
+    /**
+     * LX colors, MAX_COLORS entries. Entries past the swatch size repeat its last color, matching
+     * LXSwatch.getColor().
+     */
+    public final int[] colors;
+
+    /** Normalized RGBA for each color, 4 floats each, alpha is 1 */
+    public final float[] rgba;
+
+    private Snapshot(long version, int size, int[] colors) {
+      this.version = version;
+      this.size = size;
+      this.colors = colors;
+      this.rgba = new float[MAX_COLORS * 4];
+      for (int i = 0; i < MAX_COLORS; i++) {
+        int color = colors[i];
+        this.rgba[i * 4] = (0xff & LXColor.red(color)) / 255f;
+        this.rgba[i * 4 + 1] = (0xff & LXColor.green(color)) / 255f;
+        this.rgba[i * 4 + 2] = (0xff & LXColor.blue(color)) / 255f;
+        this.rgba[i * 4 + 3] = 1f;
+      }
+    }
+  }
+
+  private final LX lx;
+  private volatile Snapshot snapshot;
+
+  public PaletteService(LX lx) {
+    this.lx = lx;
+    this.snapshot = new Snapshot(0, 0, new int[MAX_COLORS]);
+    update();
+  }
+
+  /** Engine thread: pick up any change to the active swatch. Call once per frame. */
+  public void update() {
+    LXSwatch swatch = this.lx.engine.palette.swatch;
+    int size = Math.min(MAX_COLORS, swatch.colors.size());
+    Snapshot current = this.snapshot;
+
+    boolean changed = size != current.size;
+    for (int i = 0; i < MAX_COLORS && !changed; i++) {
+      changed = getColor(swatch, size, i) != current.colors[i];
+    }
+    if (!changed) {
+      return;
+    }
+
+    int[] colors = new int[MAX_COLORS];
+    for (int i = 0; i < MAX_COLORS; i++) {
+      colors[i] = getColor(swatch, size, i);
+    }
+    this.snapshot = new Snapshot(current.version + 1, size, colors);
+  }
+
+  private static int getColor(LXSwatch swatch, int size, int i) {
+    return (size > 0) ? swatch.getColor(i).getColor() : LXColor.BLACK;
+  }
+
+  /** The latest palette snapshot */
+  public Snapshot getSnapshot() {
+    return this.snapshot;
+  }
+}
@@ -6,10 +6,12 @@ import heronarts.lx.color.LXColor;
 import heronarts.lx.parameter.CompoundParameter;
 import heronarts.lx.parameter.DiscreteParameter;
 import heronarts.lx.parameter.LXParameter;
-import titanicsend.model.TEEdgeModel;
+import titanicsend.model.TEPointCache;
+import titanicsend.model.TEWholeModel;
+import titanicsend.pattern.render.ColorKernels;
 
 @LXCategory(LXCategory.TEXTURE)
-public class EdgeSieveEffect extends TEEffect {
+public class EdgeSieveEffect extends TEEffect implements TEWholeModel.TEModelListener {
   private final DiscreteParameter gap =
       new DiscreteParameter("Gap", 0, 0, 11)
           .setDescription("Number of off pixels between on pixels");
@@ -23,24 +25,72 @@ public class EdgeSieveEffect extends TEEffect {
   protected int runLength;
   protected int offset;
 
+  // Color indices of the points in the gaps, rebuilt when the parameters or edges change
+  private int[] sieved = new int[0];
+  private int numSieved = 0;
+  private boolean needsRefresh = true;
+
   public EdgeSieveEffect(LX lx) {
     super(lx);
     addParameter("gap", this.gap);
     addParameter("length", this.length);
     addParameter("offset", this.offsetFrac);
     gap.bang();
+    this.modelTE.addListener(this);
+  }
+
+  @Override
+  public void modelTEChanged(TEWholeModel model) {
+    this.needsRefresh = true;
+  }
+
+  private void refreshSieve() {
+    TEPointCache cache = this.modelTE.getPointCache();
+    if (this.sieved.length < cache.numEdgePoints) {
+      this.sieved = new int[cache.numEdgePoints];
+    }
+    this.numSieved =
+        sieve(
+            cache.edgeOffset,
+            cache.points.index,
+            this.runLength,
+            this.length.getValuei(),
+            this.offset,
+            this.sieved);
+  }
+
+  /**
+   * Collect the color indices of edge points that fall in a gap. Each edge is split into runs of
+   * runLength points, shifted by offset, and all but the first length points of a run are gaps.
+   *
+   * @param edgeOffset start of each edge's points, plus the end of the last edge
+   * @param index color index of each point
+   * @return number of indices written to sieved
+   */
+  static int sieve(
+      int[] edgeOffset, int[] index, int runLength, int length, int offset, int[] sieved) {
+    int numSieved = 0;
+    int numEdges = edgeOffset.length - 1;
+    for (int e = 0; e < numEdges; e++) {
+      int start = edgeOffset[e];
+      for (int i = start; i < edgeOffset[e + 1]; i++) {
+        // Position along the edge is the offset from the edge's first point
+        if (Math.floorMod(i - start - offset, runLength) >= length) {
+          sieved[numSieved++] = index[i];
+        }
+      }
+    }
+    return numSieved;
   }
 
   @Override
   protected void run(double deltaMs, double enabledAmount) {
     if (enabledAmount > 0) {
-      for (TEEdgeModel edge : this.modelTE.getEdges()) {
-        for (TEEdgeModel.Point point : edge.edgePoints) {
-          if (Math.floorMod(point.i - offset, runLength) >= length.getValuei()) {
-            colors[point.point.index] = LXColor.BLACK;
-          }
-        }
+      if (this.needsRefresh) {
+        this.needsRefresh = false;
+        refreshSieve();
       }
+      ColorKernels.get().fill(colors, this.sieved, 0, this.numSieved, LXColor.BLACK);
     }
   }
 
@@ -48,5 +98,12 @@ public class EdgeSieveEffect extends TEEffect {
     super.onParameterChanged(parameter);
     runLength = gap.getValuei() + length.getValuei();
     offset = (int) (offsetFrac.getNormalized() * runLength);
+    this.needsRefresh = true;
+  }
+
+  @Override
+  public void dispose() {
+    this.modelTE.removeListener(this);
+    super.dispose();
   }
 }
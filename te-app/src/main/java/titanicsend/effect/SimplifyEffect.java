@@ -9,7 +9,6 @@ import heronarts.lx.effect.LXEffect;
 import heronarts.lx.mixer.LXAbstractChannel;
 import heronarts.lx.mixer.LXMasterBus;
 import heronarts.lx.model.LXModel;
-import heronarts.lx.model.LXPoint;
 import heronarts.lx.parameter.CompoundParameter;
 import heronarts.lx.parameter.DiscreteParameter;
 import heronarts.lx.parameter.EnumParameter;
@@ -23,6 +22,8 @@ import heronarts.lx.studio.ui.device.UIDeviceControls;
 import heronarts.lx.utils.LXUtils;
 import java.util.ArrayList;
 import java.util.List;
+import titanicsend.model.PointArrays;
+import titanicsend.pattern.render.ColorKernels;
 
 /**
  * The SimplifyEffect forces output to be the same for all points within each view group, or within
@@ -153,6 +154,9 @@ public class SimplifyEffect extends LXEffect
 
   final List<LXModel> models = new ArrayList<LXModel>();
 
+  // Point indices of each model, in the same order as models
+  private final List<PointArrays> modelPoints = new ArrayList<PointArrays>();
+
   private boolean needsRefresh = true;
 
   public SimplifyEffect(LX lx) {
@@ -183,6 +187,10 @@ public class SimplifyEffect extends LXEffect
     final int depth = this.depth.getValuei();
     this.models.clear();
     extractModels(this.models, this.getModelViewFixed(), depth);
+    this.modelPoints.clear();
+    for (LXModel m : this.models) {
+      this.modelPoints.add(PointArrays.of(m.points));
+    }
   }
 
   /**
@@ -218,13 +226,13 @@ public class SimplifyEffect extends LXEffect
     final float gate = this.gate.getValuef();
     final float gain = this.gain.getValuef();
 
-    for (LXModel m : this.models) {
-      int numPoints = m.points.length;
+    for (PointArrays points : this.modelPoints) {
+      int numPoints = points.size;
       float lumens = 0;
       blendMode.clear();
 
-      for (LXPoint p : m.points) {
-        int c = this.colors[p.index];
+      for (int i = 0; i < numPoints; i++) {
+        int c = this.colors[points.index[i]];
         lumens += LXColor.luminosity(c) / 100;
         blendMode.add(c);
       }
@@ -243,15 +251,13 @@ public class SimplifyEffect extends LXEffect
         color = LXColor.BLACK;
       }
 
-      setModelColor(m, color, amount);
+      setModelColor(points, color, amount);
     }
   }
 
   /** Lerps every point in a model between its current color and the new color */
-  private void setModelColor(LXModel m, int color, double lerp) {
-    for (LXPoint p : m.points) {
-      this.colors[p.index] = LXColor.lerp(this.colors[p.index], color, lerp);
-    }
+  private void setModelColor(PointArrays points, int color, double lerp) {
+    ColorKernels.get().lerp(this.colors, points.index, 0, points.size, color, lerp);
   }
 
   /** Recursive model extraction */
@@ -269,6 +275,7 @@ public class SimplifyEffect extends LXEffect
   public void dispose() {
     this.lx.removeListener(this);
     this.models.clear();
+    this.modelPoints.clear();
     super.dispose();
   }
 
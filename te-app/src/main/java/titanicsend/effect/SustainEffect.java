@@ -5,9 +5,11 @@ import heronarts.lx.LXCategory;
 import heronarts.lx.parameter.CompoundParameter;
 import titanicsend.pattern.glengine.GLShader;
 import titanicsend.pattern.glengine.GLShaderEffect;
+import titanicsend.pattern.glengine.mixer.RenderWhenHidden;
 
+// Keeps rendering on hidden channels so the sustained trail doesn't freeze and then jump
 @LXCategory("Titanics End")
-public class SustainEffect extends GLShaderEffect {
+public class SustainEffect extends GLShaderEffect implements RenderWhenHidden {
 
   public final CompoundParameter sustain =
       new CompoundParameter("Sustain", 0)
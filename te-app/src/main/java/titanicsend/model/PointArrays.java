@@ -0,0 +1,72 @@
+package titanicsend.model;
+
+import heronarts.lx.model.LXPoint;
+import java.util.List;
+
+/**
+ * Structure-of-arrays copy of a set of points: color buffer index, coordinates and normalized
+ * coordinates in flat primitive arrays, in the same order as the source points. Bulk color kernels
+ * walk these instead of chasing LXPoint references.
+ *
+ * <p>A copy does not follow model changes. Check {@link #isFor} and rebuild when the points change.
+ */
+public final class PointArrays {
+
+  public final int size;
+
+  /** Index of each point in the color buffer */
+  public final int[] index;
+
+  public final float[] x;
+  public final float[] y;
+  public final float[] z;
+
+  public final float[] xn;
+  public final float[] yn;
+  public final float[] zn;
+
+  private final Object source;
+
+  private PointArrays(Object source, int size) {
+    this.source = source;
+    this.size = size;
+    this.index = new int[size];
+    this.x = new float[size];
+    this.y = new float[size];
+    this.z = new float[size];
+    this.xn = new float[size];
+    this.yn = new float[size];
+    this.zn = new float[size];
+  }
+
+  private void set(int i, LXPoint p) {
+    this.index[i] = p.index;
+    this.x[i] = p.x;
+    this.y[i] = p.y;
+    this.z[i] = p.z;
+    this.xn[i] = p.xn;
+    this.yn[i] = p.yn;
+    this.zn[i] = p.zn;
+  }
+
+  public static PointArrays of(LXPoint[] points) {
+    PointArrays arrays = new PointArrays(points, points.length);
+    for (int i = 0; i < points.length; i++) {
+      arrays.set(i, points[i]);
+    }
+    return arrays;
+  }
+
+  public static PointArrays of(List<LXPoint> points) {
+    PointArrays arrays = new PointArrays(points, points.size());
+    for (int i = 0; i < arrays.size; i++) {
+      arrays.set(i, points.get(i));
+    }
+    return arrays;
+  }
+
+  /** True if this is a copy of exactly this array or list of points */
+  public boolean isFor(Object points) {
+    return this.source == points;
+  }
+}
@@ -9,7 +9,6 @@ import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
-import java.util.stream.Collectors;
 
 public class TEEdgeModel extends TEModel {
 
@@ -125,17 +124,17 @@ public class TEEdgeModel extends TEModel {
     }
   }
 
-  public void rebuildConnections(List<TEEdgeModel> edges, List<TEPanelModel> panels) {
+  /**
+   * The model has changed and panel connections should be rebuilt from the new topology. Called by
+   * TEWholeModelDynamic.
+   */
+  public void rebuildConnections(TETopology topology, List<TEPanelModel> panels) {
     // TODO: Add more edge connection lists
 
     this.connectedPanels.clear();
-    this.connectedPanels.addAll(
-        panels.stream()
-            .filter(
-                item ->
-                    this.getId().equals(item.edge0id)
-                        || this.getId().equals(item.edge1id)
-                        || this.getId().equals(item.edge2id))
-            .collect(Collectors.toList()));
+    int e = getTopologyIndex();
+    for (int i = topology.edgePanelOffset[e]; i < topology.edgePanelOffset[e + 1]; i++) {
+      this.connectedPanels.add(panels.get(topology.edgePanels[i]));
+    }
   }
 }
@@ -10,6 +10,9 @@ public abstract class TEModel {
   private String id;
   public final LXModel model;
 
+  // Small id in the current TETopology
+  private int topologyIndex = -1;
+
   /** Static model constructor (2022-23) */
   public TEModel(String teModelType, List<LXPoint> points, String... tags) {
     this.teModelType = teModelType;
@@ -37,6 +40,15 @@ public abstract class TEModel {
     return this.id;
   }
 
+  /** Position of this edge or panel in the current {@link TETopology}, or -1 if not in it */
+  public int getTopologyIndex() {
+    return this.topologyIndex;
+  }
+
+  void setTopologyIndex(int topologyIndex) {
+    this.topologyIndex = topologyIndex;
+  }
+
   public String repr() {
     return teModelType + "_" + this.getId();
   }
@@ -6,6 +6,7 @@ import heronarts.lx.transform.LXVector;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import titanicsend.app.TEVirtualColor;
 import titanicsend.util.OffsetTriangles;
 import titanicsend.util.TEMath;
@@ -285,13 +286,10 @@ public class TEPanelModel extends TEModel {
   }
 
   /** The model has changed and edges should be reconnected. Called by TEWholeModelDynamic. */
-  public void reconnectEdges(List<TEEdgeModel> edges) {
-    this.e0 =
-        edges.stream().filter(item -> this.edge0id.equals(item.getId())).findFirst().orElse(null);
-    this.e1 =
-        edges.stream().filter(item -> this.edge1id.equals(item.getId())).findFirst().orElse(null);
-    this.e2 =
-        edges.stream().filter(item -> this.edge2id.equals(item.getId())).findFirst().orElse(null);
+  public void reconnectEdges(Map<String, TEEdgeModel> edgesById) {
+    this.e0 = edgesById.get(this.edge0id);
+    this.e1 = edgesById.get(this.edge1id);
+    this.e2 = edgesById.get(this.edge2id);
 
     this.mutableEdges.clear();
     if (this.e0 != null) {
@@ -310,43 +308,25 @@ public class TEPanelModel extends TEModel {
   }
 
   /**
-   * The model has changed and panel connections should be rebuilt. Called by TEWholeModelDynamic.
+   * The model has changed and panel connections should be rebuilt from the new topology. Called by
+   * TEWholeModelDynamic.
    */
-  public void reconnectPanels(List<TEPanelModel> panels) {
-    this.mutableNeighbors.clear();
-    for (TEPanelModel panel : panels) {
-      if (panel == this) {
-        continue;
-      }
+  public void reconnectPanels(TETopology topology, List<TEPanelModel> panels) {
+    int p = getTopologyIndex();
 
-      for (TEEdgeModel edge : this.edges) {
-        if (panel.edges.contains(edge)) {
-          this.mutableNeighbors.add(panel);
-          break;
-        }
-      }
+    this.mutableNeighbors.clear();
+    for (int i = topology.panelNeighborOffset[p]; i < topology.panelNeighborOffset[p + 1]; i++) {
+      this.mutableNeighbors.add(panels.get(topology.panelNeighbors[i]));
     }
 
     this.mutableVertexNeighbors.clear();
-    for (TEPanelModel panel : panels) {
-      if (panel != this && sharesVertex(panel) && !this.neighbors.contains(panel)) {
-        this.mutableVertexNeighbors.add(panel);
-      }
+    for (int i = topology.panelVertexNeighborOffset[p];
+        i < topology.panelVertexNeighborOffset[p + 1];
+        i++) {
+      this.mutableVertexNeighbors.add(panels.get(topology.panelVertexNeighbors[i]));
     }
   }
 
-  private boolean sharesVertex(TEPanelModel panel) {
-    return this.v0 == panel.v0
-        || this.v0 == panel.v1
-        || this.v0 == panel.v2
-        || this.v1 == panel.v0
-        || this.v1 == panel.v1
-        || this.v1 == panel.v2
-        || this.v2 == panel.v0
-        || this.v2 == panel.v1
-        || this.v2 == panel.v2;
-  }
-
   /** Checks if two panels touch along an edge (not just at a vertex) */
   public boolean touches(TEPanelModel other) {
     return this.neighbors.contains(other);
@@ -0,0 +1,69 @@
+package titanicsend.model;
+
+import heronarts.lx.model.LXPoint;
+import java.util.List;
+
+/**
+ * Read-only structure-of-arrays snapshot of the TE points for one model generation. Built once by
+ * the whole model after each model change and shared by all patterns and effects.
+ *
+ * <p>Points are in the same order as {@link TEWholeModel#getPoints()}: every edge's points, in the
+ * order of {@link TEWholeModel#getEdges()}, followed by every panel's points in the order of {@link
+ * TEWholeModel#getPanels()}. Edge e covers [edgeOffset[e], edgeOffset[e + 1]) and panel p covers
+ * [panelOffset[p], panelOffset[p + 1]).
+ *
+ * <p>A new cache replaces this one on every model change, so holders can compare instances to know
+ * when to re-initialize. Nothing here may be modified.
+ */
+public final class TEPointCache {
+
+  /** Incremented for each new cache */
+  public final int generation;
+
+  public final PointArrays points;
+
+  /** Edge points are [0, numEdgePoints), panel points are [numEdgePoints, points.size) */
+  public final int numEdgePoints;
+
+  /** Start of each edge's points, plus one entry for the end of the last edge */
+  public final int[] edgeOffset;
+
+  /** Start of each panel's points, plus one entry for the end of the last panel */
+  public final int[] panelOffset;
+
+  static final TEPointCache EMPTY = new TEPointCache(0, List.of(), List.of());
+
+  TEPointCache(int generation, List<TEEdgeModel> edges, List<TEPanelModel> panels) {
+    this.generation = generation;
+    this.edgeOffset = new int[edges.size() + 1];
+    this.panelOffset = new int[panels.size() + 1];
+
+    int size = 0;
+    for (int e = 0; e < edges.size(); e++) {
+      this.edgeOffset[e] = size;
+      size += edges.get(e).model.points.length;
+    }
+    this.edgeOffset[edges.size()] = size;
+    this.numEdgePoints = size;
+    for (int p = 0; p < panels.size(); p++) {
+      this.panelOffset[p] = size;
+      size += panels.get(p).model.points.length;
+    }
+    this.panelOffset[panels.size()] = size;
+
+    LXPoint[] all = new LXPoint[size];
+    for (int e = 0; e < edges.size(); e++) {
+      LXPoint[] edgePoints = edges.get(e).model.points;
+      System.arraycopy(edgePoints, 0, all, this.edgeOffset[e], edgePoints.length);
+    }
+    for (int p = 0; p < panels.size(); p++) {
+      LXPoint[] panelPoints = panels.get(p).model.points;
+      System.arraycopy(panelPoints, 0, all, this.panelOffset[p], panelPoints.length);
+    }
+    this.points = PointArrays.of(all);
+  }
+
+  public int size() {
+    return this.points.size;
+  }
+}
@@ -0,0 +1,228 @@
+package titanicsend.model;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Read-only connectivity of the TE vertexes, edges and panels for one model generation, in
+ * compressed sparse row form. Built in linear time by the whole model after each model change.
+ *
+ * <p>Vertexes, edges and panels are identified by their position in {@link
+ * TEWholeModel#getVertexes()}, {@link TEWholeModel#getEdges()} and {@link
+ * TEWholeModel#getPanels()}, which is also available from {@code getTopologyIndex()} on each
+ * object. Traversal state can then live in plain arrays indexed by those ids.
+ *
+ * <p>Each relation is a pair of arrays: the items related to id n are {@code values[offset[n]]} up
+ * to, but not including, {@code values[offset[n + 1]]}, in ascending order. For example the edges
+ * at vertex v are {@code vertexEdges[vertexEdgeOffset[v] ... vertexEdgeOffset[v + 1] - 1]}.
+ *
+ * <p>A new topology replaces this one on every model change, along with new ids. Nothing here may
+ * be modified.
+ */
+public final class TETopology {
+
+  public final int numVertexes;
+  public final int numEdges;
+  public final int numPanels;
+
+  /** Edges that end at each vertex */
+  public final int[] vertexEdgeOffset;
+
+  public final int[] vertexEdges;
+
+  /** Panels that have each vertex as a corner */
+  public final int[] vertexPanelOffset;
+
+  public final int[] vertexPanels;
+
+  /**
+   * Vertexes at the ends of each edge: edge e runs from edgeVertexes[2e] to edgeVertexes[2e + 1]
+   */
+  public final int[] edgeVertexes;
+
+  /** Panels that border each edge */
+  public final int[] edgePanelOffset;
+
+  public final int[] edgePanels;
+
+  /** Points of each edge, as a range of {@link TEPointCache} positions */
+  public final int[] edgePointOffset;
+
+  /** Edges of each panel: e0, e1 and e2 of panel p are panelEdges[3p...3p + 2], or -1 if missing */
+  public final int[] panelEdges;
+
+  /** Panels that share an edge with each panel */
+  public final int[] panelNeighborOffset;
+
+  public final int[] panelNeighbors;
+
+  /** Panels that share a vertex but not an edge with each panel */
+  public final int[] panelVertexNeighborOffset;
+
+  public final int[] panelVertexNeighbors;
+
+  static final TETopology EMPTY =
+      new TETopology(List.of(), List.of(), List.of(), TEPointCache.EMPTY);
+
+  /**
+   * Assigns topology indexes to all of the given objects. Panel edges must already be connected.
+   */
+  TETopology(
+      List<TEVertex> vertexes,
+      List<TEEdgeModel> edges,
+      List<TEPanelModel> panels,
+      TEPointCache pointCache) {
+    this.numVertexes = vertexes.size();
+    this.numEdges = edges.size();
+    this.numPanels = panels.size();
+    for (int v = 0; v < this.numVertexes; v++) {
+      vertexes.get(v).setTopologyIndex(v);
+    }
+    for (int e = 0; e < this.numEdges; e++) {
+      edges.get(e).setTopologyIndex(e);
+    }
+    for (int p = 0; p < this.numPanels; p++) {
+      panels.get(p).setTopologyIndex(p);
+    }
+
+    this.edgeVertexes = new int[2 * this.numEdges];
+    for (int e = 0; e < this.numEdges; e++) {
+      TEEdgeModel edge = edges.get(e);
+      this.edgeVertexes[2 * e] = indexOf(edge.v0);
+      this.edgeVertexes[2 * e + 1] = indexOf(edge.v1);
+    }
+    this.edgePointOffset = pointCache.edgeOffset;
+
+    int[] panelVertexes = new int[3 * this.numPanels];
+    this.panelEdges = new int[3 * this.numPanels];
+    for (int p = 0; p < this.numPanels; p++) {
+      TEPanelModel panel = panels.get(p);
+      panelVertexes[3 * p] = indexOf(panel.v0);
+      panelVertexes[3 * p + 1] = indexOf(panel.v1);
+      panelVertexes[3 * p + 2] = indexOf(panel.v2);
+      this.panelEdges[3 * p] = indexOf(panel.e0);
+      this.panelEdges[3 * p + 1] = indexOf(panel.e1);
+      this.panelEdges[3 * p + 2] = indexOf(panel.e2);
+    }
+
+    this.vertexEdgeOffset = new int[this.numVertexes + 1];
+    this.vertexEdges = invert(this.edgeVertexes, 2, this.vertexEdgeOffset);
+    this.vertexPanelOffset = new int[this.numVertexes + 1];
+    this.vertexPanels = invert(panelVertexes, 3, this.vertexPanelOffset);
+    this.edgePanelOffset = new int[this.numEdges + 1];
+    this.edgePanels = invert(this.panelEdges, 3, this.edgePanelOffset);
+
+    // Panel neighbors, through the edges and then the vertexes of each panel.
+    // seen[q] == p marks panel q as already related to panel p.
+    int[] seen = new int[this.numPanels];
+    Arrays.fill(seen, -1);
+    Rows neighbors = new Rows(this.numPanels);
+    Rows vertexNeighbors = new Rows(this.numPanels);
+    for (int p = 0; p < this.numPanels; p++) {
+      seen[p] = p;
+      for (int k = 3 * p; k < 3 * p + 3; k++) {
+        int e = this.panelEdges[k];
+        if (e >= 0) {
+          for (int i = this.edgePanelOffset[e]; i < this.edgePanelOffset[e + 1]; i++) {
+            int q = this.edgePanels[i];
+            if (seen[q] != p) {
+              seen[q] = p;
+              neighbors.add(q);
+            }
+          }
+        }
+      }
+      neighbors.endRow(p);
+      for (int k = 3 * p; k < 3 * p + 3; k++) {
+        int v = panelVertexes[k];
+        if (v >= 0) {
+          for (int i = this.vertexPanelOffset[v]; i < this.vertexPanelOffset[v + 1]; i++) {
+            int q = this.vertexPanels[i];
+            if (seen[q] != p) {
+              seen[q] = p;
+              vertexNeighbors.add(q);
+            }
+          }
+        }
+      }
+      vertexNeighbors.endRow(p);
+    }
+    this.panelNeighborOffset = neighbors.offset;
+    this.panelNeighbors = neighbors.values();
+    this.panelVertexNeighborOffset = vertexNeighbors.offset;
+    this.panelVertexNeighbors = vertexNeighbors.values();
+  }
+
+  private static int indexOf(TEVertex vertex) {
+    return (vertex != null) ? vertex.getTopologyIndex() : -1;
+  }
+
+  private static int indexOf(TEModel model) {
+    return (model != null) ? model.getTopologyIndex() : -1;
+  }
+
+  /**
+   * Reverse a fixed-arity relation: item n relates to rows members[arity * n ...], -1 for none.
+   * Fills offset (one longer than the number of rows) and returns the items of each row, in
+   * ascending order and without repeats.
+   */
+  private static int[] invert(int[] members, int arity, int[] offset) {
+    int rows = offset.length - 1;
+    for (int k = 0; k < members.length; k++) {
+      if (isFirst(members, arity, k)) {
+        offset[members[k] + 1]++;
+      }
+    }
+    for (int r = 0; r < rows; r++) {
+      offset[r + 1] += offset[r];
+    }
+    int[] next = Arrays.copyOf(offset, rows);
+    int[] values = new int[offset[rows]];
+    for (int k = 0; k < members.length; k++) {
+      if (isFirst(members, arity, k)) {
+        values[next[members[k]]++] = k / arity;
+      }
+    }
+    return values;
+  }
+
+  // True if members[k] is a row, and the first mention of that row by its item
+  private static boolean isFirst(int[] members, int arity, int k) {
+    if (members[k] < 0) {
+      return false;
+    }
+    for (int j = k - k % arity; j < k; j++) {
+      if (members[j] == members[k]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Builds one relation row at a time. Rows within are sorted. */
+  private static final class Rows {
+    final int[] offset;
+    private int[] values = new int[16];
+    private int size = 0;
+
+    Rows(int rows) {
+      this.offset = new int[rows + 1];
+    }
+
+    void add(int value) {
+      if (this.size == this.values.length) {
+        this.values = Arrays.copyOf(this.values, 2 * this.size);
+      }
+      this.values[this.size++] = value;
+    }
+
+    void endRow(int row) {
+      Arrays.sort(this.values, this.offset[row], this.size);
+      this.offset[row + 1] = this.size;
+    }
+
+    int[] values() {
+      return Arrays.copyOf(this.values, this.size);
+    }
+  }
+}
@@ -25,6 +25,9 @@ public class TEVertex extends LXVector {
   // Set to non-null and the virtual display will shade vertex's sphere
   public TEVirtualColor virtualColor;
 
+  // Small id in the current TETopology. Unlike the vertex id, these are consecutive from zero.
+  private int topologyIndex = -1;
+
   /** Static model constructor (2022-23) */
   public TEVertex(LXVector vector, int id) {
     super(vector);
@@ -64,6 +67,15 @@ public class TEVertex extends LXVector {
    * Static & Dynamic Model
    */
 
+  /** Position of this vertex in the current {@link TETopology}, or -1 if not in it */
+  public int getTopologyIndex() {
+    return this.topologyIndex;
+  }
+
+  void setTopologyIndex(int topologyIndex) {
+    this.topologyIndex = topologyIndex;
+  }
+
   public void addEdge(TEEdgeModel edge) {
     this.mutableEdges.add(edge);
   }
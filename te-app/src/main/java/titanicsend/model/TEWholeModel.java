@@ -45,6 +45,9 @@ public interface TEWholeModel extends DmxWholeModel {
 
   public abstract List<LXPoint> getPanelPoints();
 
+  /** Structure-of-arrays copy of {@link #getPoints()}, rebuilt on each model change */
+  public abstract TEPointCache getPointCache();
+
   public abstract float minX();
 
   public abstract float maxX();
@@ -75,6 +78,9 @@ public interface TEWholeModel extends DmxWholeModel {
 
   public abstract List<TEPanelModel> getPanels();
 
+  /** Connectivity of the vertexes, edges and panels, rebuilt on each model change */
+  public abstract TETopology getTopology();
+
   public abstract List<DmxModel> getBeacons();
 
   public abstract List<DmxModel> getDjLights();
@@ -34,6 +34,10 @@ public class TEWholeModelDynamic implements TEWholeModel, LX.Listener {
   public final List<LXPoint> edgePoints = Collections.unmodifiableList(this.mutableEdgePoints);
   private final List<LXPoint> mutablePanelPoints = new ArrayList<LXPoint>();
   public final List<LXPoint> panelPoints = Collections.unmodifiableList(this.mutablePanelPoints);
+  // Flat copy of all of the above, replaced on each model change
+  private TEPointCache pointCache = TEPointCache.EMPTY;
+  // Connectivity of the vertexes, edges and panels, replaced on each model change
+  private TETopology topology = TETopology.EMPTY;
 
   // Vertexes placeholder, does not exist as a model with fixture files
   private final List<TEVertex> mutableVertexes = new ArrayList<TEVertex>();
@@ -136,6 +140,7 @@ public class TEWholeModelDynamic implements TEWholeModel, LX.Listener {
     for (LXModel m : expired) {
       TEEdgeModel edge = this.edgeModels.remove(m);
       this.mutableEdges.remove(edge);
+      edge.setTopologyIndex(-1);
       edge.v0.remove(edge);
       edge.v1.remove(edge);
       // TODO: remove from edgesBySymmetryGroup
@@ -195,6 +200,7 @@ public class TEWholeModelDynamic implements TEWholeModel, LX.Listener {
     for (LXModel m : expired) {
       TEPanelModel panel = this.panelModels.remove(m);
       this.mutablePanels.remove(panel);
+      panel.setTopologyIndex(-1);
       panel.v0.remove(panel);
       panel.v1.remove(panel);
       panel.v2.remove(panel);
@@ -223,28 +229,34 @@ public class TEWholeModelDynamic implements TEWholeModel, LX.Listener {
     this.mutablePoints.addAll(this.edgePoints);
     this.mutablePoints.addAll(this.panelPoints);
 
+    this.pointCache = new TEPointCache(this.pointCache.generation + 1, this.edges, this.panels);
+
     // Remove vertexes with no connections
     for (int i = this.mutableVertexes.size() - 1; i >= 0; i--) {
       TEVertex vertex = this.mutableVertexes.get(i);
       if (vertex.edges.size() == 0 && vertex.panels.size() == 0) {
         this.mutableVertexes.remove(i);
         this.vertexesById.remove(vertex.id);
+        vertex.setTopologyIndex(-1);
       }
     }
 
+    // Rebuild Panel Connections
+    // Set edges on all panels prior to building the topology.
+    for (TEPanelModel panel : this.panels) {
+      panel.reconnectEdges(this.edgesById);
+    }
+
+    this.topology = new TETopology(this.vertexes, this.edges, this.panels, this.pointCache);
+
     // Rebuild Edge Connections
     for (TEEdgeModel edge : this.edges) {
-      edge.rebuildConnections(this.edges, this.panels);
+      edge.rebuildConnections(this.topology, this.panels);
     }
 
-    // Rebuild Panel Connections
-    // Set edges on all panels prior to panel->panel connections.
-    for (TEPanelModel panel : this.panels) {
-      panel.reconnectEdges(this.edges);
-    }
     // Build panel->panel connections now that edges are known
     for (TEPanelModel panel : this.panels) {
-      panel.reconnectPanels(this.panels);
+      panel.reconnectPanels(this.topology, this.panels);
     }
 
     // Find all DMX models (Beacons, DJ Lights)
@@ -386,6 +398,16 @@ public class TEWholeModelDynamic implements TEWholeModel, LX.Listener {
     return this.edgePoints;
   }
 
+  @Override
+  public TEPointCache getPointCache() {
+    return this.pointCache;
+  }
+
+  @Override
+  public TETopology getTopology() {
+    return this.topology;
+  }
+
   @Override
   public List<LXPoint> getEdgePointsBySection(TEEdgeSection section) {
     // TODO
@@ -0,0 +1,42 @@
+package titanicsend.ndi;
+
+import heronarts.lx.LX;
+import java.nio.ByteBuffer;
+import me.walkerknapp.devolay.DevolayFrameFourCCType;
+import me.walkerknapp.devolay.DevolaySender;
+import me.walkerknapp.devolay.DevolayVideoFrame;
+
+/** Sends frames to an NDI stream */
+public class DevolayFrameSink implements NDIFrameSink {
+
+  private final DevolaySender ndiSender;
+  private final DevolayVideoFrame ndiFrame;
+  private int width = 0;
+  private int height = 0;
+
+  public DevolayFrameSink(String streamLabel) {
+    this.ndiSender = new DevolaySender(streamLabel);
+    this.ndiFrame = new DevolayVideoFrame();
+    this.ndiFrame.setFourCCType(DevolayFrameFourCCType.RGBA);
+    this.ndiFrame.setFrameRate(60, 1);
+    this.ndiFrame.setAspectRatio(1);
+    LX.log(String.format("NDI: Successfully initialized sender '%s'", streamLabel));
+  }
+
+  @Override
+  public void send(ByteBuffer rgba, int width, int height) {
+    if (this.width != width || this.height != height) {
+      this.width = width;
+      this.height = height;
+      this.ndiFrame.setResolution(width, height);
+    }
+    this.ndiFrame.setData(rgba);
+    this.ndiSender.sendVideoFrame(this.ndiFrame);
+  }
+
+  @Override
+  public void close() {
+    this.ndiSender.close();
+    this.ndiFrame.close();
+  }
+}
@@ -0,0 +1,56 @@
+package titanicsend.ndi;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import titanicsend.util.TE;
+
+/**
+ * Stand-in for an NDI stream that appends raw RGBA frames to a file, for checking the output
+ * pipeline without an NDI receiver.
+ */
+public class FileFrameSink implements NDIFrameSink {
+
+  private final Path path;
+  private final FileChannel channel;
+  private int framesWritten = 0;
+
+  public FileFrameSink(Path path) throws IOException {
+    this.path = path;
+    this.channel =
+        FileChannel.open(
+            path,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING);
+  }
+
+  @Override
+  public void send(ByteBuffer rgba, int width, int height) {
+    ByteBuffer frame = rgba.duplicate();
+    frame.position(0);
+    try {
+      while (frame.hasRemaining()) {
+        this.channel.write(frame);
+      }
+      this.framesWritten++;
+    } catch (IOException e) {
+      TE.error(e, "Could not write frame to %s", this.path);
+    }
+  }
+
+  public int getFramesWritten() {
+    return this.framesWritten;
+  }
+
+  @Override
+  public void close() {
+    try {
+      this.channel.close();
+    } catch (IOException e) {
+      TE.error(e, "Could not close %s", this.path);
+    }
+  }
+}
@@ -61,6 +61,13 @@ public class NDIEngine extends LXComponent implements LXLoopTask {
   private String[] selectorOptions = {NO_SOURCES};
 
   public NDIEngine(LX lx) {
+    this(lx, false);
+  }
+
+  /**
+   * @param testSource List the synthetic {@link NDIFakeSource} as a source, for development
+   */
+  public NDIEngine(LX lx, boolean testSource) {
     current = this;
 
     // load the NDI libraries and start a finder thread.  Note that this
@@ -69,6 +76,11 @@ public class NDIEngine extends LXComponent implements LXLoopTask {
     Devolay.loadLibraries();
     this.finder = new DevolayFinder();
 
+    if (testSource) {
+      this.sources.add(NDIFakeSource.NAME);
+      updateSourceSelectors();
+    }
+
     lx.engine.registerComponent(PATH, this);
     lx.engine.addLoopTask(this);
   }
@@ -112,6 +124,7 @@ public class NDIEngine extends LXComponent implements LXLoopTask {
 
     // Add new sources and remove ones that no longer exist
     List<String> toRemove = new ArrayList<>(this.sources);
+    toRemove.remove(NDIFakeSource.NAME);
     for (DevolaySource s : newSources) {
       String sourceName = s.getSourceName();
       if (!toRemove.remove(sourceName)) {
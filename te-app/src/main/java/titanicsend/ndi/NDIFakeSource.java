@@ -0,0 +1,90 @@
+package titanicsend.ndi;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+
+/**
+ * Synthetic video source for testing the NDI receive path without a network sender. Generates
+ * scrolling color bars at a fixed frame rate, with a white line that advances one row per frame so
+ * dropped or repeated frames are easy to spot.
+ */
+public class NDIFakeSource implements NDIFrameReceiver.FrameSource {
+
+  /** Source name that selects this generator in the NDI source list */
+  public static final String NAME = "TE Test Source";
+
+  private static final int WIDTH = 640;
+  private static final int HEIGHT = 360;
+  private static final int FRAME_RATE = 60;
+  private static final int BAR_COUNT = 8;
+
+  // BGRA as little-endian ints read 0xAARRGGBB
+  private static final int[] BARS = {
+    0xffffffff, 0xffffff00, 0xff00ffff, 0xff00ff00, 0xffff00ff, 0xffff0000, 0xff0000ff, 0xff000000
+  };
+
+  private final ByteBuffer data =
+      ByteBuffer.allocateDirect(WIDTH * HEIGHT * 4).order(ByteOrder.LITTLE_ENDIAN);
+  private final IntBuffer pixels = this.data.asIntBuffer();
+  private final long frameNanos = 1_000_000_000L / FRAME_RATE;
+  private long nextFrameNanos = System.nanoTime();
+  private int frame = 0;
+
+  @Override
+  public boolean capture(int timeoutMs) {
+    long waitNanos = this.nextFrameNanos - System.nanoTime();
+    if (waitNanos > timeoutMs * 1_000_000L) {
+      sleep(timeoutMs * 1_000_000L);
+      return false;
+    }
+    if (waitNanos > 0) {
+      sleep(waitNanos);
+    }
+    this.nextFrameNanos = Math.max(this.nextFrameNanos + this.frameNanos, System.nanoTime());
+    render();
+    return true;
+  }
+
+  private static void sleep(long nanos) {
+    try {
+      Thread.sleep(nanos / 1_000_000L, (int) (nanos % 1_000_000L));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void render() {
+    int barWidth = WIDTH / BAR_COUNT;
+    int offset = this.frame % WIDTH;
+    int markerRow = this.frame % HEIGHT;
+    for (int y = 0; y < HEIGHT; y++) {
+      int row = y * WIDTH;
+      for (int x = 0; x < WIDTH; x++) {
+        int color = (y == markerRow) ? 0xffffffff : BARS[((x + offset) / barWidth) % BAR_COUNT];
+        this.pixels.put(row + x, color);
+      }
+    }
+    this.frame++;
+  }
+
+  @Override
+  public int getWidth() {
+    return WIDTH;
+  }
+
+  @Override
+  public int getHeight() {
+    return HEIGHT;
+  }
+
+  @Override
+  public int getLineStride() {
+    return WIDTH * 4;
+  }
+
+  @Override
+  public ByteBuffer getData() {
+    return this.data;
+  }
+}
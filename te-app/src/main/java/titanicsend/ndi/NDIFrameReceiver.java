@@ -0,0 +1,387 @@
+package titanicsend.ndi;
+
+import static com.jogamp.opengl.GL.GL_BGRA;
+import static com.jogamp.opengl.GL.GL_CLAMP_TO_EDGE;
+import static com.jogamp.opengl.GL.GL_LINEAR;
+import static com.jogamp.opengl.GL.GL_MAP_INVALIDATE_BUFFER_BIT;
+import static com.jogamp.opengl.GL.GL_MAP_WRITE_BIT;
+import static com.jogamp.opengl.GL.GL_RGBA8;
+import static com.jogamp.opengl.GL.GL_TEXTURE_2D;
+import static com.jogamp.opengl.GL.GL_TEXTURE_MAG_FILTER;
+import static com.jogamp.opengl.GL.GL_TEXTURE_MIN_FILTER;
+import static com.jogamp.opengl.GL.GL_TEXTURE_WRAP_S;
+import static com.jogamp.opengl.GL.GL_TEXTURE_WRAP_T;
+import static com.jogamp.opengl.GL.GL_UNSIGNED_BYTE;
+import static com.jogamp.opengl.GL2ES3.GL_PIXEL_UNPACK_BUFFER;
+import static com.jogamp.opengl.GL2ES3.GL_STREAM_DRAW;
+
+import com.jogamp.opengl.GL4;
+import com.jogamp.opengl.util.texture.Texture;
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import me.walkerknapp.devolay.DevolayFrameType;
+import me.walkerknapp.devolay.DevolayReceiver;
+import me.walkerknapp.devolay.DevolayVideoFrame;
+import titanicsend.util.TE;
+
+/**
+ * Receives BGRA video frames on a dedicated capture thread and uploads them to a texture through a
+ * ring of pixel unpack buffers (PBOs).
+ *
+ * <p>The engine thread maps free PBOs and hands them to the capture thread, which copies each
+ * received frame straight into mapped PBO memory. On each {@link #update(GL4)} the engine thread
+ * uploads only the newest filled PBO with glTexSubImage2D and recycles any older ones, so a slow
+ * render frame drops video frames instead of falling behind.
+ */
+public class NDIFrameReceiver {
+
+  /**
+   * Where the capture thread gets its frames from. All methods are called on the capture thread.
+   */
+  public interface FrameSource {
+    /**
+     * Wait up to timeoutMs for the next video frame.
+     *
+     * @return true if a new frame is available from getData()
+     */
+    boolean capture(int timeoutMs);
+
+    int getWidth();
+
+    int getHeight();
+
+    /** Bytes per row of the current frame */
+    int getLineStride();
+
+    /** BGRA pixels of the current frame, valid until the next capture() */
+    ByteBuffer getData();
+
+    /** Release anything held for capturing, after the capture thread has stopped */
+    default void close() {}
+  }
+
+  /** Receives from an NDI source through a Devolay receiver */
+  public static class DevolaySource implements FrameSource {
+    private final DevolayReceiver receiver;
+    private final DevolayVideoFrame videoFrame = new DevolayVideoFrame();
+
+    public DevolaySource(DevolayReceiver receiver) {
+      this.receiver = receiver;
+    }
+
+    @Override
+    public boolean capture(int timeoutMs) {
+      return DevolayFrameType.VIDEO
+          == this.receiver.receiveCapture(this.videoFrame, null, null, timeoutMs);
+    }
+
+    @Override
+    public int getWidth() {
+      return this.videoFrame.getXResolution();
+    }
+
+    @Override
+    public int getHeight() {
+      return this.videoFrame.getYResolution();
+    }
+
+    @Override
+    public int getLineStride() {
+      return this.videoFrame.getLineStride();
+    }
+
+    @Override
+    public ByteBuffer getData() {
+      return this.videoFrame.getData();
+    }
+
+    @Override
+    public void close() {
+      this.videoFrame.close();
+    }
+  }
+
+  private static final int RING_SIZE = 3;
+  private static final int CAPTURE_TIMEOUT_MS = 100;
+  private static final int BYTES_PER_PIXEL = 4;
+
+  // Smoothing for the reported latency, per uploaded frame
+  private static final double LATENCY_SMOOTHING = 0.1;
+
+  private class Slot {
+    final int[] pbo = new int[1];
+    final int generation;
+
+    // Guarded by this slot's monitor: the engine thread unmaps while the capture thread may write
+    boolean mapped = false;
+    ByteBuffer memory = null;
+
+    // Written by the capture thread before the slot is queued as filled
+    long receivedNanos;
+
+    Slot(int generation) {
+      this.generation = generation;
+    }
+  }
+
+  private final String name;
+  private final FrameSource source;
+
+  // PBO ring and destination texture, engine thread only
+  private GL4 gl4 = null;
+  private Slot[] slots = null;
+  private int ringGeneration = 0;
+  private int ringWidth = 0;
+  private int ringHeight = 0;
+  private Texture texture = null;
+
+  // Mapped slots waiting for the capture thread, and slots it has filled
+  private final Queue<Slot> mappedSlots = new ConcurrentLinkedQueue<>();
+  private final Queue<Slot> filledSlots = new ConcurrentLinkedQueue<>();
+
+  // Frame size last seen by the capture thread
+  private volatile int frameWidth = 0;
+  private volatile int frameHeight = 0;
+
+  private final AtomicInteger droppedFrames = new AtomicInteger();
+  private double latencyMs = 0;
+
+  private volatile Thread thread = null;
+
+  public NDIFrameReceiver(String name, FrameSource source) {
+    this.name = name;
+    this.source = source;
+  }
+
+  /** Start the capture thread */
+  public void start() {
+    if (this.thread != null) {
+      return;
+    }
+    this.thread = new Thread(this::capture, "NDI capture " + this.name);
+    this.thread.setDaemon(true);
+    this.thread.start();
+  }
+
+  /** Stop the capture thread and wait for it to exit */
+  public void stop() {
+    if (this.thread == null) {
+      return;
+    }
+    // The capture thread exits once it notices it has been replaced
+    Thread capture = this.thread;
+    this.thread = null;
+    try {
+      capture.join(CAPTURE_TIMEOUT_MS * 4);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /** Capture thread: receive frames and copy them into mapped PBOs */
+  private void capture() {
+    try {
+      while (this.thread == Thread.currentThread()) {
+        if (!this.source.capture(CAPTURE_TIMEOUT_MS)) {
+          continue;
+        }
+        long receivedNanos = System.nanoTime();
+        int width = this.source.getWidth();
+        int height = this.source.getHeight();
+        this.frameWidth = width;
+        this.frameHeight = height;
+
+        Slot slot = this.mappedSlots.poll();
+        if (slot == null) {
+          // The engine thread hasn't recycled a buffer yet
+          this.droppedFrames.incrementAndGet();
+          continue;
+        }
+        synchronized (slot) {
+          if (!slot.mapped || slot.memory.capacity() != width * height * BYTES_PER_PIXEL) {
+            // The ring is being rebuilt for a new frame size
+            this.droppedFrames.incrementAndGet();
+            continue;
+          }
+          copyFrame(this.source.getData(), slot.memory, width, height);
+          slot.receivedNanos = receivedNanos;
+        }
+        this.filledSlots.add(slot);
+      }
+    } catch (RuntimeException e) {
+      TE.error(e, "NDI capture failed for %s", this.name);
+    }
+  }
+
+  private void copyFrame(ByteBuffer src, ByteBuffer dst, int width, int height) {
+    int rowBytes = width * BYTES_PER_PIXEL;
+    int stride = this.source.getLineStride();
+    if (stride <= 0 || stride == rowBytes) {
+      dst.put(0, src, 0, rowBytes * height);
+    } else {
+      for (int y = 0; y < height; y++) {
+        dst.put(y * rowBytes, src, y * stride, rowBytes);
+      }
+    }
+  }
+
+  /**
+   * Engine thread: upload the newest received frame, if any, and hand free buffers back to the
+   * capture thread.
+   *
+   * @return texture holding the latest frame, or null if no frame has been received yet
+   */
+  public Texture update(GL4 gl4) {
+    this.gl4 = gl4;
+
+    // Rebuild the ring when the incoming frame size changes
+    int width = this.frameWidth;
+    int height = this.frameHeight;
+    if (width > 0 && height > 0 && (width != this.ringWidth || height != this.ringHeight)) {
+      disposeRing();
+      allocateRing(width, height);
+    }
+    if (this.slots == null) {
+      return null;
+    }
+
+    // Take the newest filled buffer and recycle any older ones
+    Slot newest = null;
+    Slot slot;
+    while ((slot = this.filledSlots.poll()) != null) {
+      if (slot.generation != this.ringGeneration) {
+        continue;
+      }
+      if (newest != null) {
+        unmap(newest);
+        this.droppedFrames.incrementAndGet();
+      }
+      newest = slot;
+    }
+
+    if (newest != null) {
+      unmap(newest);
+      this.gl4.glBindBuffer(GL_PIXEL_UNPACK_BUFFER, newest.pbo[0]);
+      this.gl4.glBindTexture(GL_TEXTURE_2D, this.texture.getTextureObject());
+      this.gl4.glTexSubImage2D(
+          GL_TEXTURE_2D, 0, 0, 0, this.ringWidth, this.ringHeight, GL_BGRA, GL_UNSIGNED_BYTE, 0);
+      this.gl4.glBindTexture(GL_TEXTURE_2D, 0);
+      this.gl4.glBindBuffer(GL_PIXEL_UNPACK_BUFFER, 0);
+
+      double ms = (System.nanoTime() - newest.receivedNanos) / 1e6;
+      this.latencyMs += (ms - this.latencyMs) * LATENCY_SMOOTHING;
+    }
+
+    // Map every free buffer for the capture thread
+    for (Slot s : this.slots) {
+      if (!s.mapped) {
+        map(s);
+      }
+    }
+
+    return this.texture;
+  }
+
+  private void allocateRing(int width, int height) {
+    this.ringGeneration++;
+    this.ringWidth = width;
+    this.ringHeight = height;
+
+    int[] handle = new int[1];
+    this.gl4.glGenTextures(1, handle, 0);
+    this.gl4.glBindTexture(GL_TEXTURE_2D, handle[0]);
+    this.gl4.glTexImage2D(
+        GL_TEXTURE_2D, 0, GL_RGBA8, width, height, 0, GL_BGRA, GL_UNSIGNED_BYTE, null);
+    this.gl4.glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MAG_FILTER, GL_LINEAR);
+    this.gl4.glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MIN_FILTER, GL_LINEAR);
+    this.gl4.glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_WRAP_S, GL_CLAMP_TO_EDGE);
+    this.gl4.glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_WRAP_T, GL_CLAMP_TO_EDGE);
+    this.gl4.glBindTexture(GL_TEXTURE_2D, 0);
+    this.texture = new Texture(handle[0], GL_TEXTURE_2D, width, height, width, height, false);
+
+    this.slots = new Slot[RING_SIZE];
+    for (int i = 0; i < RING_SIZE; i++) {
+      Slot slot = new Slot(this.ringGeneration);
+      this.gl4.glGenBuffers(1, slot.pbo, 0);
+      this.slots[i] = slot;
+    }
+  }
+
+  private void map(Slot slot) {
+    long size = (long) this.ringWidth * this.ringHeight * BYTES_PER_PIXEL;
+    this.gl4.glBindBuffer(GL_PIXEL_UNPACK_BUFFER, slot.pbo[0]);
+    // Orphan the previous storage so mapping never waits on an upload in flight
+    this.gl4.glBufferData(GL_PIXEL_UNPACK_BUFFER, size, null, GL_STREAM_DRAW);
+    ByteBuffer memory =
+        this.gl4.glMapBufferRange(
+            GL_PIXEL_UNPACK_BUFFER, 0, size, GL_MAP_WRITE_BIT | GL_MAP_INVALIDATE_BUFFER_BIT);
+    this.gl4.glBindBuffer(GL_PIXEL_UNPACK_BUFFER, 0);
+    if (memory == null) {
+      return;
+    }
+    synchronized (slot) {
+      slot.memory = memory;
+      slot.mapped = true;
+    }
+    this.mappedSlots.add(slot);
+  }
+
+  private void unmap(Slot slot) {
+    synchronized (slot) {
+      if (!slot.mapped) {
+        return;
+      }
+      this.gl4.glBindBuffer(GL_PIXEL_UNPACK_BUFFER, slot.pbo[0]);
+      this.gl4.glUnmapBuffer(GL_PIXEL_UNPACK_BUFFER);
+      this.gl4.glBindBuffer(GL_PIXEL_UNPACK_BUFFER, 0);
+      slot.mapped = false;
+      slot.memory = null;
+    }
+  }
+
+  private void disposeRing() {
+    if (this.slots == null) {
+      return;
+    }
+    this.mappedSlots.clear();
+    this.filledSlots.clear();
+    for (Slot slot : this.slots) {
+      unmap(slot);
+      this.gl4.glDeleteBuffers(1, slot.pbo, 0);
+    }
+    this.slots = null;
+    this.texture.destroy(this.gl4);
+    this.texture = null;
+    this.ringWidth = 0;
+    this.ringHeight = 0;
+  }
+
+  /** Smoothed time from receiving a frame to uploading it for rendering, in milliseconds */
+  public double getLatencyMs() {
+    return this.latencyMs;
+  }
+
+  /** Frames received but never uploaded, because a newer frame replaced them */
+  public int getDroppedFrames() {
+    return this.droppedFrames.get();
+  }
+
+  /**
+   * Stop capturing and free GL resources, keeping the source so capture can start again. Must be
+   * called on the engine thread.
+   */
+  public void release() {
+    stop();
+    if (this.gl4 != null) {
+      disposeRing();
+    }
+  }
+
+  /** Stop capturing and free everything. Must be called on the engine thread. */
+  public void dispose() {
+    release();
+    this.source.close();
+  }
+}
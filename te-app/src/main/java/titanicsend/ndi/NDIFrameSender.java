@@ -0,0 +1,144 @@
+package titanicsend.ndi;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import titanicsend.util.TE;
+
+/**
+ * Hands outgoing video frames to a sink on a dedicated thread, so that a slow or clocked NDI send
+ * never holds up the engine thread. Frames wait in a small bounded queue. When it is full the
+ * oldest frame is dropped in favor of the new one. Frame buffers are pooled and reused.
+ */
+public class NDIFrameSender {
+
+  public static final int QUEUE_CAPACITY = 2;
+
+  private static final int POLL_TIMEOUT_MS = 100;
+  private static final int CLOSE_TIMEOUT_MS = 1000;
+  private static final int BYTES_PER_PIXEL = 4;
+
+  // Smoothing for the reported latency, per sent frame
+  private static final double LATENCY_SMOOTHING = 0.1;
+
+  private static class Frame {
+    final ByteBuffer data;
+    int width;
+    int height;
+    long renderNanos;
+
+    Frame(int bytes) {
+      this.data = ByteBuffer.allocateDirect(bytes);
+    }
+  }
+
+  private final String name;
+  private final NDIFrameSink sink;
+  private final BlockingQueue<Frame> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+  private final Queue<Frame> pool = new ConcurrentLinkedQueue<>();
+  private final Thread thread;
+  private volatile boolean running = true;
+
+  private final AtomicInteger sentFrames = new AtomicInteger();
+  private final AtomicInteger droppedFrames = new AtomicInteger();
+  private volatile double latencyMs = 0;
+
+  public NDIFrameSender(String name, NDIFrameSink sink) {
+    this.name = name;
+    this.sink = sink;
+    this.thread = new Thread(this::run, "NDI sender " + name);
+    this.thread.setDaemon(true);
+    this.thread.start();
+  }
+
+  /**
+   * Copy a frame and queue it for sending. Never blocks.
+   *
+   * @param rgba Frame pixels, RGBA, starting at the buffer's position
+   * @param width Frame width in pixels
+   * @param height Frame height in pixels
+   * @param renderNanos System.nanoTime() at which the frame was rendered, for latency stats
+   */
+  public void submit(ByteBuffer rgba, int width, int height, long renderNanos) {
+    int bytes = width * height * BYTES_PER_PIXEL;
+    Frame frame = this.pool.poll();
+    if (frame == null || frame.data.capacity() < bytes) {
+      frame = new Frame(bytes);
+    }
+    frame.data.clear();
+    frame.data.put(0, rgba, rgba.position(), Math.min(bytes, rgba.remaining()));
+    frame.data.limit(bytes);
+    frame.width = width;
+    frame.height = height;
+    frame.renderNanos = renderNanos;
+
+    // Drop the oldest waiting frames until there is room
+    while (!this.queue.offer(frame)) {
+      Frame oldest = this.queue.poll();
+      if (oldest != null) {
+        this.droppedFrames.incrementAndGet();
+        this.pool.add(oldest);
+      }
+    }
+  }
+
+  /** Count a frame that was dropped before it reached the sender */
+  public void countDropped() {
+    this.droppedFrames.incrementAndGet();
+  }
+
+  private void run() {
+    try {
+      // Keep going until closed and everything queued has been sent
+      while (this.running || !this.queue.isEmpty()) {
+        Frame frame = this.queue.poll(POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        if (frame == null) {
+          continue;
+        }
+        this.sink.send(frame.data, frame.width, frame.height);
+        this.sentFrames.incrementAndGet();
+        double ms = (System.nanoTime() - frame.renderNanos) / 1e6;
+        this.latencyMs += (ms - this.latencyMs) * LATENCY_SMOOTHING;
+        this.pool.add(frame);
+      }
+    } catch (InterruptedException e) {
+      // closed
+    } catch (RuntimeException e) {
+      TE.error(e, "NDI send failed for %s", this.name);
+    }
+  }
+
+  /** Frames handed to the sink */
+  public int getSentFrames() {
+    return this.sentFrames.get();
+  }
+
+  /** Frames dropped because newer frames arrived before they could be sent */
+  public int getDroppedFrames() {
+    return this.droppedFrames.get();
+  }
+
+  /** Smoothed time from rendering a frame to the sink finishing with it, in milliseconds */
+  public double getLatencyMs() {
+    return this.latencyMs;
+  }
+
+  /** Send anything still queued, stop the thread and close the sink */
+  public void close() {
+    this.running = false;
+    try {
+      this.thread.join(CLOSE_TIMEOUT_MS);
+      if (this.thread.isAlive()) {
+        this.thread.interrupt();
+        this.thread.join(CLOSE_TIMEOUT_MS);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    this.sink.close();
+  }
+}
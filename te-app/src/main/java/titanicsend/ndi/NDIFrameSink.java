@@ -0,0 +1,19 @@
+package titanicsend.ndi;
+
+import java.nio.ByteBuffer;
+
+/** Destination for outgoing video frames. Called only from the NDIFrameSender thread. */
+public interface NDIFrameSink {
+
+  /**
+   * Send one frame. May block, for example while a clocked sender paces its output.
+   *
+   * @param rgba Frame pixels, 4 bytes per pixel in RGBA order, from position 0 to the limit
+   * @param width Frame width in pixels
+   * @param height Frame height in pixels
+   */
+  void send(ByteBuffer rgba, int width, int height);
+
+  /** Release the destination. No frames are sent after this. */
+  void close();
+}
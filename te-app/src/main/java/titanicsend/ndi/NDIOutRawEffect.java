@@ -3,9 +3,6 @@ package titanicsend.ndi;
 import heronarts.lx.LX;
 import heronarts.lx.LXCategory;
 import java.nio.ByteBuffer;
-import me.walkerknapp.devolay.DevolayFrameFourCCType;
-import me.walkerknapp.devolay.DevolaySender;
-import me.walkerknapp.devolay.DevolayVideoFrame;
 import titanicsend.effect.TEEffect;
 import titanicsend.pattern.glengine.GLEngine;
 
@@ -18,8 +15,8 @@ public class NDIOutRawEffect extends TEEffect {
   private final int width;
   private final int height;
 
-  private DevolaySender ndiSender;
-  private DevolayVideoFrame ndiFrame;
+  // Frames are copied and sent on the sender's thread
+  private NDIFrameSender sender;
   private final ByteBuffer buffer;
 
   public NDIOutRawEffect(LX lx) {
@@ -45,9 +42,9 @@ public class NDIOutRawEffect extends TEEffect {
       k = ((k >> 24) & 0xFF) | (k << 8);
       buffer.putInt(k);
     }
-    buffer.flip();
+    buffer.rewind();
 
-    ndiSender.sendVideoFrame(ndiFrame);
+    sender.submit(buffer, width, height, System.nanoTime());
   }
 
   @Override
@@ -55,17 +52,16 @@ public class NDIOutRawEffect extends TEEffect {
     super.onEnable();
 
     if (!isInitialized) {
-      ndiSender = new DevolaySender("TitanicsEnd");
-      ndiFrame = new DevolayVideoFrame();
-      ndiFrame.setResolution(width, height);
-      ndiFrame.setFourCCType(DevolayFrameFourCCType.RGBA);
-      ndiFrame.setData(buffer);
-      ndiFrame.setFrameRate(60, 1);
-      ndiFrame.setAspectRatio(1);
+      sender = new NDIFrameSender("TitanicsEnd", new DevolayFrameSink("TitanicsEnd"));
       isInitialized = true;
     }
   }
 
+  /** Output stats, or null if the effect has never been enabled */
+  public NDIFrameSender getSender() {
+    return sender;
+  }
+
   @Override
   protected void onDisable() {
     super.onDisable();
@@ -74,7 +70,7 @@ public class NDIOutRawEffect extends TEEffect {
   @Override
   public void dispose() {
     if (isInitialized) {
-      ndiSender.close();
+      sender.close();
     }
     super.dispose();
   }
@@ -4,33 +4,40 @@ import com.jogamp.opengl.GL4;
 import heronarts.lx.LX;
 import heronarts.lx.model.LXModel;
 import java.nio.ByteBuffer;
-import me.walkerknapp.devolay.DevolayFrameFourCCType;
-import me.walkerknapp.devolay.DevolaySender;
-import me.walkerknapp.devolay.DevolayVideoFrame;
 import titanicsend.pattern.glengine.GLShader;
-import titanicsend.pattern.glengine.TEShader;
 import titanicsend.pattern.yoffa.shader_engine.Uniform;
 import titanicsend.pattern.yoffa.shader_engine.UniformNames;
 
+/**
+ * Sends a band of canvas pixels out as an NDI stream.
+ *
+ * <p>The shader gathers just the stream's pixels (ndiWidth x ndiHeight, starting at ndiOffset) to
+ * the start of its framebuffer, so only the rows holding them are rendered and read back. Reads go
+ * through a fenced PBO ring and are collected once the GPU has finished them, then handed to an
+ * {@link NDIFrameSender} which does the actual sending on its own thread.
+ */
 public class NDIOutShader extends GLShader implements GLShader.UniformSource {
 
   private static final int UNINITIALIZED = -1;
 
-  // Framebuffer objects (FBOs) for rendering
-  private GLShader.TripleFBO FBOs;
+  // Framebuffer object (FBO) for rendering
+  private GLShader.FBO fbo;
 
-  // Pixel Pack Buffers (PBOs) for ping-pong output
-  private GLShader.TriplePBO PBOs;
+  // Pixel Pack Buffers (PBOs) for async readback, as many as the engine's readback depth
+  private GLShader.PBORing pboRing;
 
-  private DevolaySender ndiSender;
-  private DevolayVideoFrame ndiFrame;
-  protected ByteBuffer imageBuffer;
+  // Render time of recent frames, indexed by frame count, for latency stats. One per PBO.
+  private long[] renderNanos = new long[0];
+  private long frameCount = 0;
+
+  private NDIFrameSender sender = null;
 
   private int ndiWidth = 150;
   private int ndiHeight = 150;
   private int ndiOffset = 0;
   private String ndiStreamLabel = "TitanicsEnd";
 
+  private LXModel model = null;
   private int modelCoordsTextureHandle = UNINITIALIZED;
   private int modelIndexTextureHandle = UNINITIALIZED;
 
@@ -41,6 +48,7 @@ public class NDIOutShader extends GLShader implements GLShader.UniformSource {
   private static class NdiOutUniforms {
     private Uniform.Sampler2D iDst;
     private Uniform.Sampler2D lxModelCoords;
+    private Uniform.Int1 ndiOffset;
   }
 
   private final NdiOutUniforms uniforms = new NdiOutUniforms();
@@ -57,19 +65,14 @@ public class NDIOutShader extends GLShader implements GLShader.UniformSource {
   public void setNdiResolution(int ndiWidth, int ndiHeight) {
     this.ndiWidth = ndiWidth;
     this.ndiHeight = ndiHeight;
-
-    // If already initialized, update the frame size
-    if (this.ndiFrame != null) {
-      this.ndiFrame.setResolution(this.ndiWidth, this.ndiHeight);
-    }
   }
 
   public void setNdiStreamLabel(String label) {
     this.ndiStreamLabel = label;
 
-    if (this.ndiSender != null) {
-      this.ndiSender.close();
-      this.ndiSender = new DevolaySender(label);
+    if (this.sender != null) {
+      this.sender.close();
+      this.sender = new NDIFrameSender(label, new DevolayFrameSink(label));
     }
   }
 
@@ -78,22 +81,37 @@ public class NDIOutShader extends GLShader implements GLShader.UniformSource {
     this.ndiOffset = offset;
   }
 
+  /** Output stats for the stream, or null if not sending yet */
+  public NDIFrameSender getSender() {
+    return this.sender;
+  }
+
   @Override
   protected boolean useTEPreProcess() {
     return false;
   }
 
   @Override
-  protected void allocateShaderBuffers() {
-    super.allocateShaderBuffers();
-
-    // FBOs (framebuffer and texture) for rendering
-    this.FBOs = new GLShader.TripleFBO();
+  protected void allocateCanvasBuffers() {
+    // FBO (framebuffer and texture) for rendering
+    this.fbo = new GLShader.FBO();
+
+    // Pixel Pack Buffers (PBOs) for async output
+    this.pboRing = new GLShader.PBORing(this.glEngine.getReadbackDepth());
+    if (this.renderNanos.length != this.pboRing.size()) {
+      this.renderNanos = new long[this.pboRing.size()];
+    }
 
-    // Pixel Pack Buffers (PBOs) for ping-pong output
-    this.PBOs = new GLShader.TriplePBO();
+    // Coordinate textures were rebuilt at the new canvas size
+    if (this.model != null) {
+      setModelCoordinates(this.model);
+    }
+  }
 
-    this.imageBuffer = TEShader.allocateBackBuffer();
+  @Override
+  protected void disposeCanvasBuffers() {
+    this.fbo.dispose();
+    this.pboRing.dispose();
   }
 
   /** Set input texture handle */
@@ -104,18 +122,9 @@ public class NDIOutShader extends GLShader implements GLShader.UniformSource {
   private void initializeUniforms() {
     this.uniforms.lxModelCoords = getUniformSampler2D(UniformNames.LX_MODEL_COORDS);
     this.uniforms.iDst = getUniformSampler2D("iDst");
-    initializeNdiSender();
-  }
-
-  private void initializeNdiSender() {
-    ndiSender = new DevolaySender(this.ndiStreamLabel);
-    ndiFrame = new DevolayVideoFrame();
-    ndiFrame.setResolution(this.ndiWidth, this.ndiHeight);
-    ndiFrame.setFourCCType(DevolayFrameFourCCType.RGBA);
-    ndiFrame.setData(this.imageBuffer);
-    ndiFrame.setFrameRate(60, 1);
-    ndiFrame.setAspectRatio(1);
-    LX.log(String.format("NDI: Successfully initialized sender '%s'", this.ndiStreamLabel));
+    this.uniforms.ndiOffset = getUniformInt1("ndiOffset");
+    this.sender =
+        new NDIFrameSender(this.ndiStreamLabel, new DevolayFrameSink(this.ndiStreamLabel));
   }
 
   @Override
@@ -129,55 +138,65 @@ public class NDIOutShader extends GLShader implements GLShader.UniformSource {
     // Stage uniform values for updating
     this.uniforms.lxModelCoords.setValue(this.modelCoordsTextureHandle);
     this.uniforms.iDst.setValue(this.iDst);
+    this.uniforms.ndiOffset.setValue(this.ndiOffset);
   }
 
-  int frameNum = 0;
-  boolean everyOtherFrame = true;
+  /** Number of whole canvas rows needed to hold the stream's pixels */
+  private int getRowCount() {
+    int pixels = Math.min(this.ndiWidth * this.ndiHeight, this.numPixels);
+    return Math.min(this.height, (pixels + this.width - 1) / this.width);
+  }
 
   @Override
   protected void render() {
+    // Hand the newest finished readback to the sender
+    sendCompleted();
+
     // Bind vertex array object
     bindVAO();
 
-    // Bind framebuffer object (FBO).
-    this.FBOs.a().bind();
+    // Bind framebuffer object (FBO), then limit rendering to the rows we'll send
+    this.fbo.bind();
+    int rows = getRowCount();
+    this.gl4.glViewport(0, 0, this.width, rows);
 
     // Render frame
     drawElements();
 
-    // Start async read of framebuffer into PBO
-    this.PBOs.a().startRead();
-
-    if (frameNum < 2) {
-      // Skip the first frame, PBO is empty
-      frameNum++;
-      // Unbind the PBO
-      this.gl4.glBindBuffer(GL4.GL_PIXEL_PACK_BUFFER, 0);
-    } else if (this.everyOtherFrame) {
-
-      // Map the other PBO for reading (from previous frame)
-      this.imageBuffer = this.PBOs.b().getDataRange(this.ndiOffset, this.ndiWidth * this.ndiHeight);
-
-      if (this.imageBuffer != null) {
-        // Send NDI frame
-        this.ndiFrame.setData(this.imageBuffer);
-        this.ndiSender.sendVideoFrame(this.ndiFrame);
-      }
-
-      // PBO is unbound after getData()
-    }
-
-    this.everyOtherFrame = !this.everyOtherFrame;
-
-    // Switch to the next PBO for the next frame
-    this.FBOs.swap();
-    this.PBOs.swap();
+    // Start async read of the framebuffer into the PBO ring
+    this.renderNanos[(int) (this.frameCount % this.renderNanos.length)] = System.nanoTime();
+    this.frameCount++;
+    this.pboRing.startRead(0, rows);
 
     // No need to unbind VAO.
     // Also not unbinding the FBO here, as other shader render passes will change it.
     // And GLMixer will unbind the last FBO at the end of postMix().
   }
 
+  private void sendCompleted() {
+    GLShader.PBO pbo = this.pboRing.pollCompleted();
+    if (pbo == null || this.sender == null) {
+      return;
+    }
+    long frame = this.frameCount - 1 - this.pboRing.getLatencyFrames();
+    long nanos = this.renderNanos[(int) (frame % this.renderNanos.length)];
+
+    int width = this.ndiWidth;
+    int height = this.ndiHeight;
+    ByteBuffer pixels = pbo.mapReadRange();
+    if (pixels == null) {
+      this.gl4.glBindBuffer(GL4.GL_PIXEL_PACK_BUFFER, 0);
+      return;
+    }
+    if (pixels.capacity() >= width * height * 4) {
+      this.sender.submit(pixels, width, height, nanos);
+    } else {
+      // Resolution changed since this frame was read
+      this.sender.countDropped();
+    }
+    pbo.unmap();
+  }
+
   @Override
   public void unbindTextures() {
     this.uniforms.lxModelCoords.unbind();
@@ -198,16 +217,16 @@ public class NDIOutShader extends GLShader implements GLShader.UniformSource {
    * @param model Current LXModel of the calling context, which is a LXView or the global model
    */
   public void setModelCoordinates(LXModel model) {
+    this.model = model;
     this.modelCoordsTextureHandle = this.glEngine.textureCache.getCoordinatesTexture(model);
     this.modelIndexTextureHandle = this.glEngine.textureCache.getIndexMapTexture(model);
   }
 
   @Override
   public void dispose() {
-    if (isInitialized()) {
-      this.FBOs.dispose();
-      this.PBOs.dispose();
-      this.ndiSender.close();
+    if (this.sender != null) {
+      this.sender.close();
+      this.sender = null;
     }
     super.dispose();
   }
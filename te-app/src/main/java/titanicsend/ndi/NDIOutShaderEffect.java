@@ -1,6 +1,8 @@
 package titanicsend.ndi;
 
 import heronarts.glx.ui.UI2dContainer;
+import heronarts.glx.ui.UITimerTask;
+import heronarts.glx.ui.component.UILabel;
 import heronarts.lx.GpuDevice;
 import heronarts.lx.LX;
 import heronarts.lx.LXCategory;
@@ -135,11 +137,27 @@ public class NDIOutShaderEffect extends TEEffect
     super.dispose();
   }
 
+  private static final int UI_MAX_OUTPUTS = 8;
+
   @Override
   public void buildDeviceControls(LXStudio.UI ui, UIDevice uiDevice, NDIOutShaderEffect device) {
     uiDevice.setLayout(UI2dContainer.Layout.VERTICAL, 2);
 
-    // TODO: display list of the NDI Out Fixtures that were detected
+    // Stats for each NDI Out Fixture that was detected
+    UILabel[] rows = new UILabel[UI_MAX_OUTPUTS];
+    for (int i = 0; i < rows.length; i++) {
+      rows[i] = (UILabel) new UILabel(200, 12, "").setFont(ui.theme.getControlFont());
+      rows[i].addToContainer(uiDevice);
+    }
+    uiDevice.addLoopTask(
+        new UITimerTask(4, UITimerTask.Mode.FPS) {
+          @Override
+          public void run() {
+            for (int i = 0; i < rows.length; i++) {
+              rows[i].setLabel(i < device.outputs.size() ? device.outputs.get(i).getStats() : "");
+            }
+          }
+        });
   }
 
   /** Wraps a NDIOutFixture from the runtime Fixtures list and creates a shader to match. */
@@ -203,6 +221,18 @@ public class NDIOutShaderEffect extends TEEffect
       refreshOffset();
     }
 
+    /** One line summary of the stream's output */
+    private String getStats() {
+      String label = this.fixture.stream.getString();
+      NDIFrameSender sender = this.shader.getSender();
+      if (sender == null) {
+        return label + ": not sending";
+      }
+      return String.format(
+          "%s: %d sent, %d dropped, %.1f ms",
+          label, sender.getSentFrames(), sender.getDroppedFrames(), sender.getLatencyMs());
+    }
+
     private void dispose() {
       this.shader.dispose();
       this.fixture.stream.removeListener(this.labelListener);
@@ -2,11 +2,7 @@ package titanicsend.ndi;
 
 import static me.walkerknapp.devolay.DevolayReceiver.RECEIVE_BANDWIDTH_HIGHEST;
 
-import com.jogamp.opengl.GL;
-import com.jogamp.opengl.GL4;
 import com.jogamp.opengl.util.texture.Texture;
-import com.jogamp.opengl.util.texture.TextureData;
-import com.jogamp.opengl.util.texture.TextureIO;
 import heronarts.glx.ui.UI2dContainer;
 import heronarts.glx.ui.component.UIButton;
 import heronarts.glx.ui.component.UIDropMenu;
@@ -16,6 +12,7 @@ import heronarts.lx.GpuDevice;
 import heronarts.lx.LX;
 import heronarts.lx.LXCategory;
 import heronarts.lx.LXComponentName;
+import heronarts.lx.parameter.BoundedParameter;
 import heronarts.lx.parameter.CompoundParameter;
 import heronarts.lx.parameter.LXListenableNormalizedParameter;
 import heronarts.lx.parameter.LXNormalizedParameter;
@@ -27,9 +24,7 @@ import heronarts.lx.studio.ui.device.UIDevice;
 import heronarts.lx.studio.ui.device.UIDeviceControls;
 import heronarts.lx.utils.LXUtils;
 import java.nio.ByteBuffer;
-import me.walkerknapp.devolay.DevolayFrameType;
 import me.walkerknapp.devolay.DevolayReceiver;
-import me.walkerknapp.devolay.DevolayVideoFrame;
 import titanicsend.pattern.glengine.GLShader;
 import titanicsend.pattern.glengine.GLShaderPattern;
 import titanicsend.pattern.glengine.TEShader;
@@ -47,17 +42,19 @@ public class NDIReceiverPattern extends GLShaderPattern
   private final NDIEngine ndi;
 
   protected final DevolayReceiver receiver;
-  protected final DevolayVideoFrame videoFrame;
-  protected int frameWidth;
-  protected int frameHeight;
+
+  // Frames are captured on background threads, from the NDI receiver or the test source
+  protected final NDIFrameReceiver ndiCapture;
+  protected NDIFrameReceiver fakeCapture = null;
+  protected NDIFrameReceiver capture;
+  // Capture switched away from, whose GL ring is freed on the next frame
+  private NDIFrameReceiver releasedCapture = null;
+  private boolean active = false;
 
   protected boolean lastConnectState = false;
   protected long connectTimer = 0;
 
   protected final ByteBuffer buffer;
-  protected TextureData textureData = null;
-  protected Texture texture = null;
-  protected GL4 gl4;
 
   public final StringParameter source =
       new StringParameter("Source", "")
@@ -85,6 +82,11 @@ public class NDIReceiverPattern extends GLShaderPattern
   protected final LXListenableNormalizedParameter gain =
       new CompoundParameter("Gain", 1, 0.5, 2).setDescription("Video gain");
 
+  public final BoundedParameter latency =
+      new BoundedParameter("Latency", 0, 0, 1000)
+          .setUnits(LXParameter.Units.MILLISECONDS)
+          .setDescription("Time from receiving a video frame to uploading it for rendering");
+
   public LXNormalizedParameter getSourceControl() {
     return sources;
   }
@@ -102,9 +104,11 @@ public class NDIReceiverPattern extends GLShaderPattern
         new DevolayReceiver(
             DevolayReceiver.ColorFormat.BGRX_BGRA, RECEIVE_BANDWIDTH_HIGHEST, true, "TE");
 
-    // Create frame objects to handle incoming video stream
+    // Capture video frames on a background thread
     // (note that we are omitting audio and metadata frames for now)
-    videoFrame = new DevolayVideoFrame();
+    this.ndiCapture =
+        new NDIFrameReceiver("receiver", new NDIFrameReceiver.DevolaySource(this.receiver));
+    this.capture = this.ndiCapture;
 
     // set scale control to something that works for video.
     controls.setRange(TEControlTag.SIZE, 1, 5, 0.1);
@@ -150,61 +154,50 @@ public class NDIReceiverPattern extends GLShaderPattern
 
   private void reconnect() {
     String s = this.source.getString();
-    if (!LXUtils.isEmpty(s)) {
+    if (NDIFakeSource.NAME.equals(s)) {
+      this.receiver.connect(null);
+      if (this.fakeCapture == null) {
+        this.fakeCapture = new NDIFrameReceiver("test", new NDIFakeSource());
+      }
+      setCapture(this.fakeCapture);
+      this.lastConnectState = true;
+    } else if (!LXUtils.isEmpty(s)) {
+      setCapture(this.ndiCapture);
       this.lastConnectState = this.ndi.connectByName(s, receiver);
     }
   }
 
+  private void setCapture(NDIFrameReceiver capture) {
+    if (this.capture != capture) {
+      this.capture.stop();
+      this.releasedCapture = this.capture;
+      this.capture = capture;
+    }
+    if (this.active) {
+      this.capture.start();
+    }
+  }
+
   private void disconnect() {
+    this.capture.stop();
     this.receiver.connect(null);
   }
 
   @Override
   public void onActive() {
     super.onActive();
+    this.active = true;
     reconnect();
+    this.capture.start();
   }
 
   @Override
   public void onInactive() {
+    this.active = false;
     disconnect();
     super.onInactive();
   }
 
-  /**
-   * Create a texture (and associated Java objects) appropriately dimensioned the current incoming
-   * video frame size. This is called on initial connection, and whenever the frame size changes.
-   */
-  public void createTextureForFrame() {
-
-    // free the previous GPU texture if it exists
-    if (texture != null) {
-      texture.destroy(gl4);
-    }
-
-    // save dimensions of the current frame
-    frameWidth = videoFrame.getXResolution();
-    frameHeight = videoFrame.getYResolution();
-
-    int format = GL.GL_RGBA;
-    int type = GL.GL_UNSIGNED_BYTE;
-    textureData =
-        new TextureData(
-            gl4.getGLProfile(),
-            format,
-            frameWidth,
-            frameHeight,
-            0,
-            GL.GL_BGRA,
-            type,
-            false,
-            false,
-            false,
-            videoFrame.getData(),
-            null);
-    texture = TextureIO.newTexture(textureData);
-  }
-
   private void setUniforms(GLShader s) {
     // If not connected, regularly attempt reconnect by name
     if (!lastConnectState) {
@@ -214,22 +207,17 @@ public class NDIReceiverPattern extends GLShaderPattern
       }
     }
 
-    if (DevolayFrameType.VIDEO == receiver.receiveCapture(videoFrame, null, null, 0)) {
-      // get pixel data from video frame
-      ByteBuffer frameData = videoFrame.getData();
-
-      // if it's the first frame, or if the frame dimensions changed,
-      // build our texture data object. Otherwise, just replace the
-      // buffer with the current frame's pixel data.
-      if (textureData == null
-          || frameWidth != videoFrame.getXResolution()
-          || frameHeight != videoFrame.getYResolution()) {
-        gl4 = s.getGL4();
-        createTextureForFrame();
-      } else {
-        textureData.setBuffer(frameData);
-        texture.updateImage(gl4, textureData);
-      }
+    // GL is current here, so free the ring of the capture no longer in use
+    if (this.releasedCapture != null) {
+      this.releasedCapture.release();
+      this.releasedCapture = null;
+    }
+
+    // Upload the newest captured frame, if there is one
+    Texture texture = this.capture.update(s.getGL4());
+    if (texture != null) {
+      this.latency.setValue(this.capture.getLatencyMs());
+
       // pass the video frame texture to the shader
       s.setUniform("gain", gain.getValuef());
       s.setUniform("ndivideo", texture);
@@ -240,10 +228,9 @@ public class NDIReceiverPattern extends GLShaderPattern
   public void dispose() {
     // shut down receiver and free everything we allocated
     disconnect();
-    this.videoFrame.close();
-
-    if (texture != null) {
-      texture.destroy(gl4);
+    this.ndiCapture.dispose();
+    if (this.fakeCapture != null) {
+      this.fakeCapture.dispose();
     }
 
     super.dispose();
@@ -273,11 +260,18 @@ public class NDIReceiverPattern extends GLShaderPattern
 
   private UI2dContainer newNDIcontrols(LXStudio.UI ui, NDIReceiverPattern device) {
     UI2dContainer uiNDI = new UI2dContainer(184, 50, 160, 0);
+    UILabel latencyLabel = new UILabel(150, "");
+    latencyLabel.setFont(ui.theme.getControlFont());
+    uiNDI.addListener(
+        device.latency,
+        p -> latencyLabel.setLabel(String.format("Latency: %.1f ms", device.latency.getValue())),
+        true);
     uiNDI.setLayout(UI2dContainer.Layout.VERTICAL, 4);
 
     uiNDI.addChildren(
         new UILabel(100, "Selected NDI Source:").setFont(ui.theme.getControlFont()),
         new UITextBox(150, 16, device.source).setEditable(false),
+        latencyLabel,
         new UILabel(100, "Available Sources:").setFont(ui.theme.getControlFont()),
         UI2dContainer.newHorizontalContainer(
             16,
@@ -4,7 +4,7 @@ import com.google.gson.JsonObject;
 import com.jogamp.common.nio.Buffers;
 import heronarts.lx.LX;
 import heronarts.lx.LXComponent;
-import heronarts.lx.color.LXColor;
+import heronarts.lx.model.LXPoint;
 import heronarts.lx.parameter.BoundedParameter;
 import heronarts.lx.parameter.LXNormalizedParameter;
 import heronarts.lx.parameter.LXParameter;
@@ -13,10 +13,14 @@ import java.nio.FloatBuffer;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.function.Supplier;
 import titanicsend.app.TEGlobalPatternControls;
+import titanicsend.color.PaletteService;
+import titanicsend.pattern.glengine.GLEngine;
 import titanicsend.pattern.glengine.ShaderConfiguration;
 import titanicsend.pattern.jon.TEControlTag;
 import titanicsend.pattern.jon.VariableSpeedTimer;
+import titanicsend.pattern.render.CPURenderPool;
 import titanicsend.pattern.yoffa.framework.TEShaderView;
 import titanicsend.util.Rotor;
 import titanicsend.util.TEColor;
@@ -42,7 +46,9 @@ public abstract class TEPerformancePattern extends TEAudioPattern {
 
   protected final TECommonControls controls;
 
-  protected final FloatBuffer palette = Buffers.newDirectFloatBuffer(15);
+  private static final int PALETTE_COLORS = 5;
+  protected final FloatBuffer palette = Buffers.newDirectFloatBuffer(PALETTE_COLORS * 3);
+  private long paletteVersion = -1;
 
   protected final TEGlobalPatternControls globalControls;
 
@@ -127,24 +133,51 @@ public abstract class TEPerformancePattern extends TEAudioPattern {
     return super.removeParameter(p);
   }
 
-  public FloatBuffer getCurrentPalette() {
-    float r, g, b;
+  /** Computes the color of one point, for {@link #newPointJob} */
+  @FunctionalInterface
+  public interface PointKernel<S> {
+    int getColor(LXPoint point, S scratch);
+  }
 
-    if (palette != null) {
-      palette.rewind();
-      for (int i = 0; i < 5; i++) {
+  /**
+   * Create a job that sets the color of each of this pattern's points from a per-point kernel,
+   * using the shared CPU render pool. Create it once and pass it to {@link #render} every frame.
+   *
+   * @param scratchFactory Creates per-thread scratch state for the kernel
+   * @param kernel Called for every point, possibly from several threads at once
+   */
+  protected <S> CPURenderPool.Job<S> newPointJob(
+      Supplier<S> scratchFactory, PointKernel<S> kernel) {
+    return new CPURenderPool.Job<>(
+        scratchFactory,
+        (from, to, scratch) -> {
+          LXPoint[] points = getModel().points;
+          for (int i = from; i < to; i++) {
+            LXPoint point = points[i];
+            this.colors[point.index] = kernel.getColor(point, scratch);
+          }
+        });
+  }
 
-        int color = getLX().engine.palette.swatch.getColor(i).getColor();
+  /**
+   * Run a job over all of this pattern's points on the shared CPU render pool, returning when it is
+   * done. Range kernels get indices into getModel().points.
+   */
+  protected void render(CPURenderPool.Job<?> job) {
+    CPURenderPool.get().render(job, getModel().points.length);
+  }
 
-        r = (float) (0xff & LXColor.red(color)) / 255f;
-        palette.put(r);
-        g = (float) (0xff & LXColor.green(color)) / 255f;
-        palette.put(g);
-        b = (float) (0xff & LXColor.blue(color)) / 255f;
-        palette.put(b);
-      }
+  public FloatBuffer getCurrentPalette() {
+    // Refill from the shared palette snapshot only when the colors have changed
+    PaletteService.Snapshot snapshot = GLEngine.current.paletteService.getSnapshot();
+    if (snapshot.version != this.paletteVersion) {
+      this.paletteVersion = snapshot.version;
       palette.rewind();
+      for (int i = 0; i < PALETTE_COLORS; i++) {
+        palette.put(snapshot.rgba, i * 4, 3);
+      }
     }
+    palette.rewind();
     return palette;
   }
 
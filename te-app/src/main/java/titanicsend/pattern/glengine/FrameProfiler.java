@@ -0,0 +1,441 @@
+package titanicsend.pattern.glengine;
+
+import com.jogamp.opengl.GL4;
+import heronarts.lx.LX;
+import heronarts.lx.LXComponent;
+import heronarts.lx.parameter.BooleanParameter;
+import heronarts.lx.parameter.TriggerParameter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import titanicsend.util.TE;
+
+/**
+ * Frame-time profiler for the GL engine. Instrumented code brackets its work with {@link
+ * #begin(Section)} and {@link #end(Section)}, which record a CPU span and a pair of GPU timestamp
+ * queries. Query results are collected a few frames later so the CPU never waits on the GPU.
+ *
+ * <p>Each section keeps a rolling window of per-frame totals. Percentiles are computed a few times
+ * per second into an immutable report, which is shown in the UI, sent over OSC and can be exported
+ * as CSV.
+ *
+ * <p>GPU spans use GL_TIMESTAMP counters rather than GL_TIME_ELAPSED queries because spans nest
+ * (bus, channel, pattern, shader) and only one elapsed-time query can be active at a time.
+ */
+public class FrameProfiler extends LXComponent {
+
+  public static final String PATH = "profiler";
+
+  // Section categories
+  public static final String BUS = "bus";
+  public static final String CHANNEL = "channel";
+  public static final String PATTERN = "pattern";
+  public static final String SHADER = "shader";
+  public static final String READBACK = "readback";
+
+  // Frames to wait before reading back GPU queries
+  private static final int QUERY_LATENCY_FRAMES = 3;
+  private static final int QUERY_SLOTS = QUERY_LATENCY_FRAMES + 1;
+
+  // Number of frames in each section's rolling window
+  private static final int WINDOW_FRAMES = 300;
+
+  private static final long REPORT_INTERVAL_NANOS = 250_000_000L;
+
+  private static final String OSC_PREFIX = "/te/profiler/";
+
+  public final BooleanParameter enabled =
+      new BooleanParameter("Enabled", false)
+          .setDescription("Measure CPU and GPU time of shaders, patterns, channels and buses");
+
+  public final BooleanParameter oscOutput =
+      new BooleanParameter("OSC", false)
+          .setDescription(
+              "Send profiler percentiles over OSC, " + OSC_PREFIX + "<category>/<name>");
+
+  public final TriggerParameter exportCsv =
+      new TriggerParameter("Export CSV", this::exportCsv)
+          .setDescription("Write the current profiler report to a CSV file in the Logs folder");
+
+  /** Rolling window of per-frame times, in nanoseconds */
+  private static class Window {
+    private final long[] samples = new long[WINDOW_FRAMES];
+    private int count = 0;
+    private int next = 0;
+
+    private void add(long nanos) {
+      this.samples[this.next] = nanos;
+      this.next = (this.next + 1) % WINDOW_FRAMES;
+      this.count = Math.min(this.count + 1, WINDOW_FRAMES);
+    }
+
+    private void clear() {
+      this.count = 0;
+      this.next = 0;
+    }
+
+    /** p50, p95, p99 in milliseconds. Uses the scratch array to sort. */
+    private void percentiles(long[] scratch, float[] out) {
+      if (this.count == 0) {
+        Arrays.fill(out, 0);
+        return;
+      }
+      System.arraycopy(this.samples, 0, scratch, 0, this.count);
+      Arrays.sort(scratch, 0, this.count);
+      out[0] = percentile(scratch, this.count, .50);
+      out[1] = percentile(scratch, this.count, .95);
+      out[2] = percentile(scratch, this.count, .99);
+    }
+
+    private static float percentile(long[] sorted, int count, double p) {
+      int index = (int) Math.min(count - 1, Math.ceil(p * count) - 1);
+      return sorted[Math.max(0, index)] / 1_000_000f;
+    }
+  }
+
+  /** A named piece of instrumented work. Obtain with {@link #section(String, String)}. */
+  public static class Section {
+    public final String category;
+    public final String name;
+
+    private final Window cpu = new Window();
+    private final Window gpu = new Window();
+
+    // Open span
+    private long startNanos;
+    private int startQuery = 0;
+
+    // Totals for the current frame
+    private long cpuFrameNanos = 0;
+    private boolean cpuTouched = false;
+    private long gpuFrameNanos = 0;
+    private boolean gpuTouched = false;
+
+    private Section(String category, String name) {
+      this.category = category;
+      this.name = name;
+    }
+  }
+
+  /** Percentiles for one section, in milliseconds */
+  public static class Row {
+    public final String category;
+    public final String name;
+    public final float cpuP50, cpuP95, cpuP99;
+    public final float gpuP50, gpuP95, gpuP99;
+
+    private Row(Section section, float[] cpu, float[] gpu) {
+      this.category = section.category;
+      this.name = section.name;
+      this.cpuP50 = cpu[0];
+      this.cpuP95 = cpu[1];
+      this.cpuP99 = cpu[2];
+      this.gpuP50 = gpu[0];
+      this.gpuP95 = gpu[1];
+      this.gpuP99 = gpu[2];
+    }
+  }
+
+  /** A GPU span waiting for its query results */
+  private static class PendingQuery {
+    private Section section;
+    private int startQuery;
+    private int endQuery;
+  }
+
+  private final Map<String, Map<String, Section>> sections = new HashMap<>();
+  private final List<Section> sectionList = new ArrayList<>();
+
+  private GL4 gl4;
+  private boolean gpuTiming = false;
+
+  // Pending GPU spans, one list per frame slot
+  private final List<List<PendingQuery>> pendingQueries = new ArrayList<>();
+  private final List<PendingQuery> freePending = new ArrayList<>();
+  private int frameSlot = 0;
+
+  // Recycled query objects
+  private final int[] queryHandles = new int[64];
+  private int freeQueryCount = 0;
+  private final int[] queryResult = new int[1];
+  private final long[] timestamp = new long[1];
+
+  private boolean frameOpen = false;
+
+  // Latest report, replaced as a whole so other threads can read it safely
+  private volatile List<Row> report = Collections.emptyList();
+  private long lastReportNanos = 0;
+  private final long[] scratch = new long[WINDOW_FRAMES];
+  private final float[] cpuPercentiles = new float[3];
+  private final float[] gpuPercentiles = new float[3];
+
+  public FrameProfiler(LX lx) {
+    super(lx, "Profiler");
+    addParameter("enabled", this.enabled);
+    addParameter("oscOutput", this.oscOutput);
+    addParameter("exportCsv", this.exportCsv);
+
+    for (int i = 0; i < QUERY_SLOTS; i++) {
+      this.pendingQueries.add(new ArrayList<>());
+    }
+  }
+
+  public void initialize(GL4 gl4) {
+    this.gl4 = gl4;
+    int[] bits = new int[1];
+    gl4.glGetQueryiv(GL4.GL_TIMESTAMP, GL4.GL_QUERY_COUNTER_BITS, bits, 0);
+    this.gpuTiming = bits[0] > 0;
+    if (!this.gpuTiming) {
+      TE.log("FrameProfiler: GPU timestamps not supported, profiling CPU time only");
+    }
+  }
+
+  public boolean isEnabled() {
+    return this.enabled.isOn();
+  }
+
+  /** Get or create the section for a category and name. Engine thread only. */
+  public Section section(String category, String name) {
+    Map<String, Section> byName = this.sections.computeIfAbsent(category, k -> new HashMap<>());
+    Section section = byName.get(name);
+    if (section == null) {
+      section = new Section(category, name);
+      byName.put(name, section);
+      this.sectionList.add(section);
+    }
+    return section;
+  }
+
+  /**
+   * Create a section that belongs to the caller alone, even if another section has the same name.
+   * The caller should hold on to it and {@link #removeSection} it when done. Engine thread only.
+   */
+  public Section createSection(String category, String name) {
+    Section section = new Section(category, name);
+    this.sectionList.add(section);
+    return section;
+  }
+
+  /** Stop tracking and reporting a section. Engine thread only. */
+  public void removeSection(Section section) {
+    this.sectionList.remove(section);
+    Map<String, Section> byName = this.sections.get(section.category);
+    if (byName != null) {
+      byName.remove(section.name, section);
+    }
+  }
+
+  /** Start a span of work. Spans of different sections may nest. */
+  public void begin(Section section) {
+    if (!this.frameOpen) {
+      return;
+    }
+    section.startNanos = System.nanoTime();
+    if (this.gpuTiming) {
+      section.startQuery = obtainQuery();
+      this.gl4.glQueryCounter(section.startQuery, GL4.GL_TIMESTAMP);
+    }
+  }
+
+  /** End the current span of a section */
+  public void end(Section section) {
+    if (!this.frameOpen) {
+      return;
+    }
+    section.cpuFrameNanos += System.nanoTime() - section.startNanos;
+    section.cpuTouched = true;
+    if (this.gpuTiming && section.startQuery != 0) {
+      PendingQuery pending =
+          this.freePending.isEmpty()
+              ? new PendingQuery()
+              : this.freePending.remove(this.freePending.size() - 1);
+      pending.section = section;
+      pending.startQuery = section.startQuery;
+      pending.endQuery = obtainQuery();
+      this.gl4.glQueryCounter(pending.endQuery, GL4.GL_TIMESTAMP);
+      this.pendingQueries.get(this.frameSlot).add(pending);
+      section.startQuery = 0;
+    }
+  }
+
+  /**
+   * Close the previous frame and open a new one. Called by GLEngine at the start of each engine
+   * frame, with the GL context current.
+   */
+  void beginFrame() {
+    if (this.frameOpen) {
+      // Commit CPU totals for the frame that just ended
+      for (Section section : this.sectionList) {
+        if (section.cpuTouched) {
+          section.cpu.add(section.cpuFrameNanos);
+          section.cpuFrameNanos = 0;
+          section.cpuTouched = false;
+        }
+      }
+    }
+
+    // Collect GPU results from the oldest frame slot, which is about to be reused
+    this.frameSlot = (this.frameSlot + 1) % QUERY_SLOTS;
+    resolveQueries(this.pendingQueries.get(this.frameSlot));
+
+    boolean wasOpen = this.frameOpen;
+    this.frameOpen = this.enabled.isOn();
+    if (wasOpen && !this.frameOpen) {
+      // Start fresh the next time profiling is enabled
+      for (Section section : this.sectionList) {
+        section.cpu.clear();
+        section.gpu.clear();
+      }
+      this.report = Collections.emptyList();
+    } else if (this.frameOpen) {
+      long now = System.nanoTime();
+      if (now - this.lastReportNanos > REPORT_INTERVAL_NANOS) {
+        this.lastReportNanos = now;
+        updateReport();
+      }
+    }
+  }
+
+  private void resolveQueries(List<PendingQuery> frame) {
+    if (frame.isEmpty()) {
+      return;
+    }
+    // Results are dropped if the GPU is still behind, rather than waiting
+    boolean available = true;
+    for (PendingQuery pending : frame) {
+      if (available) {
+        this.gl4.glGetQueryObjectiv(
+            pending.endQuery, GL4.GL_QUERY_RESULT_AVAILABLE, this.queryResult, 0);
+        available = this.queryResult[0] != 0;
+      }
+      if (available) {
+        this.gl4.glGetQueryObjecti64v(pending.startQuery, GL4.GL_QUERY_RESULT, this.timestamp, 0);
+        long start = this.timestamp[0];
+        this.gl4.glGetQueryObjecti64v(pending.endQuery, GL4.GL_QUERY_RESULT, this.timestamp, 0);
+        pending.section.gpuFrameNanos += Math.max(0, this.timestamp[0] - start);
+        pending.section.gpuTouched = true;
+      }
+      releaseQuery(pending.startQuery);
+      releaseQuery(pending.endQuery);
+      pending.section = null;
+      this.freePending.add(pending);
+    }
+    frame.clear();
+
+    for (Section section : this.sectionList) {
+      if (section.gpuTouched) {
+        section.gpu.add(section.gpuFrameNanos);
+        section.gpuFrameNanos = 0;
+        section.gpuTouched = false;
+      }
+    }
+  }
+
+  private int obtainQuery() {
+    if (this.freeQueryCount == 0) {
+      this.gl4.glGenQueries(this.queryHandles.length, this.queryHandles, 0);
+      this.freeQueryCount = this.queryHandles.length;
+    }
+    return this.queryHandles[--this.freeQueryCount];
+  }
+
+  private void releaseQuery(int query) {
+    if (this.freeQueryCount < this.queryHandles.length) {
+      this.queryHandles[this.freeQueryCount++] = query;
+    } else {
+      this.gl4.glDeleteQueries(1, new int[] {query}, 0);
+    }
+  }
+
+  private void updateReport() {
+    List<Row> rows = new ArrayList<>(this.sectionList.size());
+    for (Section section : this.sectionList) {
+      if (section.cpu.count == 0 && section.gpu.count == 0) {
+        continue;
+      }
+      section.cpu.percentiles(this.scratch, this.cpuPercentiles);
+      section.gpu.percentiles(this.scratch, this.gpuPercentiles);
+      rows.add(new Row(section, this.cpuPercentiles, this.gpuPercentiles));
+    }
+    // Most expensive first, by whichever side is slower
+    rows.sort(Comparator.comparingDouble((Row r) -> Math.max(r.cpuP95, r.gpuP95)).reversed());
+    this.report = Collections.unmodifiableList(rows);
+
+    if (this.oscOutput.isOn() && this.lx.engine.osc.transmitActive.isOn()) {
+      sendOsc(rows);
+    }
+  }
+
+  /** Latest percentiles for every section that ran recently, most expensive first */
+  public List<Row> getReport() {
+    return this.report;
+  }
+
+  private void sendOsc(List<Row> rows) {
+    for (Row row : rows) {
+      String address = OSC_PREFIX + row.category + "/" + oscName(row.name);
+      this.lx.engine.osc.sendMessage(address + "/cpu/p50", row.cpuP50);
+      this.lx.engine.osc.sendMessage(address + "/cpu/p95", row.cpuP95);
+      this.lx.engine.osc.sendMessage(address + "/cpu/p99", row.cpuP99);
+      this.lx.engine.osc.sendMessage(address + "/gpu/p50", row.gpuP50);
+      this.lx.engine.osc.sendMessage(address + "/gpu/p95", row.gpuP95);
+      this.lx.engine.osc.sendMessage(address + "/gpu/p99", row.gpuP99);
+    }
+  }
+
+  private static String oscName(String name) {
+    return name.replaceAll("[^A-Za-z0-9_.-]", "_");
+  }
+
+  private void exportCsv() {
+    List<Row> rows = this.report;
+    String timestamp = new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date());
+    File file = this.lx.getMediaFile(LX.Media.LOGS, "frameProfile-" + timestamp + ".csv", true);
+    try (FileWriter writer = new FileWriter(file)) {
+      writer.write(
+          "category,name,cpu_p50_ms,cpu_p95_ms,cpu_p99_ms,gpu_p50_ms,gpu_p95_ms,gpu_p99_ms\n");
+      for (Row row : rows) {
+        writer.write(
+            String.format(
+                "%s,\"%s\",%.3f,%.3f,%.3f,%.3f,%.3f,%.3f\n",
+                row.category,
+                row.name.replace("\"", "\"\""),
+                row.cpuP50,
+                row.cpuP95,
+                row.cpuP99,
+                row.gpuP50,
+                row.gpuP95,
+                row.gpuP99));
+      }
+      TE.log("FrameProfiler: wrote %d sections to %s", rows.size(), file.getPath());
+    } catch (IOException e) {
+      TE.error(e, "FrameProfiler: could not write " + file.getPath());
+    }
+  }
+
+  /** Free GL query objects. The component itself is disposed with GLEngine. */
+  void disposeQueries() {
+    if (this.gl4 != null) {
+      for (List<PendingQuery> frame : this.pendingQueries) {
+        for (PendingQuery pending : frame) {
+          releaseQuery(pending.startQuery);
+          releaseQuery(pending.endQuery);
+        }
+        frame.clear();
+      }
+      if (this.freeQueryCount > 0) {
+        this.gl4.glDeleteQueries(this.freeQueryCount, this.queryHandles, 0);
+        this.freeQueryCount = 0;
+      }
+    }
+  }
+}
@@ -25,10 +25,13 @@ import heronarts.lx.LX;
 import heronarts.lx.LXComponent;
 import heronarts.lx.LXLoopTask;
 import heronarts.lx.audio.GraphicMeter;
-import heronarts.lx.color.LXColor;
-import heronarts.lx.color.LXSwatch;
+import heronarts.lx.model.LXModel;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.FloatBuffer;
+import java.util.Arrays;
 import titanicsend.audio.AudioStems;
+import titanicsend.color.PaletteService;
 import titanicsend.pattern.glengine.mixer.GLMixer;
 import titanicsend.pattern.yoffa.shader_engine.ShaderUtils;
 import titanicsend.util.TE;
@@ -40,17 +43,52 @@ public class GLEngine extends LXComponent implements LXLoopTask, LX.Listener {
 
   private final int[] audioTextureHandle = new int[1];
   private final int[] uniformBlockHandles = new int[2];
-
-  // rendering canvas size.  May be changed
-  // via the startup command line.
-  private final int width;
-  private final int height;
+  private final int[] audioUnpackHandle = new int[1];
+
+  // Shader resolution (iResolution), the coordinate space patterns are written for.
+  // May be changed via the startup command line.
+  private final int resolutionWidth;
+  private final int resolutionHeight;
+
+  // Rendering canvas size. Pixel N holds model point N, so the canvas only needs to be large
+  // enough for the model. Unless fixed from the command line, it follows the model's size.
+  private int width;
+  private int height;
+  private final boolean fixedCanvas;
+  private int canvasGeneration = 0;
+  private volatile boolean checkCanvasSize = false;
+
+  // Dynamic canvas is this wide or a power of two above, and a whole number of row blocks tall
+  private static final int MIN_CANVAS_WIDTH = 64;
+  private static final int CANVAS_ROW_BLOCK = 16;
+  // Largest dynamic canvas in either direction, the same limit as --resolution
+  static final int MAX_CANVAS_SIZE = 4096;
+
+  // Number of PBOs in each readback ring, which bounds GPU->CPU latency in frames.
+  // May be changed via the startup command line.
+  public static final int DEFAULT_READBACK_DEPTH = 3;
+  private final int readbackDepth;
 
   // audio texture size and buffer
   private static final int audioTextureWidth = 512;
   private static final int audioTextureHeight = 2;
+  private static final int audioTextureBytes = audioTextureWidth * audioTextureHeight * 4;
   private FloatBuffer audioTextureData;
 
+  // Per-frame GPU data (uniform block and audio texture source) lives in persistent, coherently
+  // mapped buffers that are written in place, triple-buffered by frame so we never overwrite
+  // memory the GPU may still be reading. Requires GL 4.4 or ARB_buffer_storage; other drivers
+  // (e.g. macOS) fall back to glBufferSubData/glTexSubImage2D uploads.
+  private static final int FRAME_SLOTS = 3;
+  private static final long FRAME_SLOT_TIMEOUT_NS = 100_000_000L;
+  private static final int PERSISTENT_MAP_FLAGS =
+      GL4.GL_MAP_WRITE_BIT | GL4.GL_MAP_PERSISTENT_BIT | GL4.GL_MAP_COHERENT_BIT;
+  private boolean persistentBuffers = false;
+  private int frameSlot = 0;
+  private final long[] frameSlotFences = new long[FRAME_SLOTS];
+  private FloatBuffer[] perFrameUniformSlots;
+  private FloatBuffer[] audioTextureSlots;
+
   // audio data sources & parameters
   private final double AUDIO_LEVEL_MIN = 0.01;
   private final GraphicMeter meter;
@@ -76,12 +114,31 @@ public class GLEngine extends LXComponent implements LXLoopTask, LX.Listener {
   private FloatBuffer perFrameUniformBlock;
   private int perFrameUniformBlockSize;
 
+  // Floats ahead of the palette in the per-frame uniform block: 7 audio levels + stems
+  private static final int PALETTE_UNIFORM_OFFSET = 7 + MAX_AUDIO_STEMS;
+
+  // Palette version last written to the per-frame uniform block, one per frame slot
+  private static final long PALETTE_NOT_WRITTEN = -1;
+  private final long[] paletteUniformVersions = new long[FRAME_SLOTS];
+
   public static final int perRunUniformBlockBinding = 0;
   public static final int perFrameUniformBlockBinding = 1;
 
   // Texture cache management
   public final TextureManager textureCache;
 
+  // Background shader program builds
+  public final ShaderCompiler shaderCompiler;
+
+  // Shader programs shared between shader instances
+  public final ProgramManager programManager;
+
+  // CPU and GPU frame-time measurements
+  public final FrameProfiler profiler;
+
+  // Versioned palette colors, shared by shaders and Java patterns
+  public final PaletteService paletteService;
+
   // GPU Mixer Engine
   private GLMixer mixer;
 
@@ -93,16 +150,48 @@ public class GLEngine extends LXComponent implements LXLoopTask, LX.Listener {
     return canvas;
   }
 
+  /** GPU mixer, or null in CPU render mode */
+  public GLMixer getMixer() {
+    return this.mixer;
+  }
+
+  /** Current canvas width. Can change when the model changes, see {@link #getCanvasGeneration()} */
   public int getWidth() {
     return this.width;
   }
 
+  /** Current canvas height. Can change when the model changes. */
   public int getHeight() {
     return this.height;
   }
 
+  /** Incremented every time the canvas is resized. Canvas-sized buffers are stale if it changed. */
+  public int getCanvasGeneration() {
+    return this.canvasGeneration;
+  }
+
+  /** Width of the shader coordinate space, iResolution.x */
+  public int getResolutionWidth() {
+    return this.resolutionWidth;
+  }
+
+  /** Height of the shader coordinate space, iResolution.y */
+  public int getResolutionHeight() {
+    return this.resolutionHeight;
+  }
+
+  public int getReadbackDepth() {
+    return this.readbackDepth;
+  }
+
+  /** True if per-frame data is written to persistent-mapped buffers rather than uploaded */
+  public boolean isPersistentBuffers() {
+    return this.persistentBuffers;
+  }
+
   // Utility methods to give java patterns access to the audio texture
-  // should they want it.
+  // should they want it. This is the single CPU-side copy of the current
+  // frame's audio data, shared by every shader that needs it.
   public FloatBuffer getAudioTextureBuffer() {
     return audioTextureData;
   }
@@ -172,6 +261,15 @@ public class GLEngine extends LXComponent implements LXLoopTask, LX.Listener {
     gl4.glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MIN_FILTER, GL_NEAREST);
     gl4.glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_WRAP_S, GL_CLAMP_TO_EDGE);
     gl4.glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_WRAP_T, GL_CLAMP_TO_EDGE);
+
+    // persistent-mapped pixel unpack buffer that feeds the texture, one slot per frame
+    if (this.persistentBuffers) {
+      gl4.glGenBuffers(1, audioUnpackHandle, 0);
+      ByteBuffer mapped =
+          mapPersistentBuffer(
+              GL4.GL_PIXEL_UNPACK_BUFFER, audioUnpackHandle[0], FRAME_SLOTS * audioTextureBytes);
+      this.audioTextureSlots = sliceFrameSlots(mapped, audioTextureBytes);
+    }
   }
 
   /** Update audio texture object with new fft and waveform data. This is called once per frame. */
@@ -186,6 +284,25 @@ public class GLEngine extends LXComponent implements LXLoopTask, LX.Listener {
 
     bindAudioTexture();
 
+    if (this.persistentBuffers) {
+      // copy into this frame's slot of the mapped buffer and let the GPU pull it from there
+      this.audioTextureSlots[this.frameSlot].put(
+          0, audioTextureData, 0, audioTextureData.capacity());
+      gl4.glBindBuffer(GL4.GL_PIXEL_UNPACK_BUFFER, audioUnpackHandle[0]);
+      gl4.glTexSubImage2D(
+          GL_TEXTURE_2D,
+          0,
+          0,
+          0,
+          audioTextureWidth,
+          audioTextureHeight,
+          GL4.GL_RED,
+          GL_FLOAT,
+          (long) this.frameSlot * audioTextureBytes);
+      gl4.glBindBuffer(GL4.GL_PIXEL_UNPACK_BUFFER, 0);
+      return;
+    }
+
     // update audio texture on the GPU from our buffer, *without* re-allocating
     gl4.glTexSubImage2D(
         GL_TEXTURE_2D,
@@ -206,12 +323,13 @@ public class GLEngine extends LXComponent implements LXLoopTask, LX.Listener {
    *     start of the palette data area
    */
   public void setPaletteUniforms(FloatBuffer uniformBuffer) {
-    float r, g, b;
-    LXSwatch activeSwatch = getLX().engine.palette.swatch;
-    int n = activeSwatch.colors.size();
+    setPaletteUniforms(uniformBuffer, this.paletteService.getSnapshot());
+  }
 
+  private static void setPaletteUniforms(
+      FloatBuffer uniformBuffer, PaletteService.Snapshot palette) {
     // store palette size (iPaletteSize)
-    uniformBuffer.put((float) activeSwatch.colors.size());
+    uniformBuffer.put((float) palette.size);
 
     // Move to the next 4-byte boundary
     // NOTE: This is necessary to ensure that the palette colors array is properly
@@ -219,18 +337,8 @@ public class GLEngine extends LXComponent implements LXLoopTask, LX.Listener {
     // adjust this padding to work with the new size.
     uniformBuffer.position(uniformBuffer.position() + 3);
 
-    // store palette colors
-    for (int i = 0; i < n; i++) {
-      int color = activeSwatch.getColor(i).getColor();
-
-      r = (float) (0xff & LXColor.red(color)) / 255f;
-      uniformBuffer.put(r);
-      g = (float) (0xff & LXColor.green(color)) / 255f;
-      uniformBuffer.put(g);
-      b = (float) (0xff & LXColor.blue(color)) / 255f;
-      uniformBuffer.put(b);
-      uniformBuffer.put(1.0f); // alpha (filler at this point)
-    }
+    // store palette colors, precomputed as RGBA
+    uniformBuffer.put(palette.rgba, 0, palette.size * 4);
   }
 
   /**
@@ -249,6 +357,63 @@ public class GLEngine extends LXComponent implements LXLoopTask, LX.Listener {
     return ((elements * 4) + alignment[0] - 1) & ~(alignment[0] - 1);
   }
 
+  /**
+   * Check whether the driver supports immutable buffer storage, which we need for persistent
+   * mapping. It is core in GL 4.4 and available as ARB_buffer_storage on some older drivers.
+   */
+  private boolean isBufferStorageSupported() {
+    return gl4.isExtensionAvailable("GL_ARB_buffer_storage")
+        && gl4.isFunctionAvailable("glBufferStorage");
+  }
+
+  /**
+   * Allocate immutable storage for a buffer object and map it persistently for writing. The mapping
+   * stays valid until the buffer is unmapped at dispose time.
+   */
+  private ByteBuffer mapPersistentBuffer(int target, int handle, int size) {
+    gl4.glBindBuffer(target, handle);
+    gl4.glBufferStorage(target, size, null, PERSISTENT_MAP_FLAGS);
+    ByteBuffer mapped = gl4.glMapBufferRange(target, 0, size, PERSISTENT_MAP_FLAGS);
+    gl4.glBindBuffer(target, 0);
+    if (mapped == null) {
+      throw new IllegalStateException("Failed to map persistent buffer " + handle);
+    }
+    return mapped;
+  }
+
+  /** Split a persistent-mapped buffer into one float view per frame slot */
+  private static FloatBuffer[] sliceFrameSlots(ByteBuffer mapped, int slotBytes) {
+    FloatBuffer[] slots = new FloatBuffer[FRAME_SLOTS];
+    for (int i = 0; i < FRAME_SLOTS; i++) {
+      slots[i] =
+          mapped.slice(i * slotBytes, slotBytes).order(ByteOrder.nativeOrder()).asFloatBuffer();
+    }
+    return slots;
+  }
+
+  /**
+   * Move to the next persistent-mapped frame slot. The slot used by the previous frame is fenced
+   * here, after all of that frame's draw calls have been issued. Then we wait for the GPU to
+   * release the slot we're about to overwrite. With three slots that fence has nearly always
+   * signaled already, so this doesn't stall in practice.
+   */
+  private void advanceFrameSlot() {
+    this.frameSlotFences[this.frameSlot] = gl4.glFenceSync(GL4.GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
+    this.frameSlot = (this.frameSlot + 1) % FRAME_SLOTS;
+
+    long fence = this.frameSlotFences[this.frameSlot];
+    if (fence != 0) {
+      int status =
+          gl4.glClientWaitSync(fence, GL4.GL_SYNC_FLUSH_COMMANDS_BIT, FRAME_SLOT_TIMEOUT_NS);
+      if (status == GL4.GL_WAIT_FAILED || status == GL4.GL_TIMEOUT_EXPIRED) {
+        TE.warning(
+            "GLEngine: frame slot %d not released by GPU (status 0x%x)", this.frameSlot, status);
+      }
+      gl4.glDeleteSync(fence);
+      this.frameSlotFences[this.frameSlot] = 0;
+    }
+  }
+
   /**
    * Initialize shared uniform blocks. These blocks let us centrally manage uniforms that are common
    * to all shaders and are only updated once per run, or once per frame. Keeping a single copy of
@@ -280,9 +445,9 @@ public class GLEngine extends LXComponent implements LXLoopTask, LX.Listener {
     perRunUniformBlock.put(2, 0f);
     perRunUniformBlock.put(3, 0f);
 
-    // iResolution is the size of the canvas
-    perRunUniformBlock.put(4, (float) width);
-    perRunUniformBlock.put(5, (float) height);
+    // iResolution is the shader coordinate space, which stays the same when the canvas is resized
+    perRunUniformBlock.put(4, (float) this.resolutionWidth);
+    perRunUniformBlock.put(5, (float) this.resolutionHeight);
 
     // Do the same thing for per frame uniforms
     // The items in the block are, in order:
@@ -322,10 +487,26 @@ public class GLEngine extends LXComponent implements LXLoopTask, LX.Listener {
         0,
         perRunUniformBlockSize);
 
-    // Do the same for the per-frame uniform block and its initial data
-    gl4.glBindBuffer(GL4.GL_UNIFORM_BUFFER, uniformBlockHandles[1]);
-    gl4.glBufferData(
-        GL4.GL_UNIFORM_BUFFER, perFrameUniformBlockSize, perFrameUniformBlock, GL4.GL_DYNAMIC_DRAW);
+    // Do the same for the per-frame uniform block and its initial data.
+    // New buffers hold no palette yet, so the first frame in each must write it.
+    Arrays.fill(this.paletteUniformVersions, PALETTE_NOT_WRITTEN);
+    // With persistent buffers, allocate a slot per frame; each is already aligned
+    // to GL_UNIFORM_BUFFER_OFFSET_ALIGNMENT, so slots can be bound by offset.
+    if (this.persistentBuffers) {
+      ByteBuffer mapped =
+          mapPersistentBuffer(
+              GL4.GL_UNIFORM_BUFFER,
+              uniformBlockHandles[1],
+              FRAME_SLOTS * perFrameUniformBlockSize);
+      this.perFrameUniformSlots = sliceFrameSlots(mapped, perFrameUniformBlockSize);
+    } else {
+      gl4.glBindBuffer(GL4.GL_UNIFORM_BUFFER, uniformBlockHandles[1]);
+      gl4.glBufferData(
+          GL4.GL_UNIFORM_BUFFER,
+          perFrameUniformBlockSize,
+          perFrameUniformBlock,
+          GL4.GL_DYNAMIC_DRAW);
+    }
     gl4.glBindBufferRange(
         GL4.GL_UNIFORM_BUFFER,
         perFrameUniformBlockBinding,
@@ -355,27 +536,50 @@ public class GLEngine extends LXComponent implements LXLoopTask, LX.Listener {
 
   // update the per-frame shared uniform block with current audio data
   private void updatePerFrameUniforms() {
-    perFrameUniformBlock.put((float) beat); // beat
-    perFrameUniformBlock.put((float) sinPhaseBeat); // sinPhaseBeat
-    perFrameUniformBlock.put((float) bassLevel); // bassLevel
-    perFrameUniformBlock.put((float) trebleLevel); // trebleLevel
-    perFrameUniformBlock.put((float) bassRatio); // bassRatio
-    perFrameUniformBlock.put((float) trebleRatio); // trebleRatio
-    perFrameUniformBlock.put((float) volumeRatio); // volumeRatio
+    // With persistent buffers, write straight into this frame's mapped slot
+    FloatBuffer block =
+        this.persistentBuffers ? this.perFrameUniformSlots[this.frameSlot] : perFrameUniformBlock;
+    block.rewind();
+
+    block.put((float) beat); // beat
+    block.put((float) sinPhaseBeat); // sinPhaseBeat
+    block.put((float) bassLevel); // bassLevel
+    block.put((float) trebleLevel); // trebleLevel
+    block.put((float) bassRatio); // bassRatio
+    block.put((float) trebleRatio); // trebleRatio
+    block.put((float) volumeRatio); // volumeRatio
 
     int stemCount = Math.min(MAX_AUDIO_STEMS, AudioStems.get().stems.size());
     for (int i = 0; i < MAX_AUDIO_STEMS; i++) {
-      perFrameUniformBlock.put(
-          (i < stemCount) ? (float) AudioStems.get().stems.get(i).getValue() : 0f);
+      block.put((i < stemCount) ? (float) AudioStems.get().stems.get(i).getValue() : 0f);
     }
 
-    // set the palette size and colors
-    setPaletteUniforms(perFrameUniformBlock);
+    // set the palette size and colors, only if they changed since this buffer last held them
+    PaletteService.Snapshot palette = this.paletteService.getSnapshot();
+    int slot = this.persistentBuffers ? this.frameSlot : 0;
+    boolean paletteChanged = this.paletteUniformVersions[slot] != palette.version;
+    if (paletteChanged) {
+      setPaletteUniforms(block, palette);
+      this.paletteUniformVersions[slot] = palette.version;
+    }
 
-    // update the GPU buffer with the new data
+    if (this.persistentBuffers) {
+      // point the shared binding at this frame's slot, no data transfer needed
+      gl4.glBindBufferRange(
+          GL4.GL_UNIFORM_BUFFER,
+          perFrameUniformBlockBinding,
+          uniformBlockHandles[1],
+          (long) this.frameSlot * perFrameUniformBlockSize,
+          perFrameUniformBlockSize);
+      return;
+    }
+
+    // update the GPU buffer with the new data, leaving out the palette if it is unchanged
+    long size =
+        paletteChanged ? perFrameUniformBlockSize : (long) PALETTE_UNIFORM_OFFSET * Float.BYTES;
     perFrameUniformBlock.rewind();
     gl4.glBindBuffer(GL4.GL_UNIFORM_BUFFER, uniformBlockHandles[1]);
-    gl4.glBufferSubData(GL4.GL_UNIFORM_BUFFER, 0, perFrameUniformBlockSize, perFrameUniformBlock);
+    gl4.glBufferSubData(GL4.GL_UNIFORM_BUFFER, 0, size, perFrameUniformBlock);
   }
 
   /**
@@ -408,15 +612,30 @@ public class GLEngine extends LXComponent implements LXLoopTask, LX.Listener {
   }
 
   public GLEngine(LX lx, int width, int height) {
+    this(lx, width, height, DEFAULT_READBACK_DEPTH);
+  }
+
+  public GLEngine(LX lx, int width, int height, int readbackDepth) {
+    this(lx, width, height, readbackDepth, true);
+  }
+
+  /**
+   * @param width shader resolution width, and the initial canvas width
+   * @param height shader resolution height, and the initial canvas height
+   * @param fixedCanvas if true the canvas stays at width x height, otherwise it is resized to fit
+   *     the model whenever the model changes
+   */
+  public GLEngine(LX lx, int width, int height, int readbackDepth, boolean fixedCanvas) {
     current = this;
-    // The shape the user gives us affects the rendered aspect ratio,
-    // but what really matters is that it needs to have room for the
-    // largest number of points we're going to encounter during a run.
-    // TODO - adjust buffer size & shape dynamically as the model changes.
-    // TODO - this will require a lot of GPU memory management, so is
-    // TODO - a longer-term goal.
+    // The shape the user gives us sets the shader coordinate space and so the rendered aspect
+    // ratio. The canvas itself just needs room for every point in the model.
+    this.resolutionWidth = width;
+    this.resolutionHeight = height;
     this.width = width;
     this.height = height;
+    this.fixedCanvas = fixedCanvas;
+    this.checkCanvasSize = !fixedCanvas;
+    this.readbackDepth = readbackDepth;
 
     int maxPoints = this.width * this.height;
     TE.log(
@@ -426,7 +645,11 @@ public class GLEngine extends LXComponent implements LXLoopTask, LX.Listener {
             + this.height
             + " = "
             + maxPoints
-            + " total points");
+            + " total points, readback depth "
+            + this.readbackDepth
+            + (fixedCanvas ? "" : ", resized to fit the model"));
+
+    lx.addListener(this);
 
     // register glEngine so we can access it from patterns.
     // and add it as an engine task for audio analysis and buffer management
@@ -435,6 +658,10 @@ public class GLEngine extends LXComponent implements LXLoopTask, LX.Listener {
 
     // Child engines
     this.textureCache = new TextureManager(lx, this);
+    this.shaderCompiler = new ShaderCompiler(this);
+    this.programManager = new ProgramManager(this);
+    addChild(FrameProfiler.PATH, this.profiler = new FrameProfiler(lx));
+    this.paletteService = new PaletteService(lx);
     if (this.lx.engine.renderMode.gpu) {
       this.mixer = new GLMixer(lx, this);
     }
@@ -457,11 +684,21 @@ public class GLEngine extends LXComponent implements LXLoopTask, LX.Listener {
     // activate our context and do initialization tasks
     canvas.getContext().makeCurrent();
 
+    // use persistent-mapped per-frame buffers if the driver supports them
+    this.persistentBuffers = isBufferStorageSupported();
+    TE.log(
+        "GLEngine: "
+            + (this.persistentBuffers
+                ? "Using persistent-mapped per-frame buffers"
+                : "Buffer storage not supported, using buffer uploads"));
+
     // set up shared uniform blocks
     initializeUniformBlocks();
 
     // Initialize child engines
     this.textureCache.initialize(this.gl4);
+    this.programManager.initialize(this.gl4);
+    this.profiler.initialize(this.gl4);
     if (this.lx.engine.renderMode.gpu) {
       this.mixer.initialize(this.gl4);
     }
@@ -469,6 +706,9 @@ public class GLEngine extends LXComponent implements LXLoopTask, LX.Listener {
     // set up the per-frame audio info texture
     initializeAudioTexture();
 
+    // start building queued shader programs in the background
+    this.shaderCompiler.initialize();
+
     // Run on every frame. The first run will be before the first mixer loop.
     lx.engine.addLoopTask(this);
   }
@@ -503,21 +743,100 @@ public class GLEngine extends LXComponent implements LXLoopTask, LX.Listener {
   public void loop(double deltaMs) {
     // activate our context and do per-frame tasks
     canvas.getContext().makeCurrent();
+    this.profiler.beginFrame();
+    if (this.checkCanvasSize) {
+      this.checkCanvasSize = false;
+      resizeCanvas();
+    }
     updateAudioFrameData(deltaMs);
+    if (this.persistentBuffers) {
+      advanceFrameSlot();
+    }
     updateAudioTexture();
+    this.paletteService.update();
     updatePerFrameUniforms();
+    this.textureCache.uploadDecodedTextures();
 
     if (this.lx.engine.renderMode.gpu) {
       this.mixer.loop(deltaMs);
     }
   }
 
+  @Override
+  public void modelGenerationChanged(LX lx, LXModel model) {
+    if (!this.fixedCanvas) {
+      // Resize at the start of the next frame, before any shader runs
+      this.checkCanvasSize = true;
+    }
+  }
+
+  /**
+   * Smallest canvas that holds a number of points: a power-of-two width near the square root of the
+   * point count, and just enough rows (rounded up to a block) for the rest. Neither side exceeds
+   * MAX_CANVAS_SIZE, so a model too big for that canvas is reported by the texture manager.
+   */
+  static int[] canvasSizeFor(int points) {
+    int side = (int) Math.ceil(Math.sqrt(Math.max(1, points)));
+    int width = Math.max(MIN_CANVAS_WIDTH, Integer.highestOneBit(side));
+    if (width < side) {
+      width <<= 1;
+    }
+    width = Math.min(width, MAX_CANVAS_SIZE);
+    int rows = (int) ((points + (long) width - 1) / width);
+    int height =
+        Math.max(
+            CANVAS_ROW_BLOCK,
+            ((rows + CANVAS_ROW_BLOCK - 1) / CANVAS_ROW_BLOCK) * CANVAS_ROW_BLOCK);
+    return new int[] {width, Math.min(height, MAX_CANVAS_SIZE)};
+  }
+
+  /**
+   * Fit the canvas to the current model. Shared canvas-sized resources are rebuilt here; each
+   * shader reallocates its own FBOs and PBOs on its next run when it sees the new generation.
+   */
+  private void resizeCanvas() {
+    int[] size = canvasSizeFor(this.lx.getModel().size);
+    if (size[0] == this.width && size[1] == this.height) {
+      return;
+    }
+    TE.log(
+        "GLEngine: Resizing canvas from %dx%d to %dx%d for %d model points",
+        this.width, this.height, size[0], size[1], this.lx.getModel().size);
+    this.width = size[0];
+    this.height = size[1];
+    this.canvasGeneration++;
+
+    this.textureCache.onCanvasResized();
+    if (this.lx.engine.renderMode.gpu) {
+      this.mixer.onCanvasResized();
+    }
+  }
+
   @Override
   public void dispose() {
+    this.lx.removeListener(this);
+    this.profiler.disposeQueries();
+    this.programManager.dispose();
+    this.shaderCompiler.dispose();
     this.textureCache.dispose();
 
     // free GPU resources that we directly allocated
     if (GLContext.getCurrent() != null) {
+      if (this.persistentBuffers) {
+        for (int i = 0; i < FRAME_SLOTS; i++) {
+          if (this.frameSlotFences[i] != 0) {
+            gl4.glDeleteSync(this.frameSlotFences[i]);
+            this.frameSlotFences[i] = 0;
+          }
+        }
+        gl4.glBindBuffer(GL4.GL_UNIFORM_BUFFER, uniformBlockHandles[1]);
+        gl4.glUnmapBuffer(GL4.GL_UNIFORM_BUFFER);
+        gl4.glBindBuffer(GL4.GL_UNIFORM_BUFFER, 0);
+        gl4.glBindBuffer(GL4.GL_PIXEL_UNPACK_BUFFER, audioUnpackHandle[0]);
+        gl4.glUnmapBuffer(GL4.GL_PIXEL_UNPACK_BUFFER);
+        gl4.glBindBuffer(GL4.GL_PIXEL_UNPACK_BUFFER, 0);
+        gl4.glDeleteBuffers(audioUnpackHandle.length, audioUnpackHandle, 0);
+      }
       gl4.glDeleteTextures(audioTextureHandle.length, audioTextureHandle, 0);
       gl4.glDeleteBuffers(uniformBlockHandles.length, uniformBlockHandles, 0);
     }
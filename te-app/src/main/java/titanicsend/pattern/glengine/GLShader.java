@@ -34,6 +34,7 @@ import java.nio.ByteOrder;
 import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -91,9 +92,11 @@ public abstract class GLShader {
 
   protected ShaderProgram shaderProgram;
   protected final FragmentShader fragmentShader;
-  protected final int width;
-  protected final int height;
-  protected final int numPixels;
+  // Canvas size that the FBOs and PBOs were allocated for
+  protected int width;
+  protected int height;
+  protected int numPixels;
+  private int canvasGeneration;
 
   // Geometry buffers
   private final FloatBuffer vertexBuffer;
@@ -106,6 +109,8 @@ public abstract class GLShader {
   private final List<Uniform> mutableUniforms = new ArrayList<>();
   public final List<Uniform> uniforms = Collections.unmodifiableList(this.mutableUniforms);
   private final List<Uniform> erroredUniforms = new ArrayList<>();
+  // Indices into uniforms of values waiting to be sent to OpenGL
+  private final BitSet dirtyUniforms = new BitSet();
 
   // Map of uniform names to GL texture units
   protected final HashMap<String, Integer> uniformTextureUnits = new HashMap<>();
@@ -115,6 +120,14 @@ public abstract class GLShader {
 
   private boolean initialized = false;
 
+  // Program shared with every other shader built from the same source. It may be
+  // built in the background, until then the shader is initialized but not ready to render.
+  private final ProgramManager.SharedProgram sharedProgram;
+  private boolean programReady = false;
+
+  // Frame-time measurements, created on first run
+  private FrameProfiler.Section profilerSection = null;
+
   /** Tracks texture units within the context of this shader */
   private int nextTextureUnit = FIRST_UNRESERVED_TEXTURE_UNIT;
 
@@ -126,6 +139,7 @@ public abstract class GLShader {
     private final List<String> textureFilenames = new ArrayList<>();
     private final List<UniformSource> uniformSources = new ArrayList<>();
     private ByteBuffer legacyBackBuffer;
+    private boolean asyncCompile = false;
 
     public Config(LX lx) {
       this.lx = lx;
@@ -164,6 +178,15 @@ public abstract class GLShader {
       return this;
     }
 
+    /**
+     * Build the shader program in the background instead of on the engine thread at init(). The
+     * shader will not render until {@link GLShader#isReady()} returns true.
+     */
+    public Config withAsyncCompile(boolean asyncCompile) {
+      this.asyncCompile = asyncCompile;
+      return this;
+    }
+
     public String getShaderFilename() {
       return this.shaderFilename;
     }
@@ -179,6 +202,10 @@ public abstract class GLShader {
     public ByteBuffer getLegacyBackBuffer() {
       return this.legacyBackBuffer;
     }
+
+    public boolean isAsyncCompile() {
+      return this.asyncCompile;
+    }
   }
 
   /** Create a new set of constructor parameters for GLShader */
@@ -191,9 +218,7 @@ public abstract class GLShader {
   public GLShader(Config config) {
     this.lx = config.lx;
     this.glEngine = (GLEngine) lx.engine.getChild(GLEngine.PATH);
-    this.width = this.glEngine.getWidth();
-    this.height = this.glEngine.getHeight();
-    this.numPixels = this.width * this.height;
+    updateCanvasSize();
 
     // Fragment Shader
     if (LXUtils.isEmpty(config.getShaderFilename())) {
@@ -209,6 +234,15 @@ public abstract class GLShader {
     // Wonky... uniformSources added from child constructors need to go *before* configs
     this.configUniformSources = config.getUniformSources();
 
+    // Reference the shared program now. If it is compiled in the background
+    // it's likely ready by the time we're activated.
+    this.sharedProgram =
+        this.glEngine.programManager.acquire(
+            this.fragmentShader.getShaderName(),
+            useTEPreProcess(),
+            this.fragmentShader.getSourceHash(),
+            config.isAsyncCompile());
+
     // initialization that can be done before the OpenGL context is available
     this.vertexBuffer = Buffers.newDirectFloatBuffer(VERTICES.length);
     this.indexBuffer = Buffers.newDirectIntBuffer(INDICES.length);
@@ -290,13 +324,59 @@ public abstract class GLShader {
 
     // complete the initialization of the shader program
     this.canvas.getContext().makeCurrent();
-    initShaderProgram();
-    allocateShaderBuffers();
+    // We're needed now, move ahead of any programs that are only being warmed up
+    this.glEngine.programManager.prioritize(this.sharedProgram);
+    isReady();
+  }
+
+  /**
+   * True if the shader program is built and GPU buffers are allocated, so the shader can render.
+   * This picks up a program finished in the background, or builds a synchronous one, and completes
+   * initialization on the calling (engine) thread.
+   */
+  public boolean isReady() {
+    if (!this.programReady && this.initialized) {
+      this.canvas.getContext().makeCurrent();
+      ShaderProgram program = this.glEngine.programManager.getProgram(this.sharedProgram);
+      if (program != null) {
+        this.shaderProgram = program;
+        updateCanvasSize();
+        allocateShaderBuffers();
+        allocateCanvasBuffers();
+        this.programReady = true;
+      }
+    }
+    return this.programReady;
+  }
+
+  /** True if GPU resources have been allocated. Unlike isReady(), does not check for progress. */
+  protected boolean isProgramReady() {
+    return this.programReady;
+  }
+
+  private void updateCanvasSize() {
+    this.width = this.glEngine.getWidth();
+    this.height = this.glEngine.getHeight();
+    this.numPixels = this.width * this.height;
+    this.canvasGeneration = this.glEngine.getCanvasGeneration();
   }
 
-  private void initShaderProgram() {
-    this.shaderProgram =
-        new ShaderProgram(this.gl4, this.fragmentShader.getShaderName(), useTEPreProcess());
+  /**
+   * Allocate GPU buffers whose size depends on the canvas, such as FBOs and PBOs. Called after
+   * allocateShaderBuffers(), and again whenever GLEngine resizes the canvas.
+   */
+  protected void allocateCanvasBuffers() {}
+
+  /** Free the buffers created by allocateCanvasBuffers(). Called before a resize and on dispose. */
+  protected void disposeCanvasBuffers() {}
+
+  /** Reallocate canvas-sized buffers if GLEngine resized the canvas since they were created */
+  private void checkCanvasSize() {
+    if (this.canvasGeneration != this.glEngine.getCanvasGeneration()) {
+      disposeCanvasBuffers();
+      updateCanvasSize();
+      allocateCanvasBuffers();
+    }
   }
 
   /** Subclasses can override to suppress TE shader pre-processing */
@@ -345,7 +425,19 @@ public abstract class GLShader {
 
   public void run() {
     this.canvas.getContext().makeCurrent();
+    // Still compiling in the background, render nothing
+    if (!isReady()) {
+      return;
+    }
+    checkCanvasSize();
+    if (this.profilerSection == null) {
+      this.profilerSection =
+          this.glEngine.profiler.section(FrameProfiler.SHADER, this.fragmentShader.getShaderName());
+    }
+    this.glEngine.profiler.begin(this.profilerSection);
     useProgram();
+    // Another instance may have left its own values in the shared program
+    this.glEngine.programManager.use(this.sharedProgram, this, this.mutableUniforms);
     // Stage updates to uniforms
     setUniforms();
     // hand the complete uniform list to OpenGL
@@ -353,6 +445,7 @@ public abstract class GLShader {
     render();
     unbindTextures();
     activateDefaultTextureUnit();
+    this.glEngine.profiler.end(this.profilerSection);
   }
 
   /** Activate this shader for rendering in the current context */
@@ -366,16 +459,25 @@ public abstract class GLShader {
     }
   }
 
-  /** Pass all modified (and new) uniform values to OpenGL */
+  /**
+   * Pass all modified (and new) uniform values to OpenGL. Only uniforms flagged in the dirty set
+   * are visited, so unchanged uniforms cost nothing per frame.
+   */
   private void updateUniforms() {
-    for (Uniform uniform : this.uniforms) {
-      if (uniform.hasUpdate()) {
-        uniform.update();
-        // Log new errors
-        if (uniform.hasError() && !this.erroredUniforms.contains(uniform)) {
-          this.erroredUniforms.add(uniform);
-          LX.error("Shader '" + this.shaderProgram.name + "' uniform error: " + uniform.getError());
-        }
+    for (int i = this.dirtyUniforms.nextSetBit(0);
+        i >= 0;
+        i = this.dirtyUniforms.nextSetBit(i + 1)) {
+      Uniform uniform = this.mutableUniforms.get(i);
+      uniform.update();
+      this.glEngine.programManager.sent(this.sharedProgram, uniform);
+      // Some uniforms (e.g. samplers) re-send every frame and stay flagged
+      if (!uniform.hasUpdate()) {
+        this.dirtyUniforms.clear(i);
+      }
+      // Log new errors
+      if (uniform.hasError() && !this.erroredUniforms.contains(uniform)) {
+        this.erroredUniforms.add(uniform);
+        LX.error("Shader '" + this.shaderProgram.name + "' uniform error: " + uniform.getError());
       }
     }
   }
@@ -740,6 +842,7 @@ public abstract class GLShader {
         uniform = Uniform.create(this.gl4, name, location, type);
       }
       this.uniformMap.put(name, uniform);
+      uniform.setDirtySet(this.dirtyUniforms, this.mutableUniforms.size());
       this.mutableUniforms.add(uniform);
     }
     // else {
@@ -771,17 +874,22 @@ public abstract class GLShader {
   }
 
   public void dispose() {
+    // Program is deleted when no other shader is using it
+    this.glEngine.programManager.release(this.sharedProgram, this, this.mutableUniforms);
+
     // Release references to uniform objects
     this.uniformMap.clear();
     this.mutableUniforms.clear();
     this.erroredUniforms.clear();
+    this.dirtyUniforms.clear();
+
+    if (this.programReady) {
+      disposeCanvasBuffers();
 
-    if (this.initialized) {
       // delete GPU buffers we directly allocated
       this.gl4.glDeleteBuffers(2, geometryBufferHandles, 0);
       this.gl4.glDeleteVertexArrays(1, vaoHandles, 0);
-
-      this.shaderProgram.dispose();
+      this.shaderProgram = null;
     }
   }
 
@@ -943,41 +1051,51 @@ public abstract class GLShader {
       gl4.glBindBuffer(GL4.GL_PIXEL_PACK_BUFFER, 0);
     }
 
+    // Band of canvas rows captured by the most recent read into this PBO
+    private int readFirstRow = 0;
+    private int readRowCount = height;
+
     /** Async read from framebuffer to PBO */
     public void startRead() {
-      bind();
-      gl4.glReadPixels(0, 0, width, height, this.pixelFormat, this.pixelType, 0);
+      startRead(0, height);
     }
 
-    /** Get data from PBO (may block if transfer not complete) */
-    public ByteBuffer getData() {
+    /**
+     * Async read of a horizontal band of rows from the framebuffer into the start of the PBO. Used
+     * for sparse readback, where only the rows holding model points need to come back to the CPU.
+     *
+     * @param firstRow First canvas row to read
+     * @param rowCount Number of rows to read
+     */
+    public void startRead(int firstRow, int rowCount) {
       bind();
-      ByteBuffer buffer = gl4.glMapBuffer(GL4.GL_PIXEL_PACK_BUFFER, GL4.GL_READ_ONLY);
+      this.readFirstRow = firstRow;
+      this.readRowCount = rowCount;
+      gl4.glReadPixels(0, firstRow, width, rowCount, this.pixelFormat, this.pixelType, 0);
+    }
 
-      if (buffer != null) {
-        gl4.glUnmapBuffer(GL4.GL_PIXEL_PACK_BUFFER);
-      }
-      unbind();
-      return buffer;
+    /** Canvas pixel offset of the data captured by the most recent read */
+    public int getReadOffsetPixels() {
+      return this.readFirstRow * width;
     }
 
-    /** Get sub-range of the data from PBO (may block if transfer not complete) */
-    public ByteBuffer getDataRange(int offsetPixels, int capacityPixels) {
+    /**
+     * Map only the rows captured by the most recent read. Leaves the PBO bound and mapped, caller
+     * must call unmap() when finished with the buffer. (May block if transfer not complete)
+     */
+    public ByteBuffer mapReadRange() {
       bind();
+      return gl4.glMapBufferRange(
+          GL4.GL_PIXEL_PACK_BUFFER,
+          0,
+          (long) this.readRowCount * width * this.bytesPerPixel,
+          GL4.GL_MAP_READ_BIT);
+    }
 
-      int pixels = LXUtils.min(capacityPixels, numPixels - offsetPixels);
-      ByteBuffer buffer =
-          gl4.glMapBufferRange(
-              GL4.GL_PIXEL_PACK_BUFFER,
-              (long) offsetPixels * this.bytesPerPixel,
-              (long) pixels * this.bytesPerPixel,
-              GL4.GL_MAP_READ_BIT);
-
-      if (buffer != null) {
-        gl4.glUnmapBuffer(GL4.GL_PIXEL_PACK_BUFFER);
-      }
+    /** Unmap a PBO that was mapped for reading */
+    public void unmap() {
+      gl4.glUnmapBuffer(GL4.GL_PIXEL_PACK_BUFFER);
       unbind();
-      return buffer;
     }
 
     /** Upload data to texture using PBO */
@@ -1029,98 +1147,109 @@ public abstract class GLShader {
     }
   }
 
-  protected class PingPongPBO {
-    // PBO currently being rendered to
-    public PBO render = new PBO();
-
-    // Older PBO available for reading
-    public PBO copy = new PBO();
-
-    public PingPongPBO() {}
-
-    public void swap() {
-      PBO temp = this.render;
-      this.render = copy;
-      this.copy = temp;
-    }
-
-    public void dispose() {
-      this.render.dispose();
-      this.copy.dispose();
-    }
-  }
-
-  protected class TripleFBO {
-    private final FBO[] fbo = new FBO[3];
-    private int a = 0;
-    private int b = 1;
-    private int c = 2;
-
-    public TripleFBO() {
-      for (int i = 0; i < fbo.length; i++) {
-        fbo[i] = new FBO();
+  /**
+   * Ring of Pixel Pack Buffers for asynchronous readback. Every read is followed by a fence, and
+   * only buffers whose fence has already signaled are handed back for mapping, so the engine thread
+   * never waits on the GPU. When no read has completed yet the caller should keep using its last
+   * completed frame. Latency is bounded by the ring size.
+   */
+  protected class PBORing {
+    private static final long NO_FENCE = 0;
+
+    private final PBO[] pbos;
+    // Fence inserted after each slot's most recent read, NO_FENCE once collected
+    private final long[] fences;
+    // Frame number on which each slot was read
+    private final long[] readFrames;
+
+    private int next = 0;
+    private long frameCount = 0;
+    private int latencyFrames = 0;
+
+    public PBORing(int size) {
+      if (size < 2) {
+        throw new IllegalArgumentException("PBO ring size must be at least 2, got " + size);
+      }
+      this.pbos = new PBO[size];
+      this.fences = new long[size];
+      this.readFrames = new long[size];
+      for (int i = 0; i < size; i++) {
+        this.pbos[i] = new PBO();
       }
     }
 
-    public FBO a() {
-      return fbo[a];
+    public int size() {
+      return this.pbos.length;
     }
 
-    public FBO b() {
-      return fbo[b];
+    /** Start an async read of the entire framebuffer into the next PBO in the ring */
+    public void startRead() {
+      startRead(0, height);
     }
 
-    public FBO c() {
-      return fbo[c];
-    }
+    /** Start an async read of a band of framebuffer rows into the next PBO in the ring */
+    public void startRead(int firstRow, int rowCount) {
+      // If this slot was never collected the GPU is more than a full ring behind. Drop it.
+      deleteFence(this.next);
 
-    public void swap() {
-      int temp = a;
-      a = c;
-      c = b;
-      b = temp;
+      this.pbos[this.next].startRead(firstRow, rowCount);
+      this.fences[this.next] = gl4.glFenceSync(GL4.GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
+      this.readFrames[this.next] = this.frameCount++;
+      this.next = (this.next + 1) % this.pbos.length;
+      gl4.glBindBuffer(GL4.GL_PIXEL_PACK_BUFFER, 0);
     }
 
-    public void dispose() {
-      for (FBO p : fbo) {
-        p.dispose();
+    /**
+     * Collect reads that have finished on the GPU, without blocking.
+     *
+     * @return The PBO holding the newest completed read, or null if no read has completed since the
+     *     last call. Older completed reads are discarded.
+     */
+    public PBO pollCompleted() {
+      PBO newest = null;
+      long newestFrame = -1;
+      for (int i = 0; i < this.pbos.length; i++) {
+        if (this.fences[i] == NO_FENCE) {
+          continue;
+        }
+        // Zero timeout: just query the fence. Flush so pending fences reach the GPU.
+        int status = gl4.glClientWaitSync(this.fences[i], GL4.GL_SYNC_FLUSH_COMMANDS_BIT, 0);
+        if (status == GL4.GL_ALREADY_SIGNALED || status == GL4.GL_CONDITION_SATISFIED) {
+          deleteFence(i);
+          if (this.readFrames[i] > newestFrame) {
+            newestFrame = this.readFrames[i];
+            newest = this.pbos[i];
+          }
+        }
       }
-    }
-  }
-
-  protected class TriplePBO {
-    private final PBO[] pbo = new PBO[3];
-    private int a = 0;
-    private int b = 1;
-    private int c = 2;
-
-    public TriplePBO() {
-      for (int i = 0; i < pbo.length; i++) {
-        pbo[i] = new PBO();
+      if (newest != null) {
+        this.latencyFrames = (int) (this.frameCount - 1 - newestFrame);
       }
+      return newest;
     }
 
-    public PBO a() {
-      return pbo[a];
+    /** Age in frames of the most recently collected read */
+    public int getLatencyFrames() {
+      return this.latencyFrames;
     }
 
-    public PBO b() {
-      return pbo[b];
-    }
-
-    public PBO c() {
-      return pbo[c];
+    /** Discard all pending reads */
+    public void reset() {
+      for (int i = 0; i < this.pbos.length; i++) {
+        deleteFence(i);
+      }
     }
 
-    public void swap() {
-      int temp = a;
-      a = c;
-      c = b;
-      b = temp;
+    private void deleteFence(int slot) {
+      if (this.fences[slot] != NO_FENCE) {
+        gl4.glDeleteSync(this.fences[slot]);
+        this.fences[slot] = NO_FENCE;
+      }
     }
 
     public void dispose() {
-      for (PBO p : pbo) {
+      reset();
+      for (PBO p : this.pbos) {
         p.dispose();
       }
     }
@@ -67,7 +67,8 @@ public class GLShaderEffect extends TEEffect implements GpuDevice {
   }
 
   protected TEShader addShader(GLShader.Config config) {
-    TEShader shader = new TEShader(config.withUniformSource(this.uniformSource));
+    TEShader shader =
+        new TEShader(config.withUniformSource(this.uniformSource).withAsyncCompile(true));
     this.mutableShaders.add(shader);
     return shader;
   }
@@ -101,6 +102,7 @@ public class GLShaderEffect extends TEEffect implements GpuDevice {
   private GL4 gl4;
   private boolean cpuTextureInitialized = false;
   private int cpuDstTexture = -1;
+  private int cpuTextureGeneration;
   private ByteBuffer cpuByteBuffer;
 
   private void initializeCpuTexture() {
@@ -108,6 +110,7 @@ public class GLShaderEffect extends TEEffect implements GpuDevice {
 
     int width = GLEngine.current.getWidth();
     int height = GLEngine.current.getHeight();
+    this.cpuTextureGeneration = GLEngine.current.getCanvasGeneration();
 
     this.cpuByteBuffer =
         ByteBuffer.allocateDirect(width * height * 4).order(ByteOrder.nativeOrder());
@@ -138,6 +141,13 @@ public class GLShaderEffect extends TEEffect implements GpuDevice {
       return;
     }
 
+    // Pass the input through untouched until every shader has been built
+    for (TEShader shader : this.shaders) {
+      if (!shader.isReady()) {
+        return;
+      }
+    }
+
     iTime.tick();
 
     // In CPU mode, use dedicated input texture
@@ -147,6 +157,10 @@ public class GLShaderEffect extends TEEffect implements GpuDevice {
         this.cpuTextureInitialized = true;
         initializeCpuTexture();
         onEnable();
+      } else if (this.cpuTextureGeneration != GLEngine.current.getCanvasGeneration()) {
+        // Canvas was resized, reallocate the input texture
+        this.gl4.glDeleteTextures(1, new int[] {this.cpuDstTexture}, 0);
+        initializeCpuTexture();
       }
 
       // Load colors[] into texture
@@ -203,10 +217,14 @@ public class GLShaderEffect extends TEEffect implements GpuDevice {
   /**
    * Retrieve the render(output) texture handle for the effect.
    *
-   * @return The output texture handle of the last shader, or NO_TEXTURE if no shaders exist
+   * @return The output texture handle of the last shader, the input texture if the shaders are
+   *     still being built, or NO_TEXTURE if no shaders exist
    */
   public int getRenderTexture() {
     if (!this.shaders.isEmpty()) {
+      if (!this.shaders.getLast().isProgramReady()) {
+        return this.iDst;
+      }
       return this.shaders.getLast().getRenderTexture();
     } else {
       return NO_TEXTURE;
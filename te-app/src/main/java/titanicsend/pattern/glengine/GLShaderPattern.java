@@ -4,11 +4,14 @@ import heronarts.lx.GpuDevice;
 import heronarts.lx.LX;
 import heronarts.lx.color.LXColor;
 import heronarts.lx.model.LXModel;
+import heronarts.lx.parameter.BooleanParameter;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import titanicsend.color.TEColorParameter;
 import titanicsend.pattern.TEPerformancePattern;
+import titanicsend.pattern.glengine.mixer.GLMixer;
+import titanicsend.pattern.glengine.mixer.RenderWhenHidden;
 import titanicsend.pattern.yoffa.framework.TEShaderView;
 import titanicsend.pattern.yoffa.shader_engine.Uniform;
 
@@ -26,6 +29,17 @@ public class GLShaderPattern extends TEPerformancePattern implements GpuDevice {
 
   private boolean modelChanged = true;
 
+  /**
+   * CPU render mode only. When enabled, the final shader reads back just this pattern's model
+   * points instead of the entire canvas, either as the band of canvas rows that holds them or, for
+   * views spread across the canvas, packed together by a gather pass. On by default for patterns
+   * that default to the edges view.
+   */
+  public final BooleanParameter sparseReadback;
+
+  // Frame-time measurements for all instances of this pattern class, created on first run
+  private FrameProfiler.Section profilerSection = null;
+
   private static class TEUniforms {
     private Uniform.Float1 iTime;
     private Uniform.Float3 iColorRGB;
@@ -56,10 +70,16 @@ public class GLShaderPattern extends TEPerformancePattern implements GpuDevice {
 
   public GLShaderPattern(LX lx, TEShaderView view) {
     super(lx, view);
+    this.sparseReadback =
+        new BooleanParameter("Sparse Readback", view == TEShaderView.ALL_EDGES)
+            .setMappable(false)
+            .setDescription("CPU render mode: read back only this pattern's points from the GPU");
+    addParameter("sparseReadback", this.sparseReadback);
   }
 
   protected TEShader addShader(GLShader.Config config) {
-    TEShader shader = new TEShader(config.withUniformSource(this::setUniforms));
+    TEShader shader =
+        new TEShader(config.withUniformSource(this::setUniforms).withAsyncCompile(true));
     this.mutableShaders.add(shader);
     return shader;
   }
@@ -68,6 +88,23 @@ public class GLShaderPattern extends TEPerformancePattern implements GpuDevice {
     return addShader(GLShader.config(lx).withFilename(shaderFilename));
   }
 
+  /** Time spent by the most recent frame reading shader output back to the CPU */
+  public long getReadbackNanos() {
+    long nanos = 0;
+    for (TEShader shader : this.shaders) {
+      nanos += shader.profiler.readbackNanos;
+    }
+    return nanos;
+  }
+
+  /** Age in frames of the output most recently read back to the CPU */
+  public int getReadbackLatencyFrames() {
+    if (this.shaders.isEmpty()) {
+      return 0;
+    }
+    return this.shaders.getLast().profiler.readbackLatencyFrames;
+  }
+
   @Override
   protected void onModelChanged(LXModel model) {
     super.onModelChanged(model);
@@ -81,6 +118,17 @@ public class GLShaderPattern extends TEPerformancePattern implements GpuDevice {
       return;
     }
 
+    // Render nothing until every shader in the chain has been built
+    if (!isReady()) {
+      setColors(LXColor.CLEAR);
+      return;
+    }
+
+    // GPU mixer: skip rendering while this pattern's channel can't be seen
+    if (isHidden()) {
+      return;
+    }
+
     // Update the model coords texture only when changed (and the first run)
     if (this.modelChanged) {
       this.modelChanged = false;
@@ -96,13 +144,38 @@ public class GLShaderPattern extends TEPerformancePattern implements GpuDevice {
     }
     // Set the CPU buffer for the last shader, if using CPU mixer
     this.shaders.getLast().setCpuBuffer(this.lx.engine.renderMode.cpu ? this.colors : null);
+    this.shaders.getLast().setSparseReadback(this.sparseReadback.isOn());
 
     // Run the chain of shaders,
     // mapping the output texture of each to the next shader's input texture
+    FrameProfiler profiler = GLEngine.current.profiler;
+    if (this.profilerSection == null) {
+      this.profilerSection = profiler.section(FrameProfiler.PATTERN, getClass().getSimpleName());
+    }
+    profiler.begin(this.profilerSection);
     for (TEShader shader : this.shaders) {
       // TODO: map output of each shader to the next shader's input
       shader.run();
     }
+    profiler.end(this.profilerSection);
+  }
+
+  private boolean isHidden() {
+    if (this instanceof RenderWhenHidden) {
+      return false;
+    }
+    GLMixer mixer = GLEngine.current.getMixer();
+    return mixer != null && getChannel() != null && mixer.isHidden(getChannel());
+  }
+
+  /** True if all shaders have been built and can render */
+  public boolean isReady() {
+    for (TEShader shader : this.shaders) {
+      if (!shader.isReady()) {
+        return false;
+      }
+    }
+    return true;
   }
 
   private void initializeUniforms(GLShader s) {
@@ -175,10 +248,11 @@ public class GLShaderPattern extends TEPerformancePattern implements GpuDevice {
   /**
    * Retrieve the render(output) texture handle for the pattern.
    *
-   * @return The output texture handle of the last shader, or NO_TEXTURE if no shaders exist
+   * @return The output texture handle of the last shader, or NO_TEXTURE if no shaders exist or they
+   *     are still being built
    */
   public int getRenderTexture() {
-    if (!this.shaders.isEmpty()) {
+    if (!this.shaders.isEmpty() && this.shaders.getLast().isProgramReady()) {
       return this.shaders.getLast().getRenderTexture();
     } else {
       return NO_TEXTURE;
@@ -0,0 +1,107 @@
+package titanicsend.pattern.glengine;
+
+import heronarts.lx.LX;
+import titanicsend.pattern.yoffa.shader_engine.Uniform;
+
+/**
+ * CPU mode readback helper for a {@link TEShader}. Copies just the current view's points, in view
+ * order, from a rendered frame to the start of this shader's framebuffer, so a view whose points
+ * are scattered across the canvas can be read back in a few packed rows.
+ *
+ * <p>The owner reads the packed rows while this shader's framebuffer is still bound, then scatters
+ * them to the view's point indices on the CPU.
+ */
+public class PointGatherShader extends GLShader implements GLShader.UniformSource {
+
+  // Framebuffer object (FBO) for rendering
+  private FBO fbo;
+
+  // Input texture handles
+  private int iSrc = -1;
+  private int iGather = -1;
+
+  // Number of canvas rows holding packed points
+  private int rows = 0;
+
+  private static class GatherUniforms {
+    private Uniform.Sampler2D iSrc;
+    private Uniform.Sampler2D iGather;
+  }
+
+  private final GatherUniforms uniforms = new GatherUniforms();
+  private boolean initializedUniforms = false;
+
+  public PointGatherShader(LX lx) {
+    super(config(lx).withFilename("point_gather.fs"));
+
+    addUniformSource(this);
+  }
+
+  @Override
+  protected boolean useTEPreProcess() {
+    return false;
+  }
+
+  @Override
+  protected void allocateCanvasBuffers() {
+    // FBO (framebuffer and texture) for rendering
+    this.fbo = new FBO();
+  }
+
+  @Override
+  protected void disposeCanvasBuffers() {
+    this.fbo.dispose();
+  }
+
+  /**
+   * Set up the next gather.
+   *
+   * @param iSrc Rendered frame texture
+   * @param iGather Gather map texture of the view, from {@link TextureManager#getGatherMapTexture}
+   * @param rows Number of rows of packed points, from {@link TextureManager.RowRange#packedRows}
+   */
+  public void setGather(int iSrc, int iGather, int rows) {
+    this.iSrc = iSrc;
+    this.iGather = iGather;
+    this.rows = rows;
+  }
+
+  private void initializeUniforms() {
+    this.uniforms.iSrc = getUniformSampler2D("iSrc");
+    this.uniforms.iGather = getUniformSampler2D("iGather");
+  }
+
+  @Override
+  public void setUniforms(GLShader s) {
+    // Use Uniform objects to track locations and values
+    if (!initializedUniforms) {
+      this.initializedUniforms = true;
+      initializeUniforms();
+    }
+
+    // Stage uniform values for updating
+    this.uniforms.iSrc.setValue(this.iSrc);
+    this.uniforms.iGather.setValue(this.iGather);
+  }
+
+  @Override
+  protected void render() {
+    // Bind vertex array object
+    bindVAO();
+
+    // Bind framebuffer object (FBO), then limit rendering to the packed rows
+    this.fbo.bind();
+    this.gl4.glViewport(0, 0, this.width, this.rows);
+
+    // Render frame
+    drawElements();
+
+    // Leave the FBO bound, the caller reads the packed rows from it next.
+  }
+
+  @Override
+  public void unbindTextures() {
+    this.uniforms.iSrc.unbind();
+    this.uniforms.iGather.unbind();
+  }
+}
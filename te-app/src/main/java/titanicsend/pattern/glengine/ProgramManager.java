@@ -0,0 +1,192 @@
+package titanicsend.pattern.glengine;
+
+import com.jogamp.opengl.GL4;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import titanicsend.pattern.yoffa.shader_engine.ShaderProgram;
+import titanicsend.pattern.yoffa.shader_engine.Uniform;
+
+/**
+ * Reference-counted registry of shader programs, shared by every shader instance built from the
+ * same preprocessed source. Stacking one look on several channels, or loading several presets of
+ * the same pattern, then compiles and stores a single GL program. Each instance keeps its own
+ * uniform values, buffers and textures.
+ *
+ * <p>Uniform values live in the program object, so each program remembers which uniform was last
+ * sent to each location. When another instance used the program since one last ran, {@link
+ * #use(SharedProgram, Object, List)} re-sends only the values the two instances disagree on.
+ */
+public class ProgramManager {
+
+  /** A program shared by all shader instances with the same source */
+  public static class SharedProgram {
+    public final String key;
+    private final String shaderName;
+    private final boolean tePreProcess;
+
+    private ShaderCompiler.Request request = null;
+    private ShaderProgram program = null;
+    private int refCount = 1;
+    private Object lastUser = null;
+    // Per uniform location, the uniform whose value the program currently holds
+    private Uniform[] sent = new Uniform[0];
+
+    private SharedProgram(String key, String shaderName, boolean tePreProcess) {
+      this.key = key;
+      this.shaderName = shaderName;
+      this.tePreProcess = tePreProcess;
+    }
+  }
+
+  private final GLEngine glEngine;
+  private GL4 gl4;
+
+  private final Map<String, SharedProgram> programs = new HashMap<>();
+
+  public ProgramManager(GLEngine glEngine) {
+    this.glEngine = glEngine;
+  }
+
+  public void initialize(GL4 gl4) {
+    this.gl4 = gl4;
+  }
+
+  /**
+   * Get a reference to the program for a shader, creating an entry if this is the first instance
+   * with this source. Doesn't need a GL context. If asyncCompile is set, a new program starts
+   * building in the background right away, otherwise it is built on first use.
+   *
+   * @param sourceHash hash of the preprocessed fragment shader source
+   */
+  public synchronized SharedProgram acquire(
+      String shaderName, boolean tePreProcess, String sourceHash, boolean asyncCompile) {
+    String key = (tePreProcess ? "te:" : "raw:") + sourceHash;
+    SharedProgram shared = this.programs.get(key);
+    if (shared != null) {
+      shared.refCount++;
+      // A shared synchronous build can still move to the background for this caller
+      if (asyncCompile && shared.program == null && shared.request == null) {
+        shared.request = this.glEngine.shaderCompiler.request(shaderName, tePreProcess);
+      }
+    } else {
+      shared = new SharedProgram(key, shaderName, tePreProcess);
+      if (asyncCompile) {
+        shared.request = this.glEngine.shaderCompiler.request(shaderName, tePreProcess);
+      }
+      this.programs.put(key, shared);
+    }
+    return shared;
+  }
+
+  /** Move a background build ahead of programs that are only being warmed up */
+  public synchronized void prioritize(SharedProgram shared) {
+    if (shared.request != null) {
+      this.glEngine.shaderCompiler.prioritize(shared.request);
+    }
+  }
+
+  /**
+   * Get the built program, or null if it is still being built in the background. Call on the engine
+   * thread with the GLEngine context current. Programs without a background build, or whose
+   * background build failed, are built here so errors are reported as usual.
+   */
+  public synchronized ShaderProgram getProgram(SharedProgram shared) {
+    if (shared.program == null) {
+      if (shared.request != null) {
+        if (!shared.request.isDone()) {
+          return null;
+        }
+        if (shared.request.getState() == ShaderCompiler.State.READY) {
+          shared.program =
+              new ShaderProgram(this.gl4, shared.shaderName, shared.request.getProgramId());
+        }
+        shared.request = null;
+      }
+      if (shared.program == null) {
+        shared.program = new ShaderProgram(this.gl4, shared.shaderName, shared.tePreProcess);
+      }
+    }
+    return shared.program;
+  }
+
+  /**
+   * Note that a shader instance is about to render with the program. If another instance used it
+   * since this one, flag for update each of this instance's uniforms whose value the program
+   * doesn't hold. Values both instances agree on, like time and audio, are left alone. Engine
+   * thread only.
+   */
+  public void use(SharedProgram shared, Object user, List<Uniform> uniforms) {
+    if (shared.lastUser == user) {
+      return;
+    }
+    shared.lastUser = user;
+    for (Uniform uniform : uniforms) {
+      if (uniform.hasLocation) {
+        int location = uniform.location;
+        Uniform current = location < shared.sent.length ? shared.sent[location] : null;
+        if (uniform.matches(current)) {
+          shared.sent[location] = uniform;
+        } else {
+          uniform.markModified();
+        }
+      }
+    }
+  }
+
+  /** Record that a uniform's value was sent to the program. Engine thread only. */
+  public void sent(SharedProgram shared, Uniform uniform) {
+    int location = uniform.location;
+    if (location >= shared.sent.length) {
+      shared.sent = Arrays.copyOf(shared.sent, Math.max(location + 1, shared.sent.length * 2));
+    }
+    shared.sent[location] = uniform;
+  }
+
+  /** Release a reference. The program is deleted when its last user releases it. */
+  public synchronized void release(SharedProgram shared, Object user, List<Uniform> uniforms) {
+    if (shared.lastUser == user) {
+      shared.lastUser = null;
+    }
+    // The program keeps the values, but nothing can vouch for them once their uniforms are gone
+    for (Uniform uniform : uniforms) {
+      if (uniform.hasLocation
+          && uniform.location < shared.sent.length
+          && shared.sent[uniform.location] == uniform) {
+        shared.sent[uniform.location] = null;
+      }
+    }
+    shared.refCount--;
+    if (shared.refCount <= 0) {
+      if (shared.request != null) {
+        this.glEngine.shaderCompiler.cancel(shared.request, this.gl4);
+        shared.request = null;
+      }
+      if (shared.program != null) {
+        shared.program.dispose();
+        shared.program = null;
+      }
+      this.programs.remove(shared.key);
+    }
+  }
+
+  /** Number of distinct programs currently in use */
+  public synchronized int size() {
+    return this.programs.size();
+  }
+
+  public synchronized void dispose() {
+    for (SharedProgram shared : this.programs.values()) {
+      if (shared.request != null) {
+        this.glEngine.shaderCompiler.cancel(shared.request, this.gl4);
+        shared.request = null;
+      }
+      if (shared.program != null) {
+        shared.program.dispose();
+        shared.program = null;
+      }
+    }
+    this.programs.clear();
+  }
+}
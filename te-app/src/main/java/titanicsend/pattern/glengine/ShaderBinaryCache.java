@@ -0,0 +1,217 @@
+package titanicsend.pattern.glengine;
+
+import com.jogamp.opengl.GL4;
+import com.jogamp.opengl.GLException;
+import com.jogamp.opengl.util.GLBuffers;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.concurrent.atomic.AtomicInteger;
+import titanicsend.pattern.yoffa.shader_engine.ShaderUtils;
+import titanicsend.util.TE;
+
+/**
+ * Cache of linked program binaries, stored in resources/shaders/cache. Entries are keyed by a hash
+ * of the GL driver (vendor, renderer and version strings) and the complete vertex and fragment
+ * sources, so a driver update or a change to any shader, include or template invalidates them.
+ *
+ * <p>Some platforms (notably macOS since Sonoma) report no program binary formats. There the cache
+ * is skipped entirely and every program is compiled from source.
+ */
+public class ShaderBinaryCache {
+
+  // Bump this when the entry format changes
+  private static final int VERSION = 1;
+  private static final int MAGIC = 0x54455342; // "TESB"
+  private static final String EXTENSION = ".bin";
+
+  // Capability probe and driver fingerprint are the same for every context in the process
+  private static volatile Boolean supported = null;
+  private static volatile String driverFingerprint = null;
+
+  private static final AtomicInteger hits = new AtomicInteger();
+  private static final AtomicInteger misses = new AtomicInteger();
+  private static final AtomicInteger rejected = new AtomicInteger();
+
+  public static int getHits() {
+    return hits.get();
+  }
+
+  public static int getMisses() {
+    return misses.get();
+  }
+
+  /** Number of cache entries the driver refused to load, e.g. after a driver update */
+  public static int getRejected() {
+    return rejected.get();
+  }
+
+  /** True if the driver can save and restore program binaries */
+  public static boolean isSupported(GL4 gl4) {
+    if (supported == null) {
+      boolean result = false;
+      if (gl4.isFunctionAvailable("glProgramBinary")
+          && gl4.isFunctionAvailable("glGetProgramBinary")) {
+        int[] fmtCount = new int[1];
+        gl4.glGetIntegerv(GL4.GL_NUM_PROGRAM_BINARY_FORMATS, fmtCount, 0);
+        result = fmtCount[0] > 0;
+      }
+      supported = result;
+      TE.log(
+          "Shader binary cache "
+              + (result ? "enabled" : "not supported by driver, compiling from source"));
+    }
+    return supported;
+  }
+
+  private static String getDriverFingerprint(GL4 gl4) {
+    if (driverFingerprint == null) {
+      driverFingerprint =
+          gl4.glGetString(GL4.GL_VENDOR)
+              + "\n"
+              + gl4.glGetString(GL4.GL_RENDERER)
+              + "\n"
+              + gl4.glGetString(GL4.GL_VERSION);
+    }
+    return driverFingerprint;
+  }
+
+  /**
+   * Key for a program built from the given sources on this driver, or null if the cache is not
+   * supported.
+   */
+  public static String computeKey(GL4 gl4, String vertexSource, String fragmentSource) {
+    if (!isSupported(gl4)) {
+      return null;
+    }
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      digest.update(Integer.toString(VERSION).getBytes(StandardCharsets.UTF_8));
+      digest.update(getDriverFingerprint(gl4).getBytes(StandardCharsets.UTF_8));
+      digest.update(vertexSource.getBytes(StandardCharsets.UTF_8));
+      digest.update(fragmentSource.getBytes(StandardCharsets.UTF_8));
+      return HexFormat.of().formatHex(digest.digest());
+    } catch (NoSuchAlgorithmException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Try to load a cached binary into the given program. Returns true if the program is linked and
+   * ready to use. Stale entries are ignored, and entries the driver rejects are deleted.
+   */
+  public static boolean load(GL4 gl4, int programId, String shaderName, String key) {
+    // Account for shadertoy shaders pulled in via URL
+    if (shaderName == null || key == null) {
+      return false;
+    }
+
+    File cacheFile = getCacheFile(shaderName);
+    if (!cacheFile.exists()) {
+      misses.incrementAndGet();
+      return false;
+    }
+
+    int format;
+    ByteBuffer binary;
+    try {
+      DataInputStream in =
+          new DataInputStream(new ByteArrayInputStream(Files.readAllBytes(cacheFile.toPath())));
+      if (in.readInt() != MAGIC || in.readInt() != VERSION || !key.equals(in.readUTF())) {
+        // Built from other sources or by another driver, will be replaced on save
+        misses.incrementAndGet();
+        return false;
+      }
+      format = in.readInt();
+      byte[] bytes = new byte[in.readInt()];
+      in.readFully(bytes);
+      binary = GLBuffers.newDirectByteBuffer(bytes.length);
+      binary.put(bytes).rewind();
+    } catch (IOException e) {
+      return reject(cacheFile, shaderName);
+    }
+
+    try {
+      gl4.glProgramBinary(programId, format, binary, binary.capacity());
+    } catch (GLException e) {
+      return reject(cacheFile, shaderName);
+    }
+
+    // The driver is free to refuse any binary, in which case the program is left unlinked
+    int[] status = new int[1];
+    gl4.glGetProgramiv(programId, GL4.GL_LINK_STATUS, status, 0);
+    if (status[0] != GL4.GL_TRUE) {
+      return reject(cacheFile, shaderName);
+    }
+
+    hits.incrementAndGet();
+    return true;
+  }
+
+  private static boolean reject(File cacheFile, String shaderName) {
+    TE.warning("Shader cache binary for %s is invalid, rebuilding", shaderName);
+    rejected.incrementAndGet();
+    misses.incrementAndGet();
+    cacheFile.delete();
+    return false;
+  }
+
+  /** Call before linking a program that will be saved, so the driver keeps a retrievable binary. */
+  public static void prepareForSave(GL4 gl4, int programId, String key) {
+    if (key != null) {
+      gl4.glProgramParameteri(programId, GL4.GL_PROGRAM_BINARY_RETRIEVABLE_HINT, GL4.GL_TRUE);
+    }
+  }
+
+  /** Save the binary of a linked program to the cache */
+  public static void save(GL4 gl4, int programId, String shaderName, String key) {
+    // Account for shadertoy shaders pulled in via URL
+    if (shaderName == null || key == null) {
+      return;
+    }
+
+    int[] len = new int[1];
+    gl4.glGetProgramiv(programId, GL4.GL_PROGRAM_BINARY_LENGTH, len, 0);
+    if (len[0] < 1) {
+      return;
+    }
+
+    // Get the binary and the format it was written in
+    ByteBuffer binary = GLBuffers.newDirectByteBuffer(len[0]);
+    int[] format = new int[1];
+    gl4.glGetProgramBinary(programId, len[0], len, 0, format, 0, binary);
+    byte[] bytes = new byte[len[0]];
+    binary.get(bytes);
+
+    try {
+      ByteArrayOutputStream entry = new ByteArrayOutputStream(bytes.length + 128);
+      DataOutputStream out = new DataOutputStream(entry);
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeUTF(key);
+      out.writeInt(format[0]);
+      out.writeInt(bytes.length);
+      out.write(bytes);
+      out.flush();
+      ShaderSourceCache.writeEntry(getCacheFile(shaderName), entry.toByteArray());
+    } catch (IOException e) {
+      TE.warning("Could not save shader binary for %s: %s", shaderName, e.getMessage());
+    }
+  }
+
+  private static File getCacheFile(String shaderName) {
+    // strip the incoming path down to just the filename
+    String name = shaderName.substring(shaderName.lastIndexOf('/') + 1);
+    int dot = name.lastIndexOf('.');
+    return new File(ShaderUtils.CACHE_PATH + (dot > 0 ? name.substring(0, dot) : name) + EXTENSION);
+  }
+}
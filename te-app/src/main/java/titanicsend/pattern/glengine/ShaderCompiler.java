@@ -0,0 +1,190 @@
+package titanicsend.pattern.glengine;
+
+import com.jogamp.opengl.GL4;
+import com.jogamp.opengl.GLAutoDrawable;
+import com.jogamp.opengl.GLContext;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.LinkedBlockingDeque;
+import titanicsend.pattern.yoffa.shader_engine.ShaderProgram;
+import titanicsend.pattern.yoffa.shader_engine.ShaderUtils;
+import titanicsend.util.TE;
+
+/**
+ * Compiles and links shader programs on a background thread, so that adding or activating a shader
+ * pattern never stalls the engine thread. The worker owns an offscreen GL context that shares
+ * objects with the GLEngine context, so finished program ids can be used directly by the engine.
+ *
+ * <p>Shaders request their program when they are constructed. Since opening a project constructs
+ * all of its patterns, this warms programs for the whole project at load time, and most are ready
+ * long before they're activated. A shader that is activated while its program is still queued is
+ * moved to the front of the queue.
+ */
+public class ShaderCompiler {
+
+  // Can be any resolution -- we just need a context for the compiler
+  private static final int width = 64;
+  private static final int height = 64;
+
+  public enum State {
+    PENDING,
+    READY,
+    FAILED,
+    CANCELLED
+  }
+
+  /** A program being built in the background. Owned by the shader that requested it. */
+  public static class Request {
+    public final String shaderName;
+    private final boolean tePreProcess;
+    private State state = State.PENDING;
+    private int programId = 0;
+
+    private Request(String shaderName, boolean tePreProcess) {
+      this.shaderName = shaderName;
+      this.tePreProcess = tePreProcess;
+    }
+
+    public synchronized State getState() {
+      return this.state;
+    }
+
+    /** True once the program has either been built or failed to build */
+    public synchronized boolean isDone() {
+      return this.state == State.READY || this.state == State.FAILED;
+    }
+
+    /** Id of the linked program. Only valid when the state is READY. */
+    public synchronized int getProgramId() {
+      return this.programId;
+    }
+  }
+
+  private final GLEngine glEngine;
+  private final BlockingDeque<Request> queue = new LinkedBlockingDeque<>();
+
+  private GLAutoDrawable surface = null;
+  private Thread thread = null;
+  private volatile boolean running = false;
+
+  public ShaderCompiler(GLEngine glEngine) {
+    this.glEngine = glEngine;
+  }
+
+  /**
+   * Create the shared compile context and start the worker. Called on the engine thread with the
+   * GLEngine context current. Requests made before this point wait in the queue.
+   */
+  public void initialize() {
+    GLAutoDrawable canvas = this.glEngine.getCanvas();
+    this.surface = ShaderUtils.createGLSurface(width, height, canvas.getContext());
+    this.surface.display();
+
+    // display() leaves no context current, give the engine its context back
+    canvas.getContext().makeCurrent();
+
+    this.running = true;
+    this.thread = new Thread(this::run, "GLEngine shader compiler");
+    this.thread.setDaemon(true);
+    this.thread.start();
+  }
+
+  /** Queue a program to be built in the background */
+  public Request request(String shaderName, boolean tePreProcess) {
+    Request request = new Request(shaderName, tePreProcess);
+    this.queue.addLast(request);
+    return request;
+  }
+
+  /** Move a still-queued request to the front, because its shader is about to be used */
+  public void prioritize(Request request) {
+    if (this.queue.remove(request)) {
+      this.queue.addFirst(request);
+    }
+  }
+
+  /**
+   * Release a request whose shader is being disposed. Call on the engine thread. If the program was
+   * already built, it is deleted here; if it is still being built, the worker deletes it.
+   */
+  public void cancel(Request request, GL4 gl4) {
+    this.queue.remove(request);
+    synchronized (request) {
+      if (request.state == State.READY && gl4 != null) {
+        gl4.glDeleteProgram(request.programId);
+      }
+      request.state = State.CANCELLED;
+      request.programId = 0;
+    }
+  }
+
+  private void run() {
+    GLContext context = this.surface.getContext();
+    context.makeCurrent();
+    GL4 gl4 = this.surface.getGL().getGL4();
+
+    while (this.running) {
+      Request request;
+      try {
+        request = this.queue.take();
+      } catch (InterruptedException e) {
+        break;
+      }
+      synchronized (request) {
+        if (request.state == State.CANCELLED) {
+          continue;
+        }
+      }
+
+      int programId = 0;
+      boolean linked = false;
+      try {
+        programId = new ShaderProgram(gl4, request.shaderName, request.tePreProcess).id;
+        int[] status = new int[1];
+        gl4.glGetProgramiv(programId, GL4.GL_LINK_STATUS, status, 0);
+        linked = status[0] == GL4.GL_TRUE;
+      } catch (Exception e) {
+        TE.error(e, "Background compile failed for shader %s", request.shaderName);
+      }
+
+      // Make sure the program is complete before another context uses it
+      gl4.glFinish();
+
+      synchronized (request) {
+        if (request.state == State.CANCELLED) {
+          if (programId != 0) {
+            gl4.glDeleteProgram(programId);
+          }
+        } else if (linked) {
+          request.programId = programId;
+          request.state = State.READY;
+        } else {
+          if (programId != 0) {
+            gl4.glDeleteProgram(programId);
+          }
+          request.state = State.FAILED;
+        }
+      }
+    }
+
+    ShaderUtils.disposeCompileVAO(gl4);
+    context.release();
+  }
+
+  public void dispose() {
+    this.running = false;
+    if (this.thread != null) {
+      this.thread.interrupt();
+      try {
+        this.thread.join(1000);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      this.thread = null;
+    }
+    if (this.surface != null) {
+      this.surface.destroy();
+      this.surface = null;
+    }
+    this.queue.clear();
+  }
+}
@@ -5,11 +5,15 @@ import heronarts.lx.LXCategory;
 import heronarts.lx.pattern.LXPattern;
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 import net.bytebuddy.ByteBuddy;
 import net.bytebuddy.NamingStrategy;
 import net.bytebuddy.description.annotation.AnnotationDescription;
 import net.bytebuddy.description.type.TypeDescription;
+import net.bytebuddy.dynamic.DynamicType;
 import net.bytebuddy.dynamic.loading.ClassLoadingStrategy;
 import net.bytebuddy.implementation.FixedValue;
 import net.bytebuddy.matcher.ElementMatchers;
@@ -77,16 +81,64 @@ public class ShaderPatternClassFactory {
     }
   }
 
+  /** Result of scanning a single shader file, produced on a worker thread. */
+  private static class ShaderScan {
+    private final File file;
+    private final ArrayList<ShaderConfiguration> config = new ArrayList<>();
+    private String className = null;
+    private DynamicType.Unloaded<?> type = null;
+    private Exception error = null;
+    private long nanos;
+
+    private ShaderScan(File file) {
+      this.file = file;
+    }
+  }
+
+  /**
+   * Preprocess one shader and, if it is an auto shader whose class doesn't exist yet, generate (but
+   * don't load) its class. Safe to run concurrently: each scan gets its own preprocessor.
+   */
+  private ShaderScan scanShader(File file) {
+    long start = System.nanoTime();
+    ShaderScan scan = new ShaderScan(file);
+    try {
+      ShaderSourceCache.preprocessShader(file, scan.config);
+
+      // if the shader has no embedded configuration at all, we have to assume
+      // that it's set up the "normal" way.  Skip it.
+      if (isAutoShader(scan.config)) {
+        scan.className = getShaderClassName(file, scan.config);
+        if (!classExists(scan.className)) {
+          scan.type =
+              makeUnloaded(
+                  scan.className,
+                  getLXCategory(scan.config),
+                  file.getName(),
+                  isDriftPattern(scan.config));
+        }
+      }
+    } catch (Exception e) {
+      scan.error = e;
+    }
+    scan.nanos = System.nanoTime() - start;
+    return scan;
+  }
+
   /**
    * Iterate through .fs files in the shaders directory and create a class for each shader that has
    * any configuration pragmas in its code. The new class will be named after the shader file by
    * default, and will extend TEAutoShaderPattern or TEAutoDriftPattern depending on configuration
    * options. See comments in the code for the make() method below for details.
+   *
+   * <p>Preprocessing and class generation are spread across the common fork-join pool. Loading and
+   * registration then happen on the calling thread in file name order, so the registry contents are
+   * the same on every run.
    */
   @SuppressWarnings("unchecked")
   public void registerShaders(LX lx) {
+    long start = System.nanoTime();
     String dir = ShaderUtils.SHADER_PATH;
-    GLPreprocessor glp = new GLPreprocessor();
 
     // get a list of all shaders in resource path
     File[] files = new File(dir).listFiles((dir1, name) -> name.endsWith(".fs"));
@@ -94,48 +146,64 @@ public class ShaderPatternClassFactory {
       // TE.log("No shaders found in " + dir);
       return;
     }
+    Arrays.sort(files, Comparator.comparing(File::getName));
+
+    // scan shaders in parallel. The stream keeps results in file order.
+    List<ShaderScan> scans = Arrays.stream(files).parallel().map(this::scanShader).toList();
+    long scanned = System.nanoTime();
 
-    // iterate through shaders and try to create a class for each one
-    for (File file : files) {
-      String shaderFile = file.getName();
+    // load and register the generated classes in order
+    int registered = 0;
+    ShaderScan slowest = null;
+    for (ShaderScan scan : scans) {
+      String shaderFile = scan.file.getName();
+      if (slowest == null || scan.nanos > slowest.nanos) {
+        slowest = scan;
+      }
 
-      // get shader configuration data from the shader file
-      ArrayList<ShaderConfiguration> config = new ArrayList<>();
-      try {
-        glp.preprocessShader(file, config);
-      } catch (Exception e) {
-        TE.error("Error scanning shader " + file.getName() + "\n" + e.getMessage());
+      if (scan.error != null) {
+        TE.error("Error scanning shader " + shaderFile + "\n" + scan.error.getMessage());
         continue;
       }
 
-      // if the shader has no embedded configuration at all, we have to assume
-      // that it's set up the "normal" way.  Skip it.
-      if (isAutoShader(config) == false) {
-        // TE.log("Shader " + shaderFile + " is not an auto shader.  Skipping.");
+      // Not an auto shader, or the class already existed when scanned
+      if (scan.type == null) {
         continue;
       }
 
-      // if class doesn't already exist, create and register it.
-      String className = getShaderClassName(file, config);
-      if (!classExists(className)) {
+      // two shaders may ask for the same class name; the first one wins
+      if (!classExists(scan.className)) {
         // create the class
-        TE.log("Creating Shader class: " + className + " for " + shaderFile);
+        TE.log("Creating Shader class: " + scan.className + " for " + shaderFile);
         try {
-          Class<?> clazz =
-              new ShaderPatternClassFactory()
-                  .make(className, getLXCategory(config), shaderFile, isDriftPattern(config));
+          Class<?> clazz = load(scan.type);
           lx.registry.addPattern((Class<? extends LXPattern>) clazz);
+          registered++;
           // TE.log("Registered shader class: " + className);
         } catch (Exception e) {
           TE.error(
               "Error. Shader class "
-                  + className
+                  + scan.className
                   + " could not be registered."
                   + "\n"
                   + e.getMessage());
         }
       }
     }
+    long end = System.nanoTime();
+
+    TE.log(
+        "ShaderPatternClassFactory: %d shaders scanned in %d ms on %d threads (%d cached),"
+            + " %d classes registered in %d ms, total %d ms. Slowest: %s (%d ms)",
+        files.length,
+        (scanned - start) / 1_000_000,
+        ForkJoinPool.getCommonPoolParallelism(),
+        ShaderSourceCache.getHits(),
+        registered,
+        (end - scanned) / 1_000_000,
+        (end - start) / 1_000_000,
+        slowest != null ? slowest.file.getName() : "-",
+        slowest != null ? slowest.nanos / 1_000_000 : 0);
   }
 
   /*
@@ -172,6 +240,12 @@ public class ShaderPatternClassFactory {
   */
   public Class<?> make(
       String className, String category, String shaderFile, boolean isDriftPattern) {
+    return load(makeUnloaded(className, category, shaderFile, isDriftPattern));
+  }
+
+  /** Generate the class bytes only. This is thread-safe, unlike loading into the JVM. */
+  private DynamicType.Unloaded<?> makeUnloaded(
+      String className, String category, String shaderFile, boolean isDriftPattern) {
     AnnotationDescription lxcategory =
         AnnotationDescription.Builder.ofType(LXCategory.class).define("value", category).build();
 
@@ -187,8 +261,11 @@ public class ShaderPatternClassFactory {
         .annotateType(lxcategory)
         .method(ElementMatchers.named("getShaderFile"))
         .intercept(FixedValue.value(shaderFile))
-        .make()
-        .load(ClassLoader.getSystemClassLoader(), ClassLoadingStrategy.Default.INJECTION)
+        .make();
+  }
+
+  private Class<?> load(DynamicType.Unloaded<?> type) {
+    return type.load(ClassLoader.getSystemClassLoader(), ClassLoadingStrategy.Default.INJECTION)
         .getLoaded();
   }
 }
@@ -1,23 +1,46 @@
 package titanicsend.pattern.glengine;
 
+import com.jogamp.opengl.GL4;
 import com.jogamp.opengl.GLAutoDrawable;
 import com.jogamp.opengl.GLContext;
+import java.io.File;
+import java.util.Arrays;
 import titanicsend.pattern.yoffa.shader_engine.ShaderUtils;
-
-/** Checks shader cache and builds binaries for any changed or previously uncached shaders. */
+import titanicsend.util.TE;
+
+/**
+ * Checks shader cache and builds binaries for any changed or previously uncached shaders.
+ *
+ * <p>{@link #initialize()} runs at startup and only sets up OpenGL, so shaders are still compiled
+ * when first used. {@link #rebuildCache()} is run on its own before a show (TEApp
+ * --precompile-shaders) so the first activation of every pattern loads a cached binary instead of
+ * compiling and linking. On drivers without program binary support (e.g. macOS Sonoma and later) it
+ * only initializes our OpenGL setup.
+ */
 public class ShaderPrecompiler {
 
   // Can be any resolution -- we just need a context for the compiler
   private static final int width = 640;
   private static final int height = 480;
 
+  /** Run the minimum code necessary to initialize our OpenGL setup for the first time. */
+  public static void initialize() {
+    GLContext prevContext = GLContext.getCurrent();
+
+    GLAutoDrawable surface = ShaderUtils.createGLSurface(width, height);
+    surface.display();
+    surface.getContext().makeCurrent();
+    surface.getContext().release();
+
+    if (prevContext != null) prevContext.makeCurrent();
+  }
+
   /** Create and save binary versions of any shaders that need it. */
   public static void rebuildCache() {
     long timer = System.currentTimeMillis();
     int totalFiles = 0;
     int compiledFiles = 0;
-
-    // TE.log("Refreshing shader cache...");
+    int failedFiles = 0;
 
     // save the currently active GL context
     GLContext prevContext = GLContext.getCurrent();
@@ -26,58 +49,47 @@ public class ShaderPrecompiler {
     GLAutoDrawable surface = ShaderUtils.createGLSurface(width, height);
     surface.display();
     surface.getContext().makeCurrent();
-
-    /********************************************
-     * 6/2024
-     * Disabling the shader precompiler for now because
-     * Apple has chosen not to support OpenGL binary shader file
-     * formats in MacOS Sonoma.  We can retest periodically, but
-     * performance shouldn't be affected -- the shader compiler
-     * is very fast and still only needs to be run once per loaded
-     * shader.  And app startup time will actually be slightly faster!
-     *
-     * ShaderUtils.rebuildCache(surface) will still be called from TEApp,
-     * but now it will run only the minimum code necessary to initialize
-     * our OpenGL setup for the first time.
-     ********************************************/
-    /*
     GL4 gl4 = surface.getGL().getGL4();
-    int programId = gl4.glCreateProgram();
-
-    // Get a list of all shaders in resource path
-    // and try to compile them to .bin files in the
-    // cache directory. (NB: This directory listing
-    // method is significantly faster than the old one.)
-
-
-    File[] shaderFiles =
-        new File(ShaderUtils.SHADER_PATH).listFiles((dir, name) -> name.endsWith(".fs"));
-    if (shaderFiles == null) {
-      // TE.log("No shaders found in " + dir);
-      return;
-    }
 
+    if (ShaderBinaryCache.isSupported(gl4)) {
+      // Get a list of all shaders in resource path and build any that
+      // aren't already cached for this driver.
+      File[] shaderFiles =
+          new File(ShaderUtils.SHADER_PATH).listFiles((dir, name) -> name.endsWith(".fs"));
+      if (shaderFiles == null) {
+        shaderFiles = new File[0];
+      }
+      Arrays.sort(shaderFiles);
 
-    for (File file : shaderFiles) {
-      if (file.getName().endsWith(".fs")) {
+      for (File file : shaderFiles) {
         totalFiles++;
-
-        if (ShaderUtils.needsRecompile(file.getName())) {
-          ShaderUtils.buildShader(gl4, programId, file.getName());
-          compiledFiles++;
+        int programId = gl4.glCreateProgram();
+        switch (ShaderUtils.buildShader(gl4, programId, file.getName(), true)) {
+          case COMPILED -> compiledFiles++;
+          case FAILED -> {
+            failedFiles++;
+            TE.warning("ShaderPrecompiler: failed to build %s", file.getName());
+          }
+          case CACHED -> {}
         }
+        gl4.glDeleteProgram(programId);
       }
     }
 
     // free native resources and restore the previous GL context
-    gl4.glDeleteProgram(programId);
-    */
-
+    ShaderUtils.disposeCompileVAO(gl4);
     surface.getContext().release();
 
     if (prevContext != null) prevContext.makeCurrent();
 
-    // TE.log("%d shaders processed in %d ms.", totalFiles, System.currentTimeMillis() - timer);
-    // TE.log("%d cache file%s updated.", compiledFiles, (compiledFiles == 1) ? "" : "s");
+    if (totalFiles > 0) {
+      TE.log(
+          "%d shaders processed in %d ms, %d cache file%s updated, %d failed.",
+          totalFiles,
+          System.currentTimeMillis() - timer,
+          compiledFiles,
+          (compiledFiles == 1) ? "" : "s",
+          failedFiles);
+    }
   }
 }
@@ -0,0 +1,382 @@
+package titanicsend.pattern.glengine;
+
+import heronarts.lx.parameter.BooleanParameter;
+import heronarts.lx.parameter.BoundedParameter;
+import heronarts.lx.parameter.CompoundParameter;
+import heronarts.lx.parameter.LXParameter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import titanicsend.pattern.jon.TEControlTag;
+import titanicsend.pattern.yoffa.shader_engine.ShaderUtils;
+import titanicsend.util.TE;
+
+/**
+ * Cache of preprocessed shader sources and their configuration lists, stored in
+ * resources/shaders/cache. Entries are keyed by a hash of the shader, the fragment shader template,
+ * the full set of files it #includes and the compiled preprocessor itself, so editing any of them
+ * invalidates the entry.
+ *
+ * <p>LX parameters created by the legacy {%name[...]} syntax are stored as descriptions and rebuilt
+ * on every load, so each caller still gets its own parameter objects.
+ */
+public class ShaderSourceCache {
+
+  // Bump this when the entry format changes. Preprocessor changes are caught by its fingerprint.
+  private static final int VERSION = 1;
+  private static final int MAGIC = 0x54455350; // "TESP"
+  private static final String EXTENSION = ".pre";
+  private static final String TEMPLATE_FILE = ShaderUtils.FRAMEWORK_PATH + "template.fs";
+  private static final int MAX_INCLUDE_DEPTH = 10;
+
+  private static final byte PARAMETER_BOOLEAN = 0;
+  private static final byte PARAMETER_COMPOUND = 1;
+
+  // Classes whose code shapes a cache entry
+  private static final Class<?>[] PREPROCESSOR_CLASSES = {
+    GLPreprocessor.class,
+    GLPreprocessorHelpers.class,
+    ShaderConfiguration.class,
+    ShaderConfigOpcode.class
+  };
+  private static final byte[] PREPROCESSOR_FINGERPRINT = fingerprint(PREPROCESSOR_CLASSES);
+
+  // Serialized entries already seen this run, by key
+  private static final Map<String, byte[]> entries = new ConcurrentHashMap<>();
+
+  // Hash and #includes of the template and each included file, reused until the file changes
+  private static final Map<Path, FileDigest> fileDigests = new ConcurrentHashMap<>();
+
+  private record FileDigest(FileTime modified, long size, byte[] hash, List<String> includes) {}
+
+  private static final AtomicInteger hits = new AtomicInteger();
+  private static final AtomicInteger misses = new AtomicInteger();
+
+  public static int getHits() {
+    return hits.get();
+  }
+
+  public static int getMisses() {
+    return misses.get();
+  }
+
+  /**
+   * Drop-in replacement for {@link GLPreprocessor#preprocessShader(File, List)} that reuses a
+   * cached result when the shader and everything it depends on are unchanged.
+   */
+  public static String preprocessShader(File shaderFile, List<ShaderConfiguration> parameters)
+      throws Exception {
+    String shaderBody = ShaderUtils.loadResource(shaderFile);
+
+    String key;
+    try {
+      key = computeKey(shaderBody);
+    } catch (Exception e) {
+      // Let the preprocessor report problems like missing includes
+      misses.incrementAndGet();
+      return new GLPreprocessor().preprocessShader(shaderBody, parameters);
+    }
+
+    File cacheFile = getCacheFile(shaderFile);
+    byte[] entry = entries.get(key);
+    if (entry == null) {
+      entry = readEntry(cacheFile, key);
+    }
+    if (entry != null) {
+      try {
+        String source = decode(entry, parameters);
+        entries.put(key, entry);
+        hits.incrementAndGet();
+        return source;
+      } catch (IOException | RuntimeException e) {
+        TE.warning("Shader cache entry for %s is unreadable, rebuilding", shaderFile.getName());
+      }
+    }
+
+    misses.incrementAndGet();
+    String source = new GLPreprocessor().preprocessShader(shaderBody, parameters);
+    entry = encode(key, source, parameters);
+    if (entry != null) {
+      entries.put(key, entry);
+      writeEntry(cacheFile, entry);
+    }
+    return source;
+  }
+
+  /** Hash of a complete (preprocessed) shader source, for identifying identical programs */
+  public static String hashSource(String source) {
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      return HexFormat.of().formatHex(digest.digest(source.getBytes(StandardCharsets.UTF_8)));
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Hash the shader text, the template and the transitive closure of #included files. Files are
+   * only re-read and re-hashed when their modification time or size changes.
+   */
+  static String computeKey(String shaderBody) throws IOException, NoSuchAlgorithmException {
+    return computeKey(shaderBody, PREPROCESSOR_FINGERPRINT);
+  }
+
+  static String computeKey(String shaderBody, byte[] preprocessorFingerprint)
+      throws IOException, NoSuchAlgorithmException {
+    MessageDigest digest = MessageDigest.getInstance("SHA-256");
+    digest.update(Integer.toString(VERSION).getBytes(StandardCharsets.UTF_8));
+    digest.update(preprocessorFingerprint);
+    digest.update(digestFile(Path.of(TEMPLATE_FILE)).hash());
+    digest.update(shaderBody.getBytes(StandardCharsets.UTF_8));
+    digestIncludes(digest, findIncludes(shaderBody), new HashSet<>(), 1);
+    return HexFormat.of().formatHex(digest.digest());
+  }
+
+  /**
+   * Hash of the class files this build loaded for the given classes. If one can't be read, the
+   * fingerprint is random so this run never trusts an entry written by another build.
+   */
+  static byte[] fingerprint(Class<?>... classes) {
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      for (Class<?> c : classes) {
+        try (InputStream in = c.getResourceAsStream(c.getSimpleName() + ".class")) {
+          if (in == null) {
+            throw new IOException("class file not found for " + c.getName());
+          }
+          digest.update(in.readAllBytes());
+        }
+      }
+      return digest.digest();
+    } catch (IOException e) {
+      TE.warning("Shader cache disabled for this run: %s", e.getMessage());
+      return UUID.randomUUID().toString().getBytes(StandardCharsets.UTF_8);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static void digestIncludes(
+      MessageDigest digest, List<String> includes, Set<String> visited, int depth)
+      throws IOException {
+    for (String filename : includes) {
+      // The include's position is covered by the line itself, its contents only need hashing
+      // once, however many times it is pulled in.
+      if (visited.add(filename)) {
+        if (depth >= MAX_INCLUDE_DEPTH) {
+          throw new IOException("Exceeded maximum #include depth of " + MAX_INCLUDE_DEPTH);
+        }
+        FileDigest file = digestFile(Path.of(filename));
+        digest.update(file.hash());
+        digestIncludes(digest, file.includes(), visited, depth + 1);
+      }
+    }
+  }
+
+  /** Hash and #includes of a file, from memory if the file is unchanged since last time */
+  private static FileDigest digestFile(Path path) throws IOException {
+    BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+    FileDigest file = fileDigests.get(path);
+    if (file != null
+        && file.modified().equals(attributes.lastModifiedTime())
+        && file.size() == attributes.size()) {
+      return file;
+    }
+    byte[] contents = Files.readAllBytes(path);
+    try {
+      file =
+          new FileDigest(
+              attributes.lastModifiedTime(),
+              attributes.size(),
+              MessageDigest.getInstance("SHA-256").digest(contents),
+              findIncludes(new String(contents, StandardCharsets.UTF_8)));
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+    fileDigests.put(path, file);
+    return file;
+  }
+
+  private static List<String> findIncludes(String body) {
+    List<String> includes = new ArrayList<>();
+    for (String line : body.split("\n")) {
+      if (line.startsWith("#include")) {
+        includes.add(GLPreprocessorHelpers.getFileName(line.substring("#include ".length())));
+      }
+    }
+    return includes;
+  }
+
+  private static File getCacheFile(File shaderFile) {
+    String name = shaderFile.getName();
+    int dot = name.lastIndexOf('.');
+    return new File(ShaderUtils.CACHE_PATH + (dot > 0 ? name.substring(0, dot) : name) + EXTENSION);
+  }
+
+  /** Read an entry from disk, returning null if it is missing or was built for another key */
+  static byte[] readEntry(File cacheFile, String key) {
+    if (!cacheFile.exists()) {
+      return null;
+    }
+    try {
+      byte[] entry = Files.readAllBytes(cacheFile.toPath());
+      DataInputStream in = new DataInputStream(new ByteArrayInputStream(entry));
+      if (in.readInt() != MAGIC || in.readInt() != VERSION || !key.equals(in.readUTF())) {
+        return null;
+      }
+      return entry;
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
+  static void writeEntry(File cacheFile, byte[] entry) {
+    try {
+      File dir = cacheFile.getParentFile();
+      dir.mkdirs();
+      // Write to a temp file and move it into place, so concurrent scans
+      // and crashes never leave a partial entry behind.
+      File temp = File.createTempFile(cacheFile.getName(), ".tmp", dir);
+      Files.write(temp.toPath(), entry);
+      Files.move(
+          temp.toPath(),
+          cacheFile.toPath(),
+          StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      TE.warning("Could not write shader cache file %s: %s", cacheFile, e.getMessage());
+    }
+  }
+
+  /** Serialize a preprocessed shader, or return null if its configuration can't be cached */
+  static byte[] encode(String key, String source, List<ShaderConfiguration> parameters) {
+    try {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream(source.length() + 1024);
+      DataOutputStream out = new DataOutputStream(bytes);
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeUTF(key);
+
+      byte[] sourceBytes = source.getBytes(StandardCharsets.UTF_8);
+      out.writeInt(sourceBytes.length);
+      out.write(sourceBytes);
+
+      out.writeInt(parameters.size());
+      for (ShaderConfiguration c : parameters) {
+        out.writeUTF(c.opcode.name());
+        writeNullableUTF(out, c.parameterId == null ? null : c.parameterId.name());
+        writeNullableUTF(out, c.normalizationCurve == null ? null : c.normalizationCurve.name());
+        out.writeDouble(c.value);
+        out.writeDouble(c.v1);
+        out.writeDouble(c.v2);
+        out.writeInt(c.textureChannel);
+        writeNullableUTF(out, c.name);
+
+        out.writeBoolean(c.lxParameter != null);
+        if (c.lxParameter != null) {
+          if (c.lxParameter instanceof BooleanParameter p) {
+            out.writeByte(PARAMETER_BOOLEAN);
+            out.writeUTF(p.getLabel());
+            out.writeBoolean(p.isOn());
+          } else if (c.lxParameter instanceof CompoundParameter p) {
+            out.writeByte(PARAMETER_COMPOUND);
+            out.writeUTF(p.getLabel());
+            out.writeDouble(p.getValue());
+            out.writeDouble(p.range.v0);
+            out.writeDouble(p.range.v1);
+          } else {
+            // Don't know how to rebuild this parameter type
+            return null;
+          }
+        }
+      }
+      out.flush();
+      return bytes.toByteArray();
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
+  /** Deserialize an entry, appending its configuration to parameters and returning the source */
+  static String decode(byte[] entry, List<ShaderConfiguration> parameters) throws IOException {
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(entry));
+    in.readInt(); // magic
+    in.readInt(); // version
+    in.readUTF(); // key
+
+    byte[] sourceBytes = new byte[in.readInt()];
+    in.readFully(sourceBytes);
+    String source = new String(sourceBytes, StandardCharsets.UTF_8);
+
+    int count = in.readInt();
+    List<ShaderConfiguration> decoded = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      ShaderConfiguration c = new ShaderConfiguration();
+      c.opcode = ShaderConfigOpcode.valueOf(in.readUTF());
+      String parameterId = readNullableUTF(in);
+      c.parameterId = parameterId == null ? null : TEControlTag.valueOf(parameterId);
+      String curve = readNullableUTF(in);
+      c.normalizationCurve =
+          curve == null ? null : BoundedParameter.NormalizationCurve.valueOf(curve);
+      c.value = in.readDouble();
+      c.v1 = in.readDouble();
+      c.v2 = in.readDouble();
+      c.textureChannel = in.readInt();
+      c.name = readNullableUTF(in);
+
+      if (in.readBoolean()) {
+        c.lxParameter = readParameter(in);
+      }
+      decoded.add(c);
+    }
+    parameters.addAll(decoded);
+    return source;
+  }
+
+  private static LXParameter readParameter(DataInputStream in) throws IOException {
+    byte type = in.readByte();
+    String label = in.readUTF();
+    return switch (type) {
+      case PARAMETER_BOOLEAN -> new BooleanParameter(label, in.readBoolean());
+      case PARAMETER_COMPOUND -> {
+        double value = in.readDouble();
+        double v0 = in.readDouble();
+        double v1 = in.readDouble();
+        yield new CompoundParameter(label, value, v0, v1);
+      }
+      default -> throw new IOException("Unknown parameter type " + type);
+    };
+  }
+
+  private static void writeNullableUTF(DataOutputStream out, String s) throws IOException {
+    out.writeBoolean(s != null);
+    if (s != null) {
+      out.writeUTF(s);
+    }
+  }
+
+  private static String readNullableUTF(DataInputStream in) throws IOException {
+    return in.readBoolean() ? in.readUTF() : null;
+  }
+}
@@ -1,11 +1,11 @@
 package titanicsend.pattern.glengine;
 
-import com.jogamp.opengl.GL4;
 import heronarts.lx.model.LXModel;
 import heronarts.lx.parameter.LXParameter;
 import java.nio.ByteBuffer;
 import java.nio.IntBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import titanicsend.pattern.yoffa.shader_engine.Uniform;
@@ -24,6 +24,7 @@ public class TEShader extends GLShader implements GLShader.UniformSource {
     public String name;
     public int channel;
     public String uniformName;
+    public Uniform.Int1 uniform;
     public int handle;
 
     /** This texture is always bound to the following unit on this shader */
@@ -35,21 +36,60 @@ public class TEShader extends GLShader implements GLShader.UniformSource {
   // TODO(JKB): this combination of CPU and GPU render variables is a bit of a mess
   // but for now they're crammed in here so we can develop both on one branch
 
-  // CPU Mode: Pixel Pack Buffers (PBOs) for ping-pong output
-  private PingPongPBO ppPBOs;
+  // CPU Mode: ring of Pixel Pack Buffers (PBOs) for fenced async output
+  private PBORing pboRing;
 
   // Render buffers: ping-pong FBOs and textures
   private PingPongFBO ppFBOs;
 
   // Texture handle for the current view model coordinate texture
+  private LXModel model = null;
   private int modelCoordsTextureHandle = UNINITIALIZED;
   private int modelIndexTextureHandle = UNINITIALIZED;
+  private int gatherMapTextureHandle = UNINITIALIZED;
+
+  // CPU Mode: read back only the current view's points
+  private boolean sparseReadback = false;
+  private TextureManager.RowRange rowRange = null;
+  private int[] pointIndices = null;
+
+  // How the current view's points are laid out in reads. Reads in flight are dropped on a change.
+  static final int READ_NONE = 0;
+  // Entire canvas
+  static final int READ_FULL = 1;
+  // Band of canvas rows holding the view's points
+  static final int READ_BAND = 2;
+  // View's points packed to the start of the gather shader's framebuffer
+  static final int READ_PACKED = 3;
+  private int readLayout = READ_NONE;
+
+  // CPU Mode: packs scattered views for readback, created when sparse readback is first enabled
+  private PointGatherShader gather = null;
+  private int[] packedPixels = new int[0];
+
+  // Set when the parts of cpuBuffer that sparse reads don't cover need to be zeroed
+  private boolean clearOutsideReadback = true;
+
+  /** Per-frame timing of the CPU readback, for frame-time metrics */
+  public static class Profiler {
+    public long readbackNanos = 0;
+    public int readbackPixels = 0;
+    // Age of the frame most recently copied to the cpu buffer
+    public int readbackLatencyFrames = 0;
+  }
+
+  public final Profiler profiler = new Profiler();
+
+  // Readback section of the engine-wide frame profiler, created on first readback
+  private FrameProfiler.Section readbackSection = null;
 
   private static class TEShaderUniforms {
     private Uniform.Int1 audio;
     private Uniform.Int1 lxModelCoords;
     private Uniform.Int1 backBuffer;
     private Uniform.Int1 lxModelIndex;
+    // Parallel to fragmentShader.parameters
+    private Uniform.Float1[] parameters;
   }
 
   private final TEShaderUniforms uniforms = new TEShaderUniforms();
@@ -77,8 +117,6 @@ public class TEShader extends GLShader implements GLShader.UniformSource {
 
   // Initialization
 
-  protected ByteBuffer imageBuffer;
-
   /**
    * Called at pattern initialization time to allocate and configure GPU buffers that are common to
    * all shaders.
@@ -87,17 +125,6 @@ public class TEShader extends GLShader implements GLShader.UniformSource {
   protected void allocateShaderBuffers() {
     super.allocateShaderBuffers();
 
-    // Create ping-pong FBOs (framebuffers) and textures for rendering
-    this.ppFBOs = new PingPongFBO();
-
-    // CPU Mode output
-    if (this.lx.engine.renderMode.cpu) {
-      // Pixel Pack Buffers (PBOs) for ping-pong output
-      this.ppPBOs = new PingPongPBO();
-
-      this.imageBuffer = TEShader.allocateBackBuffer();
-    }
-
     // assign shared uniform blocks to the shader's binding points
     int perRunBlockIndex = this.gl4.glGetUniformBlockIndex(shaderProgram.id, "PerRunBlock");
     this.gl4.glUniformBlockBinding(
@@ -110,6 +137,31 @@ public class TEShader extends GLShader implements GLShader.UniformSource {
     loadTextureFiles();
   }
 
+  @Override
+  protected void allocateCanvasBuffers() {
+    // Create ping-pong FBOs (framebuffers) and textures for rendering
+    this.ppFBOs = new PingPongFBO();
+
+    // CPU Mode output
+    if (this.lx.engine.renderMode.cpu) {
+      // Pixel Pack Buffers (PBOs) for fenced async output
+      this.pboRing = new PBORing(this.glEngine.getReadbackDepth());
+    }
+
+    // Coordinate textures were rebuilt at the new canvas size
+    if (this.model != null) {
+      setModelCoordinates(this.model);
+    }
+  }
+
+  @Override
+  protected void disposeCanvasBuffers() {
+    this.ppFBOs.dispose();
+    if (this.lx.engine.renderMode.cpu) {
+      this.pboRing.dispose();
+    }
+  }
+
   private void loadTextureFiles() {
     for (Map.Entry<Integer, String> textureInput :
         this.fragmentShader.getChannelToTexture().entrySet()) {
@@ -129,7 +181,6 @@ public class TEShader extends GLShader implements GLShader.UniformSource {
   @Override
   public void onActive() {
     clearBackBuffer();
-    this.firstFrame = true;
     super.onActive();
   }
 
@@ -138,6 +189,18 @@ public class TEShader extends GLShader implements GLShader.UniformSource {
     this.uniforms.lxModelCoords = getUniformInt1(UniformNames.LX_MODEL_COORDS);
     this.uniforms.backBuffer = getUniformInt1(UniformNames.BACK_BUFFER);
     this.uniforms.lxModelIndex = getUniformInt1(UniformNames.LX_MODEL_INDEX);
+
+    // Resolve texture and LX parameter uniforms once, so the per-frame path
+    // does no name building or map lookups.
+    for (TextureInfo ti : this.textures) {
+      ti.uniform = getUniformInt1(ti.uniformName);
+    }
+    List<LXParameter> parameters = this.fragmentShader.parameters;
+    this.uniforms.parameters = new Uniform.Float1[parameters.size()];
+    for (int i = 0; i < parameters.size(); i++) {
+      this.uniforms.parameters[i] =
+          getUniformFloat1(parameters.get(i).getLabel() + UniformNames.LX_PARAMETER_SUFFIX);
+    }
   }
 
   @Override
@@ -150,9 +213,6 @@ public class TEShader extends GLShader implements GLShader.UniformSource {
 
     // Swap render/copy buffers
     this.ppFBOs.swap();
-    if (this.lx.engine.renderMode.cpu) {
-      this.ppPBOs.swap();
-    }
 
     // Set audio waveform and fft data as a 512x2 texture on the specified audio
     // channel if it's a shadertoy shader, or iChannel0 if it's a local shader.
@@ -192,14 +252,13 @@ public class TEShader extends GLShader implements GLShader.UniformSource {
     // Bind shadertoy textures to corresponding shader-specific texture units.
     for (TextureInfo ti : this.textures) {
       bindTextureUnit(ti.unit, ti.handle);
-      setUniform(ti.uniformName, ti.unit);
+      ti.uniform.setValue(ti.unit);
     }
 
     // Add all preprocessed LX parameters from the shader code as uniforms
-    for (LXParameter customParameter : this.fragmentShader.parameters) {
-      setUniform(
-          customParameter.getLabel() + UniformNames.LX_PARAMETER_SUFFIX,
-          customParameter.getValuef());
+    List<LXParameter> parameters = this.fragmentShader.parameters;
+    for (int i = 0; i < this.uniforms.parameters.length; i++) {
+      this.uniforms.parameters[i].setValue(parameters.get(i).getValuef());
     }
   }
 
@@ -213,12 +272,14 @@ public class TEShader extends GLShader implements GLShader.UniformSource {
     this.ppFBOs.copy.clear();
     // PBOs are only used in CPU mode
     if (this.lx.engine.renderMode.cpu) {
-      this.ppPBOs.copy.clear();
+      // Drop reads still in flight from before the clear, and black out the last frame
+      this.pboRing.reset();
+      if (this.cpuBuffer != null) {
+        Arrays.fill(this.cpuBuffer, 0);
+      }
     }
   }
 
-  boolean firstFrame = true;
-
   @Override
   protected void render() {
     // Bind vertex array object
@@ -232,37 +293,148 @@ public class TEShader extends GLShader implements GLShader.UniformSource {
 
     // JKB note: Retrofit of CPU compatibility for the GPU branch:
     if (this.lx.engine.renderMode.cpu && this.cpuBuffer != null) {
-      // Start async read of framebuffer into PBO
-      this.ppPBOs.render.startRead();
+      if (this.readbackSection == null) {
+        this.readbackSection =
+            this.glEngine.profiler.section(
+                FrameProfiler.READBACK, this.fragmentShader.getShaderName());
+      }
+      this.glEngine.profiler.begin(this.readbackSection);
+      long readbackStart = System.nanoTime();
+      readback();
+      this.profiler.readbackNanos = System.nanoTime() - readbackStart;
+      this.glEngine.profiler.end(this.readbackSection);
+    }
 
-      if (firstFrame) {
-        // Skip the first frame, PBO is empty
-        firstFrame = false;
-      } else {
+    // No need to unbind VAO.
+    // Also not unbinding the FBO here, as other shader render passes will change it.
+    // And GLMixer will unbind the last FBO at the end of postMix().
+  }
 
-        // Map the other PBO for reading (from previous frame)
-        this.imageBuffer = this.ppPBOs.copy.getData();
+  /** Pick the smallest read that covers the current view's points */
+  private int getReadLayout() {
+    boolean canGather = this.gather != null && this.gather.isReady() && this.pointIndices != null;
+    return readLayoutFor(this.sparseReadback, this.rowRange, canGather);
+  }
 
-        if (this.imageBuffer != null) {
-          // Copy data from PBO to cpu buffer
-          IntBuffer src = this.imageBuffer.asIntBuffer();
-          // Clamp
-          int count = Math.min(src.remaining(), this.cpuBuffer.length);
-          // Safe copy
-          src.get(this.cpuBuffer, 0, count);
+  /**
+   * @param rowRange Canvas rows of the view's points, or null if not known yet
+   * @param canGather True if the gather pass and the view's point indices are ready
+   */
+  static int readLayoutFor(
+      boolean sparseReadback, TextureManager.RowRange rowRange, boolean canGather) {
+    if (!sparseReadback || rowRange == null) {
+      return READ_FULL;
+    }
+    // Packing costs an extra pass, only worth it when the view's points are spread out
+    if (canGather && rowRange.packedRows < rowRange.rowCount) {
+      return READ_PACKED;
+    }
+    return READ_BAND;
+  }
+
+  /**
+   * Start an async read of this frame into the PBO ring, then copy the newest read that has
+   * finished on the GPU into the cpu buffer. Never waits on the GPU; if no read has finished, the
+   * cpu buffer keeps the last completed frame.
+   */
+  private void readback() {
+    int layout = getReadLayout();
+    if (layout != this.readLayout) {
+      // Reads in flight don't match the new layout
+      this.readLayout = layout;
+      this.pboRing.reset();
+      this.clearOutsideReadback = true;
+    }
+
+    switch (layout) {
+      case READ_BAND -> {
+        // Read back only the band of canvas rows that holds the current view's points. Output
+        // pixels are indexed by model point index, so the view is somewhere in this band.
+
+        // Points outside the band are never written, make sure they are black like a full read
+        if (this.clearOutsideReadback) {
+          this.clearOutsideReadback = false;
+          int start = Math.min(this.rowRange.firstRow * this.width, this.cpuBuffer.length);
+          int end =
+              Math.min(start + this.rowRange.getPixelCount(this.width), this.cpuBuffer.length);
+          Arrays.fill(this.cpuBuffer, 0, start, 0);
+          Arrays.fill(this.cpuBuffer, end, this.cpuBuffer.length, 0);
+        }
 
-          // Unmap the PBO
-          this.gl4.glUnmapBuffer(GL4.GL_PIXEL_PACK_BUFFER);
+        if (this.rowRange.rowCount > 0) {
+          this.pboRing.startRead(this.rowRange.firstRow, this.rowRange.rowCount);
         }
       }
+      case READ_PACKED -> {
+        // Gather the view's points, in view order, into as few rows as they fit in and read those.
+        // Completed reads are scattered back to the point indices below.
+
+        // Only the view's points are ever written, make sure the rest are black like a full read
+        if (this.clearOutsideReadback) {
+          this.clearOutsideReadback = false;
+          Arrays.fill(this.cpuBuffer, 0);
+        }
 
-      // Unbind the PBO
-      this.gl4.glBindBuffer(GL4.GL_PIXEL_PACK_BUFFER, 0);
+        this.gather.setGather(
+            getRenderTexture(), this.gatherMapTextureHandle, this.rowRange.packedRows);
+        this.gather.run();
+        // The gather shader left its framebuffer bound
+        this.pboRing.startRead(0, this.rowRange.packedRows);
+      }
+      default -> this.pboRing.startRead();
     }
 
-    // No need to unbind VAO.
-    // Also not unbinding the FBO here, as other shader render passes will change it.
-    // And GLMixer will unbind the last FBO at the end of postMix().
+    // Map only a PBO whose fence has signaled
+    PBO completed = this.pboRing.pollCompleted();
+    if (completed == null) {
+      this.profiler.readbackPixels = 0;
+      return;
+    }
+
+    ByteBuffer pboData = completed.mapReadRange();
+    if (pboData != null) {
+      IntBuffer src = pboData.asIntBuffer();
+      if (this.readLayout == READ_PACKED) {
+        this.profiler.readbackPixels = scatter(src);
+      } else {
+        int offset = Math.min(completed.getReadOffsetPixels(), this.cpuBuffer.length);
+        // Clamp
+        int count = Math.min(src.remaining(), this.cpuBuffer.length - offset);
+        // Safe copy
+        src.get(this.cpuBuffer, offset, count);
+        this.profiler.readbackPixels = count;
+      }
+    }
+    // Unmap and unbind the PBO
+    completed.unmap();
+    this.profiler.readbackLatencyFrames = this.pboRing.getLatencyFrames();
+  }
+
+  /** Copy packed pixel i to the cpu buffer at the view's point index i */
+  private int scatter(IntBuffer src) {
+    int count = Math.min(src.remaining(), this.pointIndices.length);
+    if (this.packedPixels.length < count) {
+      this.packedPixels = new int[count];
+    }
+    return scatter(src, this.pointIndices, this.packedPixels, this.cpuBuffer);
+  }
+
+  /**
+   * Copy packed pixel i to dst[pointIndices[i]], through a scratch array that holds the packed
+   * pixels. Indices past the end of dst are skipped.
+   *
+   * @return Number of pixels copied from src
+   */
+  static int scatter(IntBuffer src, int[] pointIndices, int[] packed, int[] dst) {
+    int count = Math.min(Math.min(src.remaining(), pointIndices.length), packed.length);
+    src.get(packed, 0, count);
+    for (int i = 0; i < count; i++) {
+      int index = pointIndices[i];
+      if (index < dst.length) {
+        dst[index] = packed[i];
+      }
+    }
+    return count;
   }
 
   @Override
@@ -284,9 +456,32 @@ public class TEShader extends GLShader implements GLShader.UniformSource {
   private int[] cpuBuffer = null;
 
   public void setCpuBuffer(int[] cpuBuffer) {
+    if (this.cpuBuffer != cpuBuffer) {
+      this.clearOutsideReadback = true;
+    }
     this.cpuBuffer = cpuBuffer;
   }
 
+  /**
+   * CPU mode only: when enabled, read back just the current view's points rather than the entire
+   * canvas. Views whose points fill a band of canvas rows read that band. Views whose points are
+   * spread out are first packed together by a gather pass, then read in as few rows as possible.
+   */
+  public void setSparseReadback(boolean sparseReadback) {
+    if (this.sparseReadback != sparseReadback) {
+      this.clearOutsideReadback = true;
+    }
+    this.sparseReadback = sparseReadback;
+    if (sparseReadback && this.gather == null && this.lx.engine.renderMode.cpu) {
+      this.gather = new PointGatherShader(this.lx);
+      this.gather.init();
+    }
+  }
+
+  public boolean isSparseReadback() {
+    return this.sparseReadback;
+  }
+
   // Staging Uniforms: LX Model
 
   /**
@@ -297,8 +492,15 @@ public class TEShader extends GLShader implements GLShader.UniformSource {
    * @param model Current LXModel of the calling context, which is a LXView or the global model
    */
   public void setModelCoordinates(LXModel model) {
+    this.model = model;
     this.modelCoordsTextureHandle = this.glEngine.textureCache.getCoordinatesTexture(model);
     this.modelIndexTextureHandle = this.glEngine.textureCache.getIndexMapTexture(model);
+    this.rowRange = this.glEngine.textureCache.getRowRange(model);
+    this.gatherMapTextureHandle = this.glEngine.textureCache.getGatherMapTexture(model);
+    this.pointIndices = this.glEngine.textureCache.getPointIndices(model);
+    // Packed reads in flight are in the order of the old view
+    this.readLayout = READ_NONE;
+    this.clearOutsideReadback = true;
   }
 
   // Releases native resources allocated by this shader.
@@ -308,17 +510,16 @@ public class TEShader extends GLShader implements GLShader.UniformSource {
   @Override
   public void dispose() {
     // release all OpenGL GPU resources we've allocated
-    if (isInitialized()) {
-      this.ppFBOs.dispose();
-      if (this.lx.engine.renderMode.cpu) {
-        this.ppPBOs.dispose();
-      }
-
+    if (isProgramReady()) {
       // free any textures on ShaderToy channels
       for (TextureInfo ti : this.textures) {
         this.glEngine.textureCache.releaseStaticTexture(ti.name);
       }
     }
+    if (this.gather != null) {
+      this.gather.dispose();
+      this.gather = null;
+    }
 
     super.dispose();
   }
@@ -16,15 +16,26 @@ import com.jogamp.opengl.GL4;
 import com.jogamp.opengl.GLAutoDrawable;
 import com.jogamp.opengl.util.GLBuffers;
 import com.jogamp.opengl.util.texture.Texture;
+import com.jogamp.opengl.util.texture.TextureData;
 import com.jogamp.opengl.util.texture.TextureIO;
 import heronarts.lx.LX;
 import heronarts.lx.model.LXModel;
 import heronarts.lx.model.LXPoint;
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.FloatBuffer;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import titanicsend.util.TE;
 
 // Manages the lifecycle of the (relatively) static OpenGL textures used by
 // the shader engine.  We use are two types of textures: coordinate and static.
@@ -33,7 +44,7 @@ import java.util.Map;
 // image files, and are used as 2D textures in the shaders.
 //
 public class TextureManager implements LX.Listener {
-  private static final int COORDINATE_TEXTURE_COUNT = 2;
+  private static final int COORDINATE_TEXTURE_COUNT = 3;
 
   private final LX lx;
   private final GLEngine glEngine;
@@ -42,14 +53,36 @@ public class TextureManager implements LX.Listener {
 
   private boolean initialized = false;
 
-  // For each LXModel we now store two CoordTextures
-  // [0] = normalized model coordinates at current gl_FragCoord
-  // [1] = (GL_RG32F) indices of the model points
-  private final Map<LXModel, CoordTexture[]> coordTextures = new HashMap<>();
+  // Coordinate textures for each distinct view content, keyed by the point indices and normalized
+  // coordinates. Views whose points are unchanged share and survive model reloads.
+  private final Map<ViewContent, CoordTextures> coordTextures = new HashMap<>();
+
+  // Content entry used by each model (view) since the last model change
+  private final Map<LXModel, CoordTextures> modelCoordTextures = new HashMap<>();
+
+  // Coordinate data is built on worker threads, then uploaded on the engine thread
+  private final Queue<CoordTextures> builtCoordTextures = new ConcurrentLinkedQueue<>();
+
+  // Arrays the workers build into, returned here once uploaded
+  private final Queue<BuildArrays> freeBuildArrays = new ConcurrentLinkedQueue<>();
+
+  // After a model change, entries no view has asked for within this many frames are deleted
+  private static final int SWEEP_DELAY_FRAMES = 120;
+  private int sweepCountdown = 0;
+
+  // NaN-filled buffer for placeholder contents, and a staging buffer for built data
+  private FloatBuffer nanBuffer = null;
+  private FloatBuffer uploadBuffer = null;
 
   // Textures that have been loaded for a filename
   private final Map<String, StaticTexture> staticTextures = new HashMap<>();
 
+  // Image files are decoded (and view coordinates built) on worker threads, then uploaded on the
+  // engine thread
+  private static final int DECODE_THREADS = 2;
+  private ExecutorService decodePool = null;
+  private final Queue<StaticTexture> decodedTextures = new ConcurrentLinkedQueue<>();
+
   public TextureManager(LX lx, GLEngine glEngine) {
     this.lx = lx;
     this.glEngine = glEngine;
@@ -74,36 +107,48 @@ public class TextureManager implements LX.Listener {
       return;
     }
 
-    // Top level model changed. Discard all coordinate textures.
+    // Top level model changed. The old view objects are stale, but their textures are kept until
+    // the new views have had a chance to claim any whose content is unchanged.
+    this.modelCoordTextures.clear();
+    this.sweepCountdown = SWEEP_DELAY_FRAMES;
+  }
+
+  /** The canvas was resized. Coordinate textures are rebuilt at the new size on next use. */
+  void onCanvasResized() {
     clearCoordinateTextures();
+    this.freeBuildArrays.clear();
+    this.nanBuffer = null;
+    this.uploadBuffer = null;
   }
 
   /**
    * Writes the index of a model point to a 5x5 pixel neighborhood in the index texture buffer. This
    * greatly improves the quality of sampling from the model buffer
    *
-   * @param p The model point
-   * @param indices The float buffer for the index texture
+   * @param index The model point index
+   * @param xn The point's normalized x coordinate
+   * @param yn The point's normalized y coordinate
+   * @param indices The array for the index texture
    * @param width The width of the texture
    * @param height The height of the texture
+   * @param canvasWidth The width of the canvas the index is converted to a pixel of
    */
-  private void setIndexNeighborhood(LXPoint p, FloatBuffer indices, int width, int height) {
+  private static void setIndexNeighborhood(
+      int index, float xn, float yn, float[] indices, int width, int height, int canvasWidth) {
     // Calculate the center pixel coordinates from the point's normalized position
-    int px = Math.round(p.xn * (width - 1));
-    int py = Math.round(p.yn * (height - 1));
+    int px = Math.round(xn * (width - 1));
+    int py = Math.round(yn * (height - 1));
 
-    // Convert index to 2D coordinates
-    float val1 = (float) (p.index % width);
-    float val2 = (float) Math.floor(p.index / width);
+    // Convert index to 2D canvas coordinates
+    float val1 = (float) (index % canvasWidth);
+    float val2 = (float) (index / canvasWidth);
 
     // Iterate over neighborhood centered at (px, py)
-    for (int ny = py - 2; ny <= py + 2; ny++) {
-      for (int nx = px - 2; nx <= px + 2; nx++) {
-        if (nx >= 0 && nx < width && ny >= 0 && ny < height) {
-          int destIndex = (ny * width + nx) * 2;
-          indices.put(destIndex, val1);
-          indices.put(destIndex + 1, val2);
-        }
+    for (int ny = Math.max(0, py - 2); ny <= Math.min(height - 1, py + 2); ny++) {
+      for (int nx = Math.max(0, px - 2); nx <= Math.min(width - 1, px + 2); nx++) {
+        int destIndex = (ny * width + nx) * 2;
+        indices[destIndex] = val1;
+        indices[destIndex + 1] = val2;
       }
     }
   }
@@ -112,23 +157,15 @@ public class TextureManager implements LX.Listener {
    * Create the coordinate textures for a model. This should be called by the parent pattern or
    * effect at least once before the first frame is rendered, and when the model or view changes.
    *
-   * <p>This adds an entry to coordTextures that contains two textures: one for normalized
-   * coordinates and one for index mapping.
+   * <p>Views are matched by content, so a view whose points are the same as one already built (for
+   * example the same view after a model reload) reuses the existing textures. Otherwise both
+   * textures are created immediately, filled with NaN (no points), and the actual coordinates are
+   * built on a worker thread and uploaded on a later frame. The texture handles don't change when
+   * the data arrives.
    *
    * @param model The model (view) to copy coordinates from
    */
   public void createCoordinateTextures(LXModel model) {
-
-    // Create new array with two entries, the first for normalized coordinates
-    // and the second for index mapping.
-    this.canvas.getContext().makeCurrent();
-    CoordTexture[] slots = new CoordTexture[COORDINATE_TEXTURE_COUNT];
-    CoordTexture normalizedXYZ = new CoordTexture();
-    slots[0] = normalizedXYZ;
-    CoordTexture indexMap = new CoordTexture();
-    slots[1] = indexMap;
-    this.coordTextures.put(model, slots);
-
     // Double check size of engine and model points
     int width = this.glEngine.getWidth();
     int height = this.glEngine.getHeight();
@@ -141,42 +178,141 @@ public class TextureManager implements LX.Listener {
               enginePoints, modelPoints));
     }
 
-    // Create a FloatBuffer to hold the normalized coordinates of the model points
-    FloatBuffer coords = GLBuffers.newDirectFloatBuffer(enginePoints * 3);
+    // Snapshot the points for the worker, which also identifies the view's content
+    int[] pointIndices = new int[modelPoints];
+    float[] pointCoords = new float[modelPoints * 3];
+    for (int i = 0; i < modelPoints; i++) {
+      LXPoint p = model.points[i];
+      pointIndices[i] = p.index;
+      pointCoords[i * 3] = p.xn;
+      pointCoords[i * 3 + 1] = p.yn;
+      pointCoords[i * 3 + 2] = p.zn;
+    }
+    ViewContent key = new ViewContent(pointIndices, pointCoords);
+
+    CoordTextures entry = this.coordTextures.get(key);
+    if (entry == null) {
+      this.canvas.getContext().makeCurrent();
+      entry = new CoordTextures(RowRange.of(pointIndices, width, height), pointIndices);
+      this.coordTextures.put(key, entry);
+
+      // Until the data arrives the view has no points
+      uploadCoordinates(entry, width, height, getNaNBuffer());
+      uploadIndices(
+          entry,
+          this.glEngine.getResolutionWidth(),
+          this.glEngine.getResolutionHeight(),
+          getNaNBuffer());
+      uploadGatherMap(entry, width, height, getNaNBuffer());
+
+      final CoordTextures building = entry;
+      final int indexWidth = this.glEngine.getResolutionWidth();
+      final int indexHeight = this.glEngine.getResolutionHeight();
+      getDecodePool()
+          .execute(
+              () ->
+                  build(
+                      building, pointIndices, pointCoords, width, height, indexWidth, indexHeight));
+    }
+    this.modelCoordTextures.put(model, entry);
+  }
 
-    // Create a buffer to hold the indices of the model points
-    FloatBuffer indices = GLBuffers.newDirectFloatBuffer(enginePoints * 2);
+  /** Worker thread: build the coordinate and index data for a view. No GL calls. */
+  private void build(
+      CoordTextures entry,
+      int[] pointIndices,
+      float[] pointCoords,
+      int width,
+      int height,
+      int indexWidth,
+      int indexHeight) {
+    if (entry.disposed) {
+      return;
+    }
+    final int canvasPoints = width * height;
 
-    // Initialize with NaNs for coordinates and indices
-    coords.rewind();
-    indices.rewind();
-    for (int i = 0; i < enginePoints; i++) {
-      coords.put(Float.NaN);
-      coords.put(Float.NaN);
-      coords.put(Float.NaN);
-      indices.put(Float.NaN);
-      indices.put(Float.NaN);
+    BuildArrays built = this.freeBuildArrays.poll();
+    if (built == null) {
+      built = new BuildArrays();
     }
-    // Insert normalized coordinates and their indices into the buffers
-    for (LXPoint p : model.points) {
-      int destIndex = p.index * 3;
-      coords.put(destIndex, p.xn);
-      coords.put(destIndex + 1, p.yn);
-      coords.put(destIndex + 2, p.zn);
+    built.reset(canvasPoints, indexWidth * indexHeight);
+    float[] coords = built.coords;
+    float[] indices = built.indices;
+    float[] gather = built.gather;
+
+    for (int i = 0; i < pointIndices.length; i++) {
+      int index = pointIndices[i];
+      if (index >= canvasPoints || i >= canvasPoints) {
+        continue;
+      }
+      gather[i * 2] = index % width;
+      gather[i * 2 + 1] = index / width;
+      float xn = pointCoords[i * 3];
+      float yn = pointCoords[i * 3 + 1];
+      System.arraycopy(pointCoords, i * 3, coords, index * 3, 3);
 
       // save normalized coordinates to a rectangular texture index
       // using the model's width and height. We actually write to
       // a rectangular neighborhood around the target pixel to compensate
       // for rounding errors in sampling, and the plain old non-contiguous
       // nature of the model points.
-      setIndexNeighborhood(p, indices, width, height);
+      setIndexNeighborhood(index, xn, yn, indices, indexWidth, indexHeight, width);
     }
 
-    coords.rewind();
-    indices.rewind();
+    entry.built = built;
+    this.builtCoordTextures.add(entry);
+  }
+
+  /** Engine thread: upload coordinate data that finished building into its textures */
+  private void uploadBuiltCoordinateTextures() {
+    CoordTextures entry;
+    while ((entry = this.builtCoordTextures.poll()) != null) {
+      BuildArrays built = entry.built;
+      if (!entry.disposed) {
+        int width = this.glEngine.getWidth();
+        int height = this.glEngine.getHeight();
+        uploadCoordinates(entry, width, height, stage(built.coords));
+        uploadIndices(
+            entry,
+            this.glEngine.getResolutionWidth(),
+            this.glEngine.getResolutionHeight(),
+            stage(built.indices));
+        uploadGatherMap(entry, width, height, stage(built.gather));
+      }
+      entry.built = null;
+      this.freeBuildArrays.add(built);
+    }
+  }
 
+  /** Copy an array into the (reused) direct staging buffer with a single bulk put */
+  private FloatBuffer stage(float[] data) {
+    if (this.uploadBuffer == null || this.uploadBuffer.capacity() < data.length) {
+      this.uploadBuffer = GLBuffers.newDirectFloatBuffer(data.length);
+    }
+    this.uploadBuffer.clear();
+    this.uploadBuffer.put(data);
+    this.uploadBuffer.flip();
+    return this.uploadBuffer;
+  }
+
+  /** NaN-filled buffer large enough for either coordinate texture, built once per canvas size */
+  private FloatBuffer getNaNBuffer() {
+    if (this.nanBuffer == null) {
+      int size =
+          Math.max(
+              this.glEngine.getWidth() * this.glEngine.getHeight() * 3,
+              this.glEngine.getResolutionWidth() * this.glEngine.getResolutionHeight() * 2);
+      float[] nans = new float[size];
+      Arrays.fill(nans, Float.NaN);
+      this.nanBuffer = GLBuffers.newDirectFloatBuffer(nans);
+    }
+    this.nanBuffer.rewind();
+    return this.nanBuffer;
+  }
+
+  private void uploadCoordinates(CoordTextures entry, int width, int height, FloatBuffer coords) {
     // Create an OpenGL texture to hold the coordinate data
-    this.glEngine.bindTextureUnit(TEXTURE_UNIT_COORDS, normalizedXYZ.getHandle());
+    this.glEngine.bindTextureUnit(TEXTURE_UNIT_COORDS, entry.getHandle(0));
 
     gl4.glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MAG_FILTER, GL_NEAREST);
     gl4.glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MIN_FILTER, GL_NEAREST);
@@ -189,9 +325,11 @@ public class TextureManager implements LX.Listener {
 
     gl4.glBindTexture(GL_TEXTURE_2D, 0);
     gl4.glActiveTexture(GL_TEXTURE0);
+  }
 
+  private void uploadIndices(CoordTextures entry, int width, int height, FloatBuffer indices) {
     // And create an OpenGL texture to hold the index data
-    this.glEngine.bindTextureUnit(TEXTURE_UNIT_COORD_MAP, indexMap.getHandle());
+    this.glEngine.bindTextureUnit(TEXTURE_UNIT_COORD_MAP, entry.getHandle(1));
 
     gl4.glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MAG_FILTER, GL_NEAREST);
     gl4.glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MIN_FILTER, GL_NEAREST);
@@ -206,6 +344,22 @@ public class TextureManager implements LX.Listener {
     gl4.glActiveTexture(GL_TEXTURE0);
   }
 
+  private void uploadGatherMap(CoordTextures entry, int width, int height, FloatBuffer gather) {
+    // Canvas-sized like the coordinates, but only the first RowRange.packedRows rows are used
+    this.glEngine.bindTextureUnit(TEXTURE_UNIT_COORDS, entry.getHandle(2));
+
+    gl4.glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MAG_FILTER, GL_NEAREST);
+    gl4.glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MIN_FILTER, GL_NEAREST);
+    gl4.glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_WRAP_S, GL_CLAMP_TO_EDGE);
+    gl4.glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_WRAP_T, GL_CLAMP_TO_EDGE);
+
+    gl4.glTexImage2D(
+        GL4.GL_TEXTURE_2D, 0, GL4.GL_RG32F, width, height, 0, GL4.GL_RG, GL4.GL_FLOAT, gather);
+
+    gl4.glBindTexture(GL_TEXTURE_2D, 0);
+    gl4.glActiveTexture(GL_TEXTURE0);
+  }
+
   /**
    * Get the texture handle for a coordinate texture entry in a model.
    *
@@ -215,27 +369,22 @@ public class TextureManager implements LX.Listener {
    */
   public int getCoordinateTextureHandle(LXModel model, int entryId) {
     // Check if the model has coordinate textures
-    if (!this.coordTextures.containsKey(model)) {
+    CoordTextures entry = this.modelCoordTextures.get(model);
+    if (entry == null) {
       // OpenGL uses 0 to indicate an invalid texture handle
       return 0;
     }
 
-    // Retrieve array of texture entries for the model
-    CoordTexture[] slots = coordTextures.get(model);
-    CoordTexture tex;
     switch (entryId) {
       case TEXTURE_UNIT_COORDS: // normalized coordinates
-        tex = slots[0];
-        break;
+        return entry.getHandle(0);
       case TEXTURE_UNIT_COORD_MAP: // index mapping
-        tex = slots[1];
-        break;
+        return entry.getHandle(1);
       default:
         // invalid entry ID - this is a programming error and should not happen
         // so we throw an exception to make a big fuss.
         throw new IllegalArgumentException("Invalid coordinate texture entry ID: " + entryId);
     }
-    return tex.getHandle();
   }
 
   /**
@@ -281,41 +430,155 @@ public class TextureManager implements LX.Listener {
     return indexMap;
   }
 
+  /**
+   * Get the band of canvas rows that contains all of a model's points. Shader output is written to
+   * the canvas pixel matching each point's index, so reading back just this band is sufficient to
+   * recover every point in the model (view).
+   *
+   * @param model The model (view) to retrieve the row range for
+   * @return The row range, created along with the model's coordinate textures if necessary
+   */
+  public RowRange getRowRange(LXModel model) {
+    CoordTextures entry = this.modelCoordTextures.get(model);
+    if (entry == null) {
+      createCoordinateTextures(model);
+      entry = this.modelCoordTextures.get(model);
+    }
+    return entry.rowRange;
+  }
+
+  /**
+   * Get the gather map texture of a model, for packed readback. Holds the canvas pixel (x, y) of
+   * each of the model's points, in the order of model.points, starting at the first canvas pixel.
+   * Call {@link #getRowRange} first to create it.
+   *
+   * @param model The model (view) to retrieve the texture for
+   * @return The OpenGL texture handle, or 0 if the model has no textures yet
+   */
+  public int getGatherMapTexture(LXModel model) {
+    CoordTextures entry = this.modelCoordTextures.get(model);
+    return (entry != null) ? entry.getHandle(2) : 0;
+  }
+
+  /**
+   * Get the point indices of a model, in the order of its gather map. Packed readback writes packed
+   * pixel i back to the color buffer at index i of this array. Must not be modified.
+   *
+   * @param model The model (view) to retrieve the indices for
+   * @return The point indices, or null if the model has no textures yet
+   */
+  public int[] getPointIndices(LXModel model) {
+    CoordTextures entry = this.modelCoordTextures.get(model);
+    return (entry != null) ? entry.pointIndices : null;
+  }
+
   /**
    * Load a static texture from a file and return the texture *handle*. If the texture is already
    * loaded, just increment the ref count and return the existing texture handle.
+   *
+   * <p>The image is decoded in the background so this never blocks on file I/O. Until it has been
+   * uploaded, the handle refers to a transparent 1x1 placeholder. The handle does not change when
+   * the image arrives.
    */
   public int useTexture(String textureName) {
+    StaticTexture t = staticTextures.get(textureName);
+    if (t != null) {
+      t.refCount++;
+    } else {
+      t = new StaticTexture(textureName, new Texture(this.gl4, createPlaceholder()));
+      staticTextures.put(textureName, t);
+      final StaticTexture decoding = t;
+      getDecodePool().execute(() -> decode(decoding));
+    }
+    return t.getHandle();
+  }
+
+  private ExecutorService getDecodePool() {
+    if (this.decodePool == null) {
+      this.decodePool =
+          Executors.newFixedThreadPool(
+              DECODE_THREADS,
+              r -> {
+                Thread thread = new Thread(r, "TextureManager worker");
+                thread.setDaemon(true);
+                return thread;
+              });
+    }
+    return this.decodePool;
+  }
+
+  private TextureData createPlaceholder() {
+    return new TextureData(
+        this.gl4.getGLProfile(),
+        GL4.GL_RGBA,
+        1,
+        1,
+        0,
+        GL4.GL_RGBA,
+        GL4.GL_UNSIGNED_BYTE,
+        false,
+        false,
+        false,
+        ByteBuffer.allocateDirect(4),
+        null);
+  }
+
+  /** Worker thread: read and decode an image file. No GL calls. */
+  private void decode(StaticTexture t) {
+    if (t.disposed) {
+      return;
+    }
     try {
-      StaticTexture t = staticTextures.get(textureName);
-      if (t != null) {
-        t.refCount++;
-      } else {
-        File file = new File(textureName);
-        Texture texture = TextureIO.newTexture(file, false);
-        t = new StaticTexture(texture);
-        staticTextures.put(textureName, t);
-      }
-      return t.getHandle();
+      t.data = TextureIO.newTextureData(this.gl4.getGLProfile(), new File(t.name), false, null);
+    } catch (IOException | RuntimeException e) {
+      TE.error(e, "Could not load texture %s", t.name);
+      return;
+    }
+    this.decodedTextures.add(t);
+  }
 
-    } catch (IOException e) {
-      throw new RuntimeException(e);
+  /**
+   * Engine thread: upload any images and view coordinates that finished building into their
+   * textures, and delete coordinate textures that went unclaimed after a model change.
+   */
+  public void uploadDecodedTextures() {
+    uploadBuiltCoordinateTextures();
+    if (this.sweepCountdown > 0 && --this.sweepCountdown == 0) {
+      sweepCoordinateTextures();
+    }
+
+    StaticTexture t;
+    while ((t = this.decodedTextures.poll()) != null) {
+      if (!t.disposed) {
+        // Re-specifying the image keeps the texture object, so handles stay valid
+        t.texture.updateImage(this.gl4, t.data);
+      }
+      t.data.destroy();
+      t.data = null;
     }
   }
 
-  /** Delete all existing view coordinate textures (both slots) and clear the map. */
+  /** Delete all existing view coordinate textures and clear the maps. */
   private void clearCoordinateTextures() {
-    for (CoordTexture[] arr : this.coordTextures.values()) {
-      if (arr != null) {
-        for (int i = 0; i < arr.length; i++) {
-          if (arr[i] != null) {
-            arr[i].dispose();
-            arr[i] = null;
-          }
-        }
-      }
+    for (CoordTextures entry : this.coordTextures.values()) {
+      entry.dispose();
     }
     this.coordTextures.clear();
+    this.modelCoordTextures.clear();
+    this.sweepCountdown = 0;
+  }
+
+  /** Delete textures left over from a model change that no current view has claimed. */
+  private void sweepCoordinateTextures() {
+    Set<CoordTextures> inUse = new HashSet<>(this.modelCoordTextures.values());
+    Iterator<CoordTextures> it = this.coordTextures.values().iterator();
+    while (it.hasNext()) {
+      CoordTextures entry = it.next();
+      if (!inUse.contains(entry)) {
+        entry.dispose();
+        it.remove();
+      }
+    }
   }
 
   /**
@@ -341,38 +604,154 @@ public class TextureManager implements LX.Listener {
       clearCoordinateTextures();
 
       // dispose static textures
+      if (this.decodePool != null) {
+        this.decodePool.shutdownNow();
+        this.decodePool = null;
+      }
       for (StaticTexture t : this.staticTextures.values()) {
         t.dispose();
       }
       this.staticTextures.clear();
+      this.decodedTextures.clear();
+      this.builtCoordTextures.clear();
+      this.freeBuildArrays.clear();
     }
     // stop listening for model changes
     this.lx.removeListener(this);
   }
 
-  private class CoordTexture {
-    // OpenGL texture handle for this coordinate texture
-    // Will be 0 (invalid) if the texture has not been created yet.
-    final int[] handles = new int[1];
+  /**
+   * Contiguous band of canvas rows containing the points of a model, and the number of rows the
+   * points take up when packed together in model order.
+   */
+  public static class RowRange {
+    public final int firstRow;
+    public final int rowCount;
+
+    /** Rows needed to hold every point of the model one after another, for packed readback */
+    public final int packedRows;
 
-    CoordTexture() {
-      gl4.glGenTextures(1, handles, 0);
+    private RowRange(int firstRow, int rowCount, int packedRows) {
+      this.firstRow = firstRow;
+      this.rowCount = rowCount;
+      this.packedRows = packedRows;
     }
 
-    int getHandle() {
-      return handles[0];
+    static RowRange of(int[] pointIndices, int width, int height) {
+      if (pointIndices.length == 0) {
+        return new RowRange(0, 0, 0);
+      }
+      int minIndex = Integer.MAX_VALUE;
+      int maxIndex = 0;
+      for (int index : pointIndices) {
+        minIndex = Math.min(minIndex, index);
+        maxIndex = Math.max(maxIndex, index);
+      }
+      int firstRow = Math.min(minIndex / width, height - 1);
+      int lastRow = Math.min(maxIndex / width, height - 1);
+      int packedRows = Math.min((pointIndices.length + width - 1) / width, height);
+      return new RowRange(firstRow, lastRow - firstRow + 1, packedRows);
+    }
+
+    /** Number of canvas pixels covered by this range */
+    public int getPixelCount(int width) {
+      return this.rowCount * width;
+    }
+  }
+
+  /** Points of a view, compared by content */
+  private static final class ViewContent {
+    private final int[] pointIndices;
+    private final float[] pointCoords;
+    private final int hash;
+
+    ViewContent(int[] pointIndices, float[] pointCoords) {
+      this.pointIndices = pointIndices;
+      this.pointCoords = pointCoords;
+      this.hash = 31 * Arrays.hashCode(pointIndices) + Arrays.hashCode(pointCoords);
+    }
+
+    @Override
+    public int hashCode() {
+      return this.hash;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof ViewContent other
+          && this.hash == other.hash
+          && Arrays.equals(this.pointIndices, other.pointIndices)
+          && Arrays.equals(this.pointCoords, other.pointCoords);
+    }
+  }
+
+  /** Canvas-sized arrays a worker builds a view's texture data in. Reused between builds. */
+  private static final class BuildArrays {
+    // Normalized coordinates at each point's canvas pixel, NaN elsewhere
+    float[] coords = new float[0];
+
+    // Indices of the model points. This texture is addressed in the shader coordinate space
+    // (iResolution), which doesn't change with the canvas size.
+    float[] indices = new float[0];
+
+    // Canvas pixel of each point in view order, for packed readback. NaN after the last point.
+    float[] gather = new float[0];
+
+    /** Resize for the canvas if needed, and fill with NaN (no points) */
+    void reset(int canvasPoints, int indexPoints) {
+      if (this.coords.length != canvasPoints * 3) {
+        this.coords = new float[canvasPoints * 3];
+        this.gather = new float[canvasPoints * 2];
+      }
+      if (this.indices.length != indexPoints * 2) {
+        this.indices = new float[indexPoints * 2];
+      }
+      Arrays.fill(this.coords, Float.NaN);
+      Arrays.fill(this.indices, Float.NaN);
+      Arrays.fill(this.gather, Float.NaN);
+    }
+  }
+
+  /** Coordinate and index map textures for one distinct set of view points */
+  private class CoordTextures {
+    final RowRange rowRange;
+    final int[] pointIndices;
+
+    // OpenGL texture handles: [0] = normalized coordinates, [1] = (GL_RG32F) index map,
+    // [2] = (GL_RG32F) gather map
+    final int[] handles = new int[COORDINATE_TEXTURE_COUNT];
+
+    // Built data waiting for upload, handed from a worker to the engine thread
+    volatile BuildArrays built = null;
+    volatile boolean disposed = false;
+
+    CoordTextures(RowRange rowRange, int[] pointIndices) {
+      this.rowRange = rowRange;
+      this.pointIndices = pointIndices;
+      gl4.glGenTextures(COORDINATE_TEXTURE_COUNT, handles, 0);
+    }
+
+    int getHandle(int slot) {
+      return handles[slot];
     }
 
     void dispose() {
-      gl4.glDeleteTextures(1, handles, 0);
+      this.disposed = true;
+      gl4.glDeleteTextures(COORDINATE_TEXTURE_COUNT, handles, 0);
     }
   }
 
   private class StaticTexture {
+    final String name;
     final Texture texture;
     int refCount = 1;
 
-    StaticTexture(Texture texture) {
+    // Decoded image waiting for upload, handed from a worker to the engine thread
+    volatile TextureData data = null;
+    volatile boolean disposed = false;
+
+    StaticTexture(String name, Texture texture) {
+      this.name = name;
       this.texture = texture;
     }
 
@@ -381,6 +760,7 @@ public class TextureManager implements LX.Listener {
     }
 
     void dispose() {
+      this.disposed = true;
       texture.destroy(gl4);
     }
   }
@@ -37,13 +37,16 @@ public class BlendShader extends GLShader implements GLShader.UniformSource {
   }
 
   @Override
-  protected void allocateShaderBuffers() {
-    super.allocateShaderBuffers();
-
+  protected void allocateCanvasBuffers() {
     // FBO (framebuffer and texture) for rendering
     this.fbo = new FBO();
   }
 
+  @Override
+  protected void disposeCanvasBuffers() {
+    this.fbo.dispose();
+  }
+
   public void setDst(int iDst) {
     this.iDst = iDst;
   }
@@ -104,12 +107,4 @@ public class BlendShader extends GLShader implements GLShader.UniformSource {
   public int getRenderTexture() {
     return this.fbo.getTextureHandle();
   }
-
-  @Override
-  public void dispose() {
-    if (isInitialized()) {
-      this.fbo.dispose();
-    }
-    super.dispose();
-  }
 }
@@ -1,6 +1,5 @@
 package titanicsend.pattern.glengine.mixer;
 
-import com.jogamp.opengl.GL4;
 import heronarts.lx.LX;
 import java.nio.ByteBuffer;
 import java.nio.IntBuffer;
@@ -12,8 +11,8 @@ public class BusShader extends GLShader implements GLShader.UniformSource {
   // Framebuffer object (FBO) for rendering
   private FBO fbo;
 
-  // Pixel Pack Buffers (PBOs) for ping-pong output
-  private PingPongPBO ppPBOs;
+  // Pixel Pack Buffers (PBOs) for fenced async output
+  private PBORing pboRing;
 
   // Variables that will be passed to uniforms
   // Source texture handle
@@ -22,6 +21,8 @@ public class BusShader extends GLShader implements GLShader.UniformSource {
   private float level = 1f;
   // Target CPU buffer
   private int[] cpuBuffer;
+  // Most recent completed frame, re-sent while no newer readback has finished
+  private int[] lastFrame = null;
 
   private static class BusUniforms {
     private Uniform.Sampler2D iSrc;
@@ -43,14 +44,18 @@ public class BusShader extends GLShader implements GLShader.UniformSource {
   }
 
   @Override
-  protected void allocateShaderBuffers() {
-    super.allocateShaderBuffers();
-
+  protected void allocateCanvasBuffers() {
     // FBO (framebuffer and texture) for rendering
     this.fbo = new FBO();
 
-    // Pixel Pack Buffers (PBOs) for ping-pong output
-    this.ppPBOs = new PingPongPBO();
+    // Pixel Pack Buffers (PBOs) for fenced async output
+    this.pboRing = new PBORing(this.glEngine.getReadbackDepth());
+  }
+
+  @Override
+  protected void disposeCanvasBuffers() {
+    this.fbo.dispose();
+    this.pboRing.dispose();
   }
 
   public void setLevel(float level) {
@@ -84,8 +89,6 @@ public class BusShader extends GLShader implements GLShader.UniformSource {
     this.uniforms.level.setValue(this.level);
   }
 
-  boolean firstFrame = true;
-
   @Override
   protected void render() {
     // Bind vertex array object
@@ -97,42 +100,51 @@ public class BusShader extends GLShader implements GLShader.UniformSource {
     // Render frame
     drawElements();
 
-    // Start async read of framebuffer into PBO
-    this.ppPBOs.render.startRead();
-
-    if (firstFrame) {
-      // Skip the first frame, PBO is empty
-      firstFrame = false;
-    } else {
+    // Start async read of framebuffer into the next PBO
+    this.pboRing.startRead();
 
-      // Map the other PBO for reading (from previous frame)
-      ByteBuffer pboData = this.ppPBOs.copy.getData();
+    // Map only a PBO whose fence has signaled, never wait on the GPU
+    PBO completed = this.pboRing.pollCompleted();
+    if (completed != null) {
+      ByteBuffer pboData = completed.mapReadRange();
 
       if (pboData != null) {
-        // Copy data from PBO to main array
+        // Copy data from PBO to our last frame
         pboData.rewind();
         IntBuffer src = pboData.asIntBuffer();
+        if (this.lastFrame == null || this.lastFrame.length != this.cpuBuffer.length) {
+          this.lastFrame = new int[this.cpuBuffer.length];
+        }
         // Clamp
-        int count = Math.min(src.remaining(), this.cpuBuffer.length);
+        int count = Math.min(src.remaining(), this.lastFrame.length);
         // Safe copy
-        src.get(this.cpuBuffer, 0, count);
-
-        // Unmap the PBO
-        this.gl4.glUnmapBuffer(GL4.GL_PIXEL_PACK_BUFFER);
+        src.get(this.lastFrame, 0, count);
       }
-    }
 
-    // Unbind the PBO
-    this.gl4.glBindBuffer(GL4.GL_PIXEL_PACK_BUFFER, 0);
+      // Unmap and unbind the PBO
+      completed.unmap();
+    }
 
-    // Switch to the next PBO for the next frame
-    this.ppPBOs.swap();
+    // Copy the newest completed frame to the main array
+    if (this.lastFrame != null) {
+      System.arraycopy(
+          this.lastFrame,
+          0,
+          this.cpuBuffer,
+          0,
+          Math.min(this.lastFrame.length, this.cpuBuffer.length));
+    }
 
     // No need to unbind VAO.
     // Also not unbinding the FBO here, as other shader render passes will change it.
     // And GLMixer will unbind the last FBO at the end of postMix().
   }
 
+  /** Age in frames of the output most recently copied to the CPU buffer */
+  public int getReadbackLatencyFrames() {
+    return this.pboRing.getLatencyFrames();
+  }
+
   @Override
   public void unbindTextures() {
     this.uniforms.iSrc.unbind();
@@ -141,13 +153,4 @@ public class BusShader extends GLShader implements GLShader.UniformSource {
   public int getRenderTexture() {
     return this.fbo.getTextureHandle();
   }
-
-  @Override
-  public void dispose() {
-    if (isInitialized()) {
-      this.fbo.dispose();
-      this.ppPBOs.dispose();
-    }
-    super.dispose();
-  }
 }
@@ -0,0 +1,82 @@
+package titanicsend.pattern.glengine.mixer;
+
+import heronarts.lx.effect.LXEffect;
+import heronarts.lx.mixer.LXAbstractChannel;
+import heronarts.lx.mixer.LXChannel;
+import heronarts.lx.pattern.LXPattern;
+import java.util.List;
+
+/**
+ * Decides which mixer channels can skip rendering because their output can't reach the main, cue or
+ * aux output this frame. Kept apart from the GL state of {@link GLMixer}.
+ */
+final class ChannelVisibility {
+
+  private ChannelVisibility() {}
+
+  /**
+   * Find the hidden channels.
+   *
+   * @param channels Mixer channels and groups, in mixer order
+   * @param skipHidden If false, no channel is hidden
+   * @param hidden Set to whether each channel is hidden, by channel index
+   */
+  static void findHidden(
+      List<? extends LXAbstractChannel> channels, boolean skipHidden, boolean[] hidden) {
+    for (int i = 0; i < channels.size(); i++) {
+      hidden[i] = skipHidden && !isVisible(channels.get(i));
+    }
+    // Channels that must keep rendering
+    for (int i = 0; i < channels.size(); i++) {
+      if (hidden[i] && isRenderRequired(channels.get(i))) {
+        hidden[i] = false;
+      }
+    }
+    // A grouped channel is only rendered by its group's compositor, so the group of any channel
+    // that still renders has to render too. For example a cued channel in a faded out group.
+    for (int i = 0; i < channels.size(); i++) {
+      if (!hidden[i] && channels.get(i) instanceof LXChannel channel && channel.isInGroup()) {
+        hidden[channel.getGroup().getIndex()] = false;
+      }
+    }
+  }
+
+  private static boolean isVisible(LXAbstractChannel channel) {
+    if (channel.cueActive.isOn() || channel.auxActive.isOn()) {
+      return true;
+    }
+    if (!channel.enabled.isOn() || channel.isAutoMuted.isOn() || channel.fader.getValue() <= 0) {
+      return false;
+    }
+    if (channel instanceof LXChannel lxChannel && lxChannel.isInGroup()) {
+      return isVisible(lxChannel.getGroup());
+    }
+    return true;
+  }
+
+  /** True if a channel holds an enabled pattern or effect that asked to keep rendering */
+  private static boolean isRenderRequired(LXAbstractChannel channel) {
+    if (hasRenderWhenHidden(channel.effects)) {
+      return true;
+    }
+    if (channel instanceof LXChannel lxChannel) {
+      return isRenderRequired(lxChannel.getActivePattern())
+          || (lxChannel.isInTransition() && isRenderRequired(lxChannel.getNextPattern()));
+    }
+    return false;
+  }
+
+  private static boolean isRenderRequired(LXPattern pattern) {
+    return pattern != null
+        && (pattern instanceof RenderWhenHidden || hasRenderWhenHidden(pattern.effects));
+  }
+
+  private static boolean hasRenderWhenHidden(List<LXEffect> effects) {
+    for (LXEffect effect : effects) {
+      if (effect.isEnabled() && effect instanceof RenderWhenHidden) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
@@ -0,0 +1,155 @@
+package titanicsend.pattern.glengine.mixer;
+
+import titanicsend.pattern.glengine.GLShader;
+import titanicsend.pattern.yoffa.shader_engine.Uniform;
+
+/**
+ * Blends up to {@link #MAX_SOURCES} channel textures onto a destination in a single draw, with the
+ * same result as running a chain of BlendShaders. Used by GLMixer to composite a bus's channels
+ * without one full-canvas pass and texture round-trip per channel.
+ */
+public class FusedBlendShader extends GLShader implements GLShader.UniformSource {
+
+  // Must match blendFused.fs
+  public static final int MAX_SOURCES = 8;
+  public static final int MODE_ADD = 0;
+  public static final int MODE_MULTIPLY = 1;
+
+  // Framebuffer object (FBO) for rendering
+  private FBO fbo;
+
+  // Input texture handles (src = blending from, dst = blending into)
+  private int iDst = -1;
+  private final int[] iSrc = new int[MAX_SOURCES];
+  private final float[] level = new float[MAX_SOURCES];
+  private final int[] mode = new int[MAX_SOURCES];
+  private int count = 0;
+
+  // Bound to unused source slots so every sampler has a valid texture
+  private int emptyTexture = -1;
+
+  private static class FusedBlendUniforms {
+    private Uniform.Sampler2D iDst;
+    private final Uniform.Sampler2D[] iSrc = new Uniform.Sampler2D[MAX_SOURCES];
+    private final Uniform.Float1[] level = new Uniform.Float1[MAX_SOURCES];
+    private final Uniform.Int1[] mode = new Uniform.Int1[MAX_SOURCES];
+    private Uniform.Int1 count;
+  }
+
+  private final FusedBlendUniforms uniforms = new FusedBlendUniforms();
+  private boolean initializedUniforms = false;
+
+  public FusedBlendShader(GLShader.Config config) {
+    super(config);
+
+    addUniformSource(this);
+  }
+
+  @Override
+  protected boolean useTEPreProcess() {
+    return false;
+  }
+
+  @Override
+  protected void allocateCanvasBuffers() {
+    // FBO (framebuffer and texture) for rendering
+    this.fbo = new FBO();
+  }
+
+  @Override
+  protected void disposeCanvasBuffers() {
+    this.fbo.dispose();
+  }
+
+  public void setDst(int iDst) {
+    this.iDst = iDst;
+  }
+
+  public void setEmptyTexture(int emptyTexture) {
+    this.emptyTexture = emptyTexture;
+  }
+
+  /** Remove all sources, call before adding the sources for a frame */
+  public void clearSources() {
+    this.count = 0;
+  }
+
+  /** True if no more sources can be added for this pass */
+  public boolean isFull() {
+    return this.count >= MAX_SOURCES;
+  }
+
+  public int getSourceCount() {
+    return this.count;
+  }
+
+  /** Add the next source to blend, in mixer order */
+  public void addSource(int iSrc, float level, int mode) {
+    if (isFull()) {
+      throw new IllegalStateException("FusedBlendShader is limited to " + MAX_SOURCES + " sources");
+    }
+    this.iSrc[this.count] = iSrc;
+    this.level[this.count] = level;
+    this.mode[this.count] = mode;
+    this.count++;
+  }
+
+  private void initializeUniforms() {
+    // These take the first "rotating" texture unit slots, avoiding our few reserved units
+    this.uniforms.iDst = getUniformSampler2D("iDst");
+    for (int i = 0; i < MAX_SOURCES; i++) {
+      this.uniforms.iSrc[i] = getUniformSampler2D("iSrc[" + i + "]");
+      this.uniforms.level[i] = getUniformFloat1("level[" + i + "]");
+      this.uniforms.mode[i] = getUniformInt1("mode[" + i + "]");
+    }
+    this.uniforms.count = getUniformInt1("count");
+  }
+
+  /** Stage new uniform values that need to be sent to the shader */
+  @Override
+  public void setUniforms(GLShader s) {
+    // Use Uniform objects to track locations and values
+    if (!initializedUniforms) {
+      this.initializedUniforms = true;
+      initializeUniforms();
+    }
+
+    // Stage uniform values for updating
+    this.uniforms.iDst.setValue(this.iDst);
+    for (int i = 0; i < MAX_SOURCES; i++) {
+      if (i < this.count) {
+        this.uniforms.iSrc[i].setValue(this.iSrc[i]);
+        this.uniforms.level[i].setValue(this.level[i]);
+        this.uniforms.mode[i].setValue(this.mode[i]);
+      } else {
+        this.uniforms.iSrc[i].setValue(this.emptyTexture);
+      }
+    }
+    this.uniforms.count.setValue(this.count);
+  }
+
+  @Override
+  protected void render() {
+    // Bind vertex array object
+    bindVAO();
+
+    // Bind framebuffer object (FBO)
+    this.fbo.bind();
+
+    // Render frame to FBO
+    drawElements();
+  }
+
+  @Override
+  public void unbindTextures() {
+    this.uniforms.iDst.unbind();
+    for (Uniform.Sampler2D iSrc : this.uniforms.iSrc) {
+      iSrc.unbind();
+    }
+  }
+
+  /** Retrieve the output texture handle */
+  public int getRenderTexture() {
+    return this.fbo.getTextureHandle();
+  }
+}
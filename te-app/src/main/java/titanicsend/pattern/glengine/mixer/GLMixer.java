@@ -32,6 +32,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import titanicsend.ndi.NDIOutShaderEffect;
+import titanicsend.pattern.glengine.FrameProfiler;
 import titanicsend.pattern.glengine.GLEngine;
 import titanicsend.pattern.glengine.GLShaderEffect;
 import titanicsend.pattern.glengine.GLShaderPattern;
@@ -66,6 +67,19 @@ public class GLMixer implements LXMixerEngine.Listener, LXMixerEngine.PostMixer
   private int cueBusTexture = UNINITIALIZED;
   private int auxBusTexture = UNINITIALIZED;
 
+  // Composite the channels of each bus in a single draw where possible
+  private boolean fusedBlend = true;
+
+  // Run Java effects on a CPU copy of the bus texture, instead of looping them for nothing.
+  // Off by default: the copy is a synchronous readback that waits for the GPU.
+  private boolean javaEffectBridge = false;
+
+  // Skip rendering channels whose output can't reach main, cue or aux
+  private boolean skipHidden = true;
+
+  // Hidden state of each mixer channel by index, filled every frame
+  private boolean[] hiddenChannels = new boolean[0];
+
   public GLMixer(LX lx, GLEngine glEngine) {
     this.lx = lx;
     this.glEngine = glEngine;
@@ -87,7 +101,24 @@ public class GLMixer implements LXMixerEngine.Listener, LXMixerEngine.PostMixer
     this.initialized = true;
     this.gl4 = gl4;
 
-    // Create the default starting texture for buses
+    createBlackBackground();
+
+    // Initialize shader programs for any channels that were already created
+    this.glMasterBus.init();
+    for (GLAbstractChannel glChannel : this.glChannels) {
+      glChannel.init();
+    }
+
+    // Initialize preview shaders
+    this.glCueBus.init();
+    this.glAuxBus.init();
+
+    // Register GPU mixer
+    this.lx.engine.mixer.addPostMixer(this);
+  }
+
+  /** Create the default starting texture for buses, at the current canvas size */
+  private void createBlackBackground() {
     ByteBuffer blackBuffer =
         ByteBuffer.allocateDirect(this.glEngine.getWidth() * this.glEngine.getHeight() * 4);
     blackBuffer.rewind();
@@ -107,29 +138,66 @@ public class GLMixer implements LXMixerEngine.Listener, LXMixerEngine.PostMixer
         GL_RGBA,
         GL_UNSIGNED_BYTE,
         blackBuffer);
+    this.gl4.glBindTexture(GL_TEXTURE_2D, 0);
     this.blackBackground = backgroundHandles[0];
+  }
 
-    // Initialize shader programs for any channels that were already created
-    this.glMasterBus.init();
-    for (GLAbstractChannel glChannel : this.glChannels) {
-      glChannel.init();
+  /**
+   * Called by GLEngine after the canvas was resized. Shaders reallocate their own buffers on their
+   * next run; the mixer's black background and Java effect bridges are rebuilt here.
+   */
+  public void onCanvasResized() {
+    if (!this.initialized) {
+      return;
     }
+    this.gl4.glDeleteTextures(1, new int[] {this.blackBackground}, 0);
+    createBlackBackground();
 
-    // Initialize preview shaders
-    this.glCueBus.init();
-    this.glAuxBus.init();
-
-    // Register GPU mixer
-    this.lx.engine.mixer.addPostMixer(this);
+    this.glMasterBus.onCanvasResized();
+    for (GLAbstractChannel glChannel : this.glChannels) {
+      glChannel.onCanvasResized();
+    }
   }
 
   public void loop(double deltaMs) {
     // This will be called [by GLEngine] every engine frame prior to the LXMixer running.
     // Do any pre-run setup here.
 
+    // Find channels that can't be seen this frame, so their patterns can skip rendering
+    updateHidden();
+
     // Patterns will be looped after this
   }
 
+  /**
+   * Mark every channel whose output can't affect the main, cue or aux output this frame. A channel
+   * is hidden when it isn't previewed and is off, faded out or in a hidden group. Channels that
+   * must keep rendering, and the groups of channels that render, are never hidden.
+   *
+   * <p>At a fader level of zero neither blend mode changes the color of the bus, but add blend
+   * still raises its alpha to max(dst.a, src.a). Skipping a hidden channel gives up that alpha.
+   * Outputs only send the color.
+   */
+  private void updateHidden() {
+    List<LXAbstractChannel> channels = this.lx.engine.mixer.channels;
+    if (this.hiddenChannels.length < channels.size()) {
+      this.hiddenChannels = new boolean[channels.size()];
+    }
+    ChannelVisibility.findHidden(channels, this.skipHidden, this.hiddenChannels);
+    for (GLAbstractChannel glChannel : this.glChannels) {
+      glChannel.hidden = this.hiddenChannels[glChannel.abstractChannel.getIndex()];
+    }
+  }
+
+  /**
+   * True if the channel's output can't be seen this frame. Its patterns may skip rendering unless
+   * they implement {@link RenderWhenHidden}.
+   */
+  public boolean isHidden(LXAbstractChannel channel) {
+    GLAbstractChannel glChannel = this.channelMap.get(channel);
+    return glChannel != null && glChannel.hidden;
+  }
+
   /**
    * This is an experimental callback from the LX Mixer, allowing us to run our own mixer routine
    * and write the output to LX's (CPU) buffers for the main mix, primary cue, and aux cue.
@@ -154,9 +222,16 @@ public class GLMixer implements LXMixerEngine.Listener, LXMixerEngine.PostMixer
     this.glAuxBus.setBuffer(frame.getAux());
 
     // Recursive run the buses
+    FrameProfiler profiler = this.glEngine.profiler;
+    profiler.begin(this.glMasterBus.profilerSection);
     this.glMasterBus.blend(deltaMs, this.blackBackground);
+    profiler.end(this.glMasterBus.profilerSection);
+    profiler.begin(this.glCueBus.profilerSection);
     this.glCueBus.blend(deltaMs, this.blackBackground);
+    profiler.end(this.glCueBus.profilerSection);
+    profiler.begin(this.glAuxBus.profilerSection);
     this.glAuxBus.blend(deltaMs, this.blackBackground);
+    profiler.end(this.glAuxBus.profilerSection);
 
     // Activate cues but not on the first frame they're enabled, to avoid stale buffer
     frame.setCueOn(cueWasActive && this.cueBusActive);
@@ -166,6 +241,43 @@ public class GLMixer implements LXMixerEngine.Listener, LXMixerEngine.PostMixer
     this.gl4.glBindFramebuffer(GL_FRAMEBUFFER, 0);
   }
 
+  /**
+   * Enable or disable fused channel blending. When disabled, every channel is blended onto its bus
+   * with a separate draw.
+   */
+  public void setFusedBlend(boolean fusedBlend) {
+    this.fusedBlend = fusedBlend;
+  }
+
+  public boolean isFusedBlend() {
+    return this.fusedBlend;
+  }
+
+  /**
+   * Enable or disable the bridge for Java effects. When disabled, Java effects are still looped in
+   * GPU mode but their output is not used. When enabled, each batch of Java effects stalls the
+   * engine thread until the GPU has finished the bus. Off unless started with --java-effect-bridge.
+   */
+  public void setJavaEffectBridge(boolean javaEffectBridge) {
+    this.javaEffectBridge = javaEffectBridge;
+  }
+
+  public boolean isJavaEffectBridge() {
+    return this.javaEffectBridge;
+  }
+
+  /**
+   * Enable or disable skipping channels that can't be seen. When disabled, every enabled channel
+   * renders, even at a fader level of zero.
+   */
+  public void setSkipHidden(boolean skipHidden) {
+    this.skipHidden = skipHidden;
+  }
+
+  public boolean isSkipHidden() {
+    return this.skipHidden;
+  }
+
   /** Checks a channel for inclusion in cue/aux previews */
   private void checkForPreview(LXAbstractChannel channel, GLBus bus) {
     if (channel.cueActive.isOn() && !this.cueBusActive) {
@@ -253,6 +365,10 @@ public class GLMixer implements LXMixerEngine.Listener, LXMixerEngine.PostMixer
 
     private int lastSrc = UNINITIALIZED;
 
+    // Bridges for batches of Java effects, used in the same order every frame
+    private final List<JavaEffectBridge> bridges = new ArrayList<>();
+    private int bridgesUsed = 0;
+
     public GLBus(LXBus bus) {
       this.bus = bus;
     }
@@ -264,6 +380,19 @@ public class GLMixer implements LXMixerEngine.Listener, LXMixerEngine.PostMixer
         return dst;
       }
 
+      // Blend the bus texture onto the dst texture
+      return finalBlend(dst, render(deltaMs));
+    }
+
+    /** Composite the bus contents and run its effects, returning the pre-fader texture handle */
+    final int render(double deltaMs) {
+      this.bridgesUsed = 0;
+
+      FrameProfiler.Section section = getProfilerSection();
+      if (section != null) {
+        glEngine.profiler.begin(section);
+      }
+
       // Future expansion note: run geometry-manipulation effects here, *then* loop patterns.
 
       // Composite contents (If this is a group, subchannels. Or if this is a channel, patterns.)
@@ -275,8 +404,15 @@ public class GLMixer implements LXMixerEngine.Listener, LXMixerEngine.PostMixer
       // Remember the pre-fader texture for preview buses
       this.lastSrc = src;
 
-      // Blend the bus texture onto the dst texture
-      return finalBlend(dst, src);
+      if (section != null) {
+        glEngine.profiler.end(section);
+      }
+      return src;
+    }
+
+    /** Profiler section for rendering the bus contents, or null if timed by the caller */
+    protected FrameProfiler.Section getProfilerSection() {
+      return null;
     }
 
     /**
@@ -289,7 +425,8 @@ public class GLMixer implements LXMixerEngine.Listener, LXMixerEngine.PostMixer
     protected abstract int blendContents(double deltaMs);
 
     protected final int loopEffects(double deltaMs, int dst, List<LXEffect> effects) {
-      for (LXEffect effect : effects) {
+      for (int i = 0; i < effects.size(); i++) {
+        LXEffect effect = effects.get(i);
         // TODO: loop effect for damping even if disabled
         if (effect.isEnabled()) {
           effect.setBuffer(dummyBuffer);
@@ -304,9 +441,17 @@ public class GLMixer implements LXMixerEngine.Listener, LXMixerEngine.PostMixer
             effect.setModel(effect.getModelView());
             effect.loop(deltaMs);
             // Do not modify dst. Output texture is for NDI sending, not for us.
+          } else if (javaEffectBridge) {
+            // Java effects in GPU mode. Run all consecutive ones in one batch,
+            // with one readback and one upload.
+            int end = i + 1;
+            while (end < effects.size() && isJavaEffect(effects.get(end))) {
+              end++;
+            }
+            dst = getBridge().run(deltaMs, dst, effects, i, end);
+            i = end - 1;
           } else {
-            // Java effect in GPU mode
-            // Currently gets looped for processing but the output is not used
+            // Java effect in GPU mode, looped for processing but the output is not used
             effect.setModel(effect.getModelView());
             effect.loop(deltaMs);
           }
@@ -315,28 +460,146 @@ public class GLMixer implements LXMixerEngine.Listener, LXMixerEngine.PostMixer
       return dst;
     }
 
+    private boolean isJavaEffect(LXEffect effect) {
+      return !(effect instanceof GLShaderEffect) && !(effect instanceof NDIOutShaderEffect);
+    }
+
+    private JavaEffectBridge getBridge() {
+      if (this.bridgesUsed == this.bridges.size()) {
+        this.bridges.add(new JavaEffectBridge(lx, glEngine, gl4));
+      }
+      return this.bridges.get(this.bridgesUsed++);
+    }
+
+    protected final void disposeBridges() {
+      for (JavaEffectBridge bridge : this.bridges) {
+        bridge.dispose();
+      }
+      this.bridges.clear();
+    }
+
+    /** Drop canvas-sized resources. Bridges are recreated at the new size on next use. */
+    void onCanvasResized() {
+      disposeBridges();
+    }
+
     /** Final step, blend the bus output texture onto the dst texture at the current fader level */
     protected abstract int finalBlend(int dst, int src);
 
     /** Retrieve the most recent pre-fader texture */
-    private int getSrcTexture() {
+    int getSrcTexture() {
       return this.lastSrc;
     }
 
     protected abstract void dispose();
   }
 
+  /**
+   * Blends a list of channels onto a black background for the master bus or a group. With fused
+   * blending, the channels are rendered first and then composited in one draw, instead of one
+   * full-canvas blend per channel. Channels beyond the fused shader's limit fall back to the chain
+   * of per-channel blends.
+   */
+  private class ChannelCompositor {
+
+    private final FusedBlendShader fusedShader;
+
+    // Channels that rendered this frame, in mixer order
+    private final List<GLAbstractChannel> activeChannels = new ArrayList<>();
+
+    private ChannelCompositor() {
+      this.fusedShader =
+          new FusedBlendShader(FusedBlendShader.config(lx).withFilename("blendFused.fs"));
+    }
+
+    void init() {
+      this.fusedShader.init();
+      this.fusedShader.setEmptyTexture(blackBackground);
+    }
+
+    void onCanvasResized() {
+      this.fusedShader.setEmptyTexture(blackBackground);
+    }
+
+    int blend(double deltaMs, List<? extends LXAbstractChannel> channels, boolean skipGrouped) {
+      int dst = blackBackground;
+
+      if (!fusedBlend) {
+        for (LXAbstractChannel channel : channels) {
+          if (skipGrouped && channel.isInGroup()) {
+            continue;
+          }
+          GLAbstractChannel glChannel = channelMap.get(channel);
+          dst = glChannel.blend(deltaMs, dst);
+          checkForPreview(channel, glChannel);
+        }
+        return dst;
+      }
+
+      // Render all active channels. None of them depend on the blended result so far.
+      this.activeChannels.clear();
+      for (LXAbstractChannel channel : channels) {
+        if (skipGrouped && channel.isInGroup()) {
+          continue;
+        }
+        GLAbstractChannel glChannel = channelMap.get(channel);
+        if (glChannel.isActive()) {
+          glChannel.render(deltaMs);
+          this.activeChannels.add(glChannel);
+        }
+        checkForPreview(channel, glChannel);
+      }
+
+      // A fused pass only pays off with more than one channel
+      int chained = 0;
+      if (this.activeChannels.size() > 1) {
+        this.fusedShader.clearSources();
+        this.fusedShader.setDst(dst);
+        while (chained < this.activeChannels.size() && !this.fusedShader.isFull()) {
+          GLAbstractChannel glChannel = this.activeChannels.get(chained++);
+          this.fusedShader.addSource(
+              glChannel.getSrcTexture(), glChannel.bus.fader.getValuef(), glChannel.fusedBlendMode);
+        }
+        this.fusedShader.run();
+        dst = this.fusedShader.getRenderTexture();
+      }
+
+      // Blend any remaining channels one at a time
+      for (int i = chained; i < this.activeChannels.size(); i++) {
+        GLAbstractChannel glChannel = this.activeChannels.get(i);
+        dst = glChannel.finalBlend(dst, glChannel.getSrcTexture());
+      }
+      return dst;
+    }
+
+    void dispose() {
+      this.activeChannels.clear();
+      this.fusedShader.dispose();
+    }
+  }
+
   private class GLMasterBus extends GLBus {
 
     private final BusShader mainBusShader;
+    private final ChannelCompositor compositor = new ChannelCompositor();
+
+    private final FrameProfiler.Section profilerSection;
 
     public GLMasterBus(LXMasterBus masterBus) {
       super(masterBus);
       this.mainBusShader = new BusShader(lx);
+      this.profilerSection = glEngine.profiler.section(FrameProfiler.BUS, "master");
     }
 
     void init() {
       this.mainBusShader.init();
+      this.compositor.init();
+    }
+
+    @Override
+    void onCanvasResized() {
+      super.onCanvasResized();
+      this.compositor.onCanvasResized();
     }
 
     protected boolean isActive() {
@@ -345,16 +608,8 @@ public class GLMixer implements LXMixerEngine.Listener, LXMixerEngine.PostMixer
 
     @Override
     protected int blendContents(double deltaMs) {
-      int dst = blackBackground;
       // Blend all channels in the mixer
-      for (LXAbstractChannel channel : lx.engine.mixer.channels) {
-        if (!channel.isInGroup()) {
-          GLAbstractChannel glChannel = channelMap.get(channel);
-          dst = glChannel.blend(deltaMs, dst);
-          checkForPreview(channel, glChannel);
-        }
-      }
-      return dst;
+      return this.compositor.blend(deltaMs, lx.engine.mixer.channels, true);
     }
 
     /** Set the target CPU buffer for BusShader */
@@ -375,6 +630,8 @@ public class GLMixer implements LXMixerEngine.Listener, LXMixerEngine.PostMixer
     @Override
     protected void dispose() {
       this.mainBusShader.dispose();
+      this.compositor.dispose();
+      disposeBridges();
     }
   }
 
@@ -385,9 +642,12 @@ public class GLMixer implements LXMixerEngine.Listener, LXMixerEngine.PostMixer
 
     private final BusShader previewBusShader;
 
+    private final FrameProfiler.Section profilerSection;
+
     public GLPreviewBus(boolean isAux) {
       this.isAux = isAux;
       this.previewBusShader = new BusShader(lx);
+      this.profilerSection = glEngine.profiler.section(FrameProfiler.BUS, isAux ? "aux" : "cue");
     }
 
     /** Blend down the bus onto the dst texture, returning the output texture handle */
@@ -438,8 +698,17 @@ public class GLMixer implements LXMixerEngine.Listener, LXMixerEngine.PostMixer
 
     private boolean initialized = false;
 
+    // Output can't be seen this frame, set before patterns are looped
+    private boolean hidden = false;
+
     protected BlendShader blendShader;
 
+    // Equivalent of the blend shader for FusedBlendShader
+    private int fusedBlendMode = FusedBlendShader.MODE_ADD;
+
+    // Profiler section of this channel, replaced when the channel is renamed
+    private FrameProfiler.Section profilerSection = null;
+
     private final LXParameterListener blendModeListener =
         (p) -> {
           updateBlendShader();
@@ -462,8 +731,10 @@ public class GLMixer implements LXMixerEngine.Listener, LXMixerEngine.PostMixer
       LXBlend lxB = this.abstractChannel.blendMode.getObject();
       if (lxB instanceof MultiplyBlend) {
         shaderName = "blendMultiply.fs";
+        this.fusedBlendMode = FusedBlendShader.MODE_MULTIPLY;
       } else {
         shaderName = "blendAdd.fs";
+        this.fusedBlendMode = FusedBlendShader.MODE_ADD;
       }
 
       this.blendShader = new BlendShader(BlendShader.config(lx).withFilename(shaderName));
@@ -482,11 +753,31 @@ public class GLMixer implements LXMixerEngine.Listener, LXMixerEngine.PostMixer
     }
 
     protected final boolean isActive() {
+      if (this.hidden) {
+        return false;
+      }
       return this.abstractChannel.cueActive.isOn()
           || this.abstractChannel.auxActive.isOn()
           || (this.abstractChannel.enabled.isOn() && !this.abstractChannel.isAutoMuted.isOn());
     }
 
+    @Override
+    protected FrameProfiler.Section getProfilerSection() {
+      String label = this.abstractChannel.getLabel();
+      if (this.profilerSection == null || !this.profilerSection.name.equals(label)) {
+        removeProfilerSection();
+        this.profilerSection = glEngine.profiler.createSection(FrameProfiler.CHANNEL, label);
+      }
+      return this.profilerSection;
+    }
+
+    private void removeProfilerSection() {
+      if (this.profilerSection != null) {
+        glEngine.profiler.removeSection(this.profilerSection);
+        this.profilerSection = null;
+      }
+    }
+
     @Override
     protected int finalBlend(int dst, int src) {
       this.blendShader.setDst(dst);
@@ -501,28 +792,43 @@ public class GLMixer implements LXMixerEngine.Listener, LXMixerEngine.PostMixer
     protected void dispose() {
       this.abstractChannel.blendMode.removeListener(this.blendModeListener);
       this.blendShader.dispose();
+      disposeBridges();
+      removeProfilerSection();
     }
   }
 
   private class GLGroup extends GLAbstractChannel {
 
     private final LXGroup group;
+    private final ChannelCompositor compositor = new ChannelCompositor();
 
     public GLGroup(LXGroup group) {
       super(group);
       this.group = group;
     }
 
+    @Override
+    void init() {
+      super.init();
+      this.compositor.init();
+    }
+
+    @Override
+    void onCanvasResized() {
+      super.onCanvasResized();
+      this.compositor.onCanvasResized();
+    }
+
     @Override
     protected int blendContents(double deltaMs) {
-      int dst = blackBackground;
       // Blend all channels in the group
-      for (LXAbstractChannel channel : this.group.channels) {
-        GLAbstractChannel glChannel = channelMap.get(channel);
-        dst = glChannel.blend(deltaMs, dst);
-        checkForPreview(channel, glChannel);
-      }
-      return dst;
+      return this.compositor.blend(deltaMs, this.group.channels, false);
+    }
+
+    @Override
+    protected void dispose() {
+      this.compositor.dispose();
+      super.dispose();
     }
   }
 
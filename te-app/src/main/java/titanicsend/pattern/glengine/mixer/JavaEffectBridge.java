@@ -0,0 +1,148 @@
+package titanicsend.pattern.glengine.mixer;
+
+import static com.jogamp.opengl.GL.GL_BGRA;
+import static com.jogamp.opengl.GL.GL_CLAMP_TO_EDGE;
+import static com.jogamp.opengl.GL.GL_COLOR_ATTACHMENT0;
+import static com.jogamp.opengl.GL.GL_FRAMEBUFFER;
+import static com.jogamp.opengl.GL.GL_LINEAR;
+import static com.jogamp.opengl.GL.GL_RGBA8;
+import static com.jogamp.opengl.GL.GL_TEXTURE_2D;
+import static com.jogamp.opengl.GL.GL_TEXTURE_MAG_FILTER;
+import static com.jogamp.opengl.GL.GL_TEXTURE_MIN_FILTER;
+import static com.jogamp.opengl.GL.GL_TEXTURE_WRAP_S;
+import static com.jogamp.opengl.GL.GL_TEXTURE_WRAP_T;
+import static com.jogamp.opengl.GL.GL_UNSIGNED_BYTE;
+
+import com.jogamp.opengl.GL4;
+import heronarts.lx.LX;
+import heronarts.lx.ModelBuffer;
+import heronarts.lx.effect.LXEffect;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.List;
+import titanicsend.pattern.glengine.GLEngine;
+import titanicsend.pattern.glengine.TextureManager;
+
+/**
+ * Lets Java (CPU) LXEffects run in GPU render mode. The model points of a bus texture are read back
+ * into a ModelBuffer, a batch of consecutive Java effects is run on it, and the result is uploaded
+ * to an output texture that the rest of the GPU chain continues from.
+ *
+ * <p>Model point N lives at canvas pixel N, so only the band of rows holding the model's points is
+ * transferred in each direction. The readback is synchronous, so the engine thread waits for the
+ * GPU once per batch. The bridge is only used when enabled on the mixer.
+ */
+class JavaEffectBridge {
+
+  private final LX lx;
+  private final GLEngine glEngine;
+  private final GL4 gl4;
+  private final int width;
+  private final int height;
+
+  private final ModelBuffer buffer;
+
+  // Output texture, and a framebuffer used to read back the input texture
+  private final int[] textureHandles = new int[1];
+  private final int[] fboHandles = new int[1];
+
+  // Pixels for the model's rows, in LX color (ARGB) order
+  private final ByteBuffer pixelBytes;
+  private final IntBuffer pixels;
+
+  JavaEffectBridge(LX lx, GLEngine glEngine, GL4 gl4) {
+    this.lx = lx;
+    this.glEngine = glEngine;
+    this.gl4 = gl4;
+    this.width = glEngine.getWidth();
+    this.height = glEngine.getHeight();
+    this.buffer = new ModelBuffer(lx);
+
+    this.pixelBytes =
+        ByteBuffer.allocateDirect(this.width * this.height * 4).order(ByteOrder.nativeOrder());
+    this.pixels = this.pixelBytes.asIntBuffer();
+
+    this.gl4.glGenTextures(1, this.textureHandles, 0);
+    this.gl4.glBindTexture(GL_TEXTURE_2D, this.textureHandles[0]);
+    this.gl4.glTexImage2D(
+        GL_TEXTURE_2D,
+        0,
+        GL_RGBA8,
+        this.width,
+        this.height,
+        0,
+        GL_BGRA,
+        GL_UNSIGNED_BYTE,
+        this.pixelBytes);
+    this.gl4.glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MAG_FILTER, GL_LINEAR);
+    this.gl4.glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MIN_FILTER, GL_LINEAR);
+    this.gl4.glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_WRAP_S, GL_CLAMP_TO_EDGE);
+    this.gl4.glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_WRAP_T, GL_CLAMP_TO_EDGE);
+    this.gl4.glBindTexture(GL_TEXTURE_2D, 0);
+
+    this.gl4.glGenFramebuffers(1, this.fboHandles, 0);
+  }
+
+  /**
+   * Run a batch of Java effects on the src texture.
+   *
+   * @param effects effects list, the batch is [from, to)
+   * @return handle of the texture holding the result
+   */
+  int run(double deltaMs, int src, List<LXEffect> effects, int from, int to) {
+    TextureManager.RowRange rows = this.glEngine.textureCache.getRowRange(this.lx.getModel());
+    int offset = rows.firstRow * this.width;
+    int[] colors = this.buffer.getArray();
+    int count = Math.max(0, Math.min(rows.getPixelCount(this.width), colors.length - offset));
+
+    // Make sure client memory is used for both transfers
+    this.gl4.glBindBuffer(GL4.GL_PIXEL_PACK_BUFFER, 0);
+    this.gl4.glBindBuffer(GL4.GL_PIXEL_UNPACK_BUFFER, 0);
+
+    // Read back the model's rows. This waits for the GPU, once per batch of effects.
+    this.gl4.glBindFramebuffer(GL_FRAMEBUFFER, this.fboHandles[0]);
+    this.gl4.glFramebufferTexture2D(GL_FRAMEBUFFER, GL_COLOR_ATTACHMENT0, GL_TEXTURE_2D, src, 0);
+    this.pixelBytes.rewind();
+    this.gl4.glReadPixels(
+        0, rows.firstRow, this.width, rows.rowCount, GL_BGRA, GL_UNSIGNED_BYTE, this.pixelBytes);
+    this.gl4.glBindFramebuffer(GL_FRAMEBUFFER, 0);
+    this.pixels.rewind();
+    this.pixels.get(colors, offset, count);
+
+    // Run the effects on the CPU buffer
+    for (int i = from; i < to; i++) {
+      LXEffect effect = effects.get(i);
+      if (effect.isEnabled()) {
+        effect.setBuffer(this.buffer);
+        effect.setModel(effect.getModelView());
+        effect.loop(deltaMs);
+      }
+    }
+
+    // Upload the result
+    this.pixels.rewind();
+    this.pixels.put(colors, offset, count);
+    this.pixelBytes.rewind();
+    this.gl4.glBindTexture(GL_TEXTURE_2D, this.textureHandles[0]);
+    this.gl4.glTexSubImage2D(
+        GL_TEXTURE_2D,
+        0,
+        0,
+        rows.firstRow,
+        this.width,
+        rows.rowCount,
+        GL_BGRA,
+        GL_UNSIGNED_BYTE,
+        this.pixelBytes);
+    this.gl4.glBindTexture(GL_TEXTURE_2D, 0);
+
+    return this.textureHandles[0];
+  }
+
+  void dispose() {
+    this.gl4.glDeleteFramebuffers(1, this.fboHandles, 0);
+    this.gl4.glDeleteTextures(1, this.textureHandles, 0);
+    this.buffer.dispose();
+  }
+}
@@ -0,0 +1,8 @@
+package titanicsend.pattern.glengine.mixer;
+
+/**
+ * Marker for patterns and effects that must keep rendering while GLMixer has determined their
+ * channel's output can't be seen, for example because they accumulate state from frame to frame and
+ * would visibly jump when the channel is faded back in.
+ */
+public interface RenderWhenHidden {}
@@ -4,10 +4,12 @@ import heronarts.lx.LX;
 import heronarts.lx.LXCategory;
 import heronarts.lx.parameter.LXParameter;
 import titanicsend.pattern.glengine.GLShaderPattern;
+import titanicsend.pattern.glengine.mixer.RenderWhenHidden;
 import titanicsend.pattern.yoffa.framework.TEShaderView;
 
+// Tails fade through the backbuffer, so keep rendering on hidden channels
 @LXCategory("Combo FG")
-public class Fireflies extends GLShaderPattern {
+public class Fireflies extends GLShaderPattern implements RenderWhenHidden {
 
   public Fireflies(LX lx) {
     super(lx, TEShaderView.ALL_POINTS);
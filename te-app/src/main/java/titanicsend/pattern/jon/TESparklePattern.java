@@ -2,14 +2,15 @@ package titanicsend.pattern.jon;
 
 import heronarts.lx.LX;
 import heronarts.lx.LXCategory;
-import heronarts.lx.color.LXColor;
 import heronarts.lx.model.LXModel;
-import heronarts.lx.model.LXPoint;
 import heronarts.lx.modulator.LXWaveshape;
 import heronarts.lx.parameter.CompoundParameter;
 import heronarts.lx.parameter.ObjectParameter;
 import heronarts.lx.utils.LXUtils;
+import java.util.Arrays;
+import titanicsend.model.PointArrays;
 import titanicsend.pattern.TEPerformancePattern;
+import titanicsend.pattern.render.ColorKernels;
 
 /**
  * Copyright 2020- Mark C. Slee, Heron Arts LLC
@@ -89,7 +90,7 @@ public class TESparklePattern extends TEPerformancePattern {
     private final Sparkle[] sparkles = new Sparkle[MAX_SPARKLES];
 
     /** Array of raw value output levels, matching the size of the model */
-    public double[] outputLevels;
+    public float[] outputLevels;
 
     private int numSparkles;
     private int maxPixelsPerSparkle;
@@ -112,7 +113,7 @@ public class TESparklePattern extends TEPerformancePattern {
 
     public void setModel(LXModel model) {
       // An output level for every pixel in the model
-      this.outputLevels = new double[model.size];
+      this.outputLevels = new float[model.size];
 
       // Set a cap on the maximum number of sparkle generators
       this.numSparkles = LXUtils.min(model.size, MAX_SPARKLES);
@@ -158,9 +159,7 @@ public class TESparklePattern extends TEPerformancePattern {
       }
 
       // Initialize all output levels to base level
-      for (int i = 0; i < this.outputLevels.length; ++i) {
-        this.outputLevels[i] = baseLevel;
-      }
+      Arrays.fill(this.outputLevels, (float) baseLevel);
 
       // Run all the sparkles
       for (int i = 0; i < this.numSparkles; ++i) {
@@ -229,6 +228,9 @@ public class TESparklePattern extends TEPerformancePattern {
 
   public final Engine engine = new Engine(model);
 
+  // Point indices in model order, matching the engine's output levels
+  private PointArrays points = PointArrays.of(model.points);
+
   public TESparklePattern(LX lx) {
     super(lx);
 
@@ -265,16 +267,17 @@ public class TESparklePattern extends TEPerformancePattern {
   @Override
   protected void onModelChanged(LXModel model) {
     engine.setModel(model);
+    this.points = PointArrays.of(model.points);
   }
 
   @Override
   public void runTEAudioPattern(double deltaMs) {
     engine.run(deltaMs, model);
-    int i = 0;
-    int color = calcColor();
-    for (LXPoint p : model.points) {
-      colors[p.index] =
-          LXColor.multiply(color, LXColor.gray(LXUtils.clamp(engine.outputLevels[i++], 0, 100)));
+    if (!this.points.isFor(model.points)) {
+      this.points = PointArrays.of(model.points);
     }
+    ColorKernels.get()
+        .multiplyGray(
+            colors, this.points.index, 0, this.points.size, calcColor(), engine.outputLevels);
   }
 }
@@ -27,12 +27,25 @@ import heronarts.lx.transform.LXMatrix;
 import heronarts.lx.utils.LXUtils;
 import titanicsend.pattern.TEPerformancePattern;
 import titanicsend.pattern.jon.TEControlTag;
+import titanicsend.pattern.render.CPURenderPool;
 
 @LXCategory(LXCategory.COLOR)
 public class TEGradientPattern extends TEPerformancePattern {
 
   private final LXMatrix transform = new LXMatrix();
 
+  // Per-frame state shared by the point kernel, set before each render
+  private float xAmount;
+  private float yAmount;
+  private float zAmount;
+  private CoordinateFunction xFunction;
+  private CoordinateFunction yFunction;
+  private CoordinateFunction zFunction;
+
+  // Colors points on the CPU render pool. The kernel needs no scratch.
+  private final CPURenderPool.Job<Void> job =
+      newPointJob(() -> null, (p, scratch) -> getPointColor(p));
+
   private interface CoordinateFunction {
     float getCoordinate(LXPoint p, float normalized, float offset);
   }
@@ -119,17 +132,16 @@ public class TEGradientPattern extends TEPerformancePattern {
       zAmount /= total;
     }
 
-    final float xOffset = 0; // this.xOffset.getValuef();
-    final float yOffset = 0; // this.yOffset.getValuef();
-    final float zOffset = 0; // this.zOffset.getValuef();
-
     final CoordinateMode xMode = this.xMode.getEnum();
     final CoordinateMode yMode = this.yMode.getEnum();
     final CoordinateMode zMode = this.zMode.getEnum();
 
-    final CoordinateFunction xFunction = (xAmount < 0) ? xMode.invert : xMode.function;
-    final CoordinateFunction yFunction = (yAmount < 0) ? yMode.invert : yMode.function;
-    final CoordinateFunction zFunction = (zAmount < 0) ? zMode.invert : zMode.function;
+    this.xAmount = xAmount;
+    this.yAmount = yAmount;
+    this.zAmount = zAmount;
+    this.xFunction = (xAmount < 0) ? xMode.invert : xMode.function;
+    this.yFunction = (yAmount < 0) ? yMode.invert : yMode.function;
+    this.zFunction = (zAmount < 0) ? zMode.invert : zMode.function;
 
     double pitch = -getRotationAngleFromSpin();
     double roll = Math.toRadians(-getWow2());
@@ -148,37 +160,44 @@ public class TEGradientPattern extends TEPerformancePattern {
         .scale(size)
         .translate(-.5f, -.5f, -.5f);
 
-    for (LXPoint p : this.model.points) {
-      if (this.modelTE.isGapPoint(p)) {
-        continue;
-      }
-
-      final float xn =
-          p.xn * this.transform.m11
-              + p.yn * this.transform.m12
-              + p.zn * this.transform.m13
-              + this.transform.m14;
-
-      final float yn =
-          p.xn * this.transform.m21
-              + p.yn * this.transform.m22
-              + p.zn * this.transform.m23
-              + this.transform.m24;
-
-      final float zn =
-          p.xn * this.transform.m31
-              + p.yn * this.transform.m32
-              + p.zn * this.transform.m33
-              + this.transform.m34;
-
-      float lerp =
-          LXUtils.clampf(
-              xAmount * xFunction.getCoordinate(p, xn, xOffset)
-                  + yAmount * yFunction.getCoordinate(p, yn, yOffset)
-                  + zAmount * zFunction.getCoordinate(p, zn, zOffset),
-              0,
-              1);
-      colors[p.index] = getGradientColor(lerp);
+    render(this.job);
+  }
+
+  // Called from render pool threads, reads only the per-frame state above
+  private int getPointColor(LXPoint p) {
+    if (this.modelTE.isGapPoint(p)) {
+      return colors[p.index];
     }
+
+    final float xOffset = 0; // this.xOffset.getValuef();
+    final float yOffset = 0; // this.yOffset.getValuef();
+    final float zOffset = 0; // this.zOffset.getValuef();
+
+    final float xn =
+        p.xn * this.transform.m11
+            + p.yn * this.transform.m12
+            + p.zn * this.transform.m13
+            + this.transform.m14;
+
+    final float yn =
+        p.xn * this.transform.m21
+            + p.yn * this.transform.m22
+            + p.zn * this.transform.m23
+            + this.transform.m24;
+
+    final float zn =
+        p.xn * this.transform.m31
+            + p.yn * this.transform.m32
+            + p.zn * this.transform.m33
+            + this.transform.m34;
+
+    float lerp =
+        LXUtils.clampf(
+            this.xAmount * this.xFunction.getCoordinate(p, xn, xOffset)
+                + this.yAmount * this.yFunction.getCoordinate(p, yn, yOffset)
+                + this.zAmount * this.zFunction.getCoordinate(p, zn, zOffset),
+            0,
+            1);
+    return getGradientColor(lerp);
   }
 }
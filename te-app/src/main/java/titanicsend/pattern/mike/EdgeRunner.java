@@ -11,14 +11,14 @@ import heronarts.lx.modulator.Click;
 import heronarts.lx.parameter.DiscreteParameter;
 import heronarts.lx.utils.LXUtils;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 import titanicsend.app.TEVirtualColor;
 import titanicsend.color.TEColorType;
 import titanicsend.model.TEEdgeModel;
 import titanicsend.model.TEPanelModel;
+import titanicsend.model.TETopology;
 import titanicsend.model.TEVertex;
 import titanicsend.model.TEWholeModel;
 import titanicsend.model.TEWholeModel.TEModelListener;
@@ -62,9 +62,12 @@ public class EdgeRunner extends TEPattern implements TEModelListener {
     }
   }
 
-  private final HashMap<TEEdgeModel, Integer> edgeLastVisit;
-  private final HashMap<LXPoint, Integer> pointLastVisit;
-  private final Map<TEPanelModel, PanelData> panelData = new HashMap<TEPanelModel, PanelData>();
+  // Visit state by topology index: move number of the last visit, or -1.
+  // Points are numbered by their position in the point cache.
+  private TETopology topology;
+  private int[] edgeLastVisit = new int[0];
+  private int[] pointLastVisit = new int[0];
+  private PanelData[] panelData = new PanelData[0];
   private final List<Runner> runners;
   private int moveNumber;
 
@@ -80,8 +83,6 @@ public class EdgeRunner extends TEPattern implements TEModelListener {
 
   public EdgeRunner(LX lx) {
     super(lx);
-    this.edgeLastVisit = new HashMap<TEEdgeModel, Integer>();
-    this.pointLastVisit = new HashMap<LXPoint, Integer>();
     this.runners = new ArrayList<>();
     startModulator(this.mover);
     startModulator(this.spawner);
@@ -100,7 +101,10 @@ public class EdgeRunner extends TEPattern implements TEModelListener {
 
   private void initialize() {
     this.runners.clear();
-    this.panelData.clear();
+    this.topology = this.modelTE.getTopology();
+    this.edgeLastVisit = new int[this.topology.numEdges];
+    this.pointLastVisit = new int[this.topology.edgePointOffset[this.topology.numEdges]];
+    this.panelData = new PanelData[this.topology.numPanels];
     for (TEPanelModel panel : this.modelTE.getPanels()) {
       if (!panel.panelType.equals(TEPanelModel.LIT)) continue;
       int numEdgePixels =
@@ -108,16 +112,18 @@ public class EdgeRunner extends TEPattern implements TEModelListener {
               + (panel.e1 != null ? panel.e1.points.length : 0)
               + (panel.e2 != null ? panel.e2.points.length : 0);
       PanelData pd = new PanelData(numEdgePixels);
-      this.panelData.put(panel, pd);
+      this.panelData[panel.getTopologyIndex()] = pd;
     }
     this.reset();
   }
 
   private void reset() {
-    this.edgeLastVisit.clear();
-    this.pointLastVisit.clear();
-    for (PanelData pd : this.panelData.values()) {
-      pd.litEdgePixels = 0;
+    Arrays.fill(this.edgeLastVisit, -1);
+    Arrays.fill(this.pointLastVisit, -1);
+    for (PanelData pd : this.panelData) {
+      if (pd != null) {
+        pd.litEdgePixels = 0;
+      }
     }
 
     for (TEVertex v : this.modelTE.getVertexes()) {
@@ -133,7 +139,7 @@ public class EdgeRunner extends TEPattern implements TEModelListener {
 
     assert choices.size() > 0;
     for (TEEdgeModel e : choices) {
-      int lastVisit = this.edgeLastVisit.getOrDefault(e, -1);
+      int lastVisit = this.edgeLastVisit[e.getTopologyIndex()];
       if (lastVisit < oldestMove) {
         oldestMove = lastVisit;
         winner = e;
@@ -146,24 +152,24 @@ public class EdgeRunner extends TEPattern implements TEModelListener {
   // This is a hook for subclasses to do something with the current point
   // in between moves. By default, we just note when it was last visited.
   public void mark(Runner runner) {
-    LXPoint currentPoint = runner.currentEdge.points[runner.currentPoint];
-    assert currentPoint != null;
-    if (this.pointLastVisit.getOrDefault(currentPoint, -1) < 0) {
+    int currentPoint =
+        this.topology.edgePointOffset[runner.currentEdge.getTopologyIndex()] + runner.currentPoint;
+    if (this.pointLastVisit[currentPoint] < 0) {
       // First visit to this point. Increment neighbor Panels' lit-edge-pixel count.
       for (TEPanelModel panel : runner.currentEdge.connectedPanels) {
         if (panel.panelType.equals(TEPanelModel.LIT)) {
-          this.panelData.get(panel).litEdgePixels++;
+          this.panelData[panel.getTopologyIndex()].litEdgePixels++;
         }
       }
     }
-    this.pointLastVisit.put(currentPoint, this.moveNumber);
+    this.pointLastVisit[currentPoint] = this.moveNumber;
   }
 
   // Move along the current edge until we reach the end. Use selectEdge()
   // to pick a new one at that point; unless overridden, it picks the
   // path least recently visited.
   public void move(Runner runner) {
-    this.edgeLastVisit.put(runner.currentEdge, ++this.moveNumber);
+    this.edgeLastVisit[runner.currentEdge.getTopologyIndex()] = ++this.moveNumber;
     TEVertex reachedVertex = null;
 
     if (runner.fwd) {
@@ -233,8 +239,10 @@ public class EdgeRunner extends TEPattern implements TEModelListener {
     int trailColor = this.trailColor.calcColor();
     int fillColor = this.fillColor.calcColor();
 
-    for (LXPoint point : modelTE.getEdgePoints()) {
-      int lastVisit = this.pointLastVisit.getOrDefault(point, -1);
+    // Edge points come first in the point cache, in the same order as pointLastVisit
+    int[] edgePointIndex = this.modelTE.getPointCache().points.index;
+    for (int i = 0; i < this.pointLastVisit.length; i++) {
+      int lastVisit = this.pointLastVisit[i];
       int color;
       if (lastVisit == -1) {
         color = TRANSPARENT;
@@ -251,20 +259,20 @@ public class EdgeRunner extends TEPattern implements TEModelListener {
           color = trailColor;
         }
       }
-      colors[point.index] = color;
+      colors[edgePointIndex[i]] = color;
     }
     for (TEPanelModel panel : this.modelTE.getPanels()) {
       if (panel.panelType.equals(TEPanelModel.SOLID)) {
         assert panel.points.length == 1;
         LXPoint point = panel.points[0];
         int numVisitedEdges = 0;
-        if (edgeLastVisit.getOrDefault(panel.e0, -1) >= 0) numVisitedEdges++;
-        if (edgeLastVisit.getOrDefault(panel.e1, -1) >= 0) numVisitedEdges++;
-        if (edgeLastVisit.getOrDefault(panel.e2, -1) >= 0) numVisitedEdges++;
+        if (isVisited(panel.e0)) numVisitedEdges++;
+        if (isVisited(panel.e1)) numVisitedEdges++;
+        if (isVisited(panel.e2)) numVisitedEdges++;
         int alpha = 0xFF * numVisitedEdges / 3;
         colors[point.index] = TEColor.reAlpha(fillColor, alpha);
       } else if (panel.panelType.equals(TEPanelModel.LIT)) {
-        PanelData panelData = this.panelData.get(panel);
+        PanelData panelData = this.panelData[panel.getTopologyIndex()];
         double litFraction = (double) panelData.litEdgePixels / panelData.numEdgePixels;
         for (TEPanelModel.Point lpd : panel.panelPoints) {
           int color;
@@ -279,6 +287,10 @@ public class EdgeRunner extends TEPattern implements TEModelListener {
     }
   }
 
+  private boolean isVisited(TEEdgeModel edge) {
+    return edge != null && this.edgeLastVisit[edge.getTopologyIndex()] >= 0;
+  }
+
   @Override
   public void dispose() {
     this.modelTE.removeListener(this);
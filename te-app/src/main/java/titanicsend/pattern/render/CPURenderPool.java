@@ -0,0 +1,205 @@
+package titanicsend.pattern.render;
+
+import java.util.concurrent.Phaser;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+import titanicsend.util.TE;
+
+/**
+ * Dedicated thread pool for patterns that compute point colors on the CPU.
+ *
+ * <p>A frame's points are split into contiguous index ranges, so each worker walks neighboring
+ * points and color array entries. Workers claim ranges until none are left, and the calling
+ * (engine) thread works alongside them. {@link #render} returns only once every range is done, so
+ * the frame is complete before the pattern's colors are used.
+ *
+ * <p>Work is described by a {@link Job}, which pairs a kernel with scratch state created once per
+ * worker. Kernels can then keep their temporaries in the scratch object and allocate nothing per
+ * point.
+ *
+ * <p>The pool is shared by all patterns, and is sized from {@link #threadCount}, which can be set
+ * with the --render-threads startup argument.
+ */
+public class CPURenderPool {
+
+  /** Number of worker threads, in addition to the calling thread. Set before first use. */
+  public static int threadCount = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+
+  // Smallest range handed to a worker. Below this, splitting costs more than it saves.
+  private static final int MIN_CHUNK_POINTS = 512;
+
+  // Aim for a few ranges per worker, so a slow range doesn't hold up the frame
+  private static final int CHUNKS_PER_WORKER = 4;
+
+  /** Computes the colors of the points in a range of indices, [from, to) */
+  @FunctionalInterface
+  public interface RangeKernel<S> {
+    void render(int from, int to, S scratch);
+  }
+
+  /**
+   * A kernel plus its per-worker scratch state. Create one per pattern (or effect) and reuse it
+   * every frame.
+   */
+  public static final class Job<S> {
+    private final Supplier<S> scratchFactory;
+    private final RangeKernel<S> kernel;
+    private Object[] scratch = new Object[0];
+
+    public Job(Supplier<S> scratchFactory, RangeKernel<S> kernel) {
+      this.scratchFactory = scratchFactory;
+      this.kernel = kernel;
+    }
+
+    // Engine thread, before the frame starts
+    private void prepare(int parallelism) {
+      if (this.scratch.length != parallelism) {
+        this.scratch = new Object[parallelism];
+      }
+    }
+
+    // Each worker only ever touches its own scratch slot
+    @SuppressWarnings("unchecked")
+    private void render(int worker, int from, int to) {
+      Object s = this.scratch[worker];
+      if (s == null) {
+        s = this.scratch[worker] = this.scratchFactory.get();
+      }
+      this.kernel.render(from, to, (S) s);
+    }
+  }
+
+  private static CPURenderPool instance;
+
+  public static synchronized CPURenderPool get() {
+    if (instance == null) {
+      instance = new CPURenderPool(threadCount);
+    }
+    return instance;
+  }
+
+  /** Stop the shared pool, if it was started */
+  public static synchronized void shutdown() {
+    if (instance != null) {
+      instance.dispose();
+      instance = null;
+    }
+  }
+
+  private final Thread[] workers;
+
+  // Frame barrier: workers and the calling thread meet here at the start and end of each frame
+  private final Phaser phaser;
+  private volatile boolean running = true;
+
+  // Current frame, valid between the start and end barriers
+  private volatile Job<?> job;
+  private volatile int count;
+  private volatile int chunkSize;
+  private volatile int chunkCount;
+  private final AtomicInteger nextChunk = new AtomicInteger();
+  private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+  private CPURenderPool(int threads) {
+    this.workers = new Thread[Math.max(0, threads)];
+    this.phaser = new Phaser(this.workers.length + 1);
+    for (int i = 0; i < this.workers.length; i++) {
+      final int worker = i;
+      Thread thread = new Thread(() -> runWorker(worker), "CPU render " + i);
+      thread.setDaemon(true);
+      this.workers[i] = thread;
+      thread.start();
+    }
+    TE.log("CPURenderPool: %d worker threads", this.workers.length);
+  }
+
+  /** Number of threads that render, including the calling thread */
+  public int getParallelism() {
+    return this.workers.length + 1;
+  }
+
+  /**
+   * Run a job over point indices [0, count) and wait for it to finish. Engine thread.
+   *
+   * @throws RuntimeException if the kernel threw on any thread
+   */
+  public synchronized void render(Job<?> job, int count) {
+    if (count <= 0) {
+      return;
+    }
+    int parallelism = getParallelism();
+    job.prepare(parallelism);
+
+    // Small frames, or a stopped pool: just do it here
+    if (count <= MIN_CHUNK_POINTS || !this.running || this.workers.length == 0) {
+      job.render(this.workers.length, 0, count);
+      return;
+    }
+
+    this.job = job;
+    this.count = count;
+    this.chunkSize =
+        Math.max(
+            MIN_CHUNK_POINTS,
+            (count + parallelism * CHUNKS_PER_WORKER - 1) / (parallelism * CHUNKS_PER_WORKER));
+    this.chunkCount = (count + this.chunkSize - 1) / this.chunkSize;
+    this.nextChunk.set(0);
+    this.failure.set(null);
+
+    // Release the workers, help out, then wait for everyone to finish
+    this.phaser.arriveAndAwaitAdvance();
+    work(this.workers.length);
+    this.phaser.arriveAndAwaitAdvance();
+    this.job = null;
+
+    Throwable t = this.failure.get();
+    if (t != null) {
+      if (t instanceof RuntimeException re) {
+        throw re;
+      }
+      throw new RuntimeException("CPU render failed", t);
+    }
+  }
+
+  private void runWorker(int worker) {
+    while (true) {
+      this.phaser.arriveAndAwaitAdvance();
+      if (!this.running) {
+        this.phaser.arriveAndDeregister();
+        return;
+      }
+      work(worker);
+      this.phaser.arriveAndAwaitAdvance();
+    }
+  }
+
+  // Claim and render ranges until there are none left
+  private void work(int worker) {
+    Job<?> job = this.job;
+    int count = this.count;
+    int chunkSize = this.chunkSize;
+    int chunkCount = this.chunkCount;
+    int chunk;
+    while ((chunk = this.nextChunk.getAndIncrement()) < chunkCount) {
+      int from = chunk * chunkSize;
+      int to = Math.min(count, from + chunkSize);
+      try {
+        job.render(worker, from, to);
+      } catch (Throwable t) {
+        // Stop handing out ranges; the caller rethrows after the frame barrier
+        this.failure.compareAndSet(null, t);
+        this.nextChunk.set(chunkCount);
+      }
+    }
+  }
+
+  private synchronized void dispose() {
+    if (!this.running) {
+      return;
+    }
+    // Workers are waiting at the start barrier; release them to see that we're done
+    this.running = false;
+    this.phaser.arriveAndDeregister();
+  }
+}
@@ -0,0 +1,72 @@
+package titanicsend.pattern.render;
+
+import titanicsend.util.TE;
+
+/**
+ * Bulk color operations over a range of points, for CPU patterns and effects.
+ *
+ * <p>Each operation works on the entries {@code colors[index[i]]} for i in [from, to), where index
+ * is typically {@link titanicsend.model.PointArrays#index}. Per-point inputs such as levels or
+ * source colors are indexed by i. Results match the scalar LXColor functions named in each method,
+ * bit for bit.
+ *
+ * <p>{@link #get()} returns a SIMD implementation built on the JDK Vector API when it was compiled
+ * in (Maven profile {@code vector}) and the JVM was started with {@code --add-modules
+ * jdk.incubator.vector}, otherwise a plain scalar one.
+ */
+public abstract class ColorKernels {
+
+  private static final String VECTOR_MODULE = "jdk.incubator.vector";
+  private static final String VECTOR_KERNELS = "titanicsend.pattern.render.VectorColorKernels";
+
+  private static final ColorKernels instance = select();
+
+  public static ColorKernels get() {
+    return instance;
+  }
+
+  private static ColorKernels select() {
+    if (ModuleLayer.boot().findModule(VECTOR_MODULE).isPresent()) {
+      try {
+        // Loaded by name so that nothing here links against the incubator module
+        ColorKernels kernels =
+            (ColorKernels) Class.forName(VECTOR_KERNELS).getDeclaredConstructor().newInstance();
+        TE.log("ColorKernels: using %s", kernels.getName());
+        return kernels;
+      } catch (ReflectiveOperationException | LinkageError e) {
+        TE.warning("ColorKernels: Vector API unavailable, using scalar kernels: %s", e);
+      }
+    }
+    return new ScalarColorKernels();
+  }
+
+  /** Description of the implementation, for logs */
+  public abstract String getName();
+
+  /** Set every point to the same color */
+  public abstract void fill(int[] colors, int[] index, int from, int to, int color);
+
+  /** colors[index[i]] = LXColor.lerp(colors[index[i]], src, amount) */
+  public abstract void lerp(int[] colors, int[] index, int from, int to, int src, double amount);
+
+  /**
+   * colors[index[i]] = LXColor.multiply(color, LXColor.gray(level)), with each level from levels[i]
+   * clamped to 0-100
+   */
+  public abstract void multiplyGray(
+      int[] colors, int[] index, int from, int to, int color, float[] levels);
+
+  /** colors[index[i]] = LXColor.add(colors[index[i]], src[i]) */
+  public abstract void add(int[] colors, int[] index, int from, int to, int[] src);
+
+  /** Split colors[index[i]] into normalized 0-1 red, green and blue at [i] */
+  public abstract void unpack(
+      int[] colors, int[] index, int from, int to, float[] r, float[] g, float[] b);
+
+  /**
+   * Set colors[index[i]] to opaque colors from normalized red, green and blue at [i]. Components
+   * are clamped to 0-1 and rounded to the nearest 8-bit value.
+   */
+  public abstract void pack(
+      float[] r, float[] g, float[] b, int[] colors, int[] index, int from, int to);
+}
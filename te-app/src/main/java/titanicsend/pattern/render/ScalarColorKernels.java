@@ -0,0 +1,67 @@
+package titanicsend.pattern.render;
+
+import heronarts.lx.color.LXColor;
+import heronarts.lx.utils.LXUtils;
+
+/** Plain loops over LXColor. Used when the Vector API is not available, and as the reference. */
+class ScalarColorKernels extends ColorKernels {
+
+  @Override
+  public String getName() {
+    return "scalar";
+  }
+
+  @Override
+  public void fill(int[] colors, int[] index, int from, int to, int color) {
+    for (int i = from; i < to; i++) {
+      colors[index[i]] = color;
+    }
+  }
+
+  @Override
+  public void lerp(int[] colors, int[] index, int from, int to, int src, double amount) {
+    int alpha = LXColor.blendMask(amount);
+    for (int i = from; i < to; i++) {
+      colors[index[i]] = LXColor.lerp(colors[index[i]], src, alpha);
+    }
+  }
+
+  @Override
+  public void multiplyGray(int[] colors, int[] index, int from, int to, int color, float[] levels) {
+    for (int i = from; i < to; i++) {
+      colors[index[i]] = LXColor.multiply(color, LXColor.gray(LXUtils.clampf(levels[i], 0, 100)));
+    }
+  }
+
+  @Override
+  public void add(int[] colors, int[] index, int from, int to, int[] src) {
+    for (int i = from; i < to; i++) {
+      colors[index[i]] = LXColor.add(colors[index[i]], src[i]);
+    }
+  }
+
+  @Override
+  public void unpack(int[] colors, int[] index, int from, int to, float[] r, float[] g, float[] b) {
+    for (int i = from; i < to; i++) {
+      int c = colors[index[i]];
+      r[i] = ((c >>> LXColor.R_SHIFT) & 0xff) / 255f;
+      g[i] = ((c >>> LXColor.G_SHIFT) & 0xff) / 255f;
+      b[i] = (c & 0xff) / 255f;
+    }
+  }
+
+  @Override
+  public void pack(float[] r, float[] g, float[] b, int[] colors, int[] index, int from, int to) {
+    for (int i = from; i < to; i++) {
+      colors[index[i]] =
+          LXColor.ALPHA_MASK
+              | toByte(r[i]) << LXColor.R_SHIFT
+              | toByte(g[i]) << LXColor.G_SHIFT
+              | toByte(b[i]);
+    }
+  }
+
+  static int toByte(float v) {
+    return (int) (Math.max(0f, Math.min(1f, v)) * 255f + 0.5f);
+  }
+}
@@ -1,9 +1,10 @@
 package titanicsend.pattern.will.shaders;
 
 import static titanicsend.util.TEMath.fract;
-import static titanicsend.util.TEMath.multiplyArray;
-import static titanicsend.util.TEMath.multiplyArrays;
-import static titanicsend.util.TEMath.subtractArrays;
+import static titanicsend.util.TEVecMath.fract;
+import static titanicsend.util.TEVecMath.mul;
+import static titanicsend.util.TEVecMath.set;
+import static titanicsend.util.TEVecMath.sub;
 
 import heronarts.lx.Tempo;
 import heronarts.lx.color.LXColor;
@@ -40,11 +41,15 @@ public class OldMatrixScroll extends FragmentShaderEffect {
   }
 
   @Override
-  protected double[] getColorForPoint(
-      double[] fragCoordinates, double[] resolution, double timeSeconds) {
+  protected void getColorForPoint(
+      double[] fragCoordinates,
+      double[] resolution,
+      double timeSeconds,
+      Scratch scratch,
+      double[] color) {
 
     // rotate
-    fragCoordinates = rotate2D(fragCoordinates, origin);
+    rotate2D(fragCoordinates, origin);
 
     // randomly displace coordinate on every measure start
     if (pattern.getWow1() > 0) {
@@ -65,14 +70,14 @@ public class OldMatrixScroll extends FragmentShaderEffect {
 
     //        vec3 v = vec3(u, 1) / iResolution - 0.5;
     double[] v =
-        new double[] {
-          fragCoordinates[0] / resolution[0] - 0.5 + pattern.getXPos(),
-          fragCoordinates[1] / resolution[1] - 0.5 + pattern.getYPos(),
-          1.0
-        };
+        set(
+            scratch.vec3(0),
+            fragCoordinates[0] / resolution[0] - 0.5 + pattern.getXPos(),
+            fragCoordinates[1] / resolution[1] - 0.5 + pattern.getYPos(),
+            1.0);
 
     //        vec3 s = 0.3 / abs(v);
-    double[] s = new double[3];
+    double[] s = scratch.vec3(1);
     for (int m = 0; m < 3; m++) {
       s[m] = 0.3 / Math.abs(v[m]);
     }
@@ -80,24 +85,24 @@ public class OldMatrixScroll extends FragmentShaderEffect {
     s[2] = Math.min(s[0], s[1]);
 
     //        vec3 t = s.y < s.x ? v.xzz : v.zyz;
-    double[] t = new double[3];
+    double[] t = scratch.vec3(2);
     if (s[1] < s[0]) {
-      t = new double[] {v[0], v[2], v[2]};
+      set(t, v[0], v[2], v[2]);
     } else {
-      t = new double[] {v[2], v[1], v[2]};
+      set(t, v[2], v[1], v[2]);
     }
 
     //        vec3 i = ceil(8e2 * s.z * t);
-    double[] i = new double[3];
+    double[] i = scratch.vec3(3);
     for (int m = 0; m < 3; m++) {
       i[m] = Math.ceil(8e2 * s[2] * t[m]) * pattern.getSize(); //        i *= 0.1;
     }
 
     //        vec3 j = fract(i);
-    double[] j = fract(i);
+    double[] j = fract(t, i);
 
     //        i -= j;
-    i = subtractArrays(i, j);
+    sub(i, i, j);
 
     //        float b = (9. + 8. * sin(i).x);
     double b = (9. + 8. * Math.sin(i[0]));
@@ -106,11 +111,10 @@ public class OldMatrixScroll extends FragmentShaderEffect {
     int tb = (int) (timeSeconds * b);
 
     //        vec3 p = vec3(9, tb, 0) + i;
-    double[] p = new double[] {i[0] + 9.0, i[1] + tb, i[2]};
+    double[] p = set(v, i[0] + 9.0, i[1] + tb, i[2]);
 
     // #define R fract(1e2 * sin(p.x * 5. + p.y))
     //        color.g = R / s.z;
-    double[] color = new double[3];
     double R = fract(100 * Math.sin(p[0] * 5. + p[1]));
 
     // color[2] = R / s[2];
@@ -126,7 +130,7 @@ public class OldMatrixScroll extends FragmentShaderEffect {
     // TE.log("green val: %f, my green: %f", R / s[2], color[1]);
 
     //        p *= j;
-    p = multiplyArrays(p, j);
+    mul(p, p, j);
 
     //        bool oneOrZero = R > 0.5 && j.x < 0.6 && j.y <.8;
     boolean oneOrZero = R > 0.5 && j[0] < 0.6 && j[1] < 0.8;
@@ -134,14 +138,12 @@ public class OldMatrixScroll extends FragmentShaderEffect {
     //        color *= (oneOrZero ? 1.0 : 0.0);
     // slight bump to brightness b/c original calculation came out too dark
     // after switch to view normalized coordinates
-    color = multiplyArray(oneOrZero ? 1.25 : 0.0, color);
+    mul(color, color, oneOrZero ? 1.25 : 0.0);
 
     // apply beat reactivity, amount controlled by getWow2
     double oneOnBeatAndLessNearEnd =
         1.0 - (pattern.getWow2() * this.pattern.getLX().engine.tempo.basis());
-    color = multiplyArray(oneOnBeatAndLessNearEnd, color);
-
-    return color;
+    mul(color, color, oneOnBeatAndLessNearEnd);
   }
 
   @Override
@@ -6,21 +6,20 @@ import static java.lang.Math.cos;
 import static java.lang.Math.max;
 import static java.lang.Math.pow;
 import static java.lang.Math.sin;
-import static titanicsend.util.TEMath.addArrays;
-import static titanicsend.util.TEMath.addToArray;
-import static titanicsend.util.TEMath.divideArrays;
-import static titanicsend.util.TEMath.dotProduct;
-import static titanicsend.util.TEMath.floor;
 import static titanicsend.util.TEMath.fract;
-import static titanicsend.util.TEMath.multiplyArray;
-import static titanicsend.util.TEMath.multiplyVectorByMatrix;
 import static titanicsend.util.TEMath.step;
-import static titanicsend.util.TEMath.subtractArrays;
-import static titanicsend.util.TEMath.vectorLength;
+import static titanicsend.util.TEVecMath.add;
+import static titanicsend.util.TEVecMath.div;
+import static titanicsend.util.TEVecMath.dot;
+import static titanicsend.util.TEVecMath.floor;
+import static titanicsend.util.TEVecMath.length;
+import static titanicsend.util.TEVecMath.mul;
+import static titanicsend.util.TEVecMath.rotate;
+import static titanicsend.util.TEVecMath.set;
+import static titanicsend.util.TEVecMath.sub;
 
 import heronarts.lx.parameter.CompoundParameter;
 import heronarts.lx.parameter.LXParameter;
-import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 import titanicsend.pattern.yoffa.framework.PatternTarget;
@@ -45,105 +44,87 @@ public class ElectricShader extends FragmentShaderEffect {
     super(target);
   }
 
-  private double[] hash(double[] p) {
-    p =
-        new double[] {
-          dotProduct(p, new double[] {127.1, 311.7}), dotProduct(p, new double[] {269.5, 183.3})
-        };
-    return addToArray(
-        -1,
-        multiplyArray(
-            dispersion.getValue(),
-            fract(Arrays.stream(p).map(v -> Math.sin(v) * 43758.5453123).toArray())));
-  }
+  private static final double[] HASH_X = {127.1, 311.7};
+  private static final double[] HASH_Y = {269.5, 183.3};
+  private static final double[] COLOR_X = {.1, .8, 2};
+  private static final double[] COLOR_Y = {2, .1, .8};
 
-  private double noise(double[] p) {
-    double[] i = floor(addToArray((p[0] + p[1]) * K1, p));
-    double[] a = addToArray((i[1] + i[1]) * K2, subtractArrays(p, i));
-    double[] o = new double[] {step(a[1], a[0]), step(a[0], a[1])};
-    double[] b = addToArray(K2, subtractArrays(a, o));
-    double[] c = addToArray(-1 + 2 * K2, a);
-
-    double[] hTmp = {dotProduct(a, a), dotProduct(b, b), dotProduct(c, c)};
-    double[] h = Arrays.stream(hTmp).map(v -> max(.5 - v, 0)).toArray();
-
-    double[] nTmp = {
-      dotProduct(a, hash(i)),
-      dotProduct(b, hash(addArrays(i, o))),
-      dotProduct(c, hash(addToArray(1, i)))
-    };
-
-    double[] n = new double[3];
-    for (int j = 0; j < h.length; j++) {
-      n[j] = pow(h[j], 4) * nTmp[j];
-    }
+  private static void hash(double[] out, double[] p, double dispersion) {
+    set(out, dot(p, HASH_X), dot(p, HASH_Y));
+    out[0] = dispersion * fract(sin(out[0]) * 43758.5453123) - 1;
+    out[1] = dispersion * fract(sin(out[1]) * 43758.5453123) - 1;
+  }
 
-    return dotProduct(n, new double[] {70, 70, 70});
+  private static double noise(double[] p, double dispersion, Scratch s) {
+    double[] i = floor(s.vec2(2), add(s.vec2(2), p, (p[0] + p[1]) * K1));
+    double[] a = add(s.vec2(3), sub(s.vec2(3), p, i), (i[1] + i[1]) * K2);
+    double[] o = set(s.vec2(4), step(a[1], a[0]), step(a[0], a[1]));
+    double[] b = add(s.vec2(5), sub(s.vec2(5), a, o), K2);
+    double[] c = add(s.vec2(6), a, -1 + 2 * K2);
+    double[] h = s.vec2(7);
+
+    hash(h, i, dispersion);
+    double n = pow(max(.5 - dot(a, a), 0), 4) * dot(a, h);
+    hash(h, add(o, i, o), dispersion);
+    n += pow(max(.5 - dot(b, b), 0), 4) * dot(b, h);
+    hash(h, add(i, i, 1), dispersion);
+    n += pow(max(.5 - dot(c, c), 0), 4) * dot(c, h);
+
+    return 70 * n;
   }
 
-  private double fbm(double[] p) {
-    double[][] rot = rotate2D(27.5);
-    double d = noise(p);
-    p = multiplyVectorByMatrix(p, rot);
+  private static double fbm(double[] p, double dispersion, Scratch s) {
+    // The original rotated p between octaves, but never sampled noise at the rotated
+    // positions, so only the first octave contributes.
+    double d = noise(p, dispersion, s);
     d += .5 * d;
-    p = multiplyVectorByMatrix(p, rot);
     d += .25 * d;
-    p = multiplyVectorByMatrix(p, rot);
     d += .125 * d;
-    p = multiplyVectorByMatrix(p, rot);
     d += .0625 * d;
     d /= (1. + .5 + .25 + .125 + .0625);
     return .5 + .5 * d;
   }
 
-  private double[] toPolar(double[] p) {
-    double r = vectorLength(p);
-    double a = atan2(p[1], p[0]);
-    return new double[] {r, a};
-  }
-
-  private double[] polar2cart(double[] polar) {
-    double x = polar[0] * cos(polar[1]);
-    double y = polar[0] * sin(polar[1]);
-    return new double[] {x, y};
-  }
-
-  private double[] mapToScreen(double[] p, double scale, double[] resolution) {
-    double[] res = p;
-    res = addToArray(-1, multiplyArray(2, res));
-    res[0] *= resolution[0] / resolution[1];
-    return multiplyArray(scale, res);
-  }
-
-  private double[][] rotate2D(double angle) {
-    angle = Math.toRadians(angle);
-    return new double[][] {
-      {cos(angle), -sin(angle)},
-      {sin(angle), cos(angle)}
-    };
+  private static double[] mapToScreen(double[] p, double scale, double[] resolution) {
+    add(p, mul(p, p, 2), -1);
+    p[0] *= resolution[0] / resolution[1];
+    return mul(p, p, scale);
   }
 
   @Override
-  protected double[] getColorForPoint(
-      double[] fragCoordinates, double[] resolution, double timeSeconds) {
-    double[] uv = mapToScreen(divideArrays(fragCoordinates, resolution), 2.5, resolution);
-
-    uv = multiplyVectorByMatrix(uv, rotate2D(12 * timeSeconds));
-    double len = vectorLength(uv);
+  protected void getColorForPoint(
+      double[] fragCoordinates,
+      double[] resolution,
+      double timeSeconds,
+      Scratch s,
+      double[] color) {
+    double[] uv = mapToScreen(div(s.vec2(0), fragCoordinates, resolution), 2.5, resolution);
+
+    double angle = Math.toRadians(12 * timeSeconds);
+    rotate(uv, uv, cos(angle), sin(angle));
+    double len = length(uv);
 
     // distort UVs a bit
-    uv = toPolar(uv);
-    uv[1] += curve.getValue() * (.5 + .5 * sin(cos(uv[0]) * len));
-    uv = polar2cart(uv);
+    double r = len;
+    double a = atan2(uv[1], uv[0]);
+    a += curve.getValue() * (.5 + .5 * sin(cos(r) * len));
+    set(uv, r * cos(a), r * sin(a));
 
+    double disperse = dispersion.getValue();
+    double[] p = s.vec2(1);
     double d1 =
-        abs(uv[0] * thickness.getValue() / (uv[0] + fbm(addToArray(1.25 * timeSeconds, uv))));
+        abs(
+            uv[0]
+                * thickness.getValue()
+                / (uv[0] + fbm(add(p, uv, 1.25 * timeSeconds), disperse, s)));
     double d2 =
-        abs(uv[1] * thickness.getValue() / (uv[1] + fbm(addToArray(-1.5 * timeSeconds, uv))));
-    double[] col = {0, 0, 0};
-    col = addArrays(col, multiplyArray(d1 * haze.getValue(), new double[] {.1, .8, 2}));
-    col = addArrays(col, multiplyArray(d2 * haze.getValue(), new double[] {2, .1, .8}));
-    return col;
+        abs(
+            uv[1]
+                * thickness.getValue()
+                / (uv[1] + fbm(add(p, uv, -1.5 * timeSeconds), disperse, s)));
+    for (int i = 0; i < 3; i++) {
+      color[i] = d1 * haze.getValue() * COLOR_X[i] + d2 * haze.getValue() * COLOR_Y[i];
+    }
   }
 
   @Override
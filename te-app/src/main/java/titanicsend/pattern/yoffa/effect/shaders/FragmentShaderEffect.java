@@ -3,25 +3,55 @@ package titanicsend.pattern.yoffa.effect.shaders;
 import static heronarts.lx.utils.LXUtils.clamp;
 import static java.lang.Math.cos;
 import static java.lang.Math.sin;
-import static titanicsend.util.TEMath.addArrays;
-import static titanicsend.util.TEMath.multiplyVectorByMatrix;
-import static titanicsend.util.TEMath.subtractArrays;
+import static titanicsend.util.TEVecMath.add;
+import static titanicsend.util.TEVecMath.rotate;
+import static titanicsend.util.TEVecMath.sub;
 
 import heronarts.lx.color.LXColor;
 import heronarts.lx.model.LXPoint;
 import heronarts.lx.parameter.LXParameter;
-import java.awt.Color;
 import java.util.Collection;
+import titanicsend.pattern.render.CPURenderPool;
 import titanicsend.pattern.yoffa.framework.PatternEffect;
 import titanicsend.pattern.yoffa.framework.PatternTarget;
 
 @Deprecated // we have native support for shaders now. use NativeShaderPatternEffect
 public abstract class FragmentShaderEffect extends PatternEffect {
-  double[][] rotationMatrix;
+  double rotationCos = 1;
+  double rotationSin = 0;
   double[] translationFromControls = new double[2];
   int color1 = 0;
   int color2 = 0;
 
+  /**
+   * Per-worker working vectors for the per-point shader math, so that rendering a point allocates
+   * nothing. Shaders take the temporaries they need by index, e.g. {@code s.vec2(0)}, and must not
+   * hold on to them past the current point.
+   */
+  protected static final class Scratch {
+    private static final int VEC2_COUNT = 8;
+    private static final int VEC3_COUNT = 4;
+
+    final double[] fragCoordinates = new double[2];
+    final double[] resolution = {1, 1};
+    final double[] color = new double[4];
+    private final double[][] vec2 = new double[VEC2_COUNT][2];
+    private final double[][] vec3 = new double[VEC3_COUNT][3];
+
+    public double[] vec2(int index) {
+      return this.vec2[index];
+    }
+
+    public double[] vec3(int index) {
+      return this.vec3[index];
+    }
+  }
+
+  // Renders ranges of points on the CPU render pool, with scratch for each worker
+  private final CPURenderPool.Job<Scratch> job =
+      new CPURenderPool.Job<>(Scratch::new, this::render);
+  private double frameTimeSec;
+
   public FragmentShaderEffect(PatternTarget target) {
     super(target);
   }
@@ -40,28 +70,37 @@ public abstract class FragmentShaderEffect extends PatternEffect {
     translationFromControls[0] = pattern.getXPos();
     translationFromControls[1] = pattern.getYPos();
 
-    rotationMatrix =
-        new double[][] {
-          {cos(angle), -sin(angle)},
-          {sin(angle), cos(angle)}
-        };
+    rotationCos = cos(angle);
+    rotationSin = sin(angle);
 
-    getPoints().parallelStream().forEach(p -> setColor(p, getColorForPoint(p, durationSec)));
+    frameTimeSec = durationSec;
+    CPURenderPool.get().render(job, pattern.getModel().points.length);
   }
 
-  private int getColorForPoint(LXPoint point, double timeSec) {
+  private void render(int from, int to, Scratch s) {
+    LXPoint[] points = pattern.getModel().points;
+    for (int i = from; i < to; i++) {
+      setColor(points[i], getColorForPoint(points[i], frameTimeSec, s));
+    }
+  }
+
+  private int getColorForPoint(LXPoint point, double timeSec, Scratch s) {
     float alpha;
 
+    double[] colorRgb = s.color;
+
     // TODO - change pattern.getXn() back to point.x when we finish moving to dynamic model
-    double[] fragCoordinates = new double[] {pattern.getXn(point), point.yn};
-    double[] resolution = new double[] {1, 1};
-    double[] colorRgb = getColorForPoint(fragCoordinates, resolution, timeSec);
+    s.fragCoordinates[0] = pattern.getXn(point);
+    s.fragCoordinates[1] = point.yn;
+    s.resolution[0] = 1;
+    s.resolution[1] = 1;
+    getColorForPoint(s.fragCoordinates, s.resolution, timeSec, s, colorRgb);
 
     for (int i = 0; i < colorRgb.length; i++) {
       colorRgb[i] = clamp(colorRgb[i], 0, 1);
     }
 
-    if (colorRgb.length > 3) {
+    if (hasAlpha()) {
       // if we're given an alpha value, use it
       alpha = (float) colorRgb[3];
     } else {
@@ -78,19 +117,26 @@ public abstract class FragmentShaderEffect extends PatternEffect {
       colorRgb[2] /= alpha;
     }
 
-    return new Color((float) colorRgb[0], (float) colorRgb[1], (float) colorRgb[2], alpha).getRGB();
+    return LXColor.rgba(
+        toByte(colorRgb[0]), toByte(colorRgb[1]), toByte(colorRgb[2]), toByte(alpha));
   }
 
-  // Rotate point in 2D around specified origin, using the
-  // current precalculated matrix
+  // Normalized component to 0-255, rounded as java.awt.Color does
+  private static int toByte(double value) {
+    return (int) (value * 255 + 0.5);
+  }
+
+  // Rotate point in 2D around specified origin, in place, using the
+  // current precalculated rotation
   public double[] rotate2D(double[] point, double[] origin) {
-    double[] p1 = subtractArrays(point, origin);
-    p1 = multiplyVectorByMatrix(p1, rotationMatrix);
-    return addArrays(p1, origin);
+    sub(point, point, origin);
+    rotate(point, point, rotationCos, rotationSin);
+    return add(point, point, origin);
   }
 
+  // Offset point by the current position controls, in place
   public double[] translate(double[] point) {
-    return addArrays(point, translationFromControls);
+    return add(point, point, translationFromControls);
   }
 
   public int calcColor() {
@@ -113,10 +159,20 @@ public abstract class FragmentShaderEffect extends PatternEffect {
   }
 
   // similar to an actual fragment shader function
-  // inputs arrays of length 2 for x/y
-  // output should be of length 3 symbolizing RGB for the input coordinates
-  protected abstract double[] getColorForPoint(
-      double[] fragCoordinates, double[] resolution, double timeSeconds);
+  // inputs arrays of length 2 for x/y, which may be modified
+  // writes RGB for the input coordinates to color[0..2], plus alpha to color[3] if hasAlpha()
+  // temporaries come from scratch, so that nothing is allocated per point
+  protected abstract void getColorForPoint(
+      double[] fragCoordinates,
+      double[] resolution,
+      double timeSeconds,
+      Scratch scratch,
+      double[] color);
+
+  // true if getColorForPoint() sets alpha, otherwise alpha is derived from brightness
+  protected boolean hasAlpha() {
+    return false;
+  }
 
   public abstract Collection<LXParameter> getParameters();
 }
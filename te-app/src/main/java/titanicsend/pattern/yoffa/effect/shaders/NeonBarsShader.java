@@ -6,27 +6,33 @@ import static java.lang.Math.floor;
 import static java.lang.Math.min;
 import static java.lang.Math.pow;
 import static java.lang.Math.sin;
-import static titanicsend.util.TEMath.addToArray;
-import static titanicsend.util.TEMath.clamp;
-import static titanicsend.util.TEMath.divideArrays;
-import static titanicsend.util.TEMath.dotProduct;
 import static titanicsend.util.TEMath.fract;
 import static titanicsend.util.TEMath.mix;
-import static titanicsend.util.TEMath.mod;
-import static titanicsend.util.TEMath.multiplyArray;
-import static titanicsend.util.TEMath.multiplyVectorByMatrix;
-import static titanicsend.util.TEMath.subtractArrays;
+import static titanicsend.util.TEVecMath.abs;
+import static titanicsend.util.TEVecMath.add;
+import static titanicsend.util.TEVecMath.clamp;
+import static titanicsend.util.TEVecMath.div;
+import static titanicsend.util.TEVecMath.dot;
+import static titanicsend.util.TEVecMath.fract;
+import static titanicsend.util.TEVecMath.mod;
+import static titanicsend.util.TEVecMath.mul;
+import static titanicsend.util.TEVecMath.rotate;
+import static titanicsend.util.TEVecMath.set;
+import static titanicsend.util.TEVecMath.sub;
 
 import heronarts.lx.parameter.CompoundParameter;
 import heronarts.lx.parameter.LXParameter;
 import java.util.Collection;
 import java.util.List;
 import titanicsend.pattern.yoffa.framework.PatternTarget;
-import titanicsend.util.TEMath;
 
 // based on https://www.shadertoy.com/view/WsK3D3
 public class NeonBarsShader extends FragmentShaderEffect {
 
+  private static final double ROTATE_COS = cos(Math.toRadians(270));
+  private static final double ROTATE_SIN = sin(Math.toRadians(270));
+  private static final double[] HSV_OFFSETS = {0.0, 4.0, 2.0};
+
   private final CompoundParameter energy = new CompoundParameter("Energy", 0, 0, 10);
 
   private final CompoundParameter speed = new CompoundParameter("Speed", 0, 0, 10);
@@ -41,17 +47,23 @@ public class NeonBarsShader extends FragmentShaderEffect {
   }
 
   @Override
-  protected double[] getColorForPoint(
-      double[] fragCoordinates, double[] resolution, double timeSeconds) {
+  protected void getColorForPoint(
+      double[] fragCoordinates,
+      double[] resolution,
+      double timeSeconds,
+      Scratch s,
+      double[] color) {
 
     double[] uv =
-        multiplyArray(
-            1 / resolution[1], subtractArrays(fragCoordinates, multiplyArray(0.5, resolution)));
-    uv = multiplyVectorByMatrix(uv, rotate2D(270));
+        div(
+            s.vec2(0),
+            sub(s.vec2(0), fragCoordinates, mul(s.vec2(1), resolution, 0.5)),
+            resolution[1]);
+    rotate(uv, uv, ROTATE_COS, ROTATE_SIN);
 
     uv[0] -= 1.0;
-    uv[0] = dotProduct(uv, uv);
-    uv = multiplyArray(2, uv);
+    uv[0] = dot(uv, uv);
+    mul(uv, uv, 2);
     uv[1] += 0.1; // vscroll
 
     // lots of silly parameters, have fun :)
@@ -64,39 +76,35 @@ public class NeonBarsShader extends FragmentShaderEffect {
     double glowclamp = 1.0;
     double extraglow = glow2.getValue();
 
-    double[] col = new double[3];
-    colorToRGBArray(pattern.calcColor(), col);
-
-    col =
-        SSTLines(
-            uv,
-            col,
-            nlines,
-            grad,
-            thickness,
-            wibblesize,
-            wibblespeed,
-            glowintensity,
-            glowclamp,
-            extraglow,
-            timeSeconds);
+    colorToRGBArray(pattern.calcColor(), color);
+
+    SSTLines(
+        uv,
+        color,
+        nlines,
+        grad,
+        thickness,
+        wibblesize,
+        wibblespeed,
+        glowintensity,
+        glowclamp,
+        extraglow,
+        timeSeconds);
 
     // vignette
-    double[] q = divideArrays(fragCoordinates, resolution);
-    return multiplyArray(
-        0.5 + 0.5 * pow(16.0 * q[0] * q[1] * (1.0 - q[0]) * (1.0 - q[1]), 0.35), col);
+    double[] q = div(s.vec2(1), fragCoordinates, resolution);
+    mul(color, color, 0.5 + 0.5 * pow(16.0 * q[0] * q[1] * (1.0 - q[0]) * (1.0 - q[1]), 0.35));
   }
 
-  private double[] hsv2rgb(double[] c) {
-    double[] rgbTmp =
-        TEMath.abs(addToArray(-3, mod(addToArray(c[0] * 6.0, new double[] {0.0, 4.0, 2.0}), 6)));
-    double[] rgb = clamp(addToArray(-1, rgbTmp), 0.0, 1.0);
-    double[] mixed =
-        new double[] {mix(1, rgb[0], c[1]), mix(1, rgb[1], c[1]), mix(1, rgb[2], c[1])};
-    return multiplyArray(c[2], mixed);
+  private void hsv2rgb(double[] out, double[] c) {
+    abs(out, add(out, mod(out, add(out, HSV_OFFSETS, c[0] * 6.0), 6), -3));
+    clamp(out, add(out, out, -1), 0.0, 1.0);
+    set(out, mix(1, out[0], c[1]), mix(1, out[1], c[1]), mix(1, out[2], c[1]));
+    mul(out, out, c[2]);
   }
 
-  private double[] SSTLines(
+  // draws the lines, writing the resulting color into col2
+  private void SSTLines(
       double[] duv,
       double[] col2,
       double nl,
@@ -109,22 +117,14 @@ public class NeonBarsShader extends FragmentShaderEffect {
       double extraglow,
       double timeSeconds) {
     duv[1] -= (floor(duv[0]) * grad) + (duv[0] * grad);
-    duv = fract(duv);
+    fract(duv, duv);
     double l1 = abs(fract((duv[0] * grad - duv[1]) * nl) - 0.5);
     double dd = sin(-timeSeconds * wibblespeed + duv[0] * 6.28) * wibblesize;
     l1 = min(glowclamp, (thickness + dd) / l1);
-    double[] col = multiplyArray(l1 * glowintensity + (dd * extraglow), col2);
-    return new double[] {
-      mix(col2[0], col[0], l1), mix(col2[1], col[1], l1), mix(col2[2], col[2], l1)
-    };
-  }
-
-  private double[][] rotate2D(double angle) {
-    angle = Math.toRadians(angle);
-    return new double[][] {
-      {cos(angle), -sin(angle)},
-      {sin(angle), cos(angle)}
-    };
+    double glow = l1 * glowintensity + (dd * extraglow);
+    for (int i = 0; i < 3; i++) {
+      col2[i] = mix(col2[i], glow * col2[i], l1);
+    }
   }
 
   @Override
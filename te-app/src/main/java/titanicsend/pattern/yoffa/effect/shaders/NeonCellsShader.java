@@ -4,16 +4,17 @@ import static java.lang.Math.PI;
 import static java.lang.Math.abs;
 import static java.lang.Math.cos;
 import static java.lang.Math.sin;
+import static titanicsend.util.TEVecMath.div;
+import static titanicsend.util.TEVecMath.mul;
+import static titanicsend.util.TEVecMath.sub;
 
 import heronarts.lx.parameter.BooleanParameter;
 import heronarts.lx.parameter.CompoundParameter;
 import heronarts.lx.parameter.LXParameter;
-import java.awt.Color;
 import java.util.Collection;
 import java.util.List;
 import titanicsend.color.TEColorType;
 import titanicsend.pattern.yoffa.framework.PatternTarget;
-import titanicsend.util.TEMath;
 
 // https://www.shadertoy.com/view/3sc3Df
 public class NeonCellsShader extends FragmentShaderEffect {
@@ -33,12 +34,17 @@ public class NeonCellsShader extends FragmentShaderEffect {
   }
 
   @Override
-  protected double[] getColorForPoint(
-      double[] fragCoordinates, double[] resolution, double timeSeconds) {
+  protected void getColorForPoint(
+      double[] fragCoordinates,
+      double[] resolution,
+      double timeSeconds,
+      Scratch s,
+      double[] color) {
     double[] uv =
-        TEMath.multiplyArray(
-            1 / resolution[1],
-            TEMath.subtractArrays(fragCoordinates, TEMath.multiplyArray(.5, resolution)));
+        div(
+            s.vec2(0),
+            sub(s.vec2(0), fragCoordinates, mul(s.vec2(1), resolution, .5)),
+            resolution[1]);
 
     double phase = PI * pattern.getTempo().getCompositeBasis();
     double speedMultiplier = doubleSpeed.getValueb() ? 2 : 1;
@@ -48,9 +54,8 @@ public class NeonCellsShader extends FragmentShaderEffect {
       d *= pat(uv, 3.0, 7.0, 0.25 * speedMultiplier, glow.getValue(), phase);
     }
 
-    float[] color =
-        new Color(pattern.getSwatchColor(TEColorType.PRIMARY)).getRGBColorComponents(null);
-    return TEMath.multiplyArray(.5 / d, new double[] {color[0], color[1], color[2]});
+    colorToRGBArray(pattern.getSwatchColor(TEColorType.PRIMARY), color);
+    mul(color, color, .5 / d);
   }
 
   private double pat(double[] uv, double p, double q, double speed, double glow, double phase) {
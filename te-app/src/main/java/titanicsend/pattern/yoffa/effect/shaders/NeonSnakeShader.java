@@ -3,8 +3,8 @@ package titanicsend.pattern.yoffa.effect.shaders;
 import static java.lang.Math.PI;
 import static java.lang.Math.abs;
 import static java.lang.Math.sin;
-import static titanicsend.util.TEMath.divideArrays;
-import static titanicsend.util.TEMath.multiplyArray;
+import static titanicsend.util.TEVecMath.div;
+import static titanicsend.util.TEVecMath.mul;
 
 import heronarts.lx.parameter.LXParameter;
 import java.util.Collection;
@@ -30,8 +30,12 @@ public class NeonSnakeShader extends FragmentShaderEffect {
   }
 
   @Override
-  protected double[] getColorForPoint(
-      double[] fragCoordinates, double[] resolution, double timeSeconds) {
+  protected void getColorForPoint(
+      double[] fragCoordinates,
+      double[] resolution,
+      double timeSeconds,
+      Scratch s,
+      double[] color) {
 
     // Wow1 controls the base glow level
     double glow = pattern.getWow1();
@@ -41,18 +45,17 @@ public class NeonSnakeShader extends FragmentShaderEffect {
         pattern.getSize() + pattern.getWow2() * sin(PI * pattern.getTempo().basis());
 
     // normalize coordinates
-    double[] uv = divideArrays(fragCoordinates, resolution);
+    double[] uv = div(s.vec2(0), fragCoordinates, resolution);
     uv[1] -= pattern.getYPos() + 0.25; // offset y to roughly center snake vertically
 
     // rotate
-    uv = rotate2D(uv, origin);
+    rotate2D(uv, origin);
 
     // scale (fixed scale to adapt pattern to vehicle)
-    uv = multiplyArray(3, uv);
+    mul(uv, uv, 3);
 
     // get current calculated palette color (plus alpha, which we'll fill in later)
-    double[] waveColor = new double[4];
-    colorToRGBArray(calcColor(), waveColor);
+    colorToRGBArray(calcColor(), color);
 
     double brightness = 0;
     for (int i = 0; i < 13; i++) {
@@ -63,8 +66,12 @@ public class NeonSnakeShader extends FragmentShaderEffect {
 
     // gamma correct brightness and use it as alpha
     brightness = titanicsend.util.TEMath.clamp(brightness, 0, 1);
-    waveColor[3] = brightness * brightness;
-    return waveColor;
+    color[3] = brightness * brightness;
+  }
+
+  @Override
+  protected boolean hasAlpha() {
+    return true;
   }
 
   @Override
@@ -4,13 +4,14 @@ import static java.lang.Math.abs;
 import static java.lang.Math.cos;
 import static java.lang.Math.pow;
 import static java.lang.Math.sin;
-import static titanicsend.util.TEMath.addArrays;
-import static titanicsend.util.TEMath.addToArray;
-import static titanicsend.util.TEMath.clamp;
-import static titanicsend.util.TEMath.divideArrays;
-import static titanicsend.util.TEMath.mod;
-import static titanicsend.util.TEMath.multiplyArray;
-import static titanicsend.util.TEMath.vectorLength;
+import static titanicsend.util.TEVecMath.add;
+import static titanicsend.util.TEVecMath.clamp;
+import static titanicsend.util.TEVecMath.copy;
+import static titanicsend.util.TEVecMath.div;
+import static titanicsend.util.TEVecMath.length;
+import static titanicsend.util.TEVecMath.mod;
+import static titanicsend.util.TEVecMath.mul;
+import static titanicsend.util.TEVecMath.set;
 
 import heronarts.lx.parameter.LXParameter;
 import java.util.Collection;
@@ -27,45 +28,44 @@ public class WaterShader extends FragmentShaderEffect {
   }
 
   @Override
-  protected double[] getColorForPoint(
-      double[] fragCoordinates, double[] resolution, double timeSeconds) {
+  protected void getColorForPoint(
+      double[] fragCoordinates,
+      double[] resolution,
+      double timeSeconds,
+      Scratch s,
+      double[] color) {
 
     // normalize coords to 0 to 1 range, then do the translate, scale, rotate thing.
-    double[] uv = divideArrays(fragCoordinates, resolution);
-    uv = translate(uv);
-    uv = rotate2D(uv, origin);
+    double[] uv = div(s.vec2(0), fragCoordinates, resolution);
+    translate(uv);
+    rotate2D(uv, origin);
     double scale = pattern.getSize();
-    uv = multiplyArray(scale, uv);
+    mul(uv, uv, scale);
 
     // set coord system origin so we stay centered while zooming w/size control
     uv[0] -= origin[0] * scale;
     uv[1] -= origin[1] * scale;
 
     double tileFactor = TAU * pattern.getQuantity();
-    double[] p = addToArray(-250, mod(multiplyArray(tileFactor, uv), TAU));
-    double[] i = new double[] {p[0], p[1]};
+    double[] p = add(s.vec2(1), mod(s.vec2(1), mul(s.vec2(1), uv, tileFactor), TAU), -250);
+    double[] i = copy(s.vec2(2), p);
+    double[] v = s.vec2(3);
     double c = 1.0;
     double inten = pattern.getWow2();
     double time = timeSeconds * 0.5;
 
     for (int n = 0; n < pattern.getWow1(); n++) {
       double t = time * (1.0 - (3.5 / (n + 1)));
-      i = addArrays(p, new double[] {cos(t - i[0]) + sin(t + i[1]), sin(t - i[1]) + cos(t + i[0])});
-      c +=
-          1.0
-              / vectorLength(
-                  new double[] {p[0] / (sin(i[0] + t) / inten), p[1] / (cos(i[1] + t) / inten)});
+      add(i, p, set(v, cos(t - i[0]) + sin(t + i[1]), sin(t - i[1]) + cos(t + i[0])));
+      c += 1.0 / length(set(v, p[0] / (sin(i[0] + t) / inten), p[1] / (cos(i[1] + t) / inten)));
     }
     c /= pattern.getWow1();
     c = 1.17 - pow(c, 1.4);
 
     double colourValue = 0.5 + pow(abs(c), 8.0);
 
-    double[] colour = new double[3];
-    colorToRGBArray(calcColor(), colour);
-    colour = clamp(multiplyArray(colourValue, colour), 0.0, 1.0);
-
-    return colour;
+    colorToRGBArray(calcColor(), color);
+    clamp(color, mul(color, color, colourValue), 0.0, 1.0);
   }
 
   @Override
@@ -4,8 +4,8 @@ import static java.lang.Math.atan2;
 import static java.lang.Math.cos;
 import static java.lang.Math.min;
 import static java.lang.Math.sin;
-import static titanicsend.util.TEMath.addToArray;
-import static titanicsend.util.TEMath.divideArrays;
+import static titanicsend.util.TEVecMath.div;
+import static titanicsend.util.TEVecMath.sub;
 
 import heronarts.lx.parameter.LXParameter;
 import java.util.Collection;
@@ -29,10 +29,14 @@ public class WavyShader extends FragmentShaderEffect {
   }
 
   @Override
-  protected double[] getColorForPoint(
-      double[] fragCoordinates, double[] resolution, double timeSeconds) {
-    fragCoordinates = divideArrays(fragCoordinates, resolution);
-    double[] a = addToArray(-.5, fragCoordinates);
+  protected void getColorForPoint(
+      double[] fragCoordinates,
+      double[] resolution,
+      double timeSeconds,
+      Scratch s,
+      double[] color) {
+    div(fragCoordinates, fragCoordinates, resolution);
+    double[] a = sub(s.vec2(0), fragCoordinates, .5);
     timeSeconds = -timeSeconds;
 
     double scale = 10 * pattern.getSize();
@@ -49,11 +53,13 @@ public class WavyShader extends FragmentShaderEffect {
     double k = min(x, min(sin(v * 4.) * .25 + x * .5, sin(v * 2.) * .3 + x * .5));
 
     // roughly reproduce the effect of colorize
-    double[] col = new double[4];
-    colorToRGBArray(pattern.getGradientColor((float) k), col);
-    col[3] = titanicsend.util.TEMath.clamp(k, 0, 1);
+    colorToRGBArray(pattern.getGradientColor((float) k), color);
+    color[3] = titanicsend.util.TEMath.clamp(k, 0, 1);
+  }
 
-    return col;
+  @Override
+  protected boolean hasAlpha() {
+    return true;
   }
 
   @Override
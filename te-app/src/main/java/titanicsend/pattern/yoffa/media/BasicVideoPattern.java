@@ -35,7 +35,7 @@ public class BasicVideoPattern extends TEPerformancePattern {
   protected void runTEAudioPattern(double deltaMs) {
     clearPixels();
 
-    videoPainter.grabFrame();
+    videoPainter.grabFrame(getDeltaMs());
     videoPainter.paint(getModel().getPoints());
   }
 
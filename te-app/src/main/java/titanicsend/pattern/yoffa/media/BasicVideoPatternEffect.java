@@ -41,7 +41,7 @@ public class BasicVideoPatternEffect extends PatternEffect {
   @Override
   public void run(double deltaMs) {
     try {
-      videoPainter.grabFrame();
+      videoPainter.grabFrame(deltaMs);
       videoPainter.paint(getPoints());
     } catch (Exception e) {
       // fail silently so we can swap out videos live
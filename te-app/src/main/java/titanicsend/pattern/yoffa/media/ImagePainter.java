@@ -41,11 +41,16 @@ public class ImagePainter {
   }
 
   public Color getColorForNormalizedCoordinates(double xn, double yn) {
+    return new Color(getRGBForNormalizedCoordinates(xn, yn));
+  }
+
+  /** Same as getColorForNormalizedCoordinates(), as a packed RGB int without allocating */
+  public int getRGBForNormalizedCoordinates(double xn, double yn) {
     xn = abs(xn) % 1;
     yn = abs(yn) % 1;
     int x = (int) Math.floor(image.getWidth() * xn);
     int y = (int) Math.floor(image.getHeight() * yn);
-    return new Color(image.getColor(x, y));
+    return image.getColor(x, y);
   }
 
   public void paint(LXPoint point) {
@@ -53,6 +58,10 @@ public class ImagePainter {
   }
 
   public void paint(LXPoint point, double scaleRatio) {
+    paint(image, colors, point, scaleRatio);
+  }
+
+  static void paint(ImageSource image, int[] colors, LXPoint point, double scaleRatio) {
     // here the 'z' dimension of TE corresponds with 'x' dimension of the image based on the side
     // that
     //   we're painting
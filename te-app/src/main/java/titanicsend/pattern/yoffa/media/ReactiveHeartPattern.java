@@ -38,7 +38,7 @@ public class ReactiveHeartPattern extends TEPerformancePattern {
         LXUtils.clamp((getTrebleRatio() - .5) / (1.01 - .7) / 6 - .2 + .7 / 2, 0, 1);
     double scaledRatio = 1 + scaledTrebleRatio * 2;
 
-    videoPainter.grabFrame();
+    videoPainter.grabFrame(getDeltaMs());
     videoPainter.paint(getModel().getPoints(), scaledRatio);
   }
 
@@ -0,0 +1,166 @@
+package titanicsend.pattern.yoffa.media;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import org.bytedeco.ffmpeg.global.avutil;
+import org.bytedeco.javacv.FFmpegFrameGrabber;
+import org.bytedeco.javacv.Frame;
+import org.bytedeco.javacv.FrameGrabber;
+import titanicsend.util.TE;
+
+/**
+ * Decodes a video file on its own thread into a small ring of reusable frames. The decoder fills
+ * free frames and queues them as ready; the engine thread takes ready frames and hands back the
+ * ones it is done with. Nothing is allocated per frame once the ring exists.
+ */
+class VideoDecoder implements Runnable {
+
+  static final int RING_SIZE = 4;
+
+  // Frame period used when the container doesn't report a frame rate
+  private static final double DEFAULT_FRAME_RATE = 30;
+
+  private final String path;
+  private final boolean loop;
+  private final BlockingQueue<VideoFrame> free = new ArrayBlockingQueue<>(RING_SIZE);
+  private final BlockingQueue<VideoFrame> ready = new ArrayBlockingQueue<>(RING_SIZE);
+  private final Thread thread;
+  private volatile boolean running = true;
+
+  VideoDecoder(String path, boolean loop) {
+    this.path = path;
+    this.loop = loop;
+    this.thread = new Thread(this, "VideoDecoder " + path);
+    this.thread.setDaemon(true);
+  }
+
+  void start() {
+    this.thread.start();
+  }
+
+  /** Stop decoding. The file is closed by the decoder thread once it notices. */
+  void stop() {
+    this.running = false;
+    this.thread.interrupt();
+  }
+
+  /** Engine thread: the oldest decoded frame, without taking it, or null if none is ready */
+  VideoFrame peekReady() {
+    return this.ready.peek();
+  }
+
+  /** Engine thread: take the oldest decoded frame, or null if none is ready */
+  VideoFrame pollReady() {
+    return this.ready.poll();
+  }
+
+  /** Engine thread: return a frame that is no longer being displayed so it can be refilled */
+  void release(VideoFrame frame) {
+    this.free.offer(frame);
+  }
+
+  @Override
+  public void run() {
+    FFmpegFrameGrabber grabber = new FFmpegFrameGrabber(this.path);
+    grabber.setPixelFormat(avutil.AV_PIX_FMT_BGR24);
+    try {
+      grabber.start();
+      for (int i = 0; i < RING_SIZE; i++) {
+        this.free.add(new VideoFrame(grabber.getImageWidth(), grabber.getImageHeight()));
+      }
+      double frameRate = grabber.getFrameRate();
+      long frameUs = (long) (1e6 / (frameRate > 0 ? frameRate : DEFAULT_FRAME_RATE));
+
+      // Timestamps keep increasing across loops so playback time never has to jump back
+      long loopOffsetUs = 0;
+      long lastUs = 0;
+      boolean decodedSinceLoop = false;
+
+      while (this.running) {
+        VideoFrame frame = this.free.take();
+        Frame decoded = grabber.grabImage();
+        if (decoded == null) {
+          this.free.add(frame);
+          if (!this.loop || !decodedSinceLoop) {
+            break;
+          }
+          grabber.setTimestamp(0);
+          loopOffsetUs = lastUs + frameUs;
+          decodedSinceLoop = false;
+          continue;
+        }
+        if (decoded.image == null) {
+          this.free.add(frame);
+          continue;
+        }
+        frame.copyFrom(decoded);
+        frame.timestampUs = loopOffsetUs + decoded.timestamp;
+        lastUs = frame.timestampUs;
+        decodedSinceLoop = true;
+        this.ready.put(frame);
+      }
+    } catch (InterruptedException e) {
+      // stopped
+    } catch (FrameGrabber.Exception e) {
+      TE.error(e, "Could not decode video %s", this.path);
+    } finally {
+      try {
+        grabber.stop();
+        grabber.release();
+      } catch (FrameGrabber.Exception e) {
+        TE.error(e, "Could not close video %s", this.path);
+      }
+    }
+  }
+
+  /** One decoded video frame as packed RGB ints, reused for the life of the decoder */
+  static class VideoFrame implements ImagePainter.ImageSource {
+    private final int width;
+    private final int height;
+    private final int[] pixels;
+
+    // Presentation time in microseconds, increasing across loops
+    long timestampUs;
+
+    private VideoFrame(int width, int height) {
+      this.width = width;
+      this.height = height;
+      this.pixels = new int[width * height];
+    }
+
+    /** Convert a BGR24 frame into packed opaque RGB */
+    private void copyFrom(Frame decoded) {
+      ByteBuffer bgr = (ByteBuffer) decoded.image[0];
+      int stride = decoded.imageStride;
+      int channels = decoded.imageChannels;
+      int w = Math.min(this.width, decoded.imageWidth);
+      int h = Math.min(this.height, decoded.imageHeight);
+      for (int y = 0; y < h; y++) {
+        int src = y * stride;
+        int dst = y * this.width;
+        for (int x = 0; x < w; x++, src += channels) {
+          int b = bgr.get(src) & 0xff;
+          int g = bgr.get(src + 1) & 0xff;
+          int r = bgr.get(src + 2) & 0xff;
+          this.pixels[dst + x] = 0xff000000 | (r << 16) | (g << 8) | b;
+        }
+      }
+    }
+
+    @Override
+    public int getWidth() {
+      return this.width;
+    }
+
+    @Override
+    public int getHeight() {
+      return this.height;
+    }
+
+    @Override
+    public int getColor(int x, int y) {
+      return this.pixels[y * this.width + x];
+    }
+  }
+}
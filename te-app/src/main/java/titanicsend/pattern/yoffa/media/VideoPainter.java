@@ -2,29 +2,31 @@ package titanicsend.pattern.yoffa.media;
 
 import heronarts.lx.model.LXPoint;
 import java.util.List;
-import org.bytedeco.javacv.FFmpegFrameGrabber;
-import org.bytedeco.javacv.Frame;
-import org.bytedeco.javacv.FrameGrabber;
-import org.bytedeco.javacv.Java2DFrameConverter;
 import titanicsend.util.TE;
 
+/**
+ * Paints frames of a video file onto model points. Decoding happens on a background thread (see
+ * {@link VideoDecoder}), so grabbing a frame on the engine thread only picks up the most recent
+ * decoded frame that is due, dropping any others that have fallen behind.
+ */
 public class VideoPainter {
 
-  private final FFmpegFrameGrabber frameGrabber;
-  private final Java2DFrameConverter frameConverter;
+  private final String vidPath;
   private int[] colors;
 
-  private ImagePainter currentFramePainter;
+  private VideoDecoder decoder = null;
+  private VideoDecoder.VideoFrame currentFrame = null;
+
+  // Playback position in microseconds, advanced by grabFrame(deltaMs)
+  private double playbackUs = 0;
 
   public VideoPainter(String vidPath) {
     this(vidPath, null);
   }
 
   public VideoPainter(String vidPath, int[] colors) {
-    this.frameGrabber = new FFmpegFrameGrabber(vidPath);
-    this.frameConverter = new Java2DFrameConverter();
+    this.vidPath = vidPath;
     this.colors = colors;
-    this.currentFramePainter = null;
   }
 
   /**
@@ -35,49 +37,51 @@ public class VideoPainter {
     this.colors = colors;
   }
 
-  public void grabFrame() {
-    try {
-      Frame frame = null;
-      frame = frameGrabber.grabImage();
-
-      if (frame != null) {
-        if (frame.image != null) {
-          currentFramePainter = new ImagePainter(frameConverter.convert(frame), colors);
-        }
-      } else {
-        // loop by default
-        restartVideo();
-      }
-    } catch (FrameGrabber.Exception e) {
-      throw new RuntimeException(e);
+  /**
+   * Advance playback and show the latest frame that is due. Frames the decoder produced since the
+   * last call that are already in the past are dropped.
+   *
+   * @param deltaMs Media time to advance by. Pass a pattern's tempo-scaled delta for tempo-synced
+   *     playback. Negative values are treated as positive, video only plays forward.
+   */
+  public void grabFrame(double deltaMs) {
+    if (this.decoder == null) {
+      return;
+    }
+    this.playbackUs += Math.abs(deltaMs) * 1000;
+    VideoDecoder.VideoFrame next;
+    while ((next = this.decoder.peekReady()) != null
+        && (this.currentFrame == null || next.timestampUs <= this.playbackUs)) {
+      show(this.decoder.pollReady());
     }
   }
 
-  public void paint(List<LXPoint> points) {
-    if (currentFramePainter != null) {
-      for (LXPoint point : points) {
-        currentFramePainter.paint(point);
-      }
+  private void show(VideoDecoder.VideoFrame frame) {
+    if (this.currentFrame != null) {
+      this.decoder.release(this.currentFrame);
     }
+    this.currentFrame = frame;
+  }
+
+  public void paint(List<LXPoint> points) {
+    paint(points, 1);
   }
 
   public void paint(List<LXPoint> points, double scaleRatio) {
-    if (currentFramePainter != null) {
+    if (currentFrame != null) {
       for (LXPoint point : points) {
-        currentFramePainter.paint(point, scaleRatio);
+        ImagePainter.paint(currentFrame, colors, point, scaleRatio);
       }
     }
   }
 
   public void paint(LXPoint point) {
-    if (currentFramePainter != null) {
-      currentFramePainter.paint(point);
-    }
+    paint(point, 1);
   }
 
   public void paint(LXPoint point, double scaleRatio) {
-    if (currentFramePainter != null) {
-      currentFramePainter.paint(point, scaleRatio);
+    if (currentFrame != null) {
+      ImagePainter.paint(currentFrame, colors, point, scaleRatio);
     }
   }
 
@@ -86,26 +90,21 @@ public class VideoPainter {
       TE.error("VideoPainter needs colors[] array before startVideo() is called.");
       return;
     }
-    try {
-      frameGrabber.start();
-    } catch (FFmpegFrameGrabber.Exception e) {
-      throw new RuntimeException(e);
-    }
+    stopVideo();
+    this.decoder = new VideoDecoder(this.vidPath, true);
+    this.decoder.start();
   }
 
   public void stopVideo() {
-    try {
-      frameGrabber.stop();
-    } catch (FFmpegFrameGrabber.Exception e) {
-      throw new RuntimeException(e);
+    if (this.decoder != null) {
+      this.decoder.stop();
+      this.decoder = null;
     }
+    this.currentFrame = null;
+    this.playbackUs = 0;
   }
 
   public void restartVideo() {
-    try {
-      frameGrabber.restart();
-    } catch (FrameGrabber.Exception e) {
-      throw new RuntimeException(e);
-    }
+    startVideo();
   }
 }
@@ -7,8 +7,8 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import titanicsend.pattern.glengine.GLPreprocessor;
 import titanicsend.pattern.glengine.ShaderConfiguration;
+import titanicsend.pattern.glengine.ShaderSourceCache;
 
 /**
  * Everything that needs to be stored for later compilation and use when we read a shader file.
@@ -18,6 +18,7 @@ import titanicsend.pattern.glengine.ShaderConfiguration;
  */
 public class FragmentShader {
   private final String shaderName;
+  private final String sourceHash;
   private final Map<Integer, String> channelToTexture;
   private final List<ShaderConfiguration> shaderConfig = new ArrayList<>();
 
@@ -28,15 +29,15 @@ public class FragmentShader {
     String shaderBody;
     this.channelToTexture = new HashMap<>();
 
-    // try the new way
-    GLPreprocessor glp = new GLPreprocessor();
+    // try the new way, reusing a cached result if the shader hasn't changed
     shaderName = shaderFile.getName();
 
     try {
-      shaderBody = glp.preprocessShader(shaderFile, shaderConfig);
+      shaderBody = ShaderSourceCache.preprocessShader(shaderFile, shaderConfig);
     } catch (Exception e) {
       throw new RuntimeException(e);
     }
+    this.sourceHash = ShaderSourceCache.hashSource(shaderBody);
 
     // if the shader doesn't have any directives for the new preprocessor,
     // we just need to add any textures specified in the constructor.
@@ -69,6 +70,11 @@ public class FragmentShader {
     return shaderName;
   }
 
+  /** Hash of the preprocessed source. Shaders with equal hashes can share a program. */
+  public String getSourceHash() {
+    return sourceHash;
+  }
+
   public Map<Integer, String> getChannelToTexture() {
     return channelToTexture;
   }
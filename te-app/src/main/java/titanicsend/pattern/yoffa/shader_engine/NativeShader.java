@@ -38,6 +38,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import titanicsend.pattern.glengine.GLEngine;
 
 // Technically we don't need to implement GLEventListener unless we plan on rendering on screen,
 // but let's leave it for good practice.
@@ -73,7 +74,8 @@ public class NativeShader implements GLEventListener {
   private PatternControlData controlData;
   private final int audioTextureWidth;
   private final int audioTextureHeight;
-  FloatBuffer audioTextureData;
+  // Only used when there is no GLEngine to share audio data with
+  FloatBuffer audioTextureData = null;
 
   private final List<Uniform> mutableUniforms = new ArrayList<>();
   public final List<Uniform> uniforms = Collections.unmodifiableList(this.mutableUniforms);
@@ -95,9 +97,8 @@ public class NativeShader implements GLEventListener {
     // gl-compatible buffer for reading offscreen surface to cpu memory
     this.backBuffer = GLBuffers.newDirectByteBuffer(width * height * 4);
 
-    this.audioTextureWidth = 512;
-    this.audioTextureHeight = 2;
-    this.audioTextureData = GLBuffers.newDirectFloatBuffer(audioTextureHeight * audioTextureWidth);
+    this.audioTextureWidth = GLEngine.getAudioTextureWidth();
+    this.audioTextureHeight = GLEngine.getAudioTextureHeight();
   }
 
   private GL4 gl4;
@@ -193,7 +194,7 @@ public class NativeShader implements GLEventListener {
         0,
         GL4.GL_RED,
         GL_FLOAT,
-        audioTextureData);
+        null);
     gl4.glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MAG_FILTER, GL_NEAREST);
     gl4.glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MIN_FILTER, GL_NEAREST);
     gl4.glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_WRAP_S, GL_CLAMP_TO_EDGE);
@@ -292,23 +293,17 @@ public class NativeShader implements GLEventListener {
     gl4.glActiveTexture(GL_TEXTURE0);
     gl4.glBindTexture(GL4.GL_TEXTURE_2D, audioTextureHandle[0]);
 
-    // load frequency and waveform data into our texture, fft data in the first row,
-    // normalized audio waveform data in the second.
-    for (int n = 0; n < audioTextureWidth; n++) {
-      audioTextureData.put(n, controlData.getFrequencyData(n));
-      audioTextureData.put(n + audioTextureWidth, controlData.getWaveformData(n));
-    }
-
-    gl4.glTexImage2D(
+    // update the existing texture storage from the engine's per-frame audio data
+    gl4.glTexSubImage2D(
         GL4.GL_TEXTURE_2D,
         0,
-        GL4.GL_R32F,
+        0,
+        0,
         audioTextureWidth,
         audioTextureHeight,
-        0,
         GL4.GL_RED,
         GL_FLOAT,
-        audioTextureData);
+        getAudioTextureData());
     setUniform(UniformNames.AUDIO_CHANNEL, 0);
 
     // add shadertoy texture channels
@@ -320,6 +315,29 @@ public class NativeShader implements GLEventListener {
     updateUniforms();
   }
 
+  /**
+   * Audio fft and waveform data is computed once per frame by GLEngine and shared by every shader.
+   * This shader has its own GL context, so it still has to upload the data to its own texture, but
+   * it no longer keeps a duplicate copy.
+   */
+  private FloatBuffer getAudioTextureData() {
+    GLEngine glEngine = GLEngine.current;
+    if (glEngine != null && glEngine.getAudioTextureBuffer() != null) {
+      return glEngine.getAudioTextureBuffer();
+    }
+
+    // No engine, load frequency and waveform data ourselves: fft data in the first row,
+    // normalized audio waveform data in the second.
+    if (audioTextureData == null) {
+      audioTextureData = GLBuffers.newDirectFloatBuffer(audioTextureHeight * audioTextureWidth);
+    }
+    for (int n = 0; n < audioTextureWidth; n++) {
+      audioTextureData.put(n, controlData.getFrequencyData(n));
+      audioTextureData.put(n + audioTextureWidth, controlData.getWaveformData(n));
+    }
+    return audioTextureData;
+  }
+
   private void initShaderProgram(GL4 gl4) {
     shaderProgram = new ShaderProgram(gl4, fragmentShader.getShaderName());
 
@@ -17,10 +17,15 @@ public class ShaderProgram {
     this.name = shaderName;
     this.id = gl4.glCreateProgram();
 
-    boolean inCache = ShaderUtils.loadShaderFromCache(gl4, this.id, shaderName);
-    if (!inCache) {
-      ShaderUtils.buildShader(gl4, id, shaderName, tePreProcess);
-    }
+    // loads from the program binary cache when possible
+    ShaderUtils.buildShader(gl4, this.id, shaderName, tePreProcess);
+  }
+
+  /** Wrap a program that has already been built, e.g. by ShaderCompiler on another context */
+  public ShaderProgram(GL4 gl4, String shaderName, int id) {
+    this.gl4 = gl4;
+    this.name = shaderName;
+    this.id = id;
   }
 
   public void dispose() {
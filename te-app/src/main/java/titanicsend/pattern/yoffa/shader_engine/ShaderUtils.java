@@ -5,23 +5,22 @@ import com.jogamp.opengl.GL;
 import com.jogamp.opengl.GL4;
 import com.jogamp.opengl.GLAutoDrawable;
 import com.jogamp.opengl.GLCapabilities;
+import com.jogamp.opengl.GLContext;
 import com.jogamp.opengl.GLDrawableFactory;
+import com.jogamp.opengl.GLOffscreenAutoDrawable;
 import com.jogamp.opengl.GLProfile;
-import com.jogamp.opengl.util.GLBuffers;
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
-import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.IntBuffer;
-import java.nio.channels.FileChannel;
-import java.nio.file.Files;
-import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Map;
 import java.util.Scanner;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
-import titanicsend.pattern.glengine.GLPreprocessor;
+import titanicsend.pattern.glengine.ShaderBinaryCache;
 import titanicsend.pattern.glengine.ShaderConfiguration;
+import titanicsend.pattern.glengine.ShaderSourceCache;
 import titanicsend.util.TE;
 
 public class ShaderUtils {
@@ -35,8 +34,9 @@ public class ShaderUtils {
   public static final String SHADER_BODY_PLACEHOLDER = "{{%shader_body%}}";
   public static final Pattern PLACEHOLDER_FINDER = Pattern.compile("\\{%(.*?)(\\[(.*?)\\])??\\}");
 
-  // Global "compile VAO" for use during program validation
-  private static final int[] compileVao = new int[] {0};
+  // "Compile VAO" for use during program validation. VAOs can't be shared
+  // between GL contexts, so there is one per context that compiles shaders.
+  private static final Map<GLContext, Integer> compileVaos = new ConcurrentHashMap<>();
 
   public static String loadResource(File file) {
     try {
@@ -56,6 +56,14 @@ public class ShaderUtils {
 
   /** Creates offscreen drawable OpenGL surface at the specified resolution */
   public static GLAutoDrawable createGLSurface(int width, int height) {
+    return createGLSurface(width, height, null);
+  }
+
+  /**
+   * Creates offscreen drawable OpenGL surface at the specified resolution, optionally sharing
+   * objects (programs, textures, buffers) with an existing context.
+   */
+  public static GLAutoDrawable createGLSurface(int width, int height, GLContext sharedContext) {
     GLProfile glProfile = GLProfile.getGL4ES3();
     GLCapabilities glCapabilities = new GLCapabilities(glProfile);
     glCapabilities.setHardwareAccelerated(true);
@@ -68,12 +76,18 @@ public class ShaderUtils {
     glCapabilities.setGreenBits(8);
     GLDrawableFactory factory = GLDrawableFactory.getFactory(glProfile);
 
-    return factory.createOffscreenAutoDrawable(
-        factory.getDefaultDevice(),
-        glCapabilities,
-        new DefaultGLCapabilitiesChooser(),
-        width,
-        height);
+    GLOffscreenAutoDrawable surface =
+        factory.createOffscreenAutoDrawable(
+            factory.getDefaultDevice(),
+            glCapabilities,
+            new DefaultGLCapabilitiesChooser(),
+            width,
+            height);
+    // must be set before the context is created on first display()
+    if (sharedContext != null) {
+      surface.setSharedContext(sharedContext);
+    }
+    return surface;
   }
 
   public static String getVertexShaderTemplate() {
@@ -93,186 +107,56 @@ public class ShaderUtils {
     return shaderId;
   }
 
-  /**
-   * Takes shader filename with extension, returns string containing path to corresponding cache
-   * file.
-   */
-  public static String getCacheFilename(String shaderName) {
-    // strip the incoming path down to just the filename, and build
-    // the cache file path from there.
-    String shaderFile = shaderName.substring(shaderName.lastIndexOf('/') + 1);
-    String[] parts = shaderFile.split("\\.");
-
-    return String.format(CACHE_PATH + "%s.bin", parts[0]);
-  }
-
-  static boolean isNewerThan(File f1, File f2) {
-    // if either of the files doesn't exist, clearly *something* has been modified
-    // in this case returning true will result in either a recompile or an exception,
-    // depending on which file is missing.
-    if (!f1.exists()) {
-      return true;
-    }
-    if (!f2.exists()) {
-      return true;
-    }
-    // return true if file1 is newer than file2
-    if (f1.lastModified() > f2.lastModified()) {
-      return true;
-    }
-    return false;
-  }
-
-  static boolean isNewerThan(String file1, String file2) {
-    File f1 = new File(file1);
-    File f2 = new File(file2);
-
-    return isNewerThan(f1, f2);
-  }
-
-  /**
-   * True if we need to recompile this shader because either the framework or the shader code have
-   * been modified since last compile, false otherwise
-   *
-   * @param shaderFile path to the shader's glsl file
-   * @return true if recompile needed, false otherwise
-   */
-  public static boolean needsRecompile(String shaderFile) {
-    String cacheFile = ShaderUtils.getCacheFilename(shaderFile);
-
-    if (isNewerThan(FRAMEWORK_PATH + "default.vs", cacheFile)) {
-      // TE.log("Vertex shader framework has been modified.");
-      return true;
-    }
-
-    if (isNewerThan(FRAMEWORK_PATH + "template.fs", cacheFile)) {
-      // TE.err("Fragment shader framework been modified.");
-      return true;
-    }
-
-    if (isNewerThan(SHADER_PATH + shaderFile, cacheFile)) {
-      // TE.log("Shader '%s` has been modified.",shaderFile);
-      return true;
-    }
-
-    // if here, no recompile needed.
-    return false;
-  }
-
-  /**
-   * Attempts to read the named shader from resources/shaders/cache. Returns a ByteBuffer full of
-   * shader binary if successful, null otherwise.
-   */
-  public static boolean loadShaderFromCache(GL4 gl4, int programId, String shaderName) {
-
-    // account for shadertoy shaders pulled in via URL
-    if (shaderName == null) return false;
-
-    // see if the shader or the framework have changed since last recompile
-    if (needsRecompile(shaderName)) {
-      return false;
-    }
-
-    // attempt to read shader binary from cache file
-    String cacheFile = getCacheFilename(shaderName);
-
-    try {
-      // get available binary formats for shader storage
-      int[] fmtCount = new int[1];
-      gl4.glGetIntegerv(GL4.GL_NUM_PROGRAM_BINARY_FORMATS, fmtCount, 0);
-
-      // fast out if no binary formats are available (e.g. on MacOS)
-      if (fmtCount[0] < 1) {
-        // TE.log("Shader cache: No compatible binary shader format available.");
-        return false;
-      }
-
-      // take the first available format
-      int[] formatList = new int[fmtCount[0]];
-      gl4.glGetIntegerv(GL4.GL_PROGRAM_BINARY_FORMATS, formatList, 0);
-
-      byte[] outBuf = Files.readAllBytes(Path.of(cacheFile));
-      ByteBuffer shader = ByteBuffer.wrap(outBuf);
-
-      // attach binary to our shader program
-      gl4.glProgramBinary(programId, formatList[0], shader, outBuf.length);
-    } catch (IOException e) {
-      TE.log("I/O Exception loading shader '%s'.", shaderName);
-      return false;
-    }
-
-    // TE.log("Loaded from cache: '%s'", shaderName);
-    return true;
-  }
-
-  /** Save compiled and linked shader binary in a cache file, in resources/shaders/cache */
-  public static void saveShaderToCache(GL4 gl4, String shaderName, int programId) {
-
-    // account for shadertoy shaders pulled in via URL
-    if (shaderName == null) return;
-
-    // get the size of the shader binary in bytes
-    int[] len = new int[1];
-    gl4.glGetProgramiv(programId, GL4.GL_PROGRAM_BINARY_LENGTH, len, 0);
-
-    // get available binary formats for shader storage
-    int[] fmtCount = new int[1];
-    gl4.glGetIntegerv(GL4.GL_NUM_PROGRAM_BINARY_FORMATS, fmtCount, 0);
-
-    if (fmtCount[0] < 1) {
-      // TE.log("Shader cache: No compatible binary shader format available.");
-      return;
-    }
-
-    // take the first available format
-    int[] formatList = new int[fmtCount[0]];
-    gl4.glGetIntegerv(GL4.GL_PROGRAM_BINARY_FORMATS, formatList, 0);
-
-    // get the binary from OpenGL and store it in our buffer
-    ByteBuffer shader = GLBuffers.newDirectByteBuffer(len[0]);
-    gl4.glGetProgramBinary(programId, len[0], len, 0, formatList, 0, shader);
-
-    // save the shader binary to the cache file
-    try (FileChannel fileChannel =
-        new FileOutputStream(ShaderUtils.getCacheFilename(shaderName)).getChannel()) {
-      fileChannel.write(shader);
-    } catch (IOException e) {
-      e.printStackTrace();
-    }
+  /** Outcome of {@link #buildShader} */
+  public enum BuildResult {
+    /** Loaded from the program binary cache */
+    CACHED,
+    /** Compiled and linked, and saved to the cache */
+    COMPILED,
+    /** Preprocessing, compiling or linking failed. The error has been logged. */
+    FAILED
   }
 
   /**
    * Preprocess, compile and link vertex shader template, fragment shader template and pattern
-   * shader code into a binary object, attach it to the specified OpenGL programId, and save it to
-   * the shader cache.
+   * shader code into a binary object and attach it to the specified OpenGL programId. If the
+   * program binary cache holds a matching entry for this driver it is loaded instead, otherwise the
+   * newly linked program is saved to the cache.
    *
    * @param gl4 an active OpenGL context
    * @param programId id to which the shader binary will be attached
    * @param shaderName filename (without path) of fragment shader
    * @param tePreProcess whether to perform te pre-processing and merge with template shader
+   * @return whether the program was loaded from the cache, built, or failed to build
    */
-  public static void buildShader(GL4 gl4, int programId, String shaderName, boolean tePreProcess) {
+  public static BuildResult buildShader(
+      GL4 gl4, int programId, String shaderName, boolean tePreProcess) {
     ArrayList<ShaderConfiguration> config = new ArrayList<>();
-    String cacheName = getCacheFilename(shaderName);
-    String shaderText = loadResource(SHADER_PATH + shaderName);
 
     String shaderBody;
     try {
       if (tePreProcess) {
-        GLPreprocessor glp = new GLPreprocessor();
-        // try the new way
+        // try the new way, reusing the preprocessed source if it is cached
         try {
-          shaderBody = glp.preprocessShader(shaderText, config);
+          shaderBody =
+              ShaderSourceCache.preprocessShader(new File(SHADER_PATH + shaderName), config);
         } catch (Exception e) {
           throw new RuntimeException(e);
         }
       } else {
-        shaderBody = shaderText;
+        shaderBody = loadResource(SHADER_PATH + shaderName);
       }
+      String vertexBody = getVertexShaderTemplate();
 
-      int vertexShaderId =
-          createShader(gl4, programId, getVertexShaderTemplate(), GL4.GL_VERTEX_SHADER);
+      // The key covers the final sources, so any change to them misses the cache
+      String cacheKey = ShaderBinaryCache.computeKey(gl4, vertexBody, shaderBody);
+      if (ShaderBinaryCache.load(gl4, programId, shaderName, cacheKey)) {
+        return BuildResult.CACHED;
+      }
+
+      int vertexShaderId = createShader(gl4, programId, vertexBody, GL4.GL_VERTEX_SHADER);
       int fragmentShaderId = createShader(gl4, programId, shaderBody, GL4.GL_FRAGMENT_SHADER);
+      ShaderBinaryCache.prepareForSave(gl4, programId, cacheKey);
       link(gl4, programId);
 
       // free native resources after link
@@ -282,9 +166,11 @@ public class ShaderUtils {
       gl4.glDeleteShader(vertexShaderId);
 
       // and save the complete program object to file
-      saveShaderToCache(gl4, cacheName, programId);
+      ShaderBinaryCache.save(gl4, programId, shaderName, cacheKey);
+      return BuildResult.COMPILED;
     } catch (Exception e) {
       TE.error("Error building shader " + shaderName + "\n" + e.getMessage());
+      return BuildResult.FAILED;
     }
   }
 
@@ -302,10 +188,14 @@ public class ShaderUtils {
   }
 
   private static void bindCompileVAO(GL4 gl4) {
-    if (compileVao[0] == 0) {
-      gl4.glGenVertexArrays(1, compileVao, 0);
-    }
-    gl4.glBindVertexArray(compileVao[0]);
+    Integer compileVao = compileVaos.get(gl4.getContext());
+    if (compileVao == null) {
+      int[] handle = new int[1];
+      gl4.glGenVertexArrays(1, handle, 0);
+      compileVao = handle[0];
+      compileVaos.put(gl4.getContext(), compileVao);
+    }
+    gl4.glBindVertexArray(compileVao);
     // JKB note 7-12-25: A new problem has appeared. When a project file is
     // manually opened after launch, the default framebuffer is not bound
     // at pattern constructor time which causes a validation error.
@@ -318,9 +208,9 @@ public class ShaderUtils {
   }
 
   public static void disposeCompileVAO(GL4 gl4) {
-    if (compileVao[0] != 0) {
-      gl4.glDeleteVertexArrays(1, compileVao, 0);
-      compileVao[0] = 0;
+    Integer compileVao = compileVaos.remove(gl4.getContext());
+    if (compileVao != null) {
+      gl4.glDeleteVertexArrays(1, new int[] {compileVao}, 0);
     }
   }
 
@@ -7,6 +7,8 @@ import com.jogamp.opengl.GL4;
 import com.jogamp.opengl.util.texture.Texture;
 import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.BitSet;
 
 public abstract class Uniform {
 
@@ -21,6 +23,10 @@ public abstract class Uniform {
   public final UniformType type;
   protected boolean modified;
 
+  // Optional dirty set owned by the shader, so it can update only modified uniforms
+  private BitSet dirtySet = null;
+  private int dirtyIndex = -1;
+
   public Uniform(GL4 gl4, String name, int location, UniformType type) {
     this.gl4 = gl4;
     this.name = name;
@@ -35,6 +41,48 @@ public abstract class Uniform {
     return modified && hasLocation;
   }
 
+  /**
+   * Register this uniform in an owner's dirty set. From then on, any value change sets bit {@code
+   * index} so the owner can find pending updates without walking every uniform.
+   */
+  public void setDirtySet(BitSet dirtySet, int index) {
+    this.dirtySet = dirtySet;
+    this.dirtyIndex = index;
+    if (hasUpdate()) {
+      dirtySet.set(index);
+    }
+  }
+
+  /**
+   * Flag a new value to be sent to OpenGL on the next update. Owners also call this to re-send the
+   * current value, e.g. when another shader instance has used the same program.
+   */
+  public void markModified() {
+    this.modified = true;
+    if (this.dirtySet != null && this.hasLocation) {
+      this.dirtySet.set(this.dirtyIndex);
+    }
+  }
+
+  /**
+   * Whether a program already holds this uniform's value, given the uniform last sent to the same
+   * location. That may be this uniform, or an equal one from another instance sharing the program.
+   */
+  public boolean matches(Uniform sent) {
+    if (sent == this) {
+      return !this.modified;
+    }
+    return sent != null && !sent.modified && !this.modified && valueEquals(sent);
+  }
+
+  /**
+   * Same type and value as another uniform. Uniforms that can't compare cheaply, like buffers and
+   * samplers, are never equal and get re-sent.
+   */
+  protected boolean valueEquals(Uniform other) {
+    return false;
+  }
+
   /** Send latest value to OpenGL */
   public abstract void update();
 
@@ -139,11 +187,16 @@ public abstract class Uniform {
     public Int1 setValue(int value) {
       if (this.value != value) {
         this.value = value;
-        this.modified = true;
+        markModified();
       }
       return this;
     }
 
+    @Override
+    protected boolean valueEquals(Uniform other) {
+      return other instanceof Int1 o && o.value == this.value;
+    }
+
     @Override
     public void update() {
       this.gl4.glUniform1i(this.location, this.value);
@@ -162,11 +215,16 @@ public abstract class Uniform {
       if (this.value[0] != x || this.value[1] != y) {
         this.value[0] = x;
         this.value[1] = y;
-        this.modified = true;
+        markModified();
       }
       return this;
     }
 
+    @Override
+    protected boolean valueEquals(Uniform other) {
+      return other instanceof Int2 o && Arrays.equals(o.value, this.value);
+    }
+
     @Override
     public void update() {
       this.gl4.glUniform2i(this.location, this.value[0], this.value[1]);
@@ -186,11 +244,16 @@ public abstract class Uniform {
         this.value[0] = x;
         this.value[1] = y;
         this.value[2] = z;
-        this.modified = true;
+        markModified();
       }
       return this;
     }
 
+    @Override
+    protected boolean valueEquals(Uniform other) {
+      return other instanceof Int3 o && Arrays.equals(o.value, this.value);
+    }
+
     @Override
     public void update() {
       this.gl4.glUniform3i(this.location, this.value[0], this.value[1], this.value[2]);
@@ -211,11 +274,16 @@ public abstract class Uniform {
         this.value[1] = y;
         this.value[2] = z;
         this.value[3] = w;
-        this.modified = true;
+        markModified();
       }
       return this;
     }
 
+    @Override
+    protected boolean valueEquals(Uniform other) {
+      return other instanceof Int4 o && Arrays.equals(o.value, this.value);
+    }
+
     @Override
     public void update() {
       this.gl4.glUniform4i(
@@ -234,11 +302,16 @@ public abstract class Uniform {
     public Boolean1 setValue(boolean value) {
       if (this.value != value) {
         this.value = value;
-        this.modified = true;
+        markModified();
       }
       return this;
     }
 
+    @Override
+    protected boolean valueEquals(Uniform other) {
+      return other instanceof Boolean1 o && o.value == this.value;
+    }
+
     @Override
     public void update() {
       this.gl4.glUniform1i(this.location, this.value ? 1 : 0);
@@ -257,11 +330,16 @@ public abstract class Uniform {
       if (this.value[0] != x || this.value[1] != y) {
         this.value[0] = x;
         this.value[1] = y;
-        this.modified = true;
+        markModified();
       }
       return this;
     }
 
+    @Override
+    protected boolean valueEquals(Uniform other) {
+      return other instanceof Boolean2 o && Arrays.equals(o.value, this.value);
+    }
+
     @Override
     public void update() {
       this.gl4.glUniform2i(this.location, this.value[0] ? 1 : 0, this.value[1] ? 1 : 0);
@@ -279,11 +357,16 @@ public abstract class Uniform {
     public Float1 setValue(float value) {
       if (this.value != value) {
         this.value = value;
-        this.modified = true;
+        markModified();
       }
       return this;
     }
 
+    @Override
+    protected boolean valueEquals(Uniform other) {
+      return other instanceof Float1 o && o.value == this.value;
+    }
+
     @Override
     public void update() {
       this.gl4.glUniform1f(this.location, this.value);
@@ -302,11 +385,16 @@ public abstract class Uniform {
       if (this.value[0] != x || this.value[1] != y) {
         this.value[0] = x;
         this.value[1] = y;
-        this.modified = true;
+        markModified();
       }
       return this;
     }
 
+    @Override
+    protected boolean valueEquals(Uniform other) {
+      return other instanceof Float2 o && Arrays.equals(o.value, this.value);
+    }
+
     @Override
     public void update() {
       this.gl4.glUniform2f(this.location, this.value[0], this.value[1]);
@@ -326,11 +414,16 @@ public abstract class Uniform {
         this.value[0] = x;
         this.value[1] = y;
         this.value[2] = z;
-        this.modified = true;
+        markModified();
       }
       return this;
     }
 
+    @Override
+    protected boolean valueEquals(Uniform other) {
+      return other instanceof Float3 o && Arrays.equals(o.value, this.value);
+    }
+
     @Override
     public void update() {
       this.gl4.glUniform3f(this.location, this.value[0], this.value[1], this.value[2]);
@@ -351,11 +444,16 @@ public abstract class Uniform {
         this.value[1] = y;
         this.value[2] = z;
         this.value[3] = w;
-        this.modified = true;
+        markModified();
       }
       return this;
     }
 
+    @Override
+    protected boolean valueEquals(Uniform other) {
+      return other instanceof Float4 o && Arrays.equals(o.value, this.value);
+    }
+
     @Override
     public void update() {
       this.gl4.glUniform4f(
@@ -373,7 +471,7 @@ public abstract class Uniform {
 
     public Int1Vec setValue(IntBuffer vIArray) {
       this.vIArray = vIArray;
-      this.modified = true;
+      markModified();
       return this;
     }
 
@@ -393,7 +491,7 @@ public abstract class Uniform {
 
     public Int2Vec setValue(IntBuffer vIArray) {
       this.vIArray = vIArray;
-      this.modified = true;
+      markModified();
       return this;
     }
 
@@ -413,7 +511,7 @@ public abstract class Uniform {
 
     public Int3Vec setValue(IntBuffer vIArray) {
       this.vIArray = vIArray;
-      this.modified = true;
+      markModified();
       return this;
     }
 
@@ -433,7 +531,7 @@ public abstract class Uniform {
 
     public Int4Vec setValue(IntBuffer vIArray) {
       this.vIArray = vIArray;
-      this.modified = true;
+      markModified();
       return this;
     }
 
@@ -453,7 +551,7 @@ public abstract class Uniform {
 
     public Float1Vec setValue(FloatBuffer vFArray) {
       this.vFArray = vFArray;
-      this.modified = true;
+      markModified();
       return this;
     }
 
@@ -473,7 +571,7 @@ public abstract class Uniform {
 
     public Float2Vec setValue(FloatBuffer vFArray) {
       this.vFArray = vFArray;
-      this.modified = true;
+      markModified();
       return this;
     }
 
@@ -493,7 +591,7 @@ public abstract class Uniform {
 
     public Float3Vec setValue(FloatBuffer vFArray) {
       this.vFArray = vFArray;
-      this.modified = true;
+      markModified();
       return this;
     }
 
@@ -513,7 +611,7 @@ public abstract class Uniform {
 
     public Float4Vec setValue(FloatBuffer vFArray) {
       this.vFArray = vFArray;
-      this.modified = true;
+      markModified();
       return this;
     }
 
@@ -533,7 +631,7 @@ public abstract class Uniform {
 
     public Mat2 setValue(FloatBuffer vFArray) {
       this.vFArray = vFArray;
-      this.modified = true;
+      markModified();
       return this;
     }
 
@@ -553,7 +651,7 @@ public abstract class Uniform {
 
     public Mat3 setValue(FloatBuffer vFArray) {
       this.vFArray = vFArray;
-      this.modified = true;
+      markModified();
       return this;
     }
 
@@ -573,7 +671,7 @@ public abstract class Uniform {
 
     public Mat4 setValue(FloatBuffer vFArray) {
       this.vFArray = vFArray;
-      this.modified = true;
+      markModified();
       return this;
     }
 
@@ -599,14 +697,14 @@ public abstract class Uniform {
     public Sampler2D setValue(Texture texture) {
       this.texture = texture;
       this.isObject = true;
-      this.modified = true;
+      markModified();
       return this;
     }
 
     public Sampler2D setValue(int textureHandle) {
       this.textureHandle = textureHandle;
       this.isObject = false;
-      this.modified = true;
+      markModified();
       return this;
     }
 
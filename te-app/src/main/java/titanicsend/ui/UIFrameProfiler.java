@@ -0,0 +1,87 @@
+package titanicsend.ui;
+
+import heronarts.glx.ui.UI;
+import heronarts.glx.ui.UI2dContainer;
+import heronarts.glx.ui.UITimerTask;
+import heronarts.glx.ui.component.UIButton;
+import heronarts.glx.ui.component.UICollapsibleSection;
+import heronarts.glx.ui.component.UILabel;
+import heronarts.glx.ui.vg.VGraphics;
+import java.util.List;
+import titanicsend.pattern.glengine.FrameProfiler;
+
+/** Shows the most expensive sections measured by the GLEngine frame profiler */
+public class UIFrameProfiler extends UICollapsibleSection {
+
+  private static final float VERTICAL_SPACING = 4;
+  private static final float CHILD_SPACING = 8;
+  private static final float ROW_HEIGHT = 16;
+  private static final float TEXT_ROW_HEIGHT = 12;
+  private static final int NUM_ROWS = 12;
+
+  private final FrameProfiler profiler;
+  private final UILabel[] rows = new UILabel[NUM_ROWS];
+
+  public UIFrameProfiler(UI ui, FrameProfiler profiler, float w) {
+    super(ui, 0, 0, w, 0);
+    this.profiler = profiler;
+    setTitle("FRAME PROFILER");
+    setLayout(Layout.VERTICAL, VERTICAL_SPACING);
+
+    float contentWidth = getContentWidth() - (PADDING * 2);
+    float buttonWidth = (contentWidth - (2 * CHILD_SPACING)) / 3;
+    UI2dContainer.newHorizontalContainer(
+            ROW_HEIGHT,
+            CHILD_SPACING,
+            new UIButton(buttonWidth, ROW_HEIGHT, profiler.enabled).setLabel("Enabled"),
+            new UIButton(buttonWidth, ROW_HEIGHT, profiler.oscOutput).setLabel("OSC"),
+            new UIButton(buttonWidth, ROW_HEIGHT, profiler.exportCsv).setLabel("Export CSV"))
+        .addToContainer(this);
+
+    newRow(ui, contentWidth, String.format("%-18s %-14s  %s", "p50/p95/p99 ms", "CPU", "GPU"))
+        .addToContainer(this);
+    for (int i = 0; i < NUM_ROWS; i++) {
+      this.rows[i] = newRow(ui, contentWidth, "");
+      this.rows[i].addToContainer(this);
+    }
+
+    addLoopTask(
+        new UITimerTask(4, UITimerTask.Mode.FPS) {
+          @Override
+          public void run() {
+            updateRows();
+          }
+        });
+  }
+
+  private static UILabel newRow(UI ui, float width, String text) {
+    return (UILabel)
+        new UILabel(width, TEXT_ROW_HEIGHT, text)
+            .setFont(ui.theme.getControlFont())
+            .setTextAlignment(VGraphics.Align.LEFT, VGraphics.Align.MIDDLE);
+  }
+
+  private void updateRows() {
+    if (!isExpanded()) {
+      return;
+    }
+    List<FrameProfiler.Row> report = this.profiler.getReport();
+    for (int i = 0; i < NUM_ROWS; i++) {
+      if (i < report.size()) {
+        FrameProfiler.Row row = report.get(i);
+        this.rows[i].setLabel(
+            String.format(
+                "%-18.18s %4.1f/%4.1f/%4.1f  %4.1f/%4.1f/%4.1f",
+                row.category + " " + row.name,
+                row.cpuP50,
+                row.cpuP95,
+                row.cpuP99,
+                row.gpuP50,
+                row.gpuP95,
+                row.gpuP99));
+      } else {
+        this.rows[i].setLabel("");
+      }
+    }
+  }
+}
@@ -0,0 +1,154 @@
+package titanicsend.util;
+
+/**
+ * GLSL-style vector math on caller-owned double arrays, for CPU ports of fragment shaders.
+ *
+ * <p>Unlike the array helpers in {@link TEMath}, nothing here allocates. Every operation writes
+ * into an {@code out} array and returns it, so calls can be nested much like GLSL expressions.
+ * Vectors may be any length (vec2, vec3, vec4); each operation works over the length of {@code
+ * out}. {@code out} may be the same array as an input.
+ */
+public class TEVecMath {
+
+  public static double[] set(double[] out, double x, double y) {
+    out[0] = x;
+    out[1] = y;
+    return out;
+  }
+
+  public static double[] set(double[] out, double x, double y, double z) {
+    out[0] = x;
+    out[1] = y;
+    out[2] = z;
+    return out;
+  }
+
+  public static double[] copy(double[] out, double[] a) {
+    System.arraycopy(a, 0, out, 0, out.length);
+    return out;
+  }
+
+  public static double[] add(double[] out, double[] a, double[] b) {
+    for (int i = 0; i < out.length; i++) {
+      out[i] = a[i] + b[i];
+    }
+    return out;
+  }
+
+  public static double[] add(double[] out, double[] a, double s) {
+    for (int i = 0; i < out.length; i++) {
+      out[i] = a[i] + s;
+    }
+    return out;
+  }
+
+  public static double[] sub(double[] out, double[] a, double[] b) {
+    for (int i = 0; i < out.length; i++) {
+      out[i] = a[i] - b[i];
+    }
+    return out;
+  }
+
+  public static double[] sub(double[] out, double[] a, double s) {
+    for (int i = 0; i < out.length; i++) {
+      out[i] = a[i] - s;
+    }
+    return out;
+  }
+
+  public static double[] mul(double[] out, double[] a, double[] b) {
+    for (int i = 0; i < out.length; i++) {
+      out[i] = a[i] * b[i];
+    }
+    return out;
+  }
+
+  public static double[] mul(double[] out, double[] a, double s) {
+    for (int i = 0; i < out.length; i++) {
+      out[i] = a[i] * s;
+    }
+    return out;
+  }
+
+  public static double[] div(double[] out, double[] a, double[] b) {
+    for (int i = 0; i < out.length; i++) {
+      out[i] = a[i] / b[i];
+    }
+    return out;
+  }
+
+  public static double[] div(double[] out, double[] a, double s) {
+    for (int i = 0; i < out.length; i++) {
+      out[i] = a[i] / s;
+    }
+    return out;
+  }
+
+  /** Linear blend of a and b by t, as GLSL mix() */
+  public static double[] mix(double[] out, double[] a, double[] b, double t) {
+    for (int i = 0; i < out.length; i++) {
+      out[i] = a[i] * (1 - t) + b[i] * t;
+    }
+    return out;
+  }
+
+  public static double[] floor(double[] out, double[] a) {
+    for (int i = 0; i < out.length; i++) {
+      out[i] = Math.floor(a[i]);
+    }
+    return out;
+  }
+
+  public static double[] fract(double[] out, double[] a) {
+    for (int i = 0; i < out.length; i++) {
+      out[i] = a[i] - Math.floor(a[i]);
+    }
+    return out;
+  }
+
+  public static double[] abs(double[] out, double[] a) {
+    for (int i = 0; i < out.length; i++) {
+      out[i] = Math.abs(a[i]);
+    }
+    return out;
+  }
+
+  /** Java remainder of each component, like {@link TEMath#mod(double[], double)} */
+  public static double[] mod(double[] out, double[] a, double m) {
+    for (int i = 0; i < out.length; i++) {
+      out[i] = a[i] % m;
+    }
+    return out;
+  }
+
+  public static double[] clamp(double[] out, double[] a, double min, double max) {
+    for (int i = 0; i < out.length; i++) {
+      out[i] = Math.max(min, Math.min(max, a[i]));
+    }
+    return out;
+  }
+
+  public static double dot(double[] a, double[] b) {
+    double sum = 0;
+    for (int i = 0; i < a.length; i++) {
+      sum += a[i] * b[i];
+    }
+    return sum;
+  }
+
+  public static double length(double[] a) {
+    return Math.sqrt(dot(a, a));
+  }
+
+  /**
+   * Multiply vec2 a, as a row vector, by the matrix {{cos, -sin}, {sin, cos}}. Same result as
+   * {@link TEMath#multiplyVectorByMatrix} with that rotation matrix.
+   */
+  public static double[] rotate(double[] out, double[] a, double cos, double sin) {
+    double x = a[0];
+    double y = a[1];
+    out[0] = x * cos + y * sin;
+    out[1] = y * cos - x * sin;
+    return out;
+  }
+}
@@ -0,0 +1,37 @@
+package titanicsend.effect;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+
+class EdgeSieveEffectTest {
+
+  // Edges of 5 and 4 points, whose color indices are not in point order
+  private static final int[] EDGE_OFFSET = {0, 5, 9};
+  private static final int[] INDEX = {10, 11, 12, 13, 14, 30, 31, 32, 33};
+
+  private static int[] sieve(int gap, int length, int offset) {
+    int[] sieved = new int[INDEX.length];
+    int n = EdgeSieveEffect.sieve(EDGE_OFFSET, INDEX, gap + length, length, offset, sieved);
+    return Arrays.copyOf(sieved, n);
+  }
+
+  @Test
+  public void runsRestartOnEachEdge() {
+    // On, on, off, on, on, off...
+    assertArrayEquals(new int[] {12, 32}, sieve(1, 2, 0));
+  }
+
+  @Test
+  public void offsetShiftsTheRuns() {
+    // Off, on, on, off...
+    assertArrayEquals(new int[] {10, 13, 30, 33}, sieve(1, 2, 1));
+  }
+
+  @Test
+  public void noGapKeepsEverything() {
+    assertEquals(0, sieve(0, 3, 2).length);
+  }
+}
@@ -0,0 +1,53 @@
+package titanicsend.effect;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+import heronarts.lx.LX;
+import heronarts.lx.ModelBuffer;
+import heronarts.lx.color.LXColor;
+import heronarts.lx.model.LXModel;
+import heronarts.lx.model.LXPoint;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class SimplifyEffectTest {
+
+  private LX lx;
+  private SimplifyEffect effect;
+  private int[] colors;
+
+  @BeforeEach
+  public void setUp() {
+    LXModel bright = new LXModel(List.of(new LXPoint(), new LXPoint()));
+    LXModel dim = new LXModel(List.of(new LXPoint(), new LXPoint(), new LXPoint()));
+    this.lx = new LX(new LXModel(new LXModel[] {bright, dim}).reindexPoints());
+    this.effect = new SimplifyEffect(this.lx);
+    ModelBuffer buffer = new ModelBuffer(this.lx);
+    this.effect.setBuffer(buffer);
+    this.colors = buffer.getArray();
+  }
+
+  @AfterEach
+  public void tearDown() {
+    this.effect.dispose();
+    this.lx.dispose();
+  }
+
+  @Test
+  public void eachModelGetsItsAverage() {
+    this.effect.blendMode.setValue(SimplifyEffect.BlendMode.RGB);
+    // The dim model is below the gate and goes black
+    System.arraycopy(
+        new int[] {0xff204060, 0xff6080a0, 0xff050505, 0xff030303, 0xff010101},
+        0,
+        this.colors,
+        0,
+        5);
+    this.effect.run(16, 1);
+    assertArrayEquals(
+        new int[] {0xff406080, 0xff406080, LXColor.BLACK, LXColor.BLACK, LXColor.BLACK},
+        this.colors);
+  }
+}
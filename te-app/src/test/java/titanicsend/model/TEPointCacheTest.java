@@ -0,0 +1,78 @@
+package titanicsend.model;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import heronarts.lx.model.LXPoint;
+import heronarts.lx.transform.LXVector;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class TEPointCacheTest {
+
+  private static TEPanelModel panel(
+      String id, int numPoints, TEVertex v0, TEVertex v1, TEVertex v2, List<TEEdgeModel> edges) {
+    ArrayList<LXPoint> points = new ArrayList<>();
+    for (int i = 0; i < numPoints; i++) {
+      points.add(new LXPoint(v0));
+    }
+    return new TEPanelModel(
+        id,
+        points,
+        v0,
+        v1,
+        v2,
+        edges.get(0),
+        edges.get(1),
+        edges.get(2),
+        TEPanelModel.SOLID,
+        null,
+        new LXVector(v0).add(v1).add(v2).div(3),
+        null);
+  }
+
+  @Test
+  public void offsetsFollowEdgeAndPanelOrder() {
+    TEVertex v0 = new TEVertex(new LXVector(0, 0, 0), 0);
+    TEVertex v1 = new TEVertex(new LXVector(1, 0, 0), 1);
+    TEVertex v2 = new TEVertex(new LXVector(0, 1, 0), 2);
+    List<TEEdgeModel> edges =
+        List.of(
+            new TEEdgeModel(v0, v1, 3, false),
+            new TEEdgeModel(v1, v2, 2, false),
+            new TEEdgeModel(v2, v0, 4, false));
+    List<TEPanelModel> panels =
+        List.of(panel("a", 5, v0, v1, v2, edges), panel("b", 1, v0, v1, v2, edges));
+
+    // Color indices in reverse, so no point's position matches its index by accident
+    List<LXPoint> all = new ArrayList<>();
+    edges.forEach(edge -> all.addAll(List.of(edge.model.points)));
+    panels.forEach(panel -> all.addAll(List.of(panel.model.points)));
+    for (int i = 0; i < all.size(); i++) {
+      all.get(i).index = all.size() - 1 - i;
+    }
+
+    TEPointCache cache = new TEPointCache(1, edges, panels);
+    assertEquals(15, cache.size());
+    assertEquals(9, cache.numEdgePoints);
+    assertArrayEquals(new int[] {0, 3, 5, 9}, cache.edgeOffset);
+    assertArrayEquals(new int[] {9, 14, 15}, cache.panelOffset);
+
+    for (int e = 0; e < edges.size(); e++) {
+      assertRange(edges.get(e).model.points, cache, cache.edgeOffset[e], cache.edgeOffset[e + 1]);
+    }
+    for (int p = 0; p < panels.size(); p++) {
+      assertRange(
+          panels.get(p).model.points, cache, cache.panelOffset[p], cache.panelOffset[p + 1]);
+    }
+  }
+
+  private static void assertRange(LXPoint[] points, TEPointCache cache, int from, int to) {
+    assertEquals(points.length, to - from);
+    for (int i = 0; i < points.length; i++) {
+      assertEquals(points[i].index, cache.points.index[from + i]);
+      assertEquals(points[i].x, cache.points.x[from + i]);
+    }
+  }
+}
@@ -0,0 +1,106 @@
+package titanicsend.model;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import heronarts.lx.transform.LXVector;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class TETopologyTest {
+
+  private final List<TEVertex> vertexes = new ArrayList<>();
+  private final List<TEEdgeModel> edges = new ArrayList<>();
+  private final List<TEPanelModel> panels = new ArrayList<>();
+
+  private TEVertex vertex(int id, float x, float y) {
+    TEVertex vertex = new TEVertex(new LXVector(x, y, 0), id);
+    this.vertexes.add(vertex);
+    return vertex;
+  }
+
+  private TEEdgeModel edge(TEVertex v0, TEVertex v1, int numPixels) {
+    TEEdgeModel edge = new TEEdgeModel(v0, v1, numPixels, false);
+    this.edges.add(edge);
+    return edge;
+  }
+
+  private TEPanelModel panel(
+      TEVertex v0, TEVertex v1, TEVertex v2, TEEdgeModel e0, TEEdgeModel e1, TEEdgeModel e2) {
+    TEPanelModel panel =
+        new TEPanelModel(
+            "p" + this.panels.size(),
+            new ArrayList<>(),
+            v0,
+            v1,
+            v2,
+            e0,
+            e1,
+            e2,
+            TEPanelModel.SOLID,
+            null,
+            new LXVector(v0).add(v1).add(v2).div(3),
+            null);
+    this.panels.add(panel);
+    return panel;
+  }
+
+  private static int[] row(int[] offset, int[] values, int n) {
+    return Arrays.copyOfRange(values, offset[n], offset[n + 1]);
+  }
+
+  @Test
+  public void connectsSharedEdgesAndVertexes() {
+    // Panels A and B share edge 2-3. Panel C touches both only at vertex 3.
+    TEVertex v1 = vertex(1, 0, 0);
+    TEVertex v2 = vertex(2, 1, 0);
+    TEVertex v3 = vertex(3, 1, 1);
+    TEVertex v4 = vertex(4, 2, 1);
+    TEVertex v5 = vertex(5, 1, 2);
+    TEVertex v6 = vertex(6, 0, 2);
+    TEEdgeModel e12 = edge(v1, v2, 3);
+    TEEdgeModel e23 = edge(v2, v3, 2);
+    TEEdgeModel e31 = edge(v3, v1, 4);
+    TEEdgeModel e24 = edge(v2, v4, 1);
+    TEEdgeModel e43 = edge(v4, v3, 2);
+    TEEdgeModel e35 = edge(v3, v5, 2);
+    TEEdgeModel e56 = edge(v5, v6, 2);
+    TEEdgeModel e63 = edge(v6, v3, 2);
+    TEPanelModel a = panel(v1, v2, v3, e12, e23, e31);
+    TEPanelModel b = panel(v2, v4, v3, e24, e43, e23);
+    TEPanelModel c = panel(v3, v5, v6, e35, e56, e63);
+
+    TEPointCache points = new TEPointCache(1, this.edges, this.panels);
+    TETopology t = new TETopology(this.vertexes, this.edges, this.panels, points);
+
+    assertEquals(2, v3.getTopologyIndex());
+    assertEquals(1, e23.getTopologyIndex());
+    assertEquals(2, c.getTopologyIndex());
+
+    assertArrayEquals(new int[] {1, 2, 4, 5, 7}, row(t.vertexEdgeOffset, t.vertexEdges, 2));
+    assertArrayEquals(new int[] {0, 1, 2}, row(t.vertexPanelOffset, t.vertexPanels, 2));
+    assertArrayEquals(new int[] {0, 1}, row(t.edgePanelOffset, t.edgePanels, 1));
+    assertArrayEquals(new int[] {2, 0}, Arrays.copyOfRange(t.edgeVertexes, 4, 6));
+    assertArrayEquals(new int[] {3, 4, 1}, Arrays.copyOfRange(t.panelEdges, 3, 6));
+
+    // Edge 2-3 follows the 3 points of edge 1-2
+    assertEquals(3, t.edgePointOffset[1]);
+    assertEquals(5, t.edgePointOffset[2]);
+
+    assertArrayEquals(new int[] {1}, row(t.panelNeighborOffset, t.panelNeighbors, 0));
+    assertArrayEquals(new int[] {}, row(t.panelNeighborOffset, t.panelNeighbors, 2));
+    assertArrayEquals(new int[] {2}, row(t.panelVertexNeighborOffset, t.panelVertexNeighbors, 0));
+    assertArrayEquals(
+        new int[] {0, 1}, row(t.panelVertexNeighborOffset, t.panelVertexNeighbors, 2));
+
+    for (TEPanelModel panel : this.panels) {
+      panel.reconnectPanels(t, this.panels);
+    }
+    e23.rebuildConnections(t, this.panels);
+    assertEquals(List.of(b), a.neighbors);
+    assertEquals(List.of(a, b), c.vertexNeighbors);
+    assertEquals(2, e23.connectedPanels.size());
+  }
+}
@@ -0,0 +1,109 @@
+package titanicsend.ndi;
+
+import static com.jogamp.opengl.GL2ES3.GL_PIXEL_UNPACK_BUFFER;
+
+import com.jogamp.opengl.GL4;
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Just enough of GL4 for NDIFrameReceiver to run without a GPU. Pixel unpack buffers are backed by
+ * direct memory, and each texture upload keeps a copy of the buffer it read from. Every other call
+ * does nothing.
+ */
+class FakePixelUnpackGL {
+
+  final GL4 gl4 =
+      (GL4)
+          Proxy.newProxyInstance(
+              GL4.class.getClassLoader(),
+              new Class<?>[] {GL4.class},
+              (proxy, method, args) -> call(method.getName(), args, method.getReturnType()));
+
+  private final Map<Integer, ByteBuffer> buffers = new HashMap<>();
+  private int nextHandle = 1;
+  private int boundUnpackBuffer = 0;
+
+  // Written by the engine thread, read by the test after update() returns
+  private byte[] lastUpload = null;
+  private int uploads = 0;
+  private int deletedBuffers = 0;
+
+  byte[] getLastUpload() {
+    return this.lastUpload;
+  }
+
+  int getUploads() {
+    return this.uploads;
+  }
+
+  int getDeletedBuffers() {
+    return this.deletedBuffers;
+  }
+
+  private Object call(String name, Object[] args, Class<?> returnType) {
+    switch (name) {
+      case "glGenBuffers", "glGenTextures" -> {
+        if (args.length == 3 && args[1] instanceof int[] handles) {
+          int offset = (int) args[2];
+          for (int i = 0; i < (int) args[0]; i++) {
+            handles[offset + i] = this.nextHandle++;
+          }
+        }
+      }
+      case "glBindBuffer" -> {
+        if ((int) args[0] == GL_PIXEL_UNPACK_BUFFER) {
+          this.boundUnpackBuffer = (int) args[1];
+        }
+      }
+      case "glBufferData" -> {
+        if ((int) args[0] == GL_PIXEL_UNPACK_BUFFER) {
+          this.buffers.put(this.boundUnpackBuffer, ByteBuffer.allocateDirect((int) (long) args[1]));
+        }
+      }
+      case "glDeleteBuffers" -> {
+        this.deletedBuffers += (int) args[0];
+      }
+      case "glMapBufferRange" -> {
+        return this.buffers.get(this.boundUnpackBuffer);
+      }
+      case "glUnmapBuffer" -> {
+        return true;
+      }
+      case "glTexSubImage2D" -> {
+        ByteBuffer source = this.buffers.get(this.boundUnpackBuffer);
+        if (source != null) {
+          byte[] upload = new byte[source.capacity()];
+          source.get(0, upload);
+          this.lastUpload = upload;
+          this.uploads++;
+        }
+      }
+      default -> {}
+    }
+    return defaultValue(returnType);
+  }
+
+  private static Object defaultValue(Class<?> type) {
+    if (type == boolean.class) {
+      return false;
+    } else if (type == int.class) {
+      return 0;
+    } else if (type == long.class) {
+      return 0L;
+    } else if (type == float.class) {
+      return 0f;
+    } else if (type == double.class) {
+      return 0d;
+    } else if (type == short.class) {
+      return (short) 0;
+    } else if (type == byte.class) {
+      return (byte) 0;
+    } else if (type == char.class) {
+      return (char) 0;
+    }
+    return null;
+  }
+}
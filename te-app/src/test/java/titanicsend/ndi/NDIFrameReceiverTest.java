@@ -0,0 +1,140 @@
+package titanicsend.ndi;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.function.BooleanSupplier;
+import org.junit.jupiter.api.Test;
+
+class NDIFrameReceiverTest {
+  private static final long TIMEOUT_MS = 2000;
+
+  private static void await(BooleanSupplier condition) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+    while (!condition.getAsBoolean()) {
+      assertTrue(System.currentTimeMillis() < deadline, "timed out");
+      Thread.sleep(1);
+    }
+  }
+
+  /** Delivers the same frame with padded rows, every millisecond */
+  private static class PaddedSource implements NDIFrameReceiver.FrameSource {
+    static final int WIDTH = 3;
+    static final int HEIGHT = 2;
+    static final int STRIDE = WIDTH * 4 + 4;
+
+    private final ByteBuffer data = ByteBuffer.allocateDirect(STRIDE * HEIGHT);
+
+    PaddedSource() {
+      for (int y = 0; y < HEIGHT; y++) {
+        for (int b = 0; b < STRIDE; b++) {
+          // Padding bytes are marked so a copy that includes them shows up
+          this.data.put(y * STRIDE + b, b < WIDTH * 4 ? (byte) (y * 16 + b) : (byte) 0x7f);
+        }
+      }
+    }
+
+    @Override
+    public boolean capture(int timeoutMs) {
+      try {
+        Thread.sleep(1);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      return true;
+    }
+
+    @Override
+    public int getWidth() {
+      return WIDTH;
+    }
+
+    @Override
+    public int getHeight() {
+      return HEIGHT;
+    }
+
+    @Override
+    public int getLineStride() {
+      return STRIDE;
+    }
+
+    @Override
+    public ByteBuffer getData() {
+      return this.data;
+    }
+  }
+
+  /** Run the engine side until a frame has been uploaded */
+  private static void awaitUpload(NDIFrameReceiver receiver, FakePixelUnpackGL gl)
+      throws InterruptedException {
+    int uploads = gl.getUploads();
+    await(
+        () -> {
+          receiver.update(gl.gl4);
+          return gl.getUploads() > uploads;
+        });
+  }
+
+  @Test
+  public void framesWithoutABufferAreDropped() throws InterruptedException {
+    NDIFrameReceiver receiver = new NDIFrameReceiver("test", new NDIFakeSource());
+    FakePixelUnpackGL gl = new FakePixelUnpackGL();
+    receiver.start();
+    try {
+      // No buffers have been mapped for the capture thread yet
+      await(() -> receiver.getDroppedFrames() > 0);
+      assertNotNull(receiver.update(gl.gl4));
+      assertEquals(0, gl.getUploads());
+
+      awaitUpload(receiver, gl);
+      ByteBuffer upload = ByteBuffer.wrap(gl.getLastUpload()).order(ByteOrder.LITTLE_ENDIAN);
+      // Every generated pixel is opaque
+      assertEquals(0xff000000, upload.getInt(0) & 0xff000000);
+      assertEquals(0xff000000, upload.getInt(upload.capacity() - 4) & 0xff000000);
+    } finally {
+      receiver.dispose();
+    }
+  }
+
+  @Test
+  public void rowPaddingIsNotCopied() throws InterruptedException {
+    NDIFrameReceiver receiver = new NDIFrameReceiver("test", new PaddedSource());
+    FakePixelUnpackGL gl = new FakePixelUnpackGL();
+    receiver.start();
+    try {
+      awaitUpload(receiver, gl);
+    } finally {
+      receiver.dispose();
+    }
+
+    byte[] expected = new byte[PaddedSource.WIDTH * PaddedSource.HEIGHT * 4];
+    for (int y = 0; y < PaddedSource.HEIGHT; y++) {
+      for (int b = 0; b < PaddedSource.WIDTH * 4; b++) {
+        expected[y * PaddedSource.WIDTH * 4 + b] = (byte) (y * 16 + b);
+      }
+    }
+    assertArrayEquals(expected, gl.getLastUpload());
+  }
+
+  @Test
+  public void releasedReceiverCanRestart() throws InterruptedException {
+    NDIFrameReceiver receiver = new NDIFrameReceiver("test", new PaddedSource());
+    FakePixelUnpackGL gl = new FakePixelUnpackGL();
+    receiver.start();
+    try {
+      awaitUpload(receiver, gl);
+      receiver.release();
+      assertEquals(3, gl.getDeletedBuffers());
+
+      receiver.start();
+      awaitUpload(receiver, gl);
+    } finally {
+      receiver.dispose();
+    }
+  }
+}
@@ -0,0 +1,41 @@
+package titanicsend.ndi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class NDIFrameSenderTest {
+  private static final int WIDTH = 4;
+  private static final int HEIGHT = 2;
+  private static final int FRAME_BYTES = WIDTH * HEIGHT * 4;
+  private static final int FRAMES = 50;
+
+  @Test
+  public void everyFrameIsSentOrDropped(@TempDir Path dir) throws IOException {
+    Path file = dir.resolve("frames.rgba");
+    FileFrameSink sink = new FileFrameSink(file);
+    NDIFrameSender sender = new NDIFrameSender("test", sink);
+
+    ByteBuffer frame = ByteBuffer.allocateDirect(FRAME_BYTES);
+    for (int i = 0; i < FRAMES; i++) {
+      for (int b = 0; b < FRAME_BYTES; b++) {
+        frame.put(b, (byte) i);
+      }
+      sender.submit(frame, WIDTH, HEIGHT, System.nanoTime());
+    }
+    sender.close();
+
+    assertEquals(FRAMES, sender.getSentFrames() + sender.getDroppedFrames());
+    assertEquals(sender.getSentFrames(), sink.getFramesWritten());
+
+    // The newest frame is never dropped, so it is always the last one written
+    byte[] written = Files.readAllBytes(file);
+    assertEquals((long) sink.getFramesWritten() * FRAME_BYTES, written.length);
+    assertEquals((byte) (FRAMES - 1), written[written.length - 1]);
+  }
+}
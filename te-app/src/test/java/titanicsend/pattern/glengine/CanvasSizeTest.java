@@ -0,0 +1,45 @@
+package titanicsend.pattern.glengine;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class CanvasSizeTest {
+
+  private static void assertFits(int points) {
+    int[] size = GLEngine.canvasSizeFor(points);
+    assertTrue(size[0] * size[1] >= points, points + " points in " + size[0] + "x" + size[1]);
+  }
+
+  @Test
+  public void emptyModelGetsMinimumCanvas() {
+    assertArrayEquals(new int[] {64, 16}, GLEngine.canvasSizeFor(0));
+    assertArrayEquals(new int[] {64, 16}, GLEngine.canvasSizeFor(1));
+  }
+
+  @Test
+  public void exactPowersAndOnePast() {
+    // 128 x 128 exactly
+    assertArrayEquals(new int[] {128, 128}, GLEngine.canvasSizeFor(128 * 128));
+    // One more point needs a wider canvas and one more block of rows
+    assertArrayEquals(new int[] {256, 80}, GLEngine.canvasSizeFor(128 * 128 + 1));
+
+    // A full minimum-width canvas, then one row over into the next block
+    assertArrayEquals(new int[] {64, 64}, GLEngine.canvasSizeFor(64 * 64));
+    assertArrayEquals(new int[] {128, 48}, GLEngine.canvasSizeFor(64 * 64 + 1));
+
+    for (int points : new int[] {1000, 4095, 4097, 60_000, 65_536, 65_537, 1 << 20}) {
+      assertFits(points);
+    }
+  }
+
+  @Test
+  public void clampedToMaxCanvasSize() {
+    int max = GLEngine.MAX_CANVAS_SIZE;
+    assertArrayEquals(new int[] {max, max}, GLEngine.canvasSizeFor(max * max));
+    // Too many points is left for the texture manager to report
+    assertArrayEquals(new int[] {max, max}, GLEngine.canvasSizeFor(max * max + 1));
+    assertArrayEquals(new int[] {max, max}, GLEngine.canvasSizeFor(Integer.MAX_VALUE));
+  }
+}
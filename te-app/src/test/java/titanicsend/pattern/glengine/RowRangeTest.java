@@ -0,0 +1,48 @@
+package titanicsend.pattern.glengine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+class RowRangeTest {
+
+  private static final int WIDTH = 10;
+  private static final int HEIGHT = 8;
+
+  @Test
+  public void emptyModelHasNoRows() {
+    TextureManager.RowRange range = TextureManager.RowRange.of(new int[0], WIDTH, HEIGHT);
+    assertEquals(0, range.rowCount);
+    assertEquals(0, range.packedRows);
+    assertEquals(0, range.getPixelCount(WIDTH));
+  }
+
+  @Test
+  public void singleRow() {
+    TextureManager.RowRange range =
+        TextureManager.RowRange.of(new int[] {23, 21, 29}, WIDTH, HEIGHT);
+    assertEquals(2, range.firstRow);
+    assertEquals(1, range.rowCount);
+    assertEquals(1, range.packedRows);
+    assertEquals(WIDTH, range.getPixelCount(WIDTH));
+  }
+
+  @Test
+  public void scatteredIndicesPackIntoFewerRows() {
+    // 12 points spread from row 1 to row 6
+    int[] indices = {15, 62, 11, 40, 33, 69, 18, 50, 27, 44, 61, 36};
+    TextureManager.RowRange range = TextureManager.RowRange.of(indices, WIDTH, HEIGHT);
+    assertEquals(1, range.firstRow);
+    assertEquals(6, range.rowCount);
+    assertEquals(2, range.packedRows);
+  }
+
+  @Test
+  public void indicesPastTheCanvasAreClamped() {
+    TextureManager.RowRange range =
+        TextureManager.RowRange.of(new int[] {75, 95, 120}, WIDTH, HEIGHT);
+    assertEquals(7, range.firstRow);
+    assertEquals(1, range.rowCount);
+    assertEquals(1, range.packedRows);
+  }
+}
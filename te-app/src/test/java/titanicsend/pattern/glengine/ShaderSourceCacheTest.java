@@ -0,0 +1,142 @@
+package titanicsend.pattern.glengine;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import heronarts.lx.parameter.BooleanParameter;
+import heronarts.lx.parameter.BoundedParameter;
+import heronarts.lx.parameter.CompoundParameter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import titanicsend.pattern.jon.TEControlTag;
+
+class ShaderSourceCacheTest {
+
+  private static final String KEY = "0123abcd";
+  private static final String SOURCE = "void main() {\n  fragColor = vec4(1.0);\n}\n";
+
+  @TempDir Path dir;
+
+  private static List<ShaderConfiguration> testParameters() {
+    ShaderConfiguration range = new ShaderConfiguration();
+    range.opcode = ShaderConfigOpcode.SET_RANGE;
+    range.parameterId = TEControlTag.SPEED;
+    range.normalizationCurve = BoundedParameter.NormalizationCurve.BIAS_CENTER;
+    range.value = 0.5;
+    range.v1 = -1;
+    range.v2 = 2;
+
+    ShaderConfiguration toggle = new ShaderConfiguration();
+    toggle.opcode = ShaderConfigOpcode.AUTO;
+    toggle.name = "toggle";
+    toggle.lxParameter = new BooleanParameter("Toggle", true);
+
+    ShaderConfiguration knob = new ShaderConfiguration();
+    knob.opcode = ShaderConfigOpcode.AUTO;
+    knob.textureChannel = 3;
+    knob.lxParameter = new CompoundParameter("Knob", 0.25, -2, 4);
+
+    return List.of(range, toggle, knob);
+  }
+
+  @Test
+  public void entryRoundTrips() throws IOException {
+    List<ShaderConfiguration> expected = testParameters();
+    byte[] entry = ShaderSourceCache.encode(KEY, SOURCE, expected);
+    assertNotNull(entry);
+
+    List<ShaderConfiguration> actual = new ArrayList<>();
+    assertEquals(SOURCE, ShaderSourceCache.decode(entry, actual));
+    assertEquals(expected.size(), actual.size());
+    for (int i = 0; i < expected.size(); i++) {
+      ShaderConfiguration e = expected.get(i);
+      ShaderConfiguration a = actual.get(i);
+      assertEquals(e.opcode, a.opcode);
+      assertEquals(e.parameterId, a.parameterId);
+      assertEquals(e.normalizationCurve, a.normalizationCurve);
+      assertEquals(e.value, a.value);
+      assertEquals(e.v1, a.v1);
+      assertEquals(e.v2, a.v2);
+      assertEquals(e.textureChannel, a.textureChannel);
+      assertEquals(e.name, a.name);
+    }
+    assertNull(actual.get(0).lxParameter);
+
+    BooleanParameter toggle = assertInstanceOf(BooleanParameter.class, actual.get(1).lxParameter);
+    assertEquals("Toggle", toggle.getLabel());
+    assertEquals(true, toggle.isOn());
+
+    CompoundParameter knob = assertInstanceOf(CompoundParameter.class, actual.get(2).lxParameter);
+    assertEquals("Knob", knob.getLabel());
+    assertEquals(0.25, knob.getValue());
+    assertEquals(-2, knob.range.v0);
+    assertEquals(4, knob.range.v1);
+  }
+
+  @Test
+  public void editingAnIncludeChangesTheKey() throws Exception {
+    Path include = this.dir.resolve("common.fs");
+    Files.writeString(include, "float common() { return 1.0; }\n");
+    String shader = "#include \"" + include.toAbsolutePath() + "\"\n" + SOURCE;
+
+    String key = ShaderSourceCache.computeKey(shader);
+    assertEquals(key, ShaderSourceCache.computeKey(shader));
+
+    Files.writeString(include, "float common() { return 2.0; }\n");
+    // Same size, so make sure the edit doesn't land in the same mtime tick
+    FileTime modified = Files.getLastModifiedTime(include);
+    Files.setLastModifiedTime(include, FileTime.fromMillis(modified.toMillis() + 2000));
+    assertNotEquals(key, ShaderSourceCache.computeKey(shader));
+  }
+
+  @Test
+  public void preprocessorChangesTheKey() throws Exception {
+    byte[] preprocessor = ShaderSourceCache.fingerprint(GLPreprocessor.class);
+    assertArrayEquals(preprocessor, ShaderSourceCache.fingerprint(GLPreprocessor.class));
+
+    // Stands in for a rebuilt preprocessor
+    byte[] rebuilt = ShaderSourceCache.fingerprint(GLPreprocessor.class, ShaderConfiguration.class);
+    assertFalse(Arrays.equals(preprocessor, rebuilt));
+    assertNotEquals(
+        ShaderSourceCache.computeKey(SOURCE, preprocessor),
+        ShaderSourceCache.computeKey(SOURCE, rebuilt));
+  }
+
+  @Test
+  public void otherVersionIsRejected() throws IOException {
+    byte[] entry = ShaderSourceCache.encode(KEY, SOURCE, testParameters());
+    File file = this.dir.resolve("current.pre").toFile();
+    Files.write(file.toPath(), entry);
+    assertNotNull(ShaderSourceCache.readEntry(file, KEY));
+    assertNull(ShaderSourceCache.readEntry(file, "other key"));
+
+    // Version follows the magic number
+    ByteBuffer bumped = ByteBuffer.wrap(entry.clone());
+    bumped.putInt(4, bumped.getInt(4) + 1);
+    File old = this.dir.resolve("old.pre").toFile();
+    Files.write(old.toPath(), bumped.array());
+    assertNull(ShaderSourceCache.readEntry(old, KEY));
+  }
+
+  @Test
+  public void truncatedEntryIsRejected() {
+    byte[] entry = ShaderSourceCache.encode(KEY, SOURCE, testParameters());
+    byte[] truncated = Arrays.copyOf(entry, entry.length - 5);
+    assertThrows(IOException.class, () -> ShaderSourceCache.decode(truncated, new ArrayList<>()));
+  }
+}
@@ -0,0 +1,52 @@
+package titanicsend.pattern.glengine;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.IntBuffer;
+import org.junit.jupiter.api.Test;
+
+class SparseReadbackTest {
+
+  private static final int WIDTH = 10;
+  private static final int HEIGHT = 8;
+
+  // 12 points spread from row 1 to row 6, which pack into 2 rows
+  private static final int[] SCATTERED = {15, 62, 11, 40, 33, 69, 18, 50, 27, 44, 61, 36};
+  // 12 points filling rows 2 and 3 from the start
+  private static final int[] BAND = {20, 21, 22, 23, 24, 25, 26, 27, 28, 29, 30, 31};
+
+  @Test
+  public void fullReadUnlessEnabledAndKnown() {
+    TextureManager.RowRange range = TextureManager.RowRange.of(SCATTERED, WIDTH, HEIGHT);
+    assertEquals(TEShader.READ_FULL, TEShader.readLayoutFor(false, range, true));
+    assertEquals(TEShader.READ_FULL, TEShader.readLayoutFor(true, null, true));
+  }
+
+  @Test
+  public void scatteredViewIsPacked() {
+    TextureManager.RowRange range = TextureManager.RowRange.of(SCATTERED, WIDTH, HEIGHT);
+    assertEquals(TEShader.READ_PACKED, TEShader.readLayoutFor(true, range, true));
+    // Until the gather pass is ready, read the band
+    assertEquals(TEShader.READ_BAND, TEShader.readLayoutFor(true, range, false));
+  }
+
+  @Test
+  public void compactViewReadsItsBand() {
+    TextureManager.RowRange range = TextureManager.RowRange.of(BAND, WIDTH, HEIGHT);
+    assertEquals(range.rowCount, range.packedRows);
+    assertEquals(TEShader.READ_BAND, TEShader.readLayoutFor(true, range, true));
+  }
+
+  @Test
+  public void packedPixelsScatterToTheirPoints() {
+    int[] pointIndices = {5, 1, 9, 3};
+    int[] packed = new int[pointIndices.length];
+    int[] dst = new int[8];
+    // One packed row may hold fewer pixels than points, and an index may be past the buffer
+    IntBuffer src = IntBuffer.wrap(new int[] {0xff0000ff, 0xff00ff00, 0xffff0000});
+
+    assertEquals(3, TEShader.scatter(src, pointIndices, packed, dst));
+    assertArrayEquals(new int[] {0, 0xff00ff00, 0, 0, 0, 0xff0000ff, 0, 0}, dst);
+  }
+}
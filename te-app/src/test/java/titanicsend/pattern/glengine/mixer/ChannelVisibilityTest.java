@@ -0,0 +1,127 @@
+package titanicsend.pattern.glengine.mixer;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import heronarts.lx.LX;
+import heronarts.lx.effect.LXEffect;
+import heronarts.lx.mixer.LXAbstractChannel;
+import heronarts.lx.mixer.LXChannel;
+import heronarts.lx.mixer.LXGroup;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import titanicsend.effect.SustainEffect;
+import titanicsend.pattern.jon.Fireflies;
+
+class ChannelVisibilityTest {
+
+  private LX lx;
+  private LXGroup group;
+  private LXChannel child;
+  private LXChannel sibling;
+  private LXChannel solo;
+
+  @BeforeEach
+  public void setUp() {
+    this.lx = new LX();
+    this.child = this.lx.engine.mixer.addChannel();
+    this.sibling = this.lx.engine.mixer.addChannel();
+    this.lx.engine.mixer.selectChannel(this.child);
+    this.lx.engine.mixer.selectChannel(this.sibling, true);
+    this.group = this.lx.engine.mixer.addGroupFromSelection();
+    this.solo = this.lx.engine.mixer.addChannel();
+    for (LXAbstractChannel channel : this.lx.engine.mixer.channels) {
+      channel.fader.setValue(1);
+    }
+  }
+
+  @AfterEach
+  public void tearDown() {
+    this.lx.dispose();
+  }
+
+  private boolean[] findHidden() {
+    boolean[] hidden = new boolean[this.lx.engine.mixer.channels.size()];
+    ChannelVisibility.findHidden(this.lx.engine.mixer.channels, true, hidden);
+    return hidden;
+  }
+
+  @Test
+  public void fadedOutGroupHidesItsChannels() {
+    this.group.fader.setValue(0);
+    boolean[] hidden = findHidden();
+    assertTrue(hidden[this.group.getIndex()]);
+    assertTrue(hidden[this.child.getIndex()]);
+    assertTrue(hidden[this.sibling.getIndex()]);
+    assertFalse(hidden[this.solo.getIndex()]);
+  }
+
+  @Test
+  public void cuedChannelInFadedOutGroupRenders() {
+    this.group.fader.setValue(0);
+    this.child.cueActive.setValue(true);
+    boolean[] hidden = findHidden();
+    // The group has to composite the cued channel for the preview
+    assertFalse(hidden[this.group.getIndex()]);
+    assertFalse(hidden[this.child.getIndex()]);
+    assertTrue(hidden[this.sibling.getIndex()]);
+  }
+
+  /** Stateful effect standing in for SustainEffect, which needs a GL engine to construct */
+  private static class DecayEffect extends LXEffect implements RenderWhenHidden {
+    private double level = 0;
+
+    DecayEffect(LX lx) {
+      super(lx);
+    }
+
+    @Override
+    protected void run(double deltaMs, double enabledAmount) {
+      this.level *= 0.9;
+    }
+  }
+
+  @Test
+  public void statefulEffectsRenderWhenHidden() {
+    assertTrue(RenderWhenHidden.class.isAssignableFrom(SustainEffect.class));
+    assertTrue(RenderWhenHidden.class.isAssignableFrom(Fireflies.class));
+  }
+
+  @Test
+  public void statefulEffectKeepsFadedOutChannelRendering() {
+    this.solo.fader.setValue(0);
+    assertTrue(findHidden()[this.solo.getIndex()]);
+
+    DecayEffect decay = new DecayEffect(this.lx);
+    this.solo.addEffect(decay);
+    decay.enabled.setValue(true);
+    assertFalse(findHidden()[this.solo.getIndex()]);
+
+    // Only while it is enabled
+    decay.enabled.setValue(false);
+    assertTrue(findHidden()[this.solo.getIndex()]);
+  }
+
+  @Test
+  public void statefulEffectInFadedOutGroupKeepsGroupRendering() {
+    this.group.fader.setValue(0);
+    DecayEffect decay = new DecayEffect(this.lx);
+    this.sibling.addEffect(decay);
+    decay.enabled.setValue(true);
+    boolean[] hidden = findHidden();
+    assertFalse(hidden[this.group.getIndex()]);
+    assertFalse(hidden[this.sibling.getIndex()]);
+    assertTrue(hidden[this.child.getIndex()]);
+  }
+
+  @Test
+  public void auxChannelInFadedOutGroupRenders() {
+    this.group.fader.setValue(0);
+    this.sibling.auxActive.setValue(true);
+    boolean[] hidden = findHidden();
+    assertFalse(hidden[this.group.getIndex()]);
+    assertFalse(hidden[this.sibling.getIndex()]);
+    assertTrue(hidden[this.child.getIndex()]);
+  }
+}
@@ -0,0 +1,80 @@
+package titanicsend.pattern.jon;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import heronarts.lx.LX;
+import heronarts.lx.ModelBuffer;
+import heronarts.lx.color.LXColor;
+import heronarts.lx.model.LXModel;
+import heronarts.lx.model.LXPoint;
+import heronarts.lx.studio.TEApp;
+import heronarts.lx.utils.LXUtils;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import titanicsend.app.TEGlobalPatternControls;
+import titanicsend.color.TEGradientSource;
+import titanicsend.dmx.DmxEngine;
+import titanicsend.model.TEWholeModelDynamic;
+import titanicsend.preset.PresetEngine;
+
+class TESparklePatternTest {
+
+  private static final int POINTS = 200;
+
+  private LX lx;
+  private DmxEngine dmx;
+
+  @BeforeEach
+  public void setUp() {
+    List<LXPoint> points = new ArrayList<>();
+    for (int i = 0; i < POINTS; i++) {
+      points.add(new LXPoint(i, 0, 0));
+    }
+    // The parts of TEApp.Plugin that patterns depend on
+    this.lx = new LX(new LXModel(points).reindexPoints());
+    TEApp.wholeModel = new TEWholeModelDynamic(this.lx);
+    this.lx.engine.registerComponent("globalPatternControls", new TEGlobalPatternControls(this.lx));
+    new PresetEngine(this.lx);
+    new TEGradientSource(this.lx);
+    this.dmx = new DmxEngine(this.lx);
+  }
+
+  @AfterEach
+  public void tearDown() {
+    this.dmx.dispose();
+    this.lx.dispose();
+    TEApp.wholeModel = null;
+  }
+
+  @Test
+  public void colorsFollowOutputLevels() {
+    TESparklePattern pattern = new TESparklePattern(this.lx);
+    pattern.getControls().getLXControl(TEControlTag.WOW1).setValue(20);
+    ModelBuffer buffer = new ModelBuffer(this.lx);
+    pattern.setBuffer(buffer);
+    int[] colors = buffer.getArray();
+    for (int frame = 0; frame < 10; frame++) {
+      pattern.loop(100);
+      // Same as the per-point loop the kernel replaced
+      int color = pattern.calcColor();
+      float[] levels = pattern.engine.outputLevels;
+      for (LXPoint p : pattern.getModel().points) {
+        int expected =
+            LXColor.multiply(color, LXColor.gray(LXUtils.clampf(levels[p.index], 0, 100)));
+        assertEquals(expected, colors[p.index], "point " + p.index);
+      }
+    }
+    // Some points have sparkled
+    float min = Float.MAX_VALUE;
+    float max = -Float.MAX_VALUE;
+    for (float level : pattern.engine.outputLevels) {
+      min = Math.min(min, level);
+      max = Math.max(max, level);
+    }
+    assertTrue(max > min, "levels " + min + " to " + max);
+  }
+}
@@ -0,0 +1,182 @@
+package titanicsend.pattern.render;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import heronarts.lx.color.LXColor;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class ColorKernelsTest {
+
+  // Not a multiple of any vector width, so the scalar tail runs too
+  private static final int POINTS = 1003;
+  private static final int FROM = 5;
+
+  private final Random random = new Random(2024);
+  private final ColorKernels scalar = new ScalarColorKernels();
+  private ColorKernels vector;
+
+  // Points 0-2 of a 4 point buffer, in reverse. Point 3 is never touched.
+  private static final int[] REVERSED = {2, 1, 0};
+
+  private void assumeVector() {
+    // The SIMD kernels are only built and loaded with the vector profile
+    this.vector = ColorKernels.get();
+    assumeTrue(
+        !(this.vector instanceof ScalarColorKernels),
+        "build with -Pvector and run with --add-modules jdk.incubator.vector");
+  }
+
+  @Test
+  public void scalarFill() {
+    int[] colors = {1, 2, 3, 4};
+    this.scalar.fill(colors, REVERSED, 1, 3, 0xff123456);
+    assertArrayEquals(new int[] {0xff123456, 0xff123456, 3, 4}, colors);
+  }
+
+  @Test
+  public void scalarLerpMatchesLXColor() {
+    int[] colors = {0xff000000, 0xff204060, 0xff204060, 4};
+    this.scalar.lerp(colors, REVERSED, 0, 3, 0xffffffff, 0.5);
+    assertArrayEquals(new int[] {0xff7f7f7f, 0xff8f9faf, 0xff8f9faf, 4}, colors);
+    assertEquals(colors[1], LXColor.lerp(0xff204060, 0xffffffff, LXColor.blendMask(0.5)));
+
+    colors[1] = 0xff204060;
+    this.scalar.lerp(colors, REVERSED, 1, 2, 0x80ff0000, 0.25);
+    assertEquals(0xff3b3854, colors[1]);
+    assertEquals(colors[1], LXColor.lerp(0xff204060, 0x80ff0000, LXColor.blendMask(0.25)));
+  }
+
+  @Test
+  public void scalarMultiplyGrayMatchesLXColor() {
+    int[] colors = new int[5];
+    int[] index = {0, 1, 2, 3, 4};
+    int color = 0xff804020;
+    float[] levels = {50, -10, 150, Float.NaN, 100};
+    this.scalar.multiplyGray(colors, index, 0, 5, color, levels);
+    // Levels are clamped to 0-100, and NaN is black
+    assertArrayEquals(new int[] {0xff3f2010, 0xff000000, color, 0xff000000, color}, colors);
+    assertEquals(colors[0], LXColor.multiply(color, LXColor.gray(50)));
+  }
+
+  @Test
+  public void scalarAddMatchesLXColor() {
+    int[] colors = {0xff808080, 0xff102030, 3, 4};
+    int[] src = {7, 0x80010203, 0xff909090};
+    this.scalar.add(colors, REVERSED, 1, 3, src);
+    // Channels saturate, and the source is weighted by its alpha
+    assertArrayEquals(new int[] {0xffffffff, 0xff102131, 3, 4}, colors);
+    assertEquals(colors[0], LXColor.add(0xff808080, 0xff909090));
+    assertEquals(colors[1], LXColor.add(0xff102030, 0x80010203));
+  }
+
+  @Test
+  public void scalarUnpackAndPack() {
+    int[] colors = {0xff336699, 2, 3, 4};
+    float[] r = new float[3];
+    float[] g = new float[3];
+    float[] b = new float[3];
+    this.scalar.unpack(colors, REVERSED, 2, 3, r, g, b);
+    assertEquals(0.2f, r[2]);
+    assertEquals(0.4f, g[2]);
+    assertEquals(0.6f, b[2]);
+
+    r[0] = -1;
+    g[0] = 0.5f;
+    b[0] = 2;
+    this.scalar.pack(r, g, b, colors, REVERSED, 0, 1);
+    // Clamped, rounded and opaque
+    assertArrayEquals(new int[] {0xff336699, 2, 0xff0080ff, 4}, colors);
+  }
+
+  private int[] randomColors(int n) {
+    int[] colors = new int[n];
+    for (int i = 0; i < n; i++) {
+      colors[i] = this.random.nextInt();
+    }
+    return colors;
+  }
+
+  // Consecutive runs, as in most models, broken up by shuffled stretches
+  private int[] pointIndex(int n) {
+    int[] index = new int[n];
+    for (int i = 0; i < n; i++) {
+      index[i] = i;
+    }
+    for (int i = n / 2; i < n; i++) {
+      int j = i + this.random.nextInt(n - i);
+      int t = index[i];
+      index[i] = index[j];
+      index[j] = t;
+    }
+    return index;
+  }
+
+  @Test
+  public void blendsMatchScalar() {
+    assumeVector();
+    int[] index = pointIndex(POINTS);
+    int[] src = randomColors(POINTS);
+    int[] expected = randomColors(POINTS);
+    int[] actual = expected.clone();
+
+    for (double amount : new double[] {0, 0.3, 0.5, 1}) {
+      int color = this.random.nextInt();
+      this.scalar.lerp(expected, index, FROM, POINTS, color, amount);
+      this.vector.lerp(actual, index, FROM, POINTS, color, amount);
+      assertArrayEquals(expected, actual, "lerp " + amount);
+    }
+
+    this.scalar.add(expected, index, FROM, POINTS, src);
+    this.vector.add(actual, index, FROM, POINTS, src);
+    assertArrayEquals(expected, actual, "add");
+
+    this.scalar.fill(expected, index, FROM, POINTS / 2, 0xff123456);
+    this.vector.fill(actual, index, FROM, POINTS / 2, 0xff123456);
+    assertArrayEquals(expected, actual, "fill");
+  }
+
+  @Test
+  public void multiplyGrayMatchesScalar() {
+    assumeVector();
+    int[] index = pointIndex(POINTS);
+    float[] levels = new float[POINTS];
+    for (int i = 0; i < POINTS; i++) {
+      levels[i] = this.random.nextFloat() * 140 - 20;
+    }
+    levels[7] = Float.NaN;
+    levels[8] = 100;
+
+    int[] expected = new int[POINTS];
+    int[] actual = new int[POINTS];
+    int color = 0x80c0ff40;
+    this.scalar.multiplyGray(expected, index, FROM, POINTS, color, levels);
+    this.vector.multiplyGray(actual, index, FROM, POINTS, color, levels);
+    assertArrayEquals(expected, actual);
+  }
+
+  @Test
+  public void unpackAndPackMatchScalar() {
+    assumeVector();
+    int[] index = pointIndex(POINTS);
+    int[] colors = randomColors(POINTS);
+    float[][] expected = new float[3][POINTS];
+    float[][] actual = new float[3][POINTS];
+
+    this.scalar.unpack(colors, index, FROM, POINTS, expected[0], expected[1], expected[2]);
+    this.vector.unpack(colors, index, FROM, POINTS, actual[0], actual[1], actual[2]);
+    for (int c = 0; c < 3; c++) {
+      assertArrayEquals(expected[c], actual[c]);
+      // Out of range components get clamped
+      expected[c][FROM + c] = actual[c][FROM + c] = (c == 0) ? -1 : 2;
+    }
+
+    int[] packedExpected = new int[POINTS];
+    int[] packedActual = new int[POINTS];
+    this.scalar.pack(expected[0], expected[1], expected[2], packedExpected, index, FROM, POINTS);
+    this.vector.pack(actual[0], actual[1], actual[2], packedActual, index, FROM, POINTS);
+    assertArrayEquals(packedExpected, packedActual);
+  }
+}
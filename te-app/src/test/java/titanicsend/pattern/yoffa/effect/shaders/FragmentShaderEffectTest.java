@@ -0,0 +1,83 @@
+package titanicsend.pattern.yoffa.effect.shaders;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import heronarts.lx.LX;
+import heronarts.lx.studio.TEApp;
+import java.lang.management.ManagementFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import titanicsend.app.TEGlobalPatternControls;
+import titanicsend.color.TEGradientSource;
+import titanicsend.model.TEWholeModelDynamic;
+import titanicsend.pattern.yoffa.config.OrganicPatternConfig;
+import titanicsend.pattern.yoffa.framework.PatternTarget;
+import titanicsend.preset.PresetEngine;
+
+class FragmentShaderEffectTest {
+
+  private static final int POINTS = 100_000;
+
+  private LX lx;
+
+  @BeforeEach
+  public void setUp() {
+    // The parts of TEApp.Plugin that patterns depend on
+    this.lx = new LX();
+    TEApp.wholeModel = new TEWholeModelDynamic(this.lx);
+    this.lx.engine.registerComponent("globalPatternControls", new TEGlobalPatternControls(this.lx));
+    new PresetEngine(this.lx);
+    new TEGradientSource(this.lx);
+  }
+
+  @AfterEach
+  public void tearDown() {
+    this.lx.dispose();
+    TEApp.wholeModel = null;
+  }
+
+  @Test
+  public void waterDoesNotAllocatePerPoint() {
+    OrganicPatternConfig.WaterPanels pattern = new OrganicPatternConfig.WaterPanels(this.lx);
+    assertNoAllocation(new WaterShader(new PatternTarget(pattern)));
+  }
+
+  @Test
+  public void wavyDoesNotAllocatePerPoint() {
+    OrganicPatternConfig.WavyPanels pattern = new OrganicPatternConfig.WavyPanels(this.lx);
+    assertNoAllocation(new WavyShader(new PatternTarget(pattern)));
+  }
+
+  private static void assertNoAllocation(FragmentShaderEffect effect) {
+    com.sun.management.ThreadMXBean threads =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    long thread = Thread.currentThread().threadId();
+    FragmentShaderEffect.Scratch s = new FragmentShaderEffect.Scratch();
+
+    // warm up, and let the measurement itself settle
+    double sink = shadePoints(effect, s);
+    threads.getThreadAllocatedBytes(thread);
+
+    long before = threads.getThreadAllocatedBytes(thread);
+    sink += shadePoints(effect, s);
+    long allocated = threads.getThreadAllocatedBytes(thread) - before;
+
+    // Allow a little slack for the measurement, but far less than one byte per point
+    assertTrue(allocated < POINTS / 10, "allocated " + allocated + " bytes, " + sink);
+  }
+
+  // Shade a grid of points the way FragmentShaderEffect.run() does for each model point
+  private static double shadePoints(FragmentShaderEffect effect, FragmentShaderEffect.Scratch s) {
+    double sum = 0;
+    for (int n = 0; n < POINTS; n++) {
+      s.fragCoordinates[0] = (n % 512) / 512.;
+      s.fragCoordinates[1] = (n / 512) / 256.;
+      s.resolution[0] = 1;
+      s.resolution[1] = 1;
+      effect.getColorForPoint(s.fragCoordinates, s.resolution, n / 1000., s, s.color);
+      sum += s.color[0] + s.color[1] + s.color[2];
+    }
+    return sum;
+  }
+}
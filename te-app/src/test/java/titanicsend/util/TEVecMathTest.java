@@ -0,0 +1,41 @@
+package titanicsend.util;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+import org.junit.jupiter.api.Test;
+
+class TEVecMathTest {
+
+  private static final double EPSILON = 1e-12;
+
+  @Test
+  public void matchesArrayHelpers() {
+    double[] a = {0.25, -1.75};
+    double[] b = {3.5, 0.5};
+    double[] out = new double[2];
+
+    assertArrayEquals(TEMath.addArrays(a, b), TEVecMath.add(out, a, b), EPSILON);
+    assertArrayEquals(TEMath.subtractArrays(a, b), TEVecMath.sub(out, a, b), EPSILON);
+    assertArrayEquals(TEMath.divideArrays(a, b), TEVecMath.div(out, a, b), EPSILON);
+    assertArrayEquals(TEMath.multiplyArray(3, a), TEVecMath.mul(out, a, 3), EPSILON);
+    assertArrayEquals(TEMath.addToArray(-1, a), TEVecMath.add(out, a, -1), EPSILON);
+    assertArrayEquals(TEMath.fract(a), TEVecMath.fract(out, a), EPSILON);
+    assertArrayEquals(TEMath.floor(a), TEVecMath.floor(out, a), EPSILON);
+    assertArrayEquals(TEMath.mod(a, 0.5), TEVecMath.mod(out, a, 0.5), EPSILON);
+    assertArrayEquals(TEMath.clamp(a, 0, 1), TEVecMath.clamp(out, a, 0, 1), EPSILON);
+
+    double angle = 0.7;
+    double[][] rotation = {
+      {Math.cos(angle), -Math.sin(angle)},
+      {Math.sin(angle), Math.cos(angle)}
+    };
+    assertArrayEquals(
+        TEMath.multiplyVectorByMatrix(a, rotation),
+        TEVecMath.rotate(out, a, Math.cos(angle), Math.sin(angle)),
+        EPSILON);
+
+    // out may alias an input
+    double[] c = a.clone();
+    assertArrayEquals(TEMath.addArrays(a, b), TEVecMath.add(c, c, b), EPSILON);
+  }
+}
@@ -0,0 +1,195 @@
+package titanicsend.pattern.render;
+
+import static jdk.incubator.vector.VectorOperators.F2I;
+import static jdk.incubator.vector.VectorOperators.GE;
+import static jdk.incubator.vector.VectorOperators.I2F;
+import static jdk.incubator.vector.VectorOperators.LSHL;
+import static jdk.incubator.vector.VectorOperators.LSHR;
+
+import heronarts.lx.color.LXColor;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * SIMD kernels on the JDK Vector API. Only loaded by {@link ColorKernels#get()} once it knows the
+ * incubator module is present. Compiled only by the vector Maven profile.
+ *
+ * <p>Each kernel is the LXColor integer math written lane-wise, so results are identical to {@link
+ * ScalarColorKernels}. Colors are read and written through the point index: blocks of consecutive
+ * indices, the common case, use plain vector loads and stores, and anything else uses
+ * gather/scatter. Leftover points at the end of a range run through the scalar kernels.
+ */
+class VectorColorKernels extends ColorKernels {
+
+  private static final VectorSpecies<Integer> I = IntVector.SPECIES_PREFERRED;
+  private static final VectorSpecies<Float> F = FloatVector.SPECIES_PREFERRED;
+
+  // Narrower than this and the scalar loops are just as fast
+  private static final int MIN_LANES = 4;
+
+  private static final int RB_MASK = LXColor.RB_MASK;
+  private static final int R_MASK = LXColor.R_MASK;
+  private static final int G_MASK = LXColor.G_MASK;
+  private static final int B_MASK = LXColor.B_MASK;
+
+  private final IntVector iota = IntVector.zero(I).addIndex(1);
+  private final ScalarColorKernels tail = new ScalarColorKernels();
+
+  VectorColorKernels() {
+    if (I.length() < MIN_LANES || I.length() != F.length()) {
+      throw new UnsupportedOperationException(
+          "Unsuitable vector shape: " + I.length() + " int lanes, " + F.length() + " float lanes");
+    }
+  }
+
+  @Override
+  public String getName() {
+    return "vector (" + I.length() + " lanes)";
+  }
+
+  // Position in colors of a block of points, if their indices are consecutive, else -1
+  private int contiguous(int[] index, int i) {
+    int base = index[i];
+    return IntVector.fromArray(I, index, i).eq(this.iota.add(base)).allTrue() ? base : -1;
+  }
+
+  private static IntVector load(int[] colors, int[] index, int i, int base) {
+    return (base >= 0)
+        ? IntVector.fromArray(I, colors, base)
+        : IntVector.fromArray(I, colors, 0, index, i);
+  }
+
+  private static void store(IntVector v, int[] colors, int[] index, int i, int base) {
+    if (base >= 0) {
+      v.intoArray(colors, base);
+    } else {
+      v.intoArray(colors, 0, index, i);
+    }
+  }
+
+  private static int loopEnd(int from, int to) {
+    return from + I.loopBound(to - from);
+  }
+
+  @Override
+  public void fill(int[] colors, int[] index, int from, int to, int color) {
+    IntVector c = IntVector.broadcast(I, color);
+    int end = loopEnd(from, to);
+    for (int i = from; i < end; i += I.length()) {
+      store(c, colors, index, i, contiguous(index, i));
+    }
+    this.tail.fill(colors, index, end, to, color);
+  }
+
+  @Override
+  public void lerp(int[] colors, int[] index, int from, int to, int src, double amount) {
+    // Everything that depends only on src and amount, as in LXColor.lerp()
+    int alpha = LXColor.blendMask(amount);
+    int oa = src >>> LXColor.ALPHA_SHIFT;
+    int a = ((oa * alpha) >> 8) & 0xff;
+    int srcAlpha = a + (a >= 0x7F ? 1 : 0);
+    int dstAlpha = LXColor.BLEND_ALPHA_FULL - srcAlpha;
+    int srcRB = (src & RB_MASK) * srcAlpha;
+    int srcG = (src & G_MASK) * srcAlpha;
+
+    int end = loopEnd(from, to);
+    for (int i = from; i < end; i += I.length()) {
+      int base = contiguous(index, i);
+      IntVector dst = load(colors, index, i, base);
+      IntVector out =
+          dst.lanewise(LSHR, LXColor.ALPHA_SHIFT)
+              .add(oa)
+              .min(0xff)
+              .lanewise(LSHL, LXColor.ALPHA_SHIFT)
+              .or(dst.and(RB_MASK).mul(dstAlpha).add(srcRB).lanewise(LSHR, 8).and(RB_MASK))
+              .or(dst.and(G_MASK).mul(dstAlpha).add(srcG).lanewise(LSHR, 8).and(G_MASK));
+      store(out, colors, index, i, base);
+    }
+    this.tail.lerp(colors, index, end, to, src, amount);
+  }
+
+  @Override
+  public void multiplyGray(int[] colors, int[] index, int from, int to, int color, float[] levels) {
+    // LXColor.multiply() with an opaque gray source reduces to just the channel products
+    int dstR = ((color & R_MASK) >> LXColor.R_SHIFT) + 1;
+    int dstG = (color & G_MASK) + 0x100;
+    int dstB = (color & B_MASK) + 1;
+
+    int end = loopEnd(from, to);
+    for (int i = from; i < end; i += I.length()) {
+      FloatVector level = FloatVector.fromArray(F, levels, i).max(0f).min(100f);
+      IntVector b = ((IntVector) level.mul(2.559f).convert(F2I, 0)).and(0xff);
+      IntVector rb =
+          b.lanewise(LSHL, LXColor.R_SHIFT)
+              .mul(dstR)
+              .or(b.mul(dstB))
+              .lanewise(LSHR, 8)
+              .and(RB_MASK);
+      IntVector g = b.lanewise(LSHL, LXColor.G_SHIFT).mul(dstG).lanewise(LSHR, 16).and(G_MASK);
+      store(rb.or(g).or(LXColor.ALPHA_MASK), colors, index, i, contiguous(index, i));
+    }
+    this.tail.multiplyGray(colors, index, end, to, color, levels);
+  }
+
+  @Override
+  public void add(int[] colors, int[] index, int from, int to, int[] src) {
+    int end = loopEnd(from, to);
+    for (int i = from; i < end; i += I.length()) {
+      int base = contiguous(index, i);
+      IntVector dst = load(colors, index, i, base);
+      IntVector s = IntVector.fromArray(I, src, i);
+      IntVector oa = s.lanewise(LSHR, LXColor.ALPHA_SHIFT);
+      IntVector srcAlpha = oa.add(1, oa.compare(GE, 0x7F));
+      IntVector rb =
+          dst.and(RB_MASK).add(s.and(RB_MASK).mul(srcAlpha).lanewise(LSHR, 8).and(RB_MASK));
+      IntVector gn = dst.and(G_MASK).add(s.and(G_MASK).mul(srcAlpha).lanewise(LSHR, 8));
+      IntVector out =
+          dst.lanewise(LSHR, LXColor.ALPHA_SHIFT)
+              .add(oa)
+              .min(0xff)
+              .lanewise(LSHL, LXColor.ALPHA_SHIFT)
+              .or(rb.and(0xffff0000).min(R_MASK))
+              .or(gn.and(0x00ffff00).min(G_MASK))
+              .or(rb.and(0x0000ffff).min(B_MASK));
+      store(out, colors, index, i, base);
+    }
+    this.tail.add(colors, index, end, to, src);
+  }
+
+  @Override
+  public void unpack(int[] colors, int[] index, int from, int to, float[] r, float[] g, float[] b) {
+    int end = loopEnd(from, to);
+    for (int i = from; i < end; i += I.length()) {
+      IntVector c = load(colors, index, i, contiguous(index, i));
+      toFloat(c.lanewise(LSHR, LXColor.R_SHIFT).and(0xff)).intoArray(r, i);
+      toFloat(c.lanewise(LSHR, LXColor.G_SHIFT).and(0xff)).intoArray(g, i);
+      toFloat(c.and(0xff)).intoArray(b, i);
+    }
+    this.tail.unpack(colors, index, end, to, r, g, b);
+  }
+
+  private static FloatVector toFloat(IntVector channel) {
+    return ((FloatVector) channel.convert(I2F, 0)).div(255f);
+  }
+
+  @Override
+  public void pack(float[] r, float[] g, float[] b, int[] colors, int[] index, int from, int to) {
+    int end = loopEnd(from, to);
+    for (int i = from; i < end; i += I.length()) {
+      IntVector out =
+          toByte(FloatVector.fromArray(F, r, i))
+              .lanewise(LSHL, LXColor.R_SHIFT)
+              .or(toByte(FloatVector.fromArray(F, g, i)).lanewise(LSHL, LXColor.G_SHIFT))
+              .or(toByte(FloatVector.fromArray(F, b, i)))
+              .or(LXColor.ALPHA_MASK);
+      store(out, colors, index, i, contiguous(index, i));
+    }
+    this.tail.pack(r, g, b, colors, index, end, to);
+  }
+
+  // Same as ScalarColorKernels.toByte()
+  private static IntVector toByte(FloatVector v) {
+    return (IntVector) v.min(1f).max(0f).mul(255f).add(0.5f).convert(F2I, 0);
+  }
+}